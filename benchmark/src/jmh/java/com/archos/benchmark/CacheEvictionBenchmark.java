@@ -0,0 +1,104 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.archos.benchmark;
+
+import com.archos.mediacenter.utils.LruCache;
+
+import httpimage.BasicBitmapCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup then store on a miss, as image loaders do while a list scrolls, on caches of the
+ * HttpImageManager default size: {@link BasicBitmapCache} and its linear oldest
+ * entry search, the linked hash map of {@link LruCache}, and the framework {@link android.util.LruCache}
+ * of the thumbnail and scraper caches. Keys are the corpus paths, one access out of HOT_RATIO goes
+ * to any of them and the others to a working set slightly smaller than the cache, so that every
+ * cache evicts on a steady rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CacheEvictionBenchmark {
+
+    private static final int ACCESSES = 4096;
+    private static final int HOT_RATIO = 5;
+    private static final Object VALUE = new Object();
+    private static final int CAPACITY = 64;
+
+    private String[] mKeys;
+    private int mIndex;
+    private BasicBitmapCache mBasic;
+    private LruCache<String, Object> mLru;
+    private android.util.LruCache<String, Object> mFrameworkLru;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] paths = Corpus.lines(Corpus.VIDEO_PATHS);
+        int hot = CAPACITY * 3 / 4;
+        Random random = new Random(42);
+        mKeys = new String[ACCESSES];
+        for (int i = 0; i < ACCESSES; i++)
+            mKeys[i] = paths[random.nextInt(HOT_RATIO) == 0 ? random.nextInt(paths.length) : random.nextInt(hot)];
+        mBasic = new BasicBitmapCache(CAPACITY);
+        mLru = new LruCache<>(CAPACITY);
+        mFrameworkLru = new android.util.LruCache<>(CAPACITY);
+    }
+
+    private String next() {
+        int index = mIndex;
+        mIndex = (index + 1) % mKeys.length;
+        return mKeys[index];
+    }
+
+    @Benchmark
+    public boolean basicBitmapCache() {
+        String key = next();
+        // no Bitmap out of a device, the entry is what is evicted
+        if (mBasic.exists(key)) {
+            mBasic.loadData(key);
+            return true;
+        }
+        mBasic.storeData(key, null);
+        return false;
+    }
+
+    @Benchmark
+    public boolean lruCache() {
+        String key = next();
+        if (mLru.get(key) != null)
+            return true;
+        mLru.put(key, VALUE);
+        return false;
+    }
+
+    @Benchmark
+    public boolean frameworkLruCache() {
+        String key = next();
+        if (mFrameworkLru.get(key) != null)
+            return true;
+        mFrameworkLru.put(key, VALUE);
+        return false;
+    }
+}
@@ -0,0 +1,67 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Checked in corpora of src/jmh/resources/corpus, one entry per line. */
+final class Corpus {
+
+    /** paths of movies and episodes as the scanners see them, local, smb, sftp and upnp */
+    static final String VIDEO_PATHS = "video_paths.txt";
+    /** names of audio and subtitle tracks as the native retriever reports them */
+    static final String LANGUAGE_TAGS = "language_tags.txt";
+    /** movie nfo with every element NfoMovieHandler reads, %TITLE%, %YEAR% and %ID% to be filled */
+    static final String MOVIE_NFO = "movie.nfo";
+    /** episode nfo with every element NfoEpisodeHandler reads, %TITLE%, %SEASON%, %EPISODE%, %YEAR% and %ID% to be filled */
+    static final String EPISODE_NFO = "episode.nfo";
+
+    private Corpus() {
+        /* all static */
+    }
+
+    static String[] lines(String name) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (InputStream is = Corpus.class.getResourceAsStream("/corpus/" + name)) {
+            if (is == null)
+                throw new IOException("lines: no corpus " + name);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty())
+                    lines.add(line);
+            }
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    static String text(String name) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines(name))
+            sb.append(line).append('\n');
+        return sb.toString();
+    }
+
+    /** file name of a path, as the parsers get it */
+    static String fileName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,71 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.benchmark;
+
+import com.archos.mediacenter.utils.ISO639codes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ISO639codes} lookups on the track names of the corpus, done for every audio and subtitle
+ * track shown in the player and the details screen.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ISO639codesBenchmark {
+
+    private static final String[] CODES = {
+            "en", "fr", "de", "es", "it", "ja", "eng", "fre", "fra", "ger", "deu", "spa", "jpn", "chi",
+    };
+
+    private String[] mTags;
+    private int mIndex;
+
+    @Setup
+    public void setUp() throws IOException {
+        mTags = Corpus.lines(Corpus.LANGUAGE_TAGS);
+    }
+
+    private int next() {
+        int index = mIndex;
+        mIndex = (index + 1) % mTags.length;
+        return index;
+    }
+
+    @Benchmark
+    public String findLanguageInString() {
+        return ISO639codes.findLanguageInString(mTags[next()]);
+    }
+
+    @Benchmark
+    public String replaceLanguageCodeInString() {
+        return ISO639codes.replaceLanguageCodeInString(mTags[next()]);
+    }
+
+    @Benchmark
+    public String getLanguageNameForLetterCode() {
+        return ISO639codes.getLanguageNameForLetterCode(CODES[next() % CODES.length]);
+    }
+}
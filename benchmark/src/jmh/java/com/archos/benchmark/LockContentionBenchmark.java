@@ -0,0 +1,91 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.benchmark;
+
+import com.archos.mediascraper.MultiLock;
+import com.archos.mediascraper.ObjectPool;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link MultiLock} and {@link ObjectPool} under the contention of the scrape threads: all threads on
+ * one key (the same show scraped by several episodes), or one key per thread.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class LockContentionBenchmark {
+
+    // the scrapers pool their parsers, same size as the scrape threads
+    private static final int POOL_SIZE = 4;
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        final MultiLock<String> lock = new MultiLock<>();
+        final ObjectPool<StringBuilder> pool = new ObjectPool<StringBuilder>(POOL_SIZE) {
+            @Override
+            protected void cleanup(StringBuilder object) {
+                object.setLength(0);
+            }
+
+            @Override
+            protected StringBuilder create() {
+                return new StringBuilder(256);
+            }
+        };
+        final AtomicInteger threads = new AtomicInteger();
+    }
+
+    @State(Scope.Thread)
+    public static class PerThread {
+        String key;
+
+        @Setup
+        public void setUp(Shared shared) {
+            key = "show " + shared.threads.incrementAndGet();
+        }
+    }
+
+    @Benchmark
+    public void multiLockSameKey(Shared shared) {
+        shared.lock.lock("show");
+        shared.lock.unlock("show");
+    }
+
+    @Benchmark
+    public void multiLockOwnKey(Shared shared, PerThread thread) {
+        shared.lock.lock(thread.key);
+        shared.lock.unlock(thread.key);
+    }
+
+    @Benchmark
+    public int objectPool(Shared shared, PerThread thread) {
+        StringBuilder sb = shared.pool.obtain();
+        sb.append(thread.key);
+        int length = sb.length();
+        shared.pool.putBack(sb);
+        return length;
+    }
+}
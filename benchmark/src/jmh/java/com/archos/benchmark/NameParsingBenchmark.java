@@ -0,0 +1,73 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.benchmark;
+
+import com.archos.mediaprovider.video.VideoNameProcessor;
+import com.archos.mediascraper.ShowUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * File name parsing of the scan and scrape paths, one corpus entry per invocation: the import guess
+ * of definition and formats, and the tv show patterns tried on every file before the movie ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NameParsingBenchmark {
+
+    private String[] mPaths;
+    private String[] mNames;
+    private int mIndex;
+
+    @Setup
+    public void setUp() throws IOException {
+        mPaths = Corpus.lines(Corpus.VIDEO_PATHS);
+        mNames = new String[mPaths.length];
+        for (int i = 0; i < mPaths.length; i++)
+            mNames[i] = Corpus.fileName(mPaths[i]);
+    }
+
+    private int next() {
+        int index = mIndex;
+        mIndex = (index + 1) % mPaths.length;
+        return index;
+    }
+
+    @Benchmark
+    public VideoNameProcessor.ExtractedInfo extractInfoFromPath() {
+        return VideoNameProcessor.extractInfoFromPath(mPaths[next()]);
+    }
+
+    @Benchmark
+    public Map<String, String> parseShowName() {
+        return ShowUtils.parseShowName(mNames[next()]);
+    }
+
+    @Benchmark
+    public String cleanUpName() {
+        return ShowUtils.cleanUpName(mNames[next()]);
+    }
+}
@@ -0,0 +1,56 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.benchmark;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * JDK parser factory that reports local names like the Android one does, which the nfo handlers
+ * match on. Installed through the javax.xml.parsers.SAXParserFactory system property.
+ */
+public class NamespaceAwareSAXParserFactory extends SAXParserFactory {
+    private final SAXParserFactory mFactory = SAXParserFactory.newDefaultInstance();
+
+    public NamespaceAwareSAXParserFactory() {
+        mFactory.setNamespaceAware(true);
+    }
+
+    static void install() {
+        System.setProperty(SAXParserFactory.class.getName(), NamespaceAwareSAXParserFactory.class.getName());
+    }
+
+    @Override
+    public SAXParser newSAXParser() throws ParserConfigurationException, SAXException {
+        return mFactory.newSAXParser();
+    }
+
+    @Override
+    public void setFeature(String name, boolean value)
+            throws ParserConfigurationException, SAXNotRecognizedException, SAXNotSupportedException {
+        mFactory.setFeature(name, value);
+    }
+
+    @Override
+    public boolean getFeature(String name)
+            throws ParserConfigurationException, SAXNotRecognizedException, SAXNotSupportedException {
+        return mFactory.getFeature(name);
+    }
+}
@@ -0,0 +1,167 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.benchmark;
+
+import com.archos.mediascraper.EpisodeTags;
+import com.archos.mediascraper.SaxParserPool;
+import com.archos.mediascraper.saxhandler.NfoEpisodeHandler;
+import com.archos.mediascraper.saxhandler.NfoMovieHandler;
+import com.archos.mediascraper.saxhandler.NfoRootHandler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * Parsing of a 10k nfo library, 60% movies and 40% episodes, built from the checked in templates.
+ * One thread: a parser and handlers built per nfo as before {@link SaxParserPool}, against the pooled
+ * ones. Four threads by pages of 2000 as AutoScrapeService does: a thread pool per page, whose threads
+ * rebuild their parsers on every page, against the long-lived pool of NfoParser.getTagsForFiles.
+ * Handlers are cleared instead of asked for their result, which needs a Context and downloads images.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class NfoParsingBenchmark {
+
+    private static final int NFOS = 10000;
+    private static final int PAGE = 2000;
+    private static final int THREADS = 4;
+
+    static {
+        // before SaxParserPool creates its factory
+        NamespaceAwareSAXParserFactory.install();
+    }
+
+    @State(Scope.Benchmark)
+    public static class Library {
+        byte[][] nfos;
+        ExecutorService sharedPool;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            String movie = Corpus.text(Corpus.MOVIE_NFO);
+            String episode = Corpus.text(Corpus.EPISODE_NFO);
+            String[] paths = Corpus.lines(Corpus.VIDEO_PATHS);
+            nfos = new byte[NFOS][];
+            for (int i = 0; i < NFOS; i++) {
+                String title = Corpus.fileName(paths[i % paths.length]);
+                String nfo = (i % 5 < 3 ? movie : episode)
+                        .replace("%TITLE%", title.replace("&", "&amp;").replace("<", "&lt;"))
+                        .replace("%YEAR%", String.valueOf(1950 + i % 75))
+                        .replace("%SEASON%", String.valueOf(1 + i % 9))
+                        .replace("%EPISODE%", String.valueOf(1 + i % 24))
+                        .replace("%ID%", String.valueOf(100000 + i));
+                nfos[i] = nfo.getBytes(StandardCharsets.UTF_8);
+            }
+            checkHandlers(episode);
+            sharedPool = Executors.newFixedThreadPool(THREADS);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            sharedPool.shutdownNow();
+        }
+
+        /** the handlers only match local names, make sure they see the elements */
+        private static void checkHandlers(String episode) throws Exception {
+            SaxParserPool.Parsers parsers = SaxParserPool.obtain();
+            parsers.getParser().parse(new ByteArrayInputStream(episode.getBytes(StandardCharsets.UTF_8)), parsers.getRootHandler());
+            EpisodeTags tags = parsers.getEpisodeHandler().getResult(null, null);
+            if (tags == null || !"%TITLE%".equals(tags.getTitle()))
+                throw new IllegalStateException("checkHandlers: episode nfo not recognized, local names are not reported");
+            parsers.getRootHandler().clear();
+        }
+    }
+
+    private static void parsePooled(byte[] nfo) throws Exception {
+        SaxParserPool.Parsers parsers = SaxParserPool.obtain();
+        NfoRootHandler rootHandler = parsers.getRootHandler();
+        parsers.getParser().parse(new ByteArrayInputStream(nfo), rootHandler);
+        rootHandler.clear();
+    }
+
+    @Benchmark
+    public int freshParserPerNfo(Library library) throws Exception {
+        int parsed = 0;
+        for (byte[] nfo : library.nfos) {
+            SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+            NfoRootHandler rootHandler = new NfoRootHandler(parser.getXMLReader(), new NfoMovieHandler(), new NfoEpisodeHandler());
+            parser.parse(new ByteArrayInputStream(nfo), rootHandler);
+            rootHandler.clear();
+            parsed++;
+        }
+        return parsed;
+    }
+
+    @Benchmark
+    public int pooledParser(Library library) throws Exception {
+        int parsed = 0;
+        for (byte[] nfo : library.nfos) {
+            parsePooled(nfo);
+            parsed++;
+        }
+        return parsed;
+    }
+
+    private static int parsePages(Library library, ExecutorService sharedPool) throws Exception {
+        final AtomicInteger parsed = new AtomicInteger();
+        for (int page = 0; page < NFOS; page += PAGE) {
+            ExecutorService executor = sharedPool != null ? sharedPool : Executors.newFixedThreadPool(THREADS);
+            List<Future<?>> parses = new ArrayList<>(PAGE);
+            for (int i = page; i < page + PAGE; i++) {
+                final byte[] nfo = library.nfos[i];
+                parses.add(executor.submit(() -> {
+                    parsePooled(nfo);
+                    parsed.incrementAndGet();
+                    return null;
+                }));
+            }
+            for (Future<?> parse : parses)
+                parse.get();
+            if (sharedPool == null)
+                executor.shutdown();
+        }
+        return parsed.get();
+    }
+
+    @Benchmark
+    public int pagesWithPoolPerPage(Library library) throws Exception {
+        return parsePages(library, null);
+    }
+
+    @Benchmark
+    public int pagesWithSharedPool(Library library) throws Exception {
+        return parsePages(library, library.sharedPool);
+    }
+}
@@ -0,0 +1,63 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.archos.benchmark;
+
+import android.net.Uri;
+
+import com.archos.mediascraper.preprocess.SearchInfo;
+import com.archos.mediascraper.preprocess.SearchPreprocessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SearchPreprocessor#parseFileBased(Uri, Uri)} on the corpus paths, run by the auto scraper on
+ * every unscraped file: the tv show matchers are tried first, a movie falls through all of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchPreprocessorBenchmark {
+
+    private Uri[] mUris;
+    private int mIndex;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] paths = Corpus.lines(Corpus.VIDEO_PATHS);
+        mUris = new Uri[paths.length];
+        for (int i = 0; i < paths.length; i++)
+            mUris[i] = Uri.parse(paths[i]);
+    }
+
+    private int next() {
+        int index = mIndex;
+        mIndex = (index + 1) % mUris.length;
+        return index;
+    }
+
+    @Benchmark
+    public SearchInfo parseFileBased() {
+        Uri uri = mUris[next()];
+        return SearchPreprocessor.instance().parseFileBased(uri, uri);
+    }
+}
@@ -0,0 +1,75 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.benchmark;
+
+import com.archos.mediascraper.ShowUtils;
+import com.archos.mediascraper.StringUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** {@link StringUtils} helpers on the paths and names of the corpus, one entry per invocation. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StringUtilsBenchmark {
+
+    private String[] mPaths;
+    private String[] mNames;
+    private int mIndex;
+
+    @Setup
+    public void setUp() throws IOException {
+        mPaths = Corpus.lines(Corpus.VIDEO_PATHS);
+        mNames = new String[mPaths.length];
+        for (int i = 0; i < mPaths.length; i++)
+            mNames[i] = Corpus.fileName(mPaths[i]);
+    }
+
+    private int next() {
+        int index = mIndex;
+        mIndex = (index + 1) % mPaths.length;
+        return index;
+    }
+
+    @Benchmark
+    public String fileSystemEncode() {
+        return StringUtils.fileSystemEncode(mNames[next()]);
+    }
+
+    @Benchmark
+    public String replaceAllChars() {
+        return StringUtils.replaceAllChars(mNames[next()], ShowUtils.REPLACE_ME, ' ');
+    }
+
+    @Benchmark
+    public List<String> split() {
+        return StringUtils.split(mNames[next()], '.', ' ', '_', '-');
+    }
+
+    @Benchmark
+    public String removeTrailingSlash() {
+        return StringUtils.removeTrailingSlash(mPaths[next()] + '/');
+    }
+}
@@ -15,6 +15,7 @@
 package com.archos.mediacenter.utils;
 
 import com.archos.mediacenter.utils.ThumbnailRequest;
+import com.archos.mediaprovider.Metrics;
 
 import android.content.ContentResolver;
 import android.content.Context;
@@ -30,6 +31,10 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 
 public abstract class ThumbnailEngine {
+
+    private static final Metrics.Histogram sComputeLatency = Metrics.histogram("thumbnail.compute");
+    private static final Metrics.Counter sPoolHits = Metrics.counter("thumbnail.pool_hits");
+    private static final Metrics.Counter sOutOfMemory = Metrics.counter("thumbnail.oom");
 	private final static String TAG = "ThumbnailEngine";
 	private final static boolean DBG = false;
 	private final static boolean DBG2 = false;
@@ -393,13 +398,18 @@ public abstract class ThumbnailEngine {
 
                 if (needToComputeThumbnail) { // not found or need refresh, build it
                     if(DBG2) Log.d(TAG, "Building thumbnail for request " + request);
+                    long start = Metrics.now();
                     try {
                         result = computeThumbnail(request);
+                        sComputeLatency.stop(start);
                         // Store result in pool
                         putResultInPool(request.getKey(), result);
                     } catch (OutOfMemoryError oom) {
+                        sOutOfMemory.inc();
                         Log.e(TAG, "run: OutOfMemoryError", oom);
                     }
+                } else {
+                    sPoolHits.inc();
                 }
             }
 
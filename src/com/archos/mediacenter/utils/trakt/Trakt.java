@@ -35,6 +35,7 @@ import com.uwetrottmann.trakt5.entities.AccessToken;
 import com.uwetrottmann.trakt5.entities.BaseMovie;
 import com.uwetrottmann.trakt5.entities.BaseShow;
 import com.uwetrottmann.trakt5.entities.EpisodeIds;
+import com.uwetrottmann.trakt5.entities.HistoryEntry;
 import com.uwetrottmann.trakt5.entities.LastActivities;
 import com.uwetrottmann.trakt5.entities.ListEntry;
 import com.uwetrottmann.trakt5.entities.MovieIds;
@@ -47,18 +48,22 @@ import com.uwetrottmann.trakt5.entities.SyncResponse;
 import com.uwetrottmann.trakt5.entities.TraktList;
 import com.uwetrottmann.trakt5.entities.UserSlug;
 import com.uwetrottmann.trakt5.enums.Extended;
+import com.uwetrottmann.trakt5.enums.HistoryType;
 import com.uwetrottmann.trakt5.enums.ListPrivacy;
 
 import org.apache.oltu.oauth2.client.request.OAuthClientRequest;
 import org.apache.oltu.oauth2.common.exception.OAuthSystemException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.threeten.bp.Instant;
 import org.threeten.bp.OffsetDateTime;
+import org.threeten.bp.ZoneOffset;
 
 import java.io.IOException;
 import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -66,6 +71,7 @@ import java.util.TimeZone;
 
 import okhttp3.OkHttpClient;
 import okhttp3.logging.HttpLoggingInterceptor;
+import retrofit2.Retrofit;
 
 
 public class Trakt {
@@ -104,12 +110,31 @@ public class Trakt {
     private static final String KEY_TRAKT_LAST_TIME_SHOW_WATCHED = "trakt_last_time_show_watched";
     private static final String KEY_TRAKT_LAST_TIME_MOVIE_WATCHED = "trakt_last_time_movie_watched";
     private static final String KEY_TRAKT_SYNC_COLLECTION = "trakt_sync_collection";
+    private static final String KEY_TRAKT_WATERMARK_PREFIX = "trakt_watermark_";
+
+    // categories of the delta sync, each one has its own watermark
+    public static final String WATERMARK_MOVIES_WATCHED = "movies_watched";
+    public static final String WATERMARK_EPISODES_WATCHED = "episodes_watched";
+    public static final String WATERMARK_COLLECTION = "collection";
+    public static final String WATERMARK_PLAYBACK = "playback";
+    public static final String WATERMARKS[] = new String[]{WATERMARK_MOVIES_WATCHED, WATERMARK_EPISODES_WATCHED,
+            WATERMARK_COLLECTION, WATERMARK_PLAYBACK};
+
+    // history is read by pages, past MAX_HISTORY_PAGES a full sync is cheaper
+    private static final int HISTORY_PAGE_SIZE = 100;
+    private static final int MAX_HISTORY_PAGES = 20;
 
     public static final int TRAKT_DB_MARKED = 1;
     public static final int TRAKT_DB_UNMARK = 2;
 
     public static final int WATCHING_DELAY_MS = 600000; // 10 min
     private static final long WAIT_BEFORE_NEXT_TRIAL = 2000;
+    // not final for tests
+    static long sWaitBeforeNextTrial = WAIT_BEFORE_NEXT_TRIAL;
+
+    // why the last exec of the thread returned null: IOException for transport failures and
+    // server errors, AuthentificationError, or any other Exception for a request trakt rejected
+    private static final ThreadLocal<Exception> sExecError = new ThreadLocal<Exception>();
 
     private static final String REDIRECT_URI = "http://localhost";
 
@@ -129,6 +154,22 @@ public class Trakt {
             super(apiKey, clientSecret, redirectUri);
         }
 
+        // requests go there instead of the trakt api when set, for tests
+        private String mApiUrl;
+
+        MyTraktV2 apiUrl(String apiUrl) {
+            mApiUrl = apiUrl;
+            return this;
+        }
+
+        @Override
+        protected Retrofit.Builder retrofitBuilder() {
+            Retrofit.Builder builder = super.retrofitBuilder();
+            if (mApiUrl != null)
+                builder.baseUrl(mApiUrl);
+            return builder;
+        }
+
         @Override
         protected void setOkHttpClientDefaults(OkHttpClient.Builder builder) {
             super.setOkHttpClientDefaults(builder);
@@ -202,7 +243,8 @@ public class Trakt {
             LIST,
             SYNC_RESPONSE,
             RETOFIT_RESPONSE,
-            PLAYBACK_RESPONSE
+            PLAYBACK_RESPONSE,
+            HISTORY
         }
         public Result(Status status, Object obj, ObjectType objType) {
             this.status = status;
@@ -232,6 +274,8 @@ public class Trakt {
         ERROR_NETWORK,
         ERROR_AUTH,
         ASYNC,
+        // history longer than what is read by pages: not an error, a full sync is needed
+        TOO_MANY_ENTRIES,
     }
 
     public interface Listener {
@@ -244,6 +288,11 @@ public class Trakt {
         return  mTraktV2;
     }
 
+    // for tests
+    static void setTraktV2(MyTraktV2 traktV2) {
+        mTraktV2 = traktV2;
+    }
+
     public Trakt(Context context) {
         mContext = context;
         mTraktV2 = getTraktV2();
@@ -347,7 +396,7 @@ public class Trakt {
             response = exec(mTraktV2.sync().deleteItemsFromCollection(param));
         }
         if (response == null)
-            return handleRet(null, new Exception(), null, ObjectType.NULL);
+            return handleRet(null, getExecError(), null, ObjectType.NULL);
         return handleRet(null, null, response, ObjectType.RESPONSE);
     }
 
@@ -551,12 +600,12 @@ public class Trakt {
         if (library.equals(Trakt.LIBRARY_WATCHED)) {
             ret = exec(mTraktV2.sync().watchedShows(Extended.EPISODES));
             if (ret == null)
-                return handleRet(null, new Exception(), null, ObjectType.NULL);
+                return handleRet(null, getExecError(), null, ObjectType.NULL);
             return handleRet(null, null, ret, ObjectType.SHOWS_PER_SEASON);
         } else {
             ret = exec(mTraktV2.sync().collectionShows(Extended.EPISODES));
             if (ret == null)
-                return handleRet(null, new Exception(), null, ObjectType.NULL);
+                return handleRet(null, getExecError(), null, ObjectType.NULL);
             return handleRet(null, null, ret, ObjectType.SHOWS_PER_SEASON);
         }
     }
@@ -567,7 +616,7 @@ public class Trakt {
         //Long lastTraktSyncUtcEpochSeconds = PreferenceManager.getDefaultSharedPreferences(mContext).getLong("trakt_last_sync", 1);
         List<PlaybackResponse> list = exec(mTraktV2.sync().getPlayback(PLAYBACK_HISTORY_SIZE));
         if(list == null)
-            return handleRet(null, new Exception(), null, ObjectType.NULL);
+            return handleRet(null, getExecError(), null, ObjectType.NULL);
         return handleRet(null, null, list, ObjectType.MOVIES);
     }
 
@@ -575,6 +624,28 @@ public class Trakt {
         return getPlaybackStatus(0);
     }
 
+    /**
+     * Watch history of given type since sinceSeconds (epoch), read page by page.
+     * Returns TOO_MANY_ENTRIES if there are too many entries: caller should do a full sync instead.
+     * Failures to read a page are reported as by any other request: ERROR_NETWORK, ERROR_AUTH or ERROR.
+     */
+    public Result getHistory(HistoryType type, long sinceSeconds) {
+        log.debug("getHistory: " + type + " since " + sinceSeconds);
+        OffsetDateTime startAt = OffsetDateTime.ofInstant(Instant.ofEpochSecond(sinceSeconds), ZoneOffset.UTC);
+        List<HistoryEntry> history = new ArrayList<HistoryEntry>();
+        for (int page = 1; page <= MAX_HISTORY_PAGES; page++) {
+            List<HistoryEntry> entries = exec(mTraktV2.users().history(UserSlug.ME, type, page, HISTORY_PAGE_SIZE,
+                    null, startAt, null));
+            if (entries == null)
+                return handleRet(null, getExecError(), null, ObjectType.NULL);
+            history.addAll(entries);
+            if (entries.size() < HISTORY_PAGE_SIZE)
+                return handleRet(null, null, history, ObjectType.HISTORY);
+        }
+        log.debug("getHistory: more than " + (MAX_HISTORY_PAGES * HISTORY_PAGE_SIZE) + " entries");
+        return Result.get(Status.TOO_MANY_ENTRIES);
+    }
+
     public Result getAllMovies(String library, boolean sync) {
         return getAllMovies(library, 0);
     }
@@ -584,8 +655,10 @@ public class Trakt {
     public <T> T exec(retrofit2.Call<T> call) {
         return exec(call, MAX_TRIAL);
     }
+    /** @return the body of the response, null on failure, see {@link #getExecError()} */
     public <T> T exec(retrofit2.Call<T> call, int remaining) {
         log.debug("exec: call, remaining trials=" + remaining);
+        sExecError.remove();
         try {
             retrofit2.Response<T> res = call.execute();
             if (!res.isSuccessful()) {
@@ -595,24 +668,35 @@ public class Trakt {
                 if (res.code() == 401 || res.code() == 409 ) {
                     if (remaining > 0) {
                         refreshAccessToken();
-                        return exec(call, 0);
+                        return exec(call.clone(), 0);
                     } else {
                         throw new AuthentificationError();
                     }
+                } else if (res.code() >= 500 || res.code() == 429) {
+                    // trakt is down or overloaded: as if it could not be reached
+                    throw new IOException("http " + res.code());
                 } else {
                     throw new Exception(res.errorBody().toString());
                 }
             }
             return res.body();
         } catch(Exception e) {
-            try { Thread.sleep(WAIT_BEFORE_NEXT_TRIAL); } catch (Exception a) {}
+            try { Thread.sleep(sWaitBeforeNextTrial); } catch (Exception a) {}
             if(remaining == 0) {
+                sExecError.set(e);
                 return null;
             }
-            return exec(call, remaining-1);
+            // a call can be executed once only
+            return exec(call.clone(), remaining-1);
         }
     }
 
+    /** @return the reason why the last {@link #exec(retrofit2.Call)} of this thread returned null */
+    private static Exception getExecError() {
+        Exception error = sExecError.get();
+        return error != null ? error : new Exception();
+    }
+
     public Result getAllMovies(final String library, int trial) {
         log.debug("getAllMovies");
         List<BaseMovie> arg0 = null;
@@ -621,7 +705,7 @@ public class Trakt {
         else
             arg0 = exec(mTraktV2.sync().collectionMovies(Extended.FULL));
         if(arg0 == null)
-            return handleRet(null, new Exception(), null, ObjectType.NULL);
+            return handleRet(null, getExecError(), null, ObjectType.NULL);
         return handleRet(null, null, arg0, ObjectType.MOVIES);
     }
 
@@ -629,7 +713,7 @@ public class Trakt {
         log.debug("getLastActivity");
         LastActivities ret = exec(mTraktV2.sync().lastActivities());
         if(ret == null)
-            return handleRet(null, new Exception(), null, ObjectType.NULL);
+            return handleRet(null, getExecError(), null, ObjectType.NULL);
         return handleRet(null, null, ret, ObjectType.LAST_ACTIVITY);
     }
 
@@ -642,7 +726,7 @@ public class Trakt {
 
         TraktList result = exec(mTraktV2.users().createList(UserSlug.ME, list));
         if (result == null)
-            return handleRet(null, new Exception(), null, ObjectType.NULL);
+            return handleRet(null, getExecError(), null, ObjectType.NULL);
         return handleRet(null, null, result, ObjectType.LIST);
     }
 
@@ -650,7 +734,7 @@ public class Trakt {
         log.debug("deleteList");
         Void response = exec(mTraktV2.users().deleteList(UserSlug.ME, id));
         if (response == null)
-            return handleRet(null, new Exception(), null, ObjectType.NULL);
+            return handleRet(null, getExecError(), null, ObjectType.NULL);
         return handleRet(null, null, response, ObjectType.NULL);
         /*
         if (response.getStatus() == 200)
@@ -664,7 +748,7 @@ public class Trakt {
         log.debug("getLists");
         List<TraktList> lists = exec(mTraktV2.users().lists(UserSlug.ME));
         if (lists == null)
-            return handleRet(null, new Exception(), null, ObjectType.NULL);
+            return handleRet(null, getExecError(), null, ObjectType.NULL);
         return handleRet(null, null, lists, ObjectType.LIST);
     }
 
@@ -672,7 +756,7 @@ public class Trakt {
         log.debug("getListContent");
         List<ListEntry> items = exec(mTraktV2.users().listItems(UserSlug.ME, String.valueOf(listId), null));
         if (items == null)
-            return handleRet(null, new Exception(), null, ObjectType.NULL);
+            return handleRet(null, getExecError(), null, ObjectType.NULL);
         return handleRet(null, null, items, ObjectType.LIST);
     }
 
@@ -690,11 +774,11 @@ public class Trakt {
         }
         SyncResponse ret = exec(mTraktV2.users().deleteListItems(UserSlug.ME, String.valueOf(listId), syncItems));
         if (ret == null)
-            return handleRet(null, new Exception(), null, ObjectType.NULL);
+            return handleRet(null, getExecError(), null, ObjectType.NULL);
         if(ret.deleted.episodes+ret.deleted.movies>0)
             return handleRet(null, null, ret, ObjectType.SYNC_RESPONSE);
         else
-            return handleRet(null, new Exception(), null, ObjectType.NULL);
+            return handleRet(null, getExecError(), null, ObjectType.NULL);
     }
 
     public Result addVideoToList(int trial, int listId, VideoStore.VideoList.VideoItem videoItem) {
@@ -718,11 +802,11 @@ public class Trakt {
             ret = exec(mTraktV2.users().addListItems(UserSlug.ME, String.valueOf(listId), sitems));
         }
         if (ret == null)
-            return handleRet(null, new Exception(), null, ObjectType.NULL);
+            return handleRet(null, getExecError(), null, ObjectType.NULL);
         if(ret.added.episodes+ret.added.movies>0)
             return handleRet(null, null, ret, ObjectType.SYNC_RESPONSE);
         else
-            return handleRet(null, new Exception(), null, ObjectType.NULL);
+            return handleRet(null, getExecError(), null, ObjectType.NULL);
     }
 
     public Result getLastActivity() {
@@ -816,6 +900,17 @@ public class Trakt {
         editor.commit();
     }
 
+    /** @return time (epoch seconds) up to which category has been synced from trakt, 0 if never */
+    public static long getWatermark(SharedPreferences preferences, String category) {
+        return preferences.getLong(KEY_TRAKT_WATERMARK_PREFIX + category, 0);
+    }
+
+    public static void setWatermark(SharedPreferences preferences, String category, long time) {
+        Editor editor = preferences.edit();
+        editor.putLong(KEY_TRAKT_WATERMARK_PREFIX + category, time);
+        editor.commit();
+    }
+
     public static boolean getSyncCollection(SharedPreferences preferences) {
         return preferences.getBoolean(KEY_TRAKT_SYNC_COLLECTION, false);
     }
@@ -830,6 +925,8 @@ public class Trakt {
         }
         editor.remove(Trakt.KEY_TRAKT_SYNC_FLAG);
         editor.remove(Trakt.KEY_TRAKT_LAST_TIME_MOVIE_WATCHED);
+        for (String category : WATERMARKS)
+            editor.remove(KEY_TRAKT_WATERMARK_PREFIX + category);
         editor.remove(Trakt.KEY_TRAKT_LAST_TIME_SHOW_WATCHED);
         editor.commit();
     }
@@ -0,0 +1,317 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediacenter.utils.trakt;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+
+import com.archos.mediacenter.utils.videodb.VideoDbInfo;
+import com.archos.mediaprovider.DbHolder;
+import com.archos.mediaprovider.Metrics;
+import com.archos.mediaprovider.VideoDb;
+import com.archos.mediaprovider.video.VideoOpenHelper;
+import com.archos.mediaprovider.video.VideoStore;
+import com.uwetrottmann.trakt5.entities.EpisodeIds;
+import com.uwetrottmann.trakt5.entities.MovieIds;
+import com.uwetrottmann.trakt5.entities.SyncEpisode;
+import com.uwetrottmann.trakt5.entities.SyncItems;
+import com.uwetrottmann.trakt5.entities.SyncMovie;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.threeten.bp.OffsetDateTime;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durable outbound queue of trakt markAs actions, stored in the trakt_queue table of the video db.
+ * Pending actions are coalesced per item (the latest action wins over its opposite and over an older
+ * identical one) and sent with one sync request per action and batch. Failed batches are retried with
+ * an exponential backoff and survive process death: whatever is left is sent on the next flush.
+ */
+public class TraktQueue {
+    private static final Logger log = LoggerFactory.getLogger(TraktQueue.class);
+
+    private static final String TABLE = VideoOpenHelper.TRAKT_QUEUE_TABLE_NAME;
+
+    // trakt accepts large sync payloads, keep them reasonable
+    private static final int BATCH_SIZE = 100;
+    private static final long BACKOFF_BASE = TimeUnit.SECONDS.toMillis(30);
+    private static final long BACKOFF_MAX = TimeUnit.HOURS.toMillis(6);
+    // past that rejected items are dropped, network and auth errors are not attempts
+    private static final int MAX_ATTEMPTS = 30;
+
+    private static final String[] PROJECTION = {
+            "_id",          // 0
+            "video_id",     // 1
+            "m_online_id",  // 2
+            "e_online_id",  // 3
+            "watched_at",   // 4
+    };
+    private static final String SELECTION_DUE = "action=? AND next_attempt<=?";
+    private static final String SELECTION_ITEM = "action=? AND m_online_id=? AND e_online_id=?";
+
+    private static final AtomicLong sDepth = new AtomicLong();
+    private static final AtomicLong sFlushCount = new AtomicLong();
+    private static final AtomicLong sFlushTimeTotal = new AtomicLong();
+    private static final AtomicLong sLastFlushTime = new AtomicLong();
+
+    static {
+        Metrics.gauge("trakt.queue_depth", TraktQueue::getDepth);
+        Metrics.gauge("trakt.flushes", TraktQueue::getFlushCount);
+        Metrics.gauge("trakt.flush_avg_ms", TraktQueue::getAverageFlushLatency);
+    }
+
+    private final Context mContext;
+    // opened on first use, i.e. on the trakt handler thread
+    private final DbHolder mDbHolder;
+    // items sent by the last flush
+    private int mFlushedMovies;
+    private int mFlushedEpisodes;
+
+    public TraktQueue(Context context) {
+        mContext = context.getApplicationContext();
+        mDbHolder = VideoDb.getHolder(mContext);
+    }
+
+    private static String getOpposite(String action) {
+        switch (action) {
+            case Trakt.ACTION_SEEN: return Trakt.ACTION_UNSEEN;
+            case Trakt.ACTION_UNSEEN: return Trakt.ACTION_SEEN;
+            case Trakt.ACTION_LIBRARY: return Trakt.ACTION_UNLIBRARY;
+            case Trakt.ACTION_UNLIBRARY: return Trakt.ACTION_LIBRARY;
+            default: return null;
+        }
+    }
+
+    /** @return false if the video cannot be identified on trakt */
+    public boolean enqueue(String action, VideoDbInfo videoInfo) {
+        if (!videoInfo.isScraped || getOpposite(action) == null)
+            return false;
+        int movieId = 0;
+        int episodeId = 0;
+        try {
+            if (videoInfo.isShow)
+                episodeId = Integer.parseInt(videoInfo.scraperEpisodeId);
+            else
+                movieId = Integer.parseInt(videoInfo.scraperMovieId);
+        } catch (NumberFormatException e) {
+            log.warn("enqueue: no online id for " + videoInfo.uri);
+            return false;
+        }
+        String[] itemArgs = {
+                getOpposite(action), String.valueOf(movieId), String.valueOf(episodeId)
+        };
+        ContentValues values = new ContentValues(6);
+        values.put("action", action);
+        values.put("video_id", videoInfo.id);
+        values.put("m_online_id", movieId);
+        values.put("e_online_id", episodeId);
+        values.put("watched_at", Math.max(0, videoInfo.lastTimePlayed));
+        values.put("created", System.currentTimeMillis());
+        final SQLiteDatabase db = mDbHolder.get();
+        db.beginTransaction();
+        try {
+            // a pending opposite action is obsolete
+            db.delete(TABLE, SELECTION_ITEM, itemArgs);
+            // replaces a pending identical action thanks to the unique constraint
+            db.insert(TABLE, null, values);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        updateDepth();
+        log.debug("enqueue: " + action + " movie " + movieId + " episode " + episodeId + ", depth " + sDepth.get());
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return updateDepth() == 0;
+    }
+
+    public void clear() {
+        mDbHolder.get().delete(TABLE, null, null);
+        updateDepth();
+    }
+
+    /**
+     * Sends all due actions.
+     * @return SUCCESS if nothing due is left, otherwise the status of the batch that failed
+     */
+    public Trakt.Status flush(Trakt trakt) {
+        final long start = SystemClock.elapsedRealtime();
+        mFlushedMovies = 0;
+        mFlushedEpisodes = 0;
+        Trakt.Status status = Trakt.Status.SUCCESS;
+        for (String action : Trakt.ACTIONS) {
+            Trakt.Status actionStatus = flushAction(trakt, action);
+            if (actionStatus != Trakt.Status.SUCCESS)
+                status = actionStatus;
+            // the other actions would fail the same way
+            if (isTransient(actionStatus))
+                break;
+        }
+        final long duration = SystemClock.elapsedRealtime() - start;
+        sFlushCount.incrementAndGet();
+        sFlushTimeTotal.addAndGet(duration);
+        sLastFlushTime.set(duration);
+        updateDepth();
+        log.debug("flush: sent " + mFlushedMovies + " movies, " + mFlushedEpisodes + " episodes in " + duration +
+                "ms, status " + status + ", depth " + sDepth.get());
+        return status;
+    }
+
+    private Trakt.Status flushAction(Trakt trakt, String action) {
+        final SQLiteDatabase db = mDbHolder.get();
+        while (true) {
+            final long now = System.currentTimeMillis();
+            ArrayList<SyncMovie> movies = new ArrayList<>();
+            ArrayList<SyncEpisode> episodes = new ArrayList<>();
+            StringBuilder ids = new StringBuilder();
+            StringBuilder videoIds = new StringBuilder();
+            Cursor c = db.query(TABLE, PROJECTION, SELECTION_DUE,
+                    new String[] { action, String.valueOf(now) }, null, null, "_id", String.valueOf(BATCH_SIZE));
+            if (c == null)
+                return Trakt.Status.ERROR;
+            try {
+                while (c.moveToNext()) {
+                    append(ids, c.getLong(0));
+                    if (c.getLong(1) >= 0)
+                        append(videoIds, c.getLong(1));
+                    final long watchedAt = action.equals(Trakt.ACTION_SEEN) ? c.getLong(4) : 0;
+                    final String date = watchedAt > 0 ? Trakt.getDateFormat(watchedAt) : null;
+                    if (c.getInt(3) > 0) {
+                        SyncEpisode se = new SyncEpisode();
+                        EpisodeIds ei = new EpisodeIds();
+                        ei.tmdb = c.getInt(3);
+                        se.id(ei);
+                        if (date != null)
+                            se.watchedAt(OffsetDateTime.parse(date));
+                        episodes.add(se);
+                    } else {
+                        SyncMovie sm = new SyncMovie();
+                        MovieIds mi = new MovieIds();
+                        mi.tmdb = c.getInt(2);
+                        sm.id(mi);
+                        if (date != null)
+                            sm.watchedAt(OffsetDateTime.parse(date));
+                        movies.add(sm);
+                    }
+                }
+            } finally {
+                c.close();
+            }
+            final int count = movies.size() + episodes.size();
+            if (count == 0)
+                return Trakt.Status.SUCCESS;
+
+            SyncItems items = new SyncItems();
+            if (movies.size() > 0)
+                items.movies(movies);
+            if (episodes.size() > 0)
+                items.episodes(episodes);
+            Trakt.Result result = trakt.markAs(action, items, episodes.size() > 0);
+            if (result.status == Trakt.Status.SUCCESS || result.status == Trakt.Status.SUCCESS_ALREADY) {
+                db.delete(TABLE, "_id IN (" + ids + ")", null);
+                saveTraktStatus(action, videoIds);
+                mFlushedMovies += movies.size();
+                mFlushedEpisodes += episodes.size();
+            } else {
+                backoff(db, ids, now, result.status);
+                return result.status;
+            }
+            if (count < BATCH_SIZE)
+                return Trakt.Status.SUCCESS;
+        }
+    }
+
+    /** network and auth failures say nothing about the items, they must not count as attempts */
+    private static boolean isTransient(Trakt.Status status) {
+        return status == Trakt.Status.ERROR_NETWORK || status == Trakt.Status.ERROR_AUTH;
+    }
+
+    private static void backoff(SQLiteDatabase db, CharSequence ids, long now, Trakt.Status status) {
+        log.debug("backoff: " + status);
+        if (isTransient(status)) {
+            db.execSQL("UPDATE " + TABLE + " SET next_attempt = ? WHERE _id IN (" + ids + ")",
+                    new Object[] { now + BACKOFF_BASE });
+            return;
+        }
+        db.execSQL("UPDATE " + TABLE + " SET attempts = attempts + 1, next_attempt = ? + MIN(? << MIN(attempts, 16), ?)" +
+                " WHERE _id IN (" + ids + ")", new Object[] { now, BACKOFF_BASE, BACKOFF_MAX });
+        int dropped = db.delete(TABLE, "attempts >= " + MAX_ATTEMPTS + " AND _id IN (" + ids + ")", null);
+        if (dropped > 0)
+            log.warn("backoff: dropped " + dropped + " items after " + MAX_ATTEMPTS + " attempts");
+    }
+
+    /** reflects the sent actions in the trakt columns of the videos, same as a direct markAs */
+    private void saveTraktStatus(String action, CharSequence videoIds) {
+        if (videoIds.length() == 0)
+            return;
+        ContentValues values = new ContentValues(1);
+        if (action.equals(Trakt.ACTION_SEEN) || action.equals(Trakt.ACTION_UNSEEN))
+            values.put(VideoStore.Video.VideoColumns.ARCHOS_TRAKT_SEEN, action.equals(Trakt.ACTION_SEEN) ? 1 : 0);
+        else
+            values.put(VideoStore.Video.VideoColumns.ARCHOS_TRAKT_LIBRARY, action.equals(Trakt.ACTION_LIBRARY) ? 1 : 0);
+        mContext.getContentResolver().update(VideoStore.Video.Media.EXTERNAL_CONTENT_URI, values,
+                VideoStore.Video.VideoColumns._ID + " IN (" + videoIds + ")", null);
+    }
+
+    private static void append(StringBuilder list, long id) {
+        if (list.length() > 0)
+            list.append(',');
+        list.append(id);
+    }
+
+    private long updateDepth() {
+        long depth = DatabaseUtils.queryNumEntries(mDbHolder.get(), TABLE);
+        sDepth.set(depth);
+        return depth;
+    }
+
+    public int getFlushedMovies() {
+        return mFlushedMovies;
+    }
+
+    public int getFlushedEpisodes() {
+        return mFlushedEpisodes;
+    }
+
+    /** number of actions waiting to be sent, as of the last queue operation */
+    public static long getDepth() {
+        return sDepth.get();
+    }
+
+    public static long getFlushCount() {
+        return sFlushCount.get();
+    }
+
+    /** duration of the last flush in ms */
+    public static long getLastFlushLatency() {
+        return sLastFlushTime.get();
+    }
+
+    /** average flush duration in ms */
+    public static long getAverageFlushLatency() {
+        long count = sFlushCount.get();
+        return count > 0 ? sFlushTimeTotal.get() / count : 0;
+    }
+}
@@ -41,6 +41,8 @@ import com.archos.mediacenter.utils.videodb.IndexHelper;
 import com.archos.mediacenter.utils.videodb.VideoDbInfo;
 import com.archos.medialib.R;
 import com.archos.environment.NetworkState;
+import com.archos.mediaprovider.CursorPager;
+import com.archos.mediaprovider.video.TraktReconciler;
 import com.archos.mediaprovider.video.VideoStore;
 import com.archos.mediascraper.ScrapeStatus;
 import com.uwetrottmann.trakt5.entities.BaseEpisode;
@@ -49,6 +51,7 @@ import com.uwetrottmann.trakt5.entities.BaseSeason;
 import com.uwetrottmann.trakt5.entities.BaseShow;
 import com.uwetrottmann.trakt5.entities.EpisodeIds;
 import com.uwetrottmann.trakt5.entities.GenericProgress;
+import com.uwetrottmann.trakt5.entities.HistoryEntry;
 import com.uwetrottmann.trakt5.entities.LastActivities;
 import com.uwetrottmann.trakt5.entities.ListEntry;
 import com.uwetrottmann.trakt5.entities.MovieIds;
@@ -57,6 +60,7 @@ import com.uwetrottmann.trakt5.entities.SyncEpisode;
 import com.uwetrottmann.trakt5.entities.SyncItems;
 import com.uwetrottmann.trakt5.entities.SyncMovie;
 import com.uwetrottmann.trakt5.entities.TraktList;
+import com.uwetrottmann.trakt5.enums.HistoryType;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -90,6 +94,8 @@ public class TraktService extends Service {
 
     private Trakt mTrakt = null;
     private boolean mBusy = false;
+    // items received from / sent to trakt by the current sync
+    private int mTransferred;
     private final IBinder mBinder = new TraktBinder();
     private HandlerThread mBackgroundHandlerThread;
     private TraktHandler mBackgroundHandler;
@@ -97,14 +103,18 @@ public class TraktService extends Service {
     private Toast mToast = null;
     private IndexHelper mIndexHelper = null;
     private NetworkState mNetworkState;
+    private TraktQueue mQueue;
 
     private static final int MSG_RESULT = 0;
     private static final int MSG_INTENT = 1;
     private static final int MSG_NETWORK_ON = 2;
-    private static final int MSG_HANDLER_LIST[] = { MSG_INTENT, MSG_NETWORK_ON };
+    private static final int MSG_FLUSH_QUEUE = 3;
+    private static final int MSG_HANDLER_LIST[] = { MSG_INTENT, MSG_NETWORK_ON, MSG_FLUSH_QUEUE };
 
     private static final long NETWORK_NETWORK_ON_DELAY = 600000; // in ms: 10min
     private static final long NOTIFY_DELAY = 5000; // in ms: 5sec
+    // markAs bursts (e.g. a whole season) are sent in one request
+    private static final long FLUSH_QUEUE_DELAY = 2000; // in ms
 
     private static final String INTENT_ACTION_WATCHING = "archos.mediacenter.utils.trakt.action.WATCHING";
     private static final String INTENT_ACTION_WATCHING_STOP = "archos.mediacenter.utils.trakt.action.WATCHING_STOP";
@@ -124,11 +134,15 @@ public class TraktService extends Service {
     public static final int FLAG_SYNC_TO_TRAKT_COLLECTION = 0x080;
     public static final int FLAG_SYNC_NOW =                 0x100;
     public static final int FLAG_SYNC_PROGRESS =       0x200;
+    // ignore delta sync watermarks: pull everything from trakt
+    public static final int FLAG_SYNC_RESET =               0x400;
     public static final int FLAG_SYNC_TO_DB = FLAG_SYNC_TO_DB_WATCHED | FLAG_SYNC_TO_DB_COLLECTION;
     public static final int FLAG_SYNC_TO_TRAKT = FLAG_SYNC_TO_TRAKT_WATCHED | FLAG_SYNC_TO_TRAKT_COLLECTION;
     public static final int FLAG_SYNC_FULL = FLAG_SYNC_TO_DB | FLAG_SYNC_TO_TRAKT | FLAG_SYNC_MOVIES | FLAG_SYNC_SHOWS;
 
     private static final long TRAKT_SYNC_DELAY = 30; // in sec
+    // delta sync reads trakt changes since watermark minus this, covers clock skew with trakt
+    private static final long WATERMARK_OVERLAP = 10 * 60; // in sec
 
     private NetworkState networkState = null;
     private PropertyChangeListener propertyChangeListener = null;
@@ -147,7 +161,8 @@ public class TraktService extends Service {
 
         public boolean hasOtherMessagesPending(int what) {
             for (int i : MSG_HANDLER_LIST) {
-                if (i != what && hasMessages(what))
+                // the message being handled is already dequeued
+                if (hasMessages(i))
                     return true;
             }
             return false;
@@ -262,18 +277,12 @@ public class TraktService extends Service {
                         log.debug("markAs: " + traktAction);
 
                         if (traktAction != null && videoInfo != null) {
-                            final boolean wasBusy = mBusy;
-                            mBusy = true;
-                            result = mTrakt.getLastActivity();
-
-                            lastActivityFlag = getFlagsFromTraktLastActivity(result);
-                            if (result != null && result.status != Trakt.Status.ERROR_NETWORK) {
-                                result = mTrakt.markAs(traktAction, videoInfo);
-
-                            } else
-
-                                Trakt.setFlagSyncPreference(mPreferences, FLAG_SYNC_TO_TRAKT_WATCHED);
-                            mBusy = wasBusy;
+                            // persisted and sent by MSG_FLUSH_QUEUE, even after a restart or a network loss
+                            if (mQueue.enqueue(traktAction, videoInfo)) {
+                                result = Trakt.Result.getAsync();
+                                removeMessages(MSG_FLUSH_QUEUE);
+                                sendEmptyMessageDelayed(MSG_FLUSH_QUEUE, FLUSH_QUEUE_DELAY);
+                            }
                         }
                     } else if (action.equals(INTENT_ACTION_SYNC)) {
                         int flag = intent.getIntExtra("flag_sync", 0);
@@ -334,6 +343,11 @@ public class TraktService extends Service {
                     log.debug("MSG_NETWORK_ON: sync");
                     sync(FLAG_SYNC_AUTO);
                 }
+            } else if (msg.what == MSG_FLUSH_QUEUE) {
+                if (mTrakt != null && mNetworkState.isConnected()) {
+                    log.debug("MSG_FLUSH_QUEUE: depth " + TraktQueue.getDepth());
+                    flushQueue();
+                }
             }
             /*
             if (mTrakt != null) {
@@ -363,6 +377,33 @@ public class TraktService extends Service {
         return false;
     }
 
+    /** sends the pending markAs actions and syncs back what changed on trakt meanwhile */
+    private Trakt.Status flushQueue() {
+        if (mQueue.isEmpty())
+            return Trakt.Status.SUCCESS;
+        // get last activity before doing some activity on trakt
+        Trakt.Result result = mTrakt.getLastActivity();
+        if (result.status == Trakt.Status.ERROR_NETWORK)
+            return Trakt.Status.ERROR_NETWORK;
+        final int lastActivityFlag = getFlagsFromTraktLastActivity(result);
+        final Trakt.Status status = mQueue.flush(mTrakt);
+        final int movies = mQueue.getFlushedMovies();
+        final int episodes = mQueue.getFlushedEpisodes();
+        mTransferred += movies + episodes;
+        if (movies + episodes > 0) {
+            if (lastActivityFlag == 0) {
+                // last activity is us
+                final long time = getCurrentTraktTime();
+                if (episodes > 0)
+                    Trakt.setLastTimeShowWatched(mPreferences, time);
+                if (movies > 0)
+                    Trakt.setLastTimeMovieWatched(mPreferences, time);
+            }
+            sync(lastActivityFlag | FLAG_SYNC_AUTO | FLAG_SYNC_LAST_ACTIVITY_VETO /* don't need to check lastActivity again */);
+        }
+        return status;
+    }
+
     private void saveTraktStatus(VideoDbInfo videoInfo, String action) {
         final boolean markSeen = (action.equals(Trakt.ACTION_SEEN) || action.equals(Trakt.ACTION_UNSEEN));
         if (markSeen)
@@ -463,6 +504,7 @@ public class TraktService extends Service {
         values.put(VideoStore.Video.VideoColumns.ARCHOS_TRAKT_SEEN, 0);
         values.put(VideoStore.Video.VideoColumns.ARCHOS_TRAKT_LIBRARY, 0);
         cr.update(VideoStore.Video.Media.EXTERNAL_CONTENT_URI, values, WIPE_SELECTION, null);
+        mQueue.clear();
         return Trakt.Result.getSuccess();
     }
 
@@ -508,6 +550,7 @@ public class TraktService extends Service {
             }
             SyncItems si = new SyncItems();
             si.episodes(eps);
+            mTransferred += eps.size();
             final Trakt.Result result = mTrakt.markAs(Trakt.getAction(library, mark), si, true);
             if (result.status == Trakt.Status.ERROR_NETWORK)
                 return Trakt.Status.ERROR_NETWORK;
@@ -521,8 +564,8 @@ public class TraktService extends Service {
     }
 
     // only sync playback status on last 50 entries i.e. Trakt.PLAYBACK_HISTORY_SIZE
-    private Trakt.Status syncPlaybackStatus(){
-        log.debug("syncPlaybackStatus start");
+    private Trakt.Status syncPlaybackStatus(long since){
+        log.debug("syncPlaybackStatus start, since " + since);
 
         final ContentResolver cr = getContentResolver();
         Trakt.Result resultTrakt = mTrakt.getPlaybackStatus();
@@ -572,10 +615,9 @@ public class TraktService extends Service {
                             Trakt.Result result;
 
                             if (Trakt.shouldMarkAsSeen(Math.abs(videoInfo.traktResume))) {
-                                result = mTrakt.markAs(Trakt.ACTION_SEEN, videoInfo);
-                                if (result.status == Trakt.Status.SUCCESS || result.status == Trakt.Status.SUCCESS_ALREADY) {
-                                    videoInfo.traktSeen = 1;
-                                }
+                                // trakt_seen is set when the queue is flushed below
+                                result = mQueue.enqueue(Trakt.ACTION_SEEN, videoInfo) ?
+                                        Trakt.Result.getSuccess() : Trakt.Result.getError();
                             }
                             else {
                                 result = mTrakt.postWatchingStop(videoInfo, -videoInfo.traktResume);
@@ -594,6 +636,12 @@ public class TraktService extends Service {
                 } while (c1.moveToNext());
             }
             c1.close();
+            if (!mQueue.isEmpty()) {
+                Trakt.Status status = mQueue.flush(mTrakt);
+                mTransferred += mQueue.getFlushedMovies() + mQueue.getFlushedEpisodes();
+                if (status == Trakt.Status.ERROR_NETWORK)
+                    return status;
+            }
         }
 
         //from trakt to db
@@ -601,6 +649,10 @@ public class TraktService extends Service {
         if (videos != null && videos.size() > 0) {
             String whereR;
             for (PlaybackResponse video : videos){
+                // delta: progress not updated since last sync is already in db
+                if (since > 0 && video.paused_at != null && video.paused_at.toEpochSecond() < since)
+                    continue;
+                mTransferred++;
                 if (video.movie != null) { // it is a movie
                     whereR = VideoStore.Video.VideoColumns._ID+" IN ("+
                             "SELECT video_id FROM movie where " + VideoStore.Video.VideoColumns.SCRAPER_M_ONLINE_ID + "= " + video.movie.ids.tmdb+")";
@@ -670,65 +722,119 @@ public class TraktService extends Service {
             }
         }
         log.debug("syncPlaybackStatus complete");
+        // playback watermark must not move if nothing could be read from trakt
+        if (videos == null)
+            return resultTrakt.status != Trakt.Status.SUCCESS ? resultTrakt.status : Trakt.Status.ERROR;
         return Trakt.Status.SUCCESS;
     }
 
-    private Trakt.Status syncMoviesToDb(String library) {
+    /** @param since epoch seconds, only trakt changes after that are applied, 0 for everything */
+    private Trakt.Status syncMoviesToDb(String library, long since) {
         final ContentResolver cr = getContentResolver();
 
-        Trakt.Result result = mTrakt.getAllMovies(library, true);
-        if (result.status == Trakt.Status.ERROR_NETWORK)
-            return Trakt.Status.ERROR_NETWORK;
-        if (result.status == Trakt.Status.SUCCESS &&
+        long start = System.currentTimeMillis();
+        final boolean history = since > 0 && library.equals(Trakt.LIBRARY_WATCHED);
+        Trakt.Result result = history ? mTrakt.getHistory(HistoryType.MOVIES, since) : mTrakt.getAllMovies(library, true);
+        if (history && result.status == Trakt.Status.TOO_MANY_ENTRIES) {
+            log.debug("syncMoviesToDb: history too long, full sync");
+            return syncMoviesToDb(library, 0);
+        }
+        long fetched = System.currentTimeMillis();
+        // nothing read: the caller must not move the watermark
+        if (result.status != Trakt.Status.SUCCESS) {
+            log.warn("syncMoviesToDb: " + library + " cannot be read from trakt: " + result.status);
+            return result.status;
+        }
+        TraktReconciler.Request request = new TraktReconciler.Request(getValuesMarkAs(library, true));
+        int received = 0;
+        if (result.status == Trakt.Status.SUCCESS && result.objType == Trakt.Result.ObjectType.HISTORY) {
+            java.util.List<HistoryEntry> entries = (java.util.List<HistoryEntry>) result.obj;
+            received = entries.size();
+            for (HistoryEntry entry : entries) {
+                if (entry.movie == null || entry.movie.ids == null || entry.movie.ids.tmdb == null)
+                    continue;
+                request.addMovie(entry.movie.ids.tmdb);
+                log.trace("syncMoviesToDb: marking " + entry.movie.title);
+            }
+        } else if (result.status == Trakt.Status.SUCCESS &&
                 result.objType == Trakt.Result.ObjectType.MOVIES) {
             java.util.List<BaseMovie> movies = (java.util.List<BaseMovie>) result.obj;
-
-            if (movies.size() > 0) {
-                InBuilder inBuilder = new InBuilder(VideoStore.Video.VideoColumns.SCRAPER_M_ONLINE_ID);
-                for (BaseMovie movie : movies){
-                    inBuilder.addParam(movie.movie.ids.tmdb);
-                    log.debug("syncMoviesToDb: marking " + movie.movie.title);
-                }
-                final String inSelection = inBuilder.get();
-                if (inSelection != null) {
-                    final String selection = "_id IN ("+
-                            "SELECT video_id FROM movie WHERE " + inSelection + ")";
-                    cr.update(VideoStore.Video.Media.EXTERNAL_CONTENT_URI,
-                            getValuesMarkAs(library, true), selection, null);
-                }
+            received = movies.size();
+            for (BaseMovie movie : movies){
+                if (movie.movie == null || movie.movie.ids == null || movie.movie.ids.tmdb == null)
+                    continue;
+                // collection has no history: full list but only what changed is applied
+                if (since > 0 && movie.collected_at != null && movie.collected_at.toEpochSecond() < since)
+                    continue;
+                request.addMovie(movie.movie.ids.tmdb);
+                log.trace("syncMoviesToDb: marking " + movie.movie.title);
             }
         }
+        long built = System.currentTimeMillis();
+        int updated = TraktReconciler.reconcile(cr, request);
+        mTransferred += received;
+        log.debug("syncMoviesToDb: " + library + (since > 0 ? " delta" : " full") + ", " + received + " items received, "
+                + updated + " videos updated; fetch " + (fetched - start) + "ms, build " + (built - fetched) + "ms, apply "
+                + (System.currentTimeMillis() - built) + "ms");
         return Trakt.Status.SUCCESS;
     }
 
-    private Trakt.Status syncShowsToDb(String library) {
+    /** @param since epoch seconds, only trakt changes after that are applied, 0 for everything */
+    private Trakt.Status syncShowsToDb(String library, long since) {
         final ContentResolver cr = getContentResolver();
-        Trakt.Result result = mTrakt.getAllShows(library);
-        if (result.status == Trakt.Status.ERROR_NETWORK)
-            return Trakt.Status.ERROR_NETWORK;
-        if (result.status == Trakt.Status.SUCCESS &&
+        long start = System.currentTimeMillis();
+        final boolean history = since > 0 && library.equals(Trakt.LIBRARY_WATCHED);
+        Trakt.Result result = history ? mTrakt.getHistory(HistoryType.EPISODES, since) : mTrakt.getAllShows(library);
+        if (history && result.status == Trakt.Status.TOO_MANY_ENTRIES) {
+            log.debug("syncShowsToDb: history too long, full sync");
+            return syncShowsToDb(library, 0);
+        }
+        long fetched = System.currentTimeMillis();
+        // nothing read: the caller must not move the watermark
+        if (result.status != Trakt.Status.SUCCESS) {
+            log.warn("syncShowsToDb: " + library + " cannot be read from trakt: " + result.status);
+            return result.status;
+        }
+        TraktReconciler.Request request = new TraktReconciler.Request(getValuesMarkAs(library, true));
+        int received = 0;
+        if (result.status == Trakt.Status.SUCCESS && result.objType == Trakt.Result.ObjectType.HISTORY) {
+            java.util.List<HistoryEntry> entries = (java.util.List<HistoryEntry>) result.obj;
+            received = entries.size();
+            for (HistoryEntry entry : entries) {
+                if (entry.show == null || entry.show.ids == null || entry.show.ids.tmdb == null
+                        || entry.episode == null || entry.episode.season == null || entry.episode.number == null)
+                    continue;
+                log.trace("syncShowsToDb: marking " + entry.show.title + " s" + entry.episode.season + "e" + entry.episode.number);
+                request.addEpisode(entry.show.ids.tmdb, entry.episode.season, entry.episode.number);
+            }
+        } else if (result.status == Trakt.Status.SUCCESS &&
                 result.objType == Trakt.Result.ObjectType.SHOWS_PER_SEASON) {
             java.util.List<BaseShow> shows = (java.util.List<BaseShow> ) result.obj;
-            if (shows.size() > 0) {
-                for (BaseShow show : shows) {
-                    for (BaseSeason season : show.seasons) {
-                        InBuilder inBuilder = new InBuilder("number_episode");
-                        for (BaseEpisode episode : season.episodes) {
-                            log.debug("syncShowsToDb: marking " + show.show.title + " s" + season.number + "e" + episode.number);
-                            inBuilder.addParam(episode.number);
-                        }
-                        final String inSelection = inBuilder.get();
-                        if (inSelection != null) {
-                            final String selection = "_id IN ("+
-                                    "SELECT video_id FROM episode where season_episode = " + season.number +
-                                    " AND " + inSelection +
-                                    " AND show_episode IN (SELECT _id FROM show WHERE s_online_id = " + show.show.ids.tmdb +"))";
-                            cr.update(VideoStore.Video.Media.EXTERNAL_CONTENT_URI, getValuesMarkAs(library, true), selection, null);
-                        }
+            for (BaseShow show : shows) {
+                if (show.show == null || show.show.ids == null || show.show.ids.tmdb == null || show.seasons == null)
+                    continue;
+                for (BaseSeason season : show.seasons) {
+                    if (season.number == null || season.episodes == null)
+                        continue;
+                    for (BaseEpisode episode : season.episodes) {
+                        if (episode.number == null)
+                            continue;
+                        received++;
+                        // collection has no history: full list but only what changed is applied
+                        if (since > 0 && episode.collected_at != null && episode.collected_at.toEpochSecond() < since)
+                            continue;
+                        log.trace("syncShowsToDb: marking " + show.show.title + " s" + season.number + "e" + episode.number);
+                        request.addEpisode(show.show.ids.tmdb, season.number, episode.number);
                     }
                 }
             }
         }
+        long built = System.currentTimeMillis();
+        int updated = TraktReconciler.reconcile(cr, request);
+        mTransferred += received;
+        log.debug("syncShowsToDb: " + library + (since > 0 ? " delta" : " full") + ", " + received + " items received, "
+                + updated + " videos updated; fetch " + (fetched - start) + "ms, build " + (built - fetched) + "ms, apply "
+                + (System.currentTimeMillis() - built) + "ms");
         return Trakt.Status.SUCCESS;
     }
 
@@ -736,13 +842,15 @@ public class TraktService extends Service {
         final ContentResolver cr = getContentResolver();
         final String action = Trakt.getAction(library, toMark);
 
-        Cursor c = cr.query(VideoStore.Video.Media.EXTERNAL_CONTENT_URI,
+        // one sync request per page: bounded cursor window and request size for large libraries
+        CursorPager pager = new CursorPager(cr, VideoStore.Video.Media.EXTERNAL_CONTENT_URI,
                 MOVIE_ONLINE_ID_PROJECTION,
                 getVideoToMarkSelection(library, com.archos.mediascraper.BaseTags.MOVIE, toMark),
                 null,
-                null);
-        if (c != null) {
-            if (c.getCount() > 0) {
+                CursorPager.DEFAULT_PAGE_SIZE);
+        try {
+            Cursor c;
+            while ((c = pager.next()) != null) {
                 final int mOnlineIdIdx = c.getColumnIndex(VideoStore.Video.VideoColumns.SCRAPER_M_ONLINE_ID);
                 final int lastPlayedIdx = c.getColumnIndex(VideoStore.Video.VideoColumns.ARCHOS_LAST_TIME_PLAYED);
                 final int idIdx = c.getColumnIndex(BaseColumns._ID);
@@ -778,9 +886,9 @@ public class TraktService extends Service {
                     SyncItems si = new SyncItems();
                     si.movies(eps);
 
+                    mTransferred += eps.size();
                     Trakt.Result result = mTrakt.markAs(action,si, false);
                     if (result.status == Trakt.Status.ERROR_NETWORK) {
-                        c.close();
                         return Trakt.Status.ERROR_NETWORK;
                     }
                     if (result.status == Trakt.Status.SUCCESS ||
@@ -792,7 +900,8 @@ public class TraktService extends Service {
                     }
                 }
             }
-            c.close();
+        } finally {
+            pager.close();
         }
         return Trakt.Status.SUCCESS;
     }
@@ -948,6 +1057,10 @@ public class TraktService extends Service {
             log.debug("sync: first time syncing: full sync");
             flag |= FLAG_SYNC_FULL;
         }
+        // changes from trakt are read since the per category watermarks unless reset
+        final boolean reset = (flag & FLAG_SYNC_RESET) != 0;
+        final long syncStart = System.currentTimeMillis() / 1000;
+        mTransferred = 0;
 
         if ((flag & FLAG_SYNC_LAST_ACTIVITY_VETO) == 0 && (flag & FLAG_SYNC_TO_DB_WATCHED) == 0) {
             // if we don't sync from trakt to db, get last activity to check if we have to.
@@ -961,6 +1074,13 @@ public class TraktService extends Service {
         /*
             Last activity will be used to know if we have something to sync FROM trakt to DB, not from DB to trakt
         */
+        // markAs actions left over by a previous run (process death, network loss, backoff)
+        if (!mQueue.isEmpty()) {
+            Trakt.Status status = mQueue.flush(mTrakt);
+            mTransferred += mQueue.getFlushedMovies() + mQueue.getFlushedEpisodes();
+            if (status == Trakt.Status.ERROR_NETWORK)
+                return handleSyncStatus(status, flag, "flushQueue");
+        }
         if (!Trakt.getSyncCollection(mPreferences)) {
             flag &= ~FLAG_SYNC_TO_DB_COLLECTION;
             flag &= ~FLAG_SYNC_TO_TRAKT_COLLECTION;
@@ -997,12 +1117,13 @@ public class TraktService extends Service {
         final boolean syncShowsFromTrakt = (flag & FLAG_SYNC_SHOWS) != 0;
         final boolean syncMoviesFromTrakt = (flag & FLAG_SYNC_MOVIES) != 0;
         if(Trakt.getSyncPlaybackPreference(mPreferences)){
-            syncPlaybackStatus();
+            if (syncPlaybackStatus(getSince(Trakt.WATERMARK_PLAYBACK, reset)) == Trakt.Status.SUCCESS)
+                Trakt.setWatermark(mPreferences, Trakt.WATERMARK_PLAYBACK, syncStart);
         }
         syncLists();
 
         if (!syncShowsFromTrakt && !syncMoviesFromTrakt) {
-            log.debug("sync: no movie/show flag, abort");
+            log.debug("sync: no movie/show flag, abort, transferred " + mTransferred + " items");
             return Trakt.Result.getSuccess();
         }
 
@@ -1020,28 +1141,52 @@ public class TraktService extends Service {
 
         if (libraries != null) {
             for (String library : libraries) {
+                final boolean watched = library.equals(Trakt.LIBRARY_WATCHED);
+                boolean moviesRead = false;
+                boolean showsRead = false;
 
                 if (syncMoviesFromTrakt) {
                     log.debug("syncing movies " + library + " from trakt.tv to DB");
-                    Trakt.Status status = syncMoviesToDb(library);
+                    Trakt.Status status = syncMoviesToDb(library,
+                            getSince(watched ? Trakt.WATERMARK_MOVIES_WATCHED : Trakt.WATERMARK_COLLECTION, reset));
                     log.debug("syncing movies " + library + " from trakt.tv to DB finished : "+status);
                     if (status == Trakt.Status.ERROR_NETWORK)
                         return handleSyncStatus(status, flag, "syncMoviesToDb");
+                    moviesRead = status == Trakt.Status.SUCCESS;
                 }
                 if (syncShowsFromTrakt) {
                     log.debug("syncing shows " + library + " from trakt.tv to DB");
-                    Trakt.Status status = syncShowsToDb(library);
+                    Trakt.Status status = syncShowsToDb(library,
+                            getSince(watched ? Trakt.WATERMARK_EPISODES_WATCHED : Trakt.WATERMARK_COLLECTION, reset));
                     log.debug("syncing shows " + library + " from trakt.tv to DB finished : "+status);
                     if (status == Trakt.Status.ERROR_NETWORK)
                         return handleSyncStatus(status, flag, "syncShowsToDb");
+                    showsRead = status == Trakt.Status.SUCCESS;
+                }
+                // watermarks only move once everything before them was read and is in db
+                if (watched) {
+                    if (moviesRead)
+                        Trakt.setWatermark(mPreferences, Trakt.WATERMARK_MOVIES_WATCHED, syncStart);
+                    if (showsRead)
+                        Trakt.setWatermark(mPreferences, Trakt.WATERMARK_EPISODES_WATCHED, syncStart);
+                } else if (moviesRead && showsRead) {
+                    Trakt.setWatermark(mPreferences, Trakt.WATERMARK_COLLECTION, syncStart);
                 }
             }
         }
 
-
+        log.debug("sync: transferred " + mTransferred + " items" + (reset ? " (full)" : ""));
         return handleSyncStatus(Trakt.Status.SUCCESS, flag, null);
     }
 
+    /** @return epoch seconds from which trakt changes of category have to be read, 0 for a full sync */
+    private long getSince(String category, boolean reset) {
+        if (reset)
+            return 0;
+        long watermark = Trakt.getWatermark(mPreferences, category);
+        return watermark > 0 ? Math.max(1, watermark - WATERMARK_OVERLAP) : 0;
+    }
+
     private void syncLists() {
         log.debug("syncLists");
         Cursor cursor = getContentResolver().query(VideoStore.List.LIST_CONTENT_URI,VideoStore.List.Columns.COLUMNS, null, null, null);
@@ -1258,6 +1403,7 @@ public class TraktService extends Service {
         mBackgroundHandler = new TraktHandler(mBackgroundHandlerThread.getLooper(), this);
         mUiHandler = new Handler();
         mPreferences = PreferenceManager.getDefaultSharedPreferences(this);
+        mQueue = new TraktQueue(this);
         // handles foregroud/background for networkState add/remove Listener
         AppState.addOnForeGroundListener(mForeGroundListener);
         handleForeGround(AppState.isForeGround());
@@ -1436,7 +1582,7 @@ public class TraktService extends Service {
         public void fullSync() {
             log.debug("fullSync: send INTENT_ACTION_SYNC");
             Intent intent = prepareIntent(INTENT_ACTION_SYNC, null, -1, null);
-            intent.putExtra("flag_sync", FLAG_SYNC_FULL);
+            intent.putExtra("flag_sync", FLAG_SYNC_FULL | FLAG_SYNC_RESET);
             if (AppState.isForeGround()) mContext.startService(intent);
         }
         public void sync(int flag) {
@@ -1454,7 +1600,8 @@ public class TraktService extends Service {
 
     public static void onNewVideo(Context context) {
         if (Trakt.isTraktV2Enabled(context, PreferenceManager.getDefaultSharedPreferences(context)))
-            new Client(context, null, false).sync(FLAG_SYNC_TO_DB_WATCHED|FLAG_SYNC_TO_TRAKT|FLAG_SYNC_MOVIES|FLAG_SYNC_SHOWS);
+            // history of a new video can be older than the watermarks
+            new Client(context, null, false).sync(FLAG_SYNC_TO_DB_WATCHED|FLAG_SYNC_TO_TRAKT|FLAG_SYNC_MOVIES|FLAG_SYNC_SHOWS|FLAG_SYNC_RESET);
     }
 
     public static void init() {
@@ -181,6 +181,7 @@ public class IndexHelper implements LoaderManager.LoaderCallbacks<Cursor>, Loade
                     &&UriUtils.isCompatibleWithRemoteDB(mVideoInfo.uri)) { //save on network
                 if (xmlDb == null)
                     xmlDb = XmlDb.getInstance();
+                xmlDb.flushOnBackground(mContext);
                 xmlDb.writeXmlRemote(mVideoInfo);
             }
             return null;
@@ -242,6 +243,9 @@ public class IndexHelper implements LoaderManager.LoaderCallbacks<Cursor>, Loade
                 task.abort();
             }
         }
+        // player is going away, do not leave resume files to a delayed write
+        if (XmlDb.hasPendingWrites())
+            XmlDb.getInstance().flushPendingWrites();
         reset();
     }
 
@@ -14,12 +14,19 @@
 
 package com.archos.mediacenter.utils.videodb;
 
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Handler;
 import android.os.Handler.Callback;
+import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.LruCache;
 
 import com.archos.filecorelibrary.FileEditor;
 import com.archos.filecorelibrary.MetaFile2;
@@ -28,6 +35,7 @@ import com.archos.filecorelibrary.FileUtils;
 import com.archos.filecorelibrary.AuthenticationException;
 import com.archos.mediacenter.filecoreextension.upnp2.FileEditorFactoryWithUpnp;
 import com.archos.mediacenter.filecoreextension.upnp2.RawListerFactoryWithUpnp;
+import com.archos.mediascraper.SaxParserPool;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.SftpException;
 
@@ -36,9 +44,7 @@ import org.slf4j.LoggerFactory;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
-import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
-import org.xml.sax.helpers.XMLReaderFactory;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -52,6 +58,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -71,9 +79,29 @@ public class XmlDb implements Callback {
     public static final String FILE_EXTENSION = "xml";
     public static final String FILE_NAME = ".archos.resume."+FILE_EXTENSION;
     private final Handler mUiThreadHandler = new Handler(Looper.getMainLooper(), this);
-    private static final Map<String, WriteTask> sRemoteWriteTasks = new HashMap<String, WriteTask>();
+    private final Handler mWriteHandler;
     private static final Map<String, ParseTask> sRemoteParseTasks = new HashMap<String, ParseTask>();
-    private static final Map<Uri, VideoDbInfo> sRemoteCache = new HashMap<>();
+    // written from parse and write threads
+    private static final Map<Uri, VideoDbInfo> sRemoteCache = Collections.synchronizedMap(new HashMap<Uri, VideoDbInfo>());
+
+    // resume files of recently listed folders and recently parsed resume files, bounded in time:
+    // another device may update them on the share
+    private static final long CACHE_TTL = TimeUnit.MINUTES.toMillis(2);
+    private static final LruCache<String, Timed<List<MetaFile2>>> sFolderCache = new LruCache<>(32);
+    private static final LruCache<Uri, Timed<VideoDbInfo>> sParseCache = new LruCache<>(128);
+    private static final AtomicLong sListCount = new AtomicLong();
+    private static final AtomicLong sParseCount = new AtomicLong();
+
+    // resume updates of a video within WRITE_DELAY are merged into one remote write (latest wins)
+    private static final int MSG_WRITE = 0;
+    private static final long WRITE_DELAY = 2000; // in ms
+    // failed writes (share unreachable for a moment) are retried after WRITE_DELAY * attempts
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+    private static final Map<String, PendingWrite> sPendingWrites = new HashMap<>();
+    private static final AtomicLong sWriteCount = new AtomicLong();
+    private static final AtomicLong sMergedWriteCount = new AtomicLong();
+    private static final AtomicLong sFailedWriteCount = new AtomicLong();
+    private boolean mFlushOnBackgroundRegistered;
     private final ArrayList<ResumeChangeListener> mResumeChangeListener;
     private List<ParseListener> mOnParseListeners;
 
@@ -81,6 +109,37 @@ public class XmlDb implements Callback {
         return sRemoteCache.get(videoFileLocation);
     }
 
+    private static class Timed<T> {
+        final T value;
+        final long time;
+
+        Timed(T value) {
+            this.value = value;
+            this.time = SystemClock.elapsedRealtime();
+        }
+
+        boolean isExpired() {
+            return SystemClock.elapsedRealtime() - time > CACHE_TTL;
+        }
+    }
+
+    private static class PendingWrite {
+        final VideoDbInfo info;
+        final long due;
+        // failed writes of this entry so far
+        final int attempts;
+
+        PendingWrite(VideoDbInfo info) {
+            this(info, 0);
+        }
+
+        PendingWrite(VideoDbInfo info, int attempts) {
+            this.info = info;
+            this.attempts = attempts;
+            this.due = SystemClock.elapsedRealtime() + WRITE_DELAY * (attempts + 1);
+        }
+    }
+
     public static class ParseResult {
         public final boolean success;
         private final Uri location;
@@ -183,7 +242,12 @@ public class XmlDb implements Callback {
 
         @Override
         protected VideoDbInfo doInBackground(Void... params) {
-            return parseXml(mLocation);
+            final long start = SystemClock.elapsedRealtime();
+            VideoDbInfo result = parseXml(mLocation);
+            // resume lookup latency when opening a video
+            log.debug("parseXml: " + mLocation + " in " + (SystemClock.elapsedRealtime() - start) + "ms, folders listed "
+                    + sListCount.get() + ", files parsed " + sParseCount.get());
+            return result;
         }
 
         @Override
@@ -214,37 +278,6 @@ public class XmlDb implements Callback {
         void onParseOk(ParseResult obj);
     }
 
-    private class WriteTask extends AsyncTask<Void, Integer, Void> {
-        private final VideoDbInfo mVideoDbInfo;
-        /**
-         *
-         *
-         * @param videoDbInfo
-         */
-        public WriteTask(VideoDbInfo videoDbInfo) {
-            mVideoDbInfo = videoDbInfo;
-        }
-
-        @Override
-        protected Void doInBackground(Void... params) {
-            log.debug("doInBackground: " + mVideoDbInfo.uri);
-            boolean ret = writeXml(mVideoDbInfo);
-            log.debug("writeXml: " + ret);
-            return null;
-        }
-
-        @Override
-        protected void onPreExecute() {
-            sRemoteWriteTasks.put(mVideoDbInfo.uri.toString(), this);
-        }
-
-        @Override
-        protected void onPostExecute(Void result) {
-            sRemoteWriteTasks.remove(mVideoDbInfo.uri.toString());
-            sRemoteCache.put(mVideoDbInfo.uri, mVideoDbInfo);
-            notifyResumeChange(mVideoDbInfo.uri, (int) ((float) mVideoDbInfo.resume / (float) mVideoDbInfo.duration * 100.0));
-        }
-    }
     public synchronized void addResumeChangeListener(ResumeChangeListener listener){
         mResumeChangeListener.add(listener);
     }
@@ -265,6 +298,13 @@ public class XmlDb implements Callback {
         final Uri location = getReadXmlPath(videoFileUri);
         if(location==null)
             return null;
+        // the resume percent is part of the file name: same name, same content unless written elsewhere
+        Timed<VideoDbInfo> parsed = sParseCache.get(location);
+        if (parsed != null && !parsed.isExpired()) {
+            if (parsed.value.uri != null)
+                sRemoteCache.put(parsed.value.uri, parsed.value);
+            return parsed.value;
+        }
         InputStream fis=null;
         try {
             try {
@@ -285,11 +325,12 @@ public class XmlDb implements Callback {
                 return null;
             }
             ContentHandler handler = new ContentHandler(location);
-            XMLReader parser = XMLReaderFactory.createXMLReader();
-            parser.setContentHandler(handler);
-            parser.parse(new InputSource(fis));
+            SaxParserPool.obtain().getParser().parse(new InputSource(fis), handler);
             fis.close();
-            return handler.getResult();
+            sParseCount.incrementAndGet();
+            VideoDbInfo result = handler.getResult();
+            sParseCache.put(location, new Timed<>(result));
+            return result;
         } catch (InterruptedIOException e) {
             log.error("parseXml: timeout while parsing files.", e);
         } catch (FileNotFoundException e) {
@@ -321,11 +362,24 @@ public class XmlDb implements Callback {
     public static List<MetaFile2> getListOfDBForUri(Uri videoFile){
         Uri toList = FileUtils.getParentUrl(videoFile);
         if(toList!=null){
+            final String key = toList.toString();
+            Timed<List<MetaFile2>> listed = sFolderCache.get(key);
+            if (listed != null && !listed.isExpired())
+                return extractAssociatedWithUriDbXmlMetafileFromList(listed.value, videoFile);
            RawLister rl = RawListerFactoryWithUpnp.getRawListerForUrl(toList);
             try {
                 List<MetaFile2> list = rl.getFileList();
-                if(list!=null)
-                    return extractAssociatedWithUriDbXmlMetafileFromList(list, videoFile);
+                sListCount.incrementAndGet();
+                if(list!=null) {
+                    // only resume files are kept, a season folder can be big
+                    List<MetaFile2> dbList = new ArrayList<>();
+                    for (MetaFile2 mf : list) {
+                        if (mf.getName().endsWith(FILE_NAME))
+                            dbList.add(mf);
+                    }
+                    sFolderCache.put(key, new Timed<>(dbList));
+                    return extractAssociatedWithUriDbXmlMetafileFromList(dbList, videoFile);
+                }
             } catch (IOException e) {
                 e.printStackTrace();
             } catch (AuthenticationException e) {
@@ -431,8 +485,16 @@ public class XmlDb implements Callback {
         return null;
     }
 
+    /** drops the cached resume files of the folder of videoFile, to be called when they change */
+    private static void invalidateFolder(Uri videoFile) {
+        Uri folder = FileUtils.getParentUrl(videoFile);
+        if (folder != null)
+            sFolderCache.remove(folder.toString());
+    }
+
     public static void deleteAssociatedResumeDatabase(Uri videoFile) {
         List <MetaFile2> todelete = getListOfDBForUri(videoFile);
+        invalidateFolder(videoFile);
         if(todelete!=null&&!todelete.isEmpty()){
             for(MetaFile2 mf2 : todelete){
                 try {
@@ -455,8 +517,8 @@ public class XmlDb implements Callback {
         //first, merge remote cache with cache in memory
         if(entry==null)
             return false;
-        //delete old db files
-
+        //delete old db files, listing them again: another device may have written one meanwhile
+        invalidateFolder(entry.uri);
         deleteAssociatedResumeDatabase(entry.uri);
         final StringWriter writer = new StringWriter(5000);
         writer.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
@@ -504,7 +566,12 @@ public class XmlDb implements Callback {
                     }
             }
         }
-
+        sWriteCount.incrementAndGet();
+        // what we just wrote does not need to be parsed again
+        invalidateFolder(entry.uri);
+        Uri xmlUri = getXmlPath(entry);
+        if (xmlUri != null)
+            sParseCache.put(xmlUri, new Timed<>(entry));
         return true;
     }
 
@@ -513,6 +580,17 @@ public class XmlDb implements Callback {
         System.setProperty("org.xml.sax.driver", "org.xmlpull.v1.sax2.Driver");
         mResumeChangeListener = new ArrayList<>();
         mOnParseListeners = Collections.synchronizedList(new ArrayList<ParseListener>());
+        HandlerThread writeThread = new HandlerThread("XmlDbWrite", Process.THREAD_PRIORITY_BACKGROUND);
+        writeThread.start();
+        mWriteHandler = new Handler(writeThread.getLooper(), new Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                if (msg.what != MSG_WRITE)
+                    return false;
+                writePendingXml(false);
+                return true;
+            }
+        });
     }
 
     private static Uri getFilePath(Uri xmlLocation, String videoPath) {
@@ -625,8 +703,8 @@ public class XmlDb implements Callback {
     public void parseXmlLocation(final Uri videoFileUri) {
         log.debug("parseCommon:" + videoFileUri);
         ParseTask task;
-        if (sRemoteWriteTasks.get(videoFileUri.toString()) != null) {
-            log.debug("writing task is running: assume we are up to date");
+        if (hasPendingWrite(videoFileUri)) {
+            log.debug("writing task is pending: assume we are up to date");
             notifyChanged(videoFileUri, true);
             return;
         }
@@ -652,14 +730,142 @@ public class XmlDb implements Callback {
 
     }
 
+    /**
+     * Writes the resume file of a video after WRITE_DELAY, merged with the updates of the same video
+     * that come in the meantime. The in memory entry is updated right away.
+     */
     public void writeXmlRemote(VideoDbInfo videoDbInfo) {
-        WriteTask task;
-        task = sRemoteWriteTasks.get(videoDbInfo.uri.toString());
-        if (task != null) {
-            task.cancel(true);
+        synchronized (sPendingWrites) {
+            if (sPendingWrites.put(videoDbInfo.uri.toString(), new PendingWrite(videoDbInfo)) != null)
+                sMergedWriteCount.incrementAndGet();
         }
-        task = new WriteTask(videoDbInfo);
-        task.execute();
+        sRemoteCache.put(videoDbInfo.uri, videoDbInfo);
+        mWriteHandler.sendEmptyMessageDelayed(MSG_WRITE, WRITE_DELAY);
+    }
+
+    /** writes the pending resume files now, e.g. when leaving the application */
+    public void flushPendingWrites() {
+        mWriteHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                writePendingXml(true);
+            }
+        });
+    }
+
+    /**
+     * Flushes the pending writes when the application leaves the foreground: it may be killed from
+     * there without any other callback and the delayed writes would be lost.
+     */
+    public synchronized void flushOnBackground(Context context) {
+        if (mFlushOnBackgroundRegistered)
+            return;
+        mFlushOnBackgroundRegistered = true;
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_UI_HIDDEN && hasPendingWrites())
+                    flushPendingWrites();
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+            }
+        });
+    }
+
+    public static boolean hasPendingWrites() {
+        synchronized (sPendingWrites) {
+            return !sPendingWrites.isEmpty();
+        }
+    }
+
+    private static boolean hasPendingWrite(Uri videoFileUri) {
+        synchronized (sPendingWrites) {
+            return sPendingWrites.containsKey(videoFileUri.toString());
+        }
+    }
+
+    // runs on the write thread, package private for tests
+    void writePendingXml(boolean all) {
+        final long now = SystemClock.elapsedRealtime();
+        List<PendingWrite> toWrite = new ArrayList<>();
+        synchronized (sPendingWrites) {
+            // entries stay in the map until written: parseXmlLocation must not read the old file meanwhile
+            for (PendingWrite pending : sPendingWrites.values()) {
+                if (all || pending.due <= now)
+                    toWrite.add(pending);
+            }
+        }
+        for (final PendingWrite pending : toWrite) {
+            final VideoDbInfo info = pending.info;
+            final long start = SystemClock.elapsedRealtime();
+            boolean ret = writeXml(info);
+            log.debug("writePendingXml: " + info.uri + " " + ret + " in " + (SystemClock.elapsedRealtime() - start) + "ms");
+            if (!ret) {
+                retryWrite(pending);
+                continue;
+            }
+            synchronized (sPendingWrites) {
+                // a newer update of the video came in during the write, it is still to be written
+                if (sPendingWrites.get(info.uri.toString()) == pending)
+                    sPendingWrites.remove(info.uri.toString());
+            }
+            mUiThreadHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    notifyResumeChange(info.uri, (int) ((float) info.resume / (float) info.duration * 100.0));
+                }
+            });
+        }
+    }
+
+    // nothing was written: listeners must not be told about a resume change
+    private void retryWrite(PendingWrite failed) {
+        sFailedWriteCount.incrementAndGet();
+        final String key = failed.info.uri.toString();
+        final int attempts = failed.attempts + 1;
+        synchronized (sPendingWrites) {
+            // a newer update of the video supersedes the failed one
+            if (sPendingWrites.get(key) != failed)
+                return;
+            if (attempts >= MAX_WRITE_ATTEMPTS) {
+                log.warn("retryWrite: giving up on " + failed.info.uri + " after " + attempts + " attempts");
+                sPendingWrites.remove(key);
+                return;
+            }
+            sPendingWrites.put(key, new PendingWrite(failed.info, attempts));
+        }
+        mWriteHandler.sendEmptyMessageDelayed(MSG_WRITE, WRITE_DELAY * (attempts + 1));
+    }
+
+    /** number of remote folders listed to find resume files */
+    public static long getListCount() {
+        return sListCount.get();
+    }
+
+    /** number of resume files actually parsed (cache misses) */
+    public static long getParseCount() {
+        return sParseCount.get();
+    }
+
+    /** number of resume files written */
+    public static long getWriteCount() {
+        return sWriteCount.get();
+    }
+
+    /** number of resume updates merged into a later write */
+    public static long getMergedWriteCount() {
+        return sMergedWriteCount.get();
+    }
+
+    /** number of resume file writes that failed, retries included */
+    public static long getFailedWriteCount() {
+        return sFailedWriteCount.get();
     }
 
     // taken from FastXmlSerializer, slightly modified
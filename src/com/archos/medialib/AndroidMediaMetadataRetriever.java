@@ -38,6 +38,10 @@ public class AndroidMediaMetadataRetriever extends MediaMetadataRetriever implem
         return null;
     }
 
+    public MetadataRecord getMetadataRecord() {
+        return null;
+    }
+
     public int getType() {
         return IMediaMetadataRetriever.TYPE_ANDROID;
     }
@@ -16,57 +16,91 @@ package com.archos.medialib;
 
 import android.graphics.Bitmap;
 import android.graphics.Bitmap.Config;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
 import android.util.Log;
 
+import java.util.ArrayList;
+
 public class AvosBitmapHelper {
+    private static final String TAG = "AvosBitmapHelper";
+
+    // thumbnails of a scan come in a handful of sizes
+    private static final int POOL_SIZE = 4;
+    private static final ArrayList<Bitmap> sPool = new ArrayList<Bitmap>(POOL_SIZE);
 
+    /**
+     * Scales and rotates the frame straight into a bitmap of the target size, taken from the pool
+     * when possible: the frame never exists as a full size bitmap on the java heap.
+     */
+    @SuppressWarnings("deprecation")
     public static Bitmap createRGBBitmap(int[] inData,
             int inWidth, int inHeight, int inLinestep,
             int inRotation,
             int outWidth, int outHeight) {
 
-        Log.d("AvosBitmapHelper", "createRGBBitmap("+inData.length+","+inWidth+","+inHeight+","+inLinestep+","+inRotation+","+outWidth+","+outHeight+")");
+        Log.d(TAG, "createRGBBitmap("+inData.length+","+inWidth+","+inHeight+","+inLinestep+","+inRotation+","+outWidth+","+outHeight+")");
         if (inWidth == 0 || inHeight == 0)
             return null;
         if (outWidth == 0 || outHeight == 0) {
             outWidth = inWidth;
             outHeight = inHeight;
         }
+        if (inRotation == 90 || inRotation == 270) {
+            int tmp = outWidth;
+            outWidth = outHeight;
+            outHeight = tmp;
+        }
 
-        Config config = Bitmap.Config.ARGB_8888;
-        Bitmap bitmap = null;
+        Bitmap bitmap;
         try {
-            bitmap = Bitmap.createBitmap(inData, 0, inLinestep, inWidth, inHeight, config);
+            bitmap = obtain(outWidth, outHeight);
         } catch (OutOfMemoryError oom) {
-            Log.e("AvosBitmapHelper", "createRGBBitmap: caught OOM", oom);
-            bitmap = null;
-        }
-        if (bitmap == null)
+            Log.e(TAG, "createRGBBitmap: caught OOM", oom);
             return null;
+        }
 
-        if (inRotation != 0) {
-            if (inRotation == 90 || inRotation == 270) {
-                int tmp = outWidth;
-                outWidth = outHeight;
-                outHeight = tmp;
-            }
+        // rotate, move the rotated frame back at the origin, then fit it to the target
+        Matrix matrix = new Matrix();
+        matrix.postRotate(inRotation);
+        RectF bounds = new RectF(0, 0, inWidth, inHeight);
+        matrix.mapRect(bounds);
+        matrix.postTranslate(-bounds.left, -bounds.top);
+        matrix.postScale(outWidth / bounds.width(), outHeight / bounds.height());
 
-            Matrix matrix = new Matrix();
-            matrix.postRotate(inRotation);
-            Bitmap rotatedBitmap =  Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
-            if (rotatedBitmap != bitmap)
-                bitmap.recycle();
-            bitmap = rotatedBitmap;
-        }
+        Canvas canvas = new Canvas(bitmap);
+        canvas.concat(matrix);
+        canvas.drawBitmap(inData, 0, inLinestep, 0f, 0f, inWidth, inHeight, true,
+                new Paint(Paint.FILTER_BITMAP_FLAG));
+        return bitmap;
+    }
 
-        if (outWidth != inWidth || outHeight != inHeight) {
-            Bitmap scaledBitmap = Bitmap.createScaledBitmap(bitmap, outWidth, outHeight, true);
-            if (scaledBitmap != bitmap)
-                bitmap.recycle();
-            bitmap = scaledBitmap;
+    private static Bitmap obtain(int width, int height) {
+        synchronized (sPool) {
+            for (int i = 0; i < sPool.size(); i++) {
+                Bitmap bitmap = sPool.get(i);
+                if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                    sPool.remove(i);
+                    bitmap.eraseColor(0);
+                    return bitmap;
+                }
+            }
         }
+        return Bitmap.createBitmap(width, height, Config.ARGB_8888);
+    }
 
-        return bitmap;
+    /** gives back a bitmap that is no longer used, it may be returned by a later createRGBBitmap */
+    public static void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable() || bitmap.getConfig() != Config.ARGB_8888)
+            return;
+        synchronized (sPool) {
+            if (sPool.contains(bitmap))
+                return;
+            if (sPool.size() >= POOL_SIZE)
+                sPool.remove(0);
+            sPool.add(bitmap);
+        }
     }
 }
@@ -176,6 +176,10 @@ public class AvosMediaMetadataRetriever implements IMediaMetadataRetriever
         return data;
     }
 
+    public MetadataRecord getMetadataRecord() {
+        return MetadataRecord.wrap(getMetadata());
+    }
+
     private native Bitmap nativeGetFrameAtTime(long timeUs, int option);
 
     public Bitmap getFrameAtTime(long timeUs, int option) {
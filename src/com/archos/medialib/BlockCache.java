@@ -0,0 +1,489 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.medialib;
+
+import android.os.SystemClock;
+
+import com.archos.mediaprovider.Metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process wide LRU cache of the blocks of remote files read through the streaming proxy, so that the
+ * regions the player reads again and again (headers, mkv cues and index) are fetched once.
+ * Blocks evicted from memory are spilled to disk once {@link #setSpillDirectory(File)} is called.
+ * Blocks are loaded once whatever the number of concurrent readers: a reader waits for a block that
+ * is already being loaded, by a prefetch or by another reader.
+ * Each prefetch thread keeps its remote stream open across the blocks it loads, until the reader is closed.
+ */
+public class BlockCache {
+    private static final Logger log = LoggerFactory.getLogger(BlockCache.class);
+
+    public static final int BLOCK_SIZE = 512 * 1024;
+    private static final long MEMORY_MAX_BYTES = 16L * 1024 * 1024;
+    private static final long DISK_MAX_BYTES = 256L * 1024 * 1024;
+    // remote shares do not like many concurrent opens
+    private static final int PREFETCH_THREADS = 2;
+    // prefetch threads share the blocks read ahead, each one usually gets every other block
+    private static final long PREFETCH_MAX_SKIP = PREFETCH_THREADS * (long) BLOCK_SIZE;
+
+    // key -> block, in access order
+    private static final LinkedHashMap<String, byte[]> sMemory = new LinkedHashMap<String, byte[]>(64, 0.75f, true);
+    private static long sMemoryBytes;
+    // key -> size of the spilled block, in access order
+    private static final LinkedHashMap<String, Integer> sDisk = new LinkedHashMap<String, Integer>(64, 0.75f, true);
+    private static long sDiskBytes;
+    private static File sSpillDir;
+
+    private static final ConcurrentHashMap<String, Future<byte[]>> sLoading = new ConcurrentHashMap<String, Future<byte[]>>();
+
+    private static final ExecutorService sPrefetchExecutor = Executors.newFixedThreadPool(PREFETCH_THREADS, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "BlockCache");
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    });
+
+    private static final ArrayList<PrefetchReader> sPrefetchReaders = new ArrayList<PrefetchReader>(PREFETCH_THREADS);
+    private static final ThreadLocal<PrefetchReader> sPrefetchReader = new ThreadLocal<PrefetchReader>() {
+        @Override
+        protected PrefetchReader initialValue() {
+            PrefetchReader reader = new PrefetchReader();
+            synchronized (sPrefetchReaders) {
+                sPrefetchReaders.add(reader);
+            }
+            return reader;
+        }
+    };
+
+    private static final AtomicLong sMemoryHits = new AtomicLong();
+    private static final AtomicLong sDiskHits = new AtomicLong();
+    private static final AtomicLong sMisses = new AtomicLong();
+    private static final AtomicLong sPrefetched = new AtomicLong();
+    private static final AtomicLong sRemoteBytes = new AtomicLong();
+    private static final AtomicLong sRemoteTime = new AtomicLong();
+
+    static {
+        Metrics.gauge("blockcache.memory_hits", sMemoryHits::get);
+        Metrics.gauge("blockcache.disk_hits", sDiskHits::get);
+        Metrics.gauge("blockcache.misses", sMisses::get);
+        Metrics.gauge("blockcache.prefetched", sPrefetched::get);
+        Metrics.gauge("blockcache.remote_bytes", sRemoteBytes::get);
+        Metrics.gauge("blockcache.remote_throughput", BlockCache::getRemoteThroughput);
+    }
+
+    private BlockCache() {
+        /* all static */
+    }
+
+    /** enables the disk spill, anything spilled by a previous process is dropped */
+    public static void setSpillDirectory(final File dir) {
+        synchronized (BlockCache.class) {
+            if (sSpillDir != null)
+                return;
+            sSpillDir = dir;
+        }
+        // off the calling thread, probably the ui one
+        sPrefetchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                File[] stale = dir.listFiles();
+                if (stale != null) {
+                    for (File file : stale)
+                        file.delete();
+                } else if (!dir.mkdirs()) {
+                    log.warn("setSpillDirectory: cannot create " + dir);
+                }
+            }
+        });
+    }
+
+    static String getKey(BlockSource source, long index) {
+        return source.getKey() + "#" + index;
+    }
+
+    /** @return the block, from the cache or read from the source */
+    static byte[] get(final BlockSource source, final long index, final BlockReader reader) throws IOException {
+        final String key = getKey(source, index);
+        while (true) {
+            byte[] block = getCached(key);
+            if (block != null)
+                return block;
+            FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws IOException {
+                    try {
+                        // a prefetch may have completed since getCached
+                        byte[] loaded = getCached(key);
+                        if (loaded == null) {
+                            sMisses.incrementAndGet();
+                            loaded = load(source, index, reader);
+                            put(key, loaded);
+                        }
+                        return loaded;
+                    } finally {
+                        sLoading.remove(key);
+                    }
+                }
+            });
+            Future<byte[]> loading = sLoading.putIfAbsent(key, task);
+            if (loading == null) {
+                task.run();
+                loading = task;
+            }
+            try {
+                block = loading.get();
+                if (loading != task)
+                    sMemoryHits.incrementAndGet();
+                return block;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while waiting for block " + index);
+            } catch (ExecutionException e) {
+                if (loading == task)
+                    throw asIOException(e.getCause());
+                // prefetch or other reader failed, try on our own
+                log.debug("get: loading of block " + index + " failed, retrying: " + e.getCause());
+            }
+        }
+    }
+
+    private static IOException asIOException(Throwable cause) {
+        if (cause instanceof IOException)
+            return (IOException) cause;
+        if (cause instanceof RuntimeException)
+            throw (RuntimeException) cause;
+        if (cause instanceof Error)
+            throw (Error) cause;
+        return new IOException(cause);
+    }
+
+    /** loads the block in the background unless it is known already */
+    static void prefetch(final BlockSource source, final long index) {
+        if (index * BLOCK_SIZE >= source.length())
+            return;
+        final String key = getKey(source, index);
+        if (isCached(key))
+            return;
+        FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                try {
+                    // a reader may have loaded it while this task was queued
+                    byte[] block;
+                    synchronized (BlockCache.class) {
+                        block = sMemory.get(key);
+                    }
+                    if (block == null) {
+                        block = load(source, index, new BlockReader() {
+                            @Override
+                            public int read(long position, byte[] buffer) throws IOException {
+                                return sPrefetchReader.get().read(source, position, buffer);
+                            }
+                        });
+                        put(key, block);
+                        sPrefetched.incrementAndGet();
+                    }
+                    return block;
+                } finally {
+                    sLoading.remove(key);
+                }
+            }
+        });
+        if (sLoading.putIfAbsent(key, task) == null)
+            sPrefetchExecutor.execute(task);
+    }
+
+    /** closes the remote streams the prefetch threads keep open on source */
+    static void release(BlockSource source) {
+        final String key = source.getKey();
+        synchronized (sPrefetchReaders) {
+            for (PrefetchReader reader : sPrefetchReaders)
+                reader.release(key);
+        }
+    }
+
+    /** reads blocks from a stream kept open across sequential reads */
+    interface BlockReader {
+        /** @return the number of bytes read at position into block, fully unless at the end */
+        int read(long position, byte[] block) throws IOException;
+    }
+
+    private static byte[] load(BlockSource source, long index, BlockReader reader) throws IOException {
+        final long position = index * BLOCK_SIZE;
+        final int size = (int) Math.min(BLOCK_SIZE, source.length() - position);
+        if (size <= 0)
+            throw new IOException("block " + index + " beyond the end of " + source.getKey());
+        final long start = SystemClock.elapsedRealtime();
+        byte[] block = new byte[size];
+        int read = reader.read(position, block);
+        if (read != size)
+            throw new IOException("short read of block " + index + ": " + read + "/" + size);
+        sRemoteTime.addAndGet(SystemClock.elapsedRealtime() - start);
+        sRemoteBytes.addAndGet(size);
+        return block;
+    }
+
+    static int readFully(InputStream is, byte[] block) throws IOException {
+        int read = 0;
+        while (read < block.length) {
+            int n = is.read(block, read, block.length - read);
+            if (n < 0)
+                break;
+            read += n;
+        }
+        return read;
+    }
+
+    private static synchronized boolean isCached(String key) {
+        return sMemory.containsKey(key) || sDisk.containsKey(key);
+    }
+
+    private static byte[] getCached(String key) {
+        File spilled;
+        synchronized (BlockCache.class) {
+            byte[] block = sMemory.get(key);
+            if (block != null) {
+                sMemoryHits.incrementAndGet();
+                return block;
+            }
+            if (!sDisk.containsKey(key))
+                return null;
+            spilled = getSpillFile(key);
+        }
+        byte[] block = readSpilled(spilled);
+        if (block == null)
+            return null;
+        sDiskHits.incrementAndGet();
+        put(key, block);
+        return block;
+    }
+
+    private static void put(String key, byte[] block) {
+        ArrayList<Map.Entry<String, byte[]>> evicted = new ArrayList<Map.Entry<String, byte[]>>();
+        synchronized (BlockCache.class) {
+            byte[] previous = sMemory.put(key, block);
+            if (previous != null)
+                sMemoryBytes -= previous.length;
+            sMemoryBytes += block.length;
+            Iterator<Map.Entry<String, byte[]>> it = sMemory.entrySet().iterator();
+            while (sMemoryBytes > MEMORY_MAX_BYTES && it.hasNext()) {
+                Map.Entry<String, byte[]> eldest = it.next();
+                it.remove();
+                sMemoryBytes -= eldest.getValue().length;
+                if (sSpillDir != null && !sDisk.containsKey(eldest.getKey()))
+                    evicted.add(eldest);
+            }
+        }
+        // disk io out of the lock
+        for (Map.Entry<String, byte[]> entry : evicted)
+            spill(entry.getKey(), entry.getValue());
+    }
+
+    private static void spill(String key, byte[] block) {
+        File file;
+        synchronized (BlockCache.class) {
+            file = getSpillFile(key);
+        }
+        FileOutputStream os = null;
+        try {
+            os = new FileOutputStream(file);
+            os.write(block);
+        } catch (IOException e) {
+            log.warn("spill: " + e);
+            file.delete();
+            return;
+        } finally {
+            if (os != null) {
+                try {
+                    os.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        ArrayList<File> dropped = new ArrayList<File>();
+        synchronized (BlockCache.class) {
+            sDisk.put(key, block.length);
+            sDiskBytes += block.length;
+            Iterator<Map.Entry<String, Integer>> it = sDisk.entrySet().iterator();
+            while (sDiskBytes > DISK_MAX_BYTES && it.hasNext()) {
+                Map.Entry<String, Integer> eldest = it.next();
+                it.remove();
+                sDiskBytes -= eldest.getValue();
+                dropped.add(getSpillFile(eldest.getKey()));
+            }
+        }
+        for (File f : dropped)
+            f.delete();
+    }
+
+    private static byte[] readSpilled(File file) {
+        FileInputStream is = null;
+        try {
+            is = new FileInputStream(file);
+            byte[] block = new byte[(int) file.length()];
+            if (readFully(is, block) != block.length)
+                return null;
+            return block;
+        } catch (IOException e) {
+            // dropped meanwhile
+            return null;
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static File getSpillFile(String key) {
+        return new File(sSpillDir, UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString());
+    }
+
+    /**
+     * Remote stream of a prefetch thread, kept open across the blocks it loads as long as they follow
+     * each other closely enough: skipping a block is cheaper than opening a remote file again.
+     */
+    private static class PrefetchReader {
+        private String mKey;
+        private InputStream mStream;
+        private long mPosition;
+        private boolean mBusy;
+        private boolean mReleased;
+
+        int read(BlockSource source, long position, byte[] block) throws IOException {
+            final String key = source.getKey();
+            InputStream stream;
+            long streamPosition;
+            synchronized (this) {
+                if (mStream != null && (!key.equals(mKey) || position < mPosition || position - mPosition > PREFETCH_MAX_SKIP))
+                    closeStream();
+                stream = mStream;
+                streamPosition = mPosition;
+                mKey = key;
+                mBusy = true;
+                mReleased = false;
+            }
+            int read = -1;
+            try {
+                if (stream == null) {
+                    stream = source.open(position);
+                } else if (position > streamPosition) {
+                    skipFully(stream, position - streamPosition);
+                }
+                read = readFully(stream, block);
+                return read;
+            } finally {
+                synchronized (this) {
+                    mBusy = false;
+                    mStream = stream;
+                    mPosition = position + read;
+                    if (read < 0 || mReleased)
+                        closeStream();
+                }
+            }
+        }
+
+        synchronized void release(String key) {
+            if (!key.equals(mKey))
+                return;
+            // the thread loading a block closes the stream once done
+            if (mBusy)
+                mReleased = true;
+            else
+                closeStream();
+        }
+
+        private void closeStream() {
+            if (mStream != null) {
+                try {
+                    mStream.close();
+                } catch (IOException ignored) {
+                }
+                mStream = null;
+            }
+        }
+
+        private static void skipFully(InputStream is, long count) throws IOException {
+            while (count > 0) {
+                long n = is.skip(count);
+                if (n <= 0)
+                    throw new IOException("cannot skip " + count + " bytes");
+                count -= n;
+            }
+        }
+    }
+
+    public static long getMemoryHitCount() {
+        return sMemoryHits.get();
+    }
+
+    public static long getDiskHitCount() {
+        return sDiskHits.get();
+    }
+
+    /** number of blocks read on demand from the remote file */
+    public static long getMissCount() {
+        return sMisses.get();
+    }
+
+    /** number of blocks read ahead */
+    public static long getPrefetchCount() {
+        return sPrefetched.get();
+    }
+
+    /** bytes read from remote files */
+    public static long getRemoteBytes() {
+        return sRemoteBytes.get();
+    }
+
+    /** average remote read throughput in bytes/s */
+    public static long getRemoteThroughput() {
+        long time = sRemoteTime.get();
+        return time > 0 ? sRemoteBytes.get() * 1000 / time : 0;
+    }
+
+    static void logStats() {
+        log.debug("logStats: hits memory " + sMemoryHits.get() + " disk " + sDiskHits.get() + ", misses " +
+                sMisses.get() + ", prefetched " + sPrefetched.get() + ", remote " + sRemoteBytes.get() + " bytes at " +
+                getRemoteThroughput() / 1024 + "kB/s");
+    }
+}
@@ -0,0 +1,69 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.medialib;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Random access to the content of a remote file as seen by {@link BlockCache}.
+ * Streams may be opened concurrently, from the reader and from the prefetch threads.
+ */
+public interface BlockSource {
+
+    /** identifies the content: must change when the file changes */
+    String getKey();
+
+    long length();
+
+    /** @return a stream positioned at from */
+    InputStream open(long from) throws IOException;
+
+    /** local file standing in for a remote one */
+    class LocalFile implements BlockSource {
+        private final File mFile;
+
+        public LocalFile(File file) {
+            mFile = file;
+        }
+
+        @Override
+        public String getKey() {
+            return mFile.getPath() + ":" + mFile.length() + ":" + mFile.lastModified();
+        }
+
+        @Override
+        public long length() {
+            return mFile.length();
+        }
+
+        @Override
+        public InputStream open(long from) throws IOException {
+            InputStream is = new FileInputStream(mFile);
+            long skipped = 0;
+            while (skipped < from) {
+                long n = is.skip(from - skipped);
+                if (n <= 0) {
+                    is.close();
+                    throw new IOException("cannot seek to " + from);
+                }
+                skipped += n;
+            }
+            return is;
+        }
+    }
+}
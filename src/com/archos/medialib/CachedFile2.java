@@ -0,0 +1,221 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.medialib;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.archos.filecorelibrary.FileEditor;
+import com.archos.filecorelibrary.MetaFile2;
+import com.archos.filecorelibrary.RawLister;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Remote file whose content is read through {@link BlockCache}, everything else is delegated.
+ * Handed to StreamOverHttp by {@link SmbProxy} so that range requests of the player hit the cache.
+ */
+public class CachedFile2 extends MetaFile2 {
+
+    private final MetaFile2 mFile;
+
+    private CachedFile2(MetaFile2 file) {
+        mFile = file;
+    }
+
+    /** @return the file wrapped if its content can be cached, i.e. it is a remote file of known size */
+    public static MetaFile2 wrap(MetaFile2 file) {
+        if (file == null || !file.isFile() || !file.isRemote() || file.length() <= 0)
+            return file;
+        return new CachedFile2(file);
+    }
+
+    @Override
+    public Uri getUri() {
+        return mFile.getUri();
+    }
+
+    @Override
+    public String getName() {
+        return mFile.getName();
+    }
+
+    @Override
+    public String getNameWithoutExtension() {
+        return mFile.getNameWithoutExtension();
+    }
+
+    @Override
+    public String getExtension() {
+        return mFile.getExtension();
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return mFile.isDirectory();
+    }
+
+    @Override
+    public boolean isFile() {
+        return mFile.isFile();
+    }
+
+    @Override
+    public long lastModified() {
+        return mFile.lastModified();
+    }
+
+    @Override
+    public long length() {
+        return mFile.length();
+    }
+
+    @Override
+    public Uri getStreamingUri() {
+        return mFile.getStreamingUri();
+    }
+
+    @Override
+    public boolean canRead() {
+        return mFile.canRead();
+    }
+
+    @Override
+    public boolean canWrite() {
+        return mFile.canWrite();
+    }
+
+    @Override
+    public boolean isRemote() {
+        return mFile.isRemote();
+    }
+
+    @Override
+    public String getMimeType() {
+        return mFile.getMimeType();
+    }
+
+    @Override
+    public RawLister getRawListerInstance() {
+        return mFile.getRawListerInstance();
+    }
+
+    @Override
+    public FileEditor getFileEditorInstance(Context ct) {
+        FileEditor editor = mFile.getFileEditorInstance(ct);
+        return editor != null ? new CachedFileEditor(this, editor) : null;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other instanceof CachedFile2)
+            return mFile.equals(((CachedFile2) other).mFile);
+        return mFile.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return mFile.hashCode();
+    }
+
+    private static class CachedFileEditor extends FileEditor implements BlockSource {
+        private final FileEditor mEditor;
+        private final String mKey;
+        private final long mLength;
+
+        CachedFileEditor(MetaFile2 file, FileEditor editor) {
+            super(file.getUri());
+            mEditor = editor;
+            mLength = file.length();
+            // a modified file is a new one for the cache
+            mKey = file.getUri() + ":" + mLength + ":" + file.lastModified();
+        }
+
+        // BlockSource
+
+        @Override
+        public String getKey() {
+            return mKey;
+        }
+
+        @Override
+        public long length() {
+            return mLength;
+        }
+
+        @Override
+        public InputStream open(long from) throws IOException {
+            try {
+                InputStream is = mEditor.getInputStream(from);
+                if (is == null)
+                    throw new IOException("no stream for " + mKey);
+                return is;
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+
+        // FileEditor
+
+        @Override
+        public InputStream getInputStream() throws Exception {
+            return new CachedInputStream(this, 0);
+        }
+
+        @Override
+        public InputStream getInputStream(long from) throws Exception {
+            return new CachedInputStream(this, from);
+        }
+
+        @Override
+        public boolean touchFile() {
+            return mEditor.touchFile();
+        }
+
+        @Override
+        public boolean mkdir() {
+            return mEditor.mkdir();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws Exception {
+            return mEditor.getOutputStream();
+        }
+
+        @Override
+        public Boolean delete() throws Exception {
+            return mEditor.delete();
+        }
+
+        @Override
+        public boolean rename(String newName) {
+            return mEditor.rename(newName);
+        }
+
+        @Override
+        public boolean move(Uri uri) {
+            return mEditor.move(uri);
+        }
+
+        @Override
+        public boolean exists() {
+            return mEditor.exists();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.medialib;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream over a remote file read by blocks through {@link BlockCache}. Once reads are sequential
+ * the next blocks are prefetched in parallel, while the block being read is fetched through a
+ * remote stream kept open as long as reads follow each other.
+ * Not thread safe, like any InputStream.
+ */
+public class CachedInputStream extends InputStream implements BlockCache.BlockReader {
+
+    // blocks read ahead once sequential reading is detected
+    private static final int READ_AHEAD = 4;
+
+    private final BlockSource mSource;
+    private final long mLength;
+    private long mPosition;
+
+    private long mBlockIndex = -1;
+    private byte[] mBlock;
+    private int mSequential;
+
+    private InputStream mRemote;
+    private long mRemotePosition = -1;
+
+    public CachedInputStream(BlockSource source, long from) {
+        mSource = source;
+        mLength = source.length();
+        mPosition = from;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        if (count == 0)
+            return 0;
+        if (mPosition >= mLength)
+            return -1;
+        final long index = mPosition / BlockCache.BLOCK_SIZE;
+        final byte[] block = getBlock(index);
+        final int inBlock = (int) (mPosition - index * BlockCache.BLOCK_SIZE);
+        final int n = Math.min(count, block.length - inBlock);
+        System.arraycopy(block, inBlock, buffer, offset, n);
+        mPosition += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, mLength - mPosition));
+        mPosition += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        if (mBlock == null || mPosition / BlockCache.BLOCK_SIZE != mBlockIndex)
+            return 0;
+        return (int) (mBlockIndex * BlockCache.BLOCK_SIZE + mBlock.length - mPosition);
+    }
+
+    private byte[] getBlock(long index) throws IOException {
+        if (index == mBlockIndex)
+            return mBlock;
+        mSequential = index == mBlockIndex + 1 ? mSequential + 1 : 0;
+        mBlock = BlockCache.get(mSource, index, this);
+        mBlockIndex = index;
+        if (mSequential > 0) {
+            for (int i = 1; i <= READ_AHEAD; i++)
+                BlockCache.prefetch(mSource, index + i);
+        }
+        return mBlock;
+    }
+
+    /** reads a block missing from the cache, reusing the remote stream if it is there already */
+    @Override
+    public int read(long position, byte[] block) throws IOException {
+        if (mRemote == null || mRemotePosition != position) {
+            closeRemote();
+            mRemote = mSource.open(position);
+            mRemotePosition = position;
+        }
+        int read = BlockCache.readFully(mRemote, block);
+        mRemotePosition += read;
+        return read;
+    }
+
+    private void closeRemote() {
+        if (mRemote != null) {
+            try {
+                mRemote.close();
+            } catch (IOException ignored) {
+            }
+            mRemote = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        closeRemote();
+        mBlock = null;
+        BlockCache.release(mSource);
+        BlockCache.logStats();
+    }
+}
@@ -106,6 +106,14 @@ public interface IMediaMetadataRetriever {
 
     public MediaMetadata getMediaMetadata();
 
+    /**
+     * Call this method after setDataSource(). Same as {@link #getMediaMetadata()} without any copy
+     * of the buffer of the native retriever.
+     *
+     * @return the metadata, null on failure or if not supported.
+     */
+    public MetadataRecord getMetadataRecord();
+
     /**
      * Call this method after setDataSource(). This method finds a
      * representative frame close to the given time position by considering
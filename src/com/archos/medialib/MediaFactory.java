@@ -14,6 +14,7 @@
 
 package com.archos.medialib;
 
+import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.HashMap;
@@ -149,6 +150,7 @@ public class MediaFactory {
     }
 
     public static IMediaPlayer createPlayer(Context ctx, boolean forceSoftwareDecoding) {
+        BlockCache.setSpillDirectory(new File(ctx.getCacheDir(), "blockcache"));
         if (preInit(ctx, true, forceSoftwareDecoding)) {
             if (DBG) Log.d(TAG, "new AvosMediaPlayer");
             return new AvosMediaPlayer();
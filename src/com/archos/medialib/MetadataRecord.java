@@ -0,0 +1,192 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.medialib;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Flat metadata record: the buffer produced by the native retriever kept as is, with a primitive
+ * index of its entries. Unlike {@link MediaMetadata} nothing is copied into a Parcel nor boxed in a
+ * map: the buffer is written to binder as a single byte array and values are only decoded when read.
+ *
+ * Buffer format, native byte order, from public/avos_common.h:
+ * <pre>
+ * typedef struct avos_msg {
+ *   uint32_t id;
+ *   uint32_t type;
+ *   uint32_t size;
+ *   uint8_t data[];
+ * } avos_msg_t;
+ * </pre>
+ * Strings are NUL terminated, only int, int64, bool and string entries are supported.
+ */
+public class MetadataRecord implements Parcelable {
+    private static final String TAG = "MetadataRecord";
+
+    private static final int AVOS_MSG_TYPE_INT = 0;
+    private static final int AVOS_MSG_TYPE_INT64 = 1;
+    private static final int AVOS_MSG_TYPE_BOOL = 2;
+    private static final int AVOS_MSG_TYPE_STR = 3;
+
+    private static final int HEADER_SIZE = 12;
+    // index entry: key, type, payload offset, payload size
+    private static final int STRIDE = 4;
+
+    private final byte[] mData;
+    private final ByteBuffer mBuffer;
+    private final int[] mIndex;
+    private final int mCount;
+
+    private MetadataRecord(byte[] data, ByteBuffer buffer, int[] index, int count) {
+        mData = data;
+        mBuffer = buffer;
+        mIndex = index;
+        mCount = count;
+    }
+
+    /** @return a record wrapping the buffer of the native retriever, null if it is malformed */
+    public static MetadataRecord wrap(byte[] data) {
+        if (data == null)
+            return null;
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.nativeOrder());
+        // a record holds a few dozen entries, grown if needed
+        int[] index = new int[32 * STRIDE];
+        int count = 0;
+        int pos = 0;
+        while (pos < data.length) {
+            if (data.length - pos < HEADER_SIZE) {
+                Log.e(TAG, "Truncated entry header");
+                return null;
+            }
+            final int key = buffer.getInt(pos);
+            final int type = buffer.getInt(pos + 4);
+            int size = buffer.getInt(pos + 8);
+            pos += HEADER_SIZE;
+            switch (type) {
+                case AVOS_MSG_TYPE_INT:
+                case AVOS_MSG_TYPE_BOOL:
+                    size = 4;
+                    break;
+                case AVOS_MSG_TYPE_INT64:
+                    size = 8;
+                    break;
+                case AVOS_MSG_TYPE_STR:
+                    if (size < 1) {
+                        Log.e(TAG, "Invalid string size " + size);
+                        return null;
+                    }
+                    break;
+                default:
+                    Log.e(TAG, "Unsupported metadata type " + type);
+                    return null;
+            }
+            if (size > data.length - pos) {
+                Log.e(TAG, "Truncated entry " + key);
+                return null;
+            }
+            if (find(index, count, key) >= 0) {
+                Log.e(TAG, "Duplicate metadata ID found");
+                return null;
+            }
+            if ((count + 1) * STRIDE > index.length) {
+                int[] grown = new int[index.length * 2];
+                System.arraycopy(index, 0, grown, 0, count * STRIDE);
+                index = grown;
+            }
+            final int i = count * STRIDE;
+            index[i] = key;
+            index[i + 1] = type;
+            index[i + 2] = pos;
+            index[i + 3] = size;
+            count++;
+            pos += size;
+        }
+        return new MetadataRecord(data, buffer, index, count);
+    }
+
+    // linear scan, records are small and keys are read once
+    private static int find(int[] index, int count, int key) {
+        for (int i = 0; i < count * STRIDE; i += STRIDE) {
+            if (index[i] == key)
+                return i;
+        }
+        return -1;
+    }
+
+    private int entry(int key, int expectedType) {
+        final int i = find(mIndex, mCount, key);
+        if (i < 0)
+            throw new IllegalStateException("No metadata " + key);
+        if (mIndex[i + 1] != expectedType)
+            throw new IllegalStateException("Wrong type " + expectedType + " but got " + mIndex[i + 1]);
+        return i;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    /** @return true if a value is present for the given key. */
+    public boolean has(int key) {
+        return find(mIndex, mCount, key) >= 0;
+    }
+
+    // Accessors.
+    // Caller must make sure the key is present using the {@code has}
+    // method otherwise an IllegalStateException will occur.
+
+    public String getString(int key) {
+        final int i = entry(key, AVOS_MSG_TYPE_STR);
+        // no trailing '\0'
+        return new String(mData, mIndex[i + 2], mIndex[i + 3] - 1, StandardCharsets.UTF_8);
+    }
+
+    public int getInt(int key) {
+        return mBuffer.getInt(mIndex[entry(key, AVOS_MSG_TYPE_INT) + 2]);
+    }
+
+    public long getLong(int key) {
+        return mBuffer.getLong(mIndex[entry(key, AVOS_MSG_TYPE_INT64) + 2]);
+    }
+
+    public boolean getBoolean(int key) {
+        return mBuffer.getInt(mIndex[entry(key, AVOS_MSG_TYPE_BOOL) + 2]) != 0;
+    }
+
+    public static final Parcelable.Creator<MetadataRecord> CREATOR
+            = new Parcelable.Creator<MetadataRecord>() {
+        public MetadataRecord createFromParcel(Parcel p) {
+            // both ends run on the same device, native byte order holds
+            return wrap(p.createByteArray());
+        }
+        public MetadataRecord[] newArray(int size) {
+            return new MetadataRecord[size];
+        }
+    };
+
+    public int describeContents() {
+        return 0;
+    }
+
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeByteArray(mData);
+    }
+}
@@ -60,8 +60,9 @@ public class SmbProxy extends Proxy{
             } catch (Exception e) {
                 e.printStackTrace();
             }
+            // player range requests are served from the block cache when possible
             if(file != null)
-                mStream = new StreamOverHttp(file, mimeType);
+                mStream = new StreamOverHttp(CachedFile2.wrap(file), mimeType);
             else
                 mStream = new StreamOverHttp(mUri, mimeType);
         } catch (IOException e) {
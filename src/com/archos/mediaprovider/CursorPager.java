@@ -0,0 +1,257 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediaprovider;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.provider.BaseColumns;
+import android.provider.MediaStore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Keyset pagination over a content provider query: each page is queried with "_id > last _id of the
+ * previous page ORDER BY _id LIMIT pageSize". Pages never exceed the CursorWindow limit and every row
+ * is returned once, whatever is inserted, updated or deleted by the caller while it processes them.
+ * The next page is queried in the background while the current one is processed.
+ * <pre>
+ * CursorPager pager = new CursorPager(cr, uri, projection, selection, selectionArgs, CursorPager.DEFAULT_PAGE_SIZE);
+ * try {
+ *     Cursor c;
+ *     while ((c = pager.next()) != null)
+ *         while (c.moveToNext())
+ *             ...
+ * } finally {
+ *     pager.close();
+ * }
+ * </pre>
+ * Pages are owned by the pager: a page is closed by the next call to {@link #next()} or by {@link #close()}.
+ */
+public class CursorPager implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(CursorPager.class);
+
+    public static final int DEFAULT_PAGE_SIZE = 2000;
+
+    private static final Metrics.Histogram sPageLatency = Metrics.histogram("cursorpager.page");
+    private static final Metrics.Counter sRows = Metrics.counter("cursorpager.rows");
+
+    private static final ExecutorService sPrefetchExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "CursorPager");
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    });
+
+    private final ContentResolver mCr;
+    private final Uri mUri;
+    private final String[] mProjection;
+    private final String mSelection;
+    private final String[] mSelectionArgs;
+    private final int mPageSize;
+    private final int mIdColumn;
+    private boolean mPrefetch = true;
+
+    private Cursor mCurrent;
+    private Future<Cursor> mNext;
+    private long mLastId = Long.MIN_VALUE;
+    private boolean mDone;
+
+    private int mPages;
+    private long mRows;
+    private volatile long mQueryTime;
+    private long mWaitTime;
+    private final long mStart = SystemClock.elapsedRealtime();
+
+    /**
+     * @param projection only what is used, _id is added if missing
+     */
+    public CursorPager(ContentResolver cr, Uri uri, String[] projection, String selection,
+            String[] selectionArgs, int pageSize) {
+        mCr = cr;
+        mUri = uri;
+        int idColumn = projection == null ? -1 : Arrays.asList(projection).indexOf(BaseColumns._ID);
+        if (projection != null && idColumn < 0) {
+            idColumn = projection.length;
+            projection = Arrays.copyOf(projection, projection.length + 1);
+            projection[idColumn] = BaseColumns._ID;
+        }
+        mProjection = projection;
+        mIdColumn = idColumn;
+        mSelection = selection;
+        mSelectionArgs = selectionArgs;
+        mPageSize = pageSize;
+    }
+
+    /** pages are queried on demand only, for loops where rows ahead can change while a page is processed */
+    public CursorPager setPrefetch(boolean prefetch) {
+        mPrefetch = prefetch;
+        return this;
+    }
+
+    /** @return the next page positioned before its first row, or null when done */
+    public Cursor next() {
+        closeCurrent();
+        if (mDone)
+            return null;
+        Cursor c;
+        if (mNext != null) {
+            long start = SystemClock.elapsedRealtime();
+            c = await(mNext);
+            mNext = null;
+            mWaitTime += SystemClock.elapsedRealtime() - start;
+        } else {
+            c = query(mLastId);
+        }
+        int count = c != null ? c.getCount() : 0;
+        if (count == 0) {
+            if (c != null) c.close();
+            mDone = true;
+            logStats();
+            return null;
+        }
+        int idColumn = mIdColumn >= 0 ? mIdColumn : c.getColumnIndexOrThrow(BaseColumns._ID);
+        // ordered by _id: the last row holds the key of the next page
+        c.moveToLast();
+        mLastId = c.getLong(idColumn);
+        c.moveToPosition(-1);
+        mPages++;
+        mRows += count;
+        sRows.add(count);
+        // a short page is the last one
+        if (count < mPageSize) {
+            mDone = true;
+            logStats();
+        } else if (mPrefetch) {
+            final long from = mLastId;
+            mNext = sPrefetchExecutor.submit(new Callable<Cursor>() {
+                @Override
+                public Cursor call() {
+                    return query(from);
+                }
+            });
+        }
+        mCurrent = c;
+        return c;
+    }
+
+    private Cursor query(long fromId) {
+        final long start = SystemClock.elapsedRealtime();
+        String selection = BaseColumns._ID + ">" + fromId;
+        if (mSelection != null && !mSelection.isEmpty())
+            selection = "(" + mSelection + ") AND " + selection;
+        final String order = BaseColumns._ID + " ASC";
+        Cursor c;
+        if (MediaStore.AUTHORITY.equals(mUri.getAuthority())) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) { // API>=30 requires bundle to LIMIT
+                Bundle queryArgs = new Bundle();
+                queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, selection);
+                queryArgs.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, mSelectionArgs);
+                queryArgs.putStringArray(ContentResolver.QUERY_ARG_SORT_COLUMNS, new String[]{BaseColumns._ID});
+                queryArgs.putInt(ContentResolver.QUERY_ARG_SORT_DIRECTION, ContentResolver.QUERY_SORT_DIRECTION_ASCENDING);
+                queryArgs.putInt(ContentResolver.QUERY_ARG_LIMIT, mPageSize);
+                c = mCr.query(mUri, mProjection, queryArgs, null);
+            } else {
+                c = mCr.query(mUri, mProjection, selection, mSelectionArgs, order + " LIMIT " + mPageSize);
+            }
+        } else {
+            // our providers take the limit as query parameter
+            Uri uri = mUri.buildUpon().appendQueryParameter("limit", String.valueOf(mPageSize)).build();
+            c = mCr.query(uri, mProjection, selection, mSelectionArgs, order);
+        }
+        // fills the window here, i.e. on the prefetch thread
+        if (c != null)
+            c.getCount();
+        mQueryTime += sPageLatency.stop(start);
+        return c;
+    }
+
+    private Cursor await(Future<Cursor> next) {
+        try {
+            return next.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(next);
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static void cancel(final Future<Cursor> next) {
+        if (next.cancel(false))
+            return;
+        // the query cannot be interrupted, close its result whenever it is there
+        sPrefetchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Cursor c = next.get();
+                    if (c != null) c.close();
+                } catch (InterruptedException | ExecutionException ignored) {
+                    // nothing to close
+                }
+            }
+        });
+    }
+
+    private void closeCurrent() {
+        if (mCurrent != null) {
+            mCurrent.close();
+            mCurrent = null;
+        }
+    }
+
+    private void logStats() {
+        log.debug("logStats: " + mUri + " " + mRows + " rows in " + mPages + " pages, queries " + mQueryTime +
+                "ms, waited " + mWaitTime + "ms, total " + (SystemClock.elapsedRealtime() - mStart) + "ms");
+    }
+
+    /** number of rows returned so far */
+    public long getRowCount() {
+        return mRows;
+    }
+
+    @Override
+    public void close() {
+        closeCurrent();
+        if (mNext != null) {
+            cancel(mNext);
+            mNext = null;
+        }
+        if (!mDone) {
+            mDone = true;
+            logStats();
+        }
+    }
+}
@@ -16,19 +16,33 @@ package com.archos.mediaprovider;
 
 import android.app.Service;
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Message;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.util.Log;
 
 import com.archos.medialib.IMediaMetadataRetriever;
 import com.archos.medialib.MediaFactory;
 import com.archos.medialib.MediaMetadata;
+import com.archos.medialib.MetadataRecord;
+import com.archos.medialib.SmbProxy;
+
+import java.util.List;
 
 public class MediaRetrieverService extends Service {
 
     private static final String TAG = "MediaRetrieverService";
+    private static final boolean DBG = false;
 
     private static final int TIMEOUT_MS = 6000;
+    // a retriever is reused for that many local files before it is recreated
+    private static final int RETRIEVER_MAX_USES = 50;
+
+    private static final int MSG_TIMEOUT = 0;
+    // a hung native retriever cannot be stopped, the client sees the death and skips the file
     private final Handler mHandler = new Handler() {
         public void handleMessage(Message msg) {
             Runtime.getRuntime().exit(-1);
@@ -39,6 +53,10 @@ public class MediaRetrieverService extends Service {
         public MediaMetadata getMetadata(String path) {
             return MediaRetrieverService.this.getMetadata(path);
         }
+
+        public int getMetadataBatch(List<String> paths, IMediaRetrieverCallback callback) throws RemoteException {
+            return MediaRetrieverService.this.getMetadataBatch(paths, callback);
+        }
     };
 
     @Override
@@ -47,7 +65,8 @@ public class MediaRetrieverService extends Service {
     }
 
     public MediaMetadata getMetadata(String path) {
-        mHandler.sendEmptyMessageDelayed(0, TIMEOUT_MS);
+        final Object timeout = new Object();
+        mHandler.sendMessageDelayed(mHandler.obtainMessage(MSG_TIMEOUT, timeout), TIMEOUT_MS);
         IMediaMetadataRetriever retriever = MediaFactory.createMetadataRetriever(this);
         try {
             retriever.setDataSource(path);
@@ -56,12 +75,62 @@ public class MediaRetrieverService extends Service {
             // something failed, return null instead
             return null;
         } finally {
-            mHandler.removeMessages(0);
-            try {
-                retriever.release();
-            } catch (Throwable t) {
-                // Ignore failures while cleaning up.
+            mHandler.removeMessages(MSG_TIMEOUT, timeout);
+            release(retriever);
+        }
+    }
+
+    /**
+     * Probes the files in order and reports each result to the callback as soon as it is known,
+     * null metadata when probing failed. Each file has its own timeout.
+     * @return the number of files probed
+     */
+    public int getMetadataBatch(List<String> paths, IMediaRetrieverCallback callback) throws RemoteException {
+        final long start = SystemClock.elapsedRealtime();
+        final Object timeout = new Object();
+        IMediaMetadataRetriever retriever = null;
+        int uses = 0;
+        try {
+            for (int i = 0; i < paths.size(); i++) {
+                final String path = paths.get(i);
+                MetadataRecord metadata = null;
+                mHandler.sendMessageDelayed(mHandler.obtainMessage(MSG_TIMEOUT, timeout), TIMEOUT_MS);
+                try {
+                    if (retriever == null) {
+                        retriever = MediaFactory.createMetadataRetriever(this);
+                        uses = 0;
+                    }
+                    retriever.setDataSource(path);
+                    metadata = retriever.getMetadataRecord();
+                    uses++;
+                } catch (Throwable t) {
+                    // the state of a failed retriever is unknown, start over with a new one
+                    release(retriever);
+                    retriever = null;
+                } finally {
+                    mHandler.removeMessages(MSG_TIMEOUT, timeout);
+                }
+                // remote sources are streamed through a proxy owned by the retriever, don't keep it around
+                if (retriever != null && (uses >= RETRIEVER_MAX_USES || SmbProxy.needToStream(Uri.parse(path).getScheme()))) {
+                    release(retriever);
+                    retriever = null;
+                }
+                callback.onMetadata(i, metadata);
             }
+        } finally {
+            release(retriever);
+        }
+        if (DBG) Log.d(TAG, "getMetadataBatch: " + paths.size() + " files in " + (SystemClock.elapsedRealtime() - start) + "ms");
+        return paths.size();
+    }
+
+    private static void release(IMediaMetadataRetriever retriever) {
+        if (retriever == null)
+            return;
+        try {
+            retriever.release();
+        } catch (Throwable t) {
+            // Ignore failures while cleaning up.
         }
     }
 
@@ -21,11 +21,16 @@ import android.content.ServiceConnection;
 import android.os.IBinder;
 import android.os.Looper;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.archos.medialib.MediaMetadata;
+import com.archos.medialib.MetadataRecord;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Client for MediaRetrieverService that handles (dis/re)connection of the service.
@@ -125,6 +130,81 @@ public class MediaRetrieverServiceClient {
         // this method can not be called from the main thread or it would ANR
         assertWorkerThread();
 
+        IMediaRetrieverService delegate = getDelegate();
+        // the following code does not run synchronized, since that would block the ui thread
+        // there is still a chance that we're calling the method while we unbind from the
+        // service. No idea what exactly happens then.
+        try {
+            return delegate.getMetadata(path);
+        } catch (RemoteException e) {
+            if (DBG) Log.d(TAG, "getMetadata KILLED service");
+            // we just killed the service => close gate so next call waits
+            mThreadGate.close();
+            throw e;
+        }
+    }
+
+    public interface BatchCallback {
+        /**
+         * Called on a binder thread for each file, in order.
+         * @param metadata null when extracting metadata failed
+         * @param killedService true if the file killed the Service. Better blacklist it.
+         */
+        void onMetadata(int index, String path, MetadataRecord metadata, boolean killedService);
+    }
+
+    // keeps each transaction well below the binder buffer size
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * Probes all the files with retrievers reused across files, results are streamed to the callback
+     * as each probe completes. A file that kills the Service is reported as such and the batch goes on
+     * with the next files once the Service is back.
+     * @return number of files reported to the callback
+     * @throws ServiceManagementException failed to communicate with the service, remaining files are not reported
+     * @throws InterruptedException when waiting for the service to connect but thread gets interrupted
+     */
+    public int getMetadataBatch(final List<String> paths, final BatchCallback callback) throws InterruptedException,
+            ServiceManagementException {
+
+        // this method can not be called from the main thread or it would ANR
+        assertWorkerThread();
+
+        final long start = SystemClock.elapsedRealtime();
+        // index of the next file to report, updated from binder threads
+        final AtomicInteger next = new AtomicInteger();
+        while (next.get() < paths.size()) {
+            final int offset = next.get();
+            final int end = Math.min(offset + BATCH_SIZE, paths.size());
+            IMediaRetrieverService delegate = getDelegate();
+            try {
+                delegate.getMetadataBatch(new ArrayList<>(paths.subList(offset, end)), new IMediaRetrieverCallback.Stub() {
+                    @Override
+                    public void onMetadata(int index, MetadataRecord metadata) {
+                        int i = offset + index;
+                        callback.onMetadata(i, paths.get(i), metadata, false);
+                        next.set(i + 1);
+                    }
+                });
+                next.set(end);
+            } catch (RemoteException e) {
+                // the file after the last reported one killed the service => close gate so next call waits
+                mThreadGate.close();
+                int hung = next.get();
+                // the service may also die once all the files are reported
+                if (hung < end) {
+                    if (DBG) Log.d(TAG, "getMetadataBatch KILLED service on " + paths.get(hung));
+                    callback.onMetadata(hung, paths.get(hung), null, true);
+                    next.set(hung + 1);
+                }
+            }
+        }
+        if (DBG) Log.d(TAG, "getMetadataBatch: " + paths.size() + " files in " + (SystemClock.elapsedRealtime() - start) + "ms");
+        return paths.size();
+    }
+
+    /** waits for the service to be connected */
+    private IMediaRetrieverService getDelegate() throws InterruptedException, ServiceManagementException {
         // context is nulled once this instance is destroyed
         while (mBindContext != null) {
 
@@ -132,7 +212,7 @@ public class MediaRetrieverServiceClient {
             int result = mThreadGate.pass(1, TimeUnit.MINUTES);
 
             if (result == ThreadGate.CLOSED) {
-                if (DBG) Log.d(TAG, "getMetadata TIMEOUT");
+                if (DBG) Log.d(TAG, "getDelegate TIMEOUT");
                 // this is a timeout
                 throw new ServiceManagementException("Service did not connect & respond in time.");
             }
@@ -147,24 +227,13 @@ public class MediaRetrieverServiceClient {
             if (delegate == null) {
                 // rare corner case:
                 // gate must have been closed immediately after we passed => pass the gate again
-                if (DBG) Log.d(TAG, "getMetadata NULL DELEGATE");
+                if (DBG) Log.d(TAG, "getDelegate NULL DELEGATE");
                 continue;
             }
-
-            // the following code does not run synchronized, since that would block the ui thread
-            // there is still a chance that we're calling the method while we unbind from the
-            // service. No idea what exactly happens then.
-            try {
-                return delegate.getMetadata(path);
-            } catch (RemoteException e) {
-                if (DBG) Log.d(TAG, "getMetadata KILLED service");
-                // we just killed the service => close gate so next call waits
-                mThreadGate.close();
-                throw e;
-            }
+            return delegate;
         }
         // this place can only be reached by unbinding from the service
-        if (DBG) Log.d(TAG, "getMetadata ABORT, unbound");
+        if (DBG) Log.d(TAG, "getDelegate ABORT, unbound");
         throw new ServiceManagementException("Unbound from Service.");
     }
 
@@ -22,10 +22,14 @@ import android.content.ServiceConnection;
 import android.graphics.Bitmap;
 import android.os.Handler;
 import android.os.IBinder;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.RemoteException;
 import android.util.Log;
 import android.widget.Toast;
 
 import com.archos.environment.ArchosUtils;
+import com.archos.medialib.AvosBitmapHelper;
 import com.archos.medialib.IMediaMetadataRetriever;
 import com.archos.medialib.MediaFactory;
 
@@ -41,10 +45,36 @@ public class MediaThumbnailService extends Service {
         ServiceStub(MediaThumbnailService service) {
             mService = service;
         }
+
+        // direct call from this process: the caller keeps the bitmap, it never goes back to the pool
         public Bitmap getThumbnail(String path, int timeUs)
         {
             return mService.getThumbnail(path, timeUs);
         }
+
+        @Override
+        public boolean onTransact(int code, Parcel data, Parcel reply, int flags) throws RemoteException {
+            if (code != TRANSACTION_getThumbnail)
+                return super.onTransact(code, data, reply, flags);
+            // same marshalling as the generated stub, with the frame given back once written
+            data.enforceInterface(getInterfaceDescriptor());
+            String path = data.readString();
+            int timeUs = data.readInt();
+            Bitmap bitmap = mService.getThumbnail(path, timeUs);
+            try {
+                reply.writeNoException();
+                if (bitmap != null) {
+                    reply.writeInt(1);
+                    bitmap.writeToParcel(reply, Parcelable.PARCELABLE_WRITE_RETURN_VALUE);
+                } else {
+                    reply.writeInt(0);
+                }
+            } finally {
+                // the reply holds a copy of the pixels now, the frame can take the next thumbnail
+                AvosBitmapHelper.release(bitmap);
+            }
+            return true;
+        }
     }
 
     private static final int TIMEOUT_MSG = 0;
@@ -0,0 +1,339 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediaprovider;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import androidx.preference.PreferenceManager;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Registry of the counters, gauges and latency histograms of the scan, import and scrape pipelines.
+ * Always on: recording is a few atomic operations, nothing is formatted until {@link #dump()} or a
+ * periodic snapshot to a file ({@link #startSnapshots(File, long)}) asks for it. Snapshots to a .json file
+ * use {@link #dumpJson()}, to be compared between releases.
+ * Names are dot separated, prefixed with the component, e.g. "import.probe".
+ * <pre>
+ * private static final Metrics.Histogram sScanLatency = Metrics.histogram("netscan.scan");
+ * long start = Metrics.now();
+ * ...
+ * sScanLatency.stop(start);
+ * </pre>
+ */
+public class Metrics {
+    private static final Logger log = LoggerFactory.getLogger(Metrics.class);
+
+    private static final ConcurrentHashMap<String, Object> sMetrics = new ConcurrentHashMap<String, Object>();
+
+    private static ScheduledExecutorService sSnapshotExecutor;
+    private static ScheduledFuture<?> sSnapshot;
+    private static File sSnapshotFile;
+
+    /** debug preference: when set, the media services keep a json dump in the app files dir */
+    public static final String PREFERENCE_METRICS_SNAPSHOTS = "pref_metrics_snapshots";
+    public static final String SNAPSHOT_FILE = "metrics.json";
+    private static final long SNAPSHOT_PERIOD_MS = 60 * 1000;
+
+    private Metrics() {
+        /* all static */
+    }
+
+    /** value read when dumped, for what is already counted elsewhere */
+    public interface Gauge {
+        long get();
+    }
+
+    public static class Counter {
+        private final AtomicLong mValue = new AtomicLong();
+
+        public void inc() {
+            mValue.incrementAndGet();
+        }
+
+        public void add(long n) {
+            mValue.addAndGet(n);
+        }
+
+        public long get() {
+            return mValue.get();
+        }
+    }
+
+    /** latency histogram in ms with power of two buckets */
+    public static class Histogram {
+        // the last bucket holds everything above 2^22 ms, i.e. more than an hour
+        private static final int BUCKETS = 24;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mSum = new AtomicLong();
+        private final AtomicLong mMax = new AtomicLong();
+
+        public void record(long ms) {
+            // bucket i > 0 holds [2^(i-1), 2^i - 1]
+            final int bucket = ms <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(ms));
+            mBuckets.incrementAndGet(bucket);
+            mCount.incrementAndGet();
+            mSum.addAndGet(ms);
+            long max;
+            while (ms > (max = mMax.get()) && !mMax.compareAndSet(max, ms)) {
+                // retry
+            }
+        }
+
+        /** records the time elapsed since start, as returned by {@link Metrics#now()} */
+        public long stop(long start) {
+            final long duration = SystemClock.elapsedRealtime() - start;
+            record(duration);
+            return duration;
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        public long getSum() {
+            return mSum.get();
+        }
+
+        public long getMax() {
+            return mMax.get();
+        }
+
+        public long getMean() {
+            final long count = mCount.get();
+            return count > 0 ? mSum.get() / count : 0;
+        }
+
+        /** @return upper bound of the bucket holding the quantile p, 0 < p <= 1 */
+        public long getPercentile(double p) {
+            final long count = mCount.get();
+            if (count == 0)
+                return 0;
+            final long rank = (long) Math.ceil(p * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += mBuckets.get(i);
+                if (seen >= rank)
+                    return Math.min(i == 0 ? 0 : (1L << i) - 1, mMax.get());
+            }
+            return mMax.get();
+        }
+    }
+
+    /** start time for {@link Histogram#stop(long)} */
+    public static long now() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    public static Counter counter(String name) {
+        Object metric = sMetrics.get(name);
+        if (metric == null)
+            metric = register(name, new Counter());
+        return cast(name, metric, Counter.class);
+    }
+
+    public static Histogram histogram(String name) {
+        Object metric = sMetrics.get(name);
+        if (metric == null)
+            metric = register(name, new Histogram());
+        return cast(name, metric, Histogram.class);
+    }
+
+    /** registers a gauge, replaces any gauge of the same name */
+    public static void gauge(String name, Gauge gauge) {
+        Object previous = sMetrics.put(name, gauge);
+        if (previous != null && !(previous instanceof Gauge))
+            throw new IllegalArgumentException(name + " is not a gauge");
+    }
+
+    private static Object register(String name, Object metric) {
+        Object previous = sMetrics.putIfAbsent(name, metric);
+        return previous != null ? previous : metric;
+    }
+
+    private static <T> T cast(String name, Object metric, Class<T> type) {
+        if (!type.isInstance(metric))
+            throw new IllegalArgumentException(name + " is not a " + type.getSimpleName());
+        return type.cast(metric);
+    }
+
+    /** @return every metric, one per line, sorted by name */
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Object> entry : new TreeMap<String, Object>(sMetrics).entrySet()) {
+            sb.append(entry.getKey()).append(' ');
+            Object metric = entry.getValue();
+            if (metric instanceof Counter) {
+                sb.append(((Counter) metric).get());
+            } else if (metric instanceof Gauge) {
+                try {
+                    sb.append(((Gauge) metric).get());
+                } catch (RuntimeException e) {
+                    sb.append("error ").append(e);
+                }
+            } else {
+                Histogram h = (Histogram) metric;
+                sb.append("count=").append(h.getCount())
+                        .append(" mean=").append(h.getMean())
+                        .append(" p50=").append(h.getPercentile(0.5))
+                        .append(" p90=").append(h.getPercentile(0.9))
+                        .append(" p99=").append(h.getPercentile(0.99))
+                        .append(" max=").append(h.getMax())
+                        .append("ms");
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return every metric as a json object keyed by name: counters and gauges are numbers, histograms
+     * objects with count, sum, mean, p50, p90, p99 and max in ms
+     */
+    public static JSONObject dumpJson() {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, Object> entry : new TreeMap<String, Object>(sMetrics).entrySet()) {
+            Object metric = entry.getValue();
+            try {
+                if (metric instanceof Counter) {
+                    json.put(entry.getKey(), ((Counter) metric).get());
+                } else if (metric instanceof Gauge) {
+                    json.put(entry.getKey(), ((Gauge) metric).get());
+                } else {
+                    Histogram h = (Histogram) metric;
+                    JSONObject histogram = new JSONObject();
+                    histogram.put("count", h.getCount());
+                    histogram.put("sum", h.getSum());
+                    histogram.put("mean", h.getMean());
+                    histogram.put("p50", h.getPercentile(0.5));
+                    histogram.put("p90", h.getPercentile(0.9));
+                    histogram.put("p99", h.getPercentile(0.99));
+                    histogram.put("max", h.getMax());
+                    json.put(entry.getKey(), histogram);
+                }
+            } catch (JSONException | RuntimeException e) {
+                log.warn("dumpJson: " + entry.getKey() + " " + e);
+            }
+        }
+        return json;
+    }
+
+    /** writes a dump to file every period, replacing the previous one, until {@link #stopSnapshots()} */
+    public static synchronized void startSnapshots(final File file, long periodMs) {
+        stopSnapshots();
+        sSnapshotFile = file;
+        if (sSnapshotExecutor == null) {
+            sSnapshotExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Metrics");
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        sSnapshot = sSnapshotExecutor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                writeSnapshot(file);
+            }
+        }, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopSnapshots() {
+        if (sSnapshot != null) {
+            sSnapshot.cancel(false);
+            sSnapshot = null;
+        }
+        sSnapshotFile = null;
+    }
+
+    /**
+     * starts writing {@link #SNAPSHOT_FILE} in the app files dir if {@link #PREFERENCE_METRICS_SNAPSHOTS} is set,
+     * keeps the snapshots already running otherwise the scan, import and scrape services would restart them
+     */
+    public static synchronized void startSnapshotsIfEnabled(Context context) {
+        if (!PreferenceManager.getDefaultSharedPreferences(context).getBoolean(PREFERENCE_METRICS_SNAPSHOTS, false))
+            return;
+        File file = new File(context.getFilesDir(), SNAPSHOT_FILE);
+        if (file.equals(sSnapshotFile))
+            return;
+        log.debug("startSnapshotsIfEnabled: writing to " + file);
+        startSnapshots(file, SNAPSHOT_PERIOD_MS);
+    }
+
+    /** logs a dump at the end of a scan, import or scrape */
+    public static void logDump(String what) {
+        if (log.isDebugEnabled())
+            log.debug("logDump: end of " + what + "\n" + dump());
+    }
+
+    /** writes a dump to file, atomically, as json if the file name ends with .json */
+    public static void writeSnapshot(File file) {
+        File tmp = new File(file.getPath() + ".tmp");
+        Writer writer = null;
+        try {
+            writer = new FileWriter(tmp);
+            if (file.getName().endsWith(".json")) {
+                JSONObject json = new JSONObject();
+                json.put("time", System.currentTimeMillis());
+                json.put("uptime", SystemClock.elapsedRealtime());
+                json.put("metrics", dumpJson());
+                writer.write(json.toString());
+            } else {
+                writer.write("# " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date()) +
+                        " uptime " + SystemClock.elapsedRealtime() + "ms\n");
+                writer.write(dump());
+            }
+            writer.close();
+            writer = null;
+            if (!tmp.renameTo(file))
+                log.warn("writeSnapshot: cannot rename " + tmp + " to " + file);
+        } catch (IOException | JSONException e) {
+            log.warn("writeSnapshot: " + e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
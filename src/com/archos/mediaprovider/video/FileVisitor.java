@@ -17,6 +17,7 @@ package com.archos.mediaprovider.video;
 
 import com.archos.filecorelibrary.MetaFile2;
 import com.archos.filecorelibrary.AuthenticationException;
+import com.archos.mediascraper.FolderListingCache;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.SftpException;
 
@@ -71,6 +72,8 @@ public class FileVisitor {
                     try {
                         List<MetaFile2> files  = file.getRawListerInstance().getFileList();
                         if (files != null) {
+                            // nfo and local images lookups of this folder can reuse the listing
+                            FolderListingCache.put(file.getUri(), files);
                             if (listener.onFilesList(files))
                                 for (MetaFile2 subFile : files) {
                                     recurse(subFile, listener, recursionLimit - 1);
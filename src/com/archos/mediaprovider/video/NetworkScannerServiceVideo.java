@@ -59,6 +59,7 @@ import com.archos.mediaprovider.ArchosMediaFile.MediaFileType;
 import com.archos.mediaprovider.ArchosMediaIntent;
 import com.archos.mediaprovider.BulkInserter;
 import com.archos.mediaprovider.CPOExecutor;
+import com.archos.mediaprovider.Metrics;
 import com.archos.mediaprovider.NetworkScanner;
 import com.archos.mediaprovider.video.VideoStore.Files.FileColumns;
 import com.archos.mediaprovider.video.VideoStore.MediaColumns;
@@ -69,8 +70,12 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -95,6 +100,13 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
 
     private static final Logger log = LoggerFactory.getLogger(NetworkScannerServiceVideo.class);
 
+    private static final Metrics.Histogram sScanLatency = Metrics.histogram("netscan.scan");
+    private static final Metrics.Histogram sSubtitlesLatency = Metrics.histogram("netscan.subtitles");
+    private static final Metrics.Counter sInserted = Metrics.counter("netscan.inserted");
+    private static final Metrics.Counter sUpdated = Metrics.counter("netscan.updated");
+    private static final Metrics.Counter sDeleted = Metrics.counter("netscan.deleted");
+    private static final Metrics.Counter sSubtitles = Metrics.counter("netscan.subtitles_added");
+
     private static final boolean SCAN_MEDIA_ONLY = true;
 
     private static final int RECURSION_LIMIT =  15;
@@ -223,6 +235,7 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
         mHandler = new Handler(looper, this);
 
         mBlacklist = Blacklist.getInstance(this);
+        Metrics.startSnapshotsIfEnabled(this);
     }
 
     @Override
@@ -237,6 +250,7 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
         if(mRecordEndOfScanPreference!=null) //time to set end of scan
             PreferenceManager.getDefaultSharedPreferences(this).edit().putLong(mRecordEndOfScanPreference, System.currentTimeMillis()).apply();
         log.debug("onDestroy");
+        Metrics.logDump("scan");
         // remove handler
         mHandlerThread.quit();
         nm.cancel(NOTIFICATION_ID);
@@ -341,7 +355,7 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
         ContentResolver cr = getContentResolver();
 
         String path = data.toString();
-        String[] selectionArgs = { path };
+        String[] selectionArgs = getInFolderArgs(path);
         // send out a sticky broadcast telling the world that we started scanning
         Intent scannerIntent = new Intent(ArchosMediaIntent.ACTION_VIDEO_SCANNER_SCAN_STARTED, data);
         scannerIntent.setPackage(ArchosUtils.getGlobalContext().getPackageName());
@@ -388,13 +402,27 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
         }
     }
     private static int mFoundFiles = 0;
-    private static final String IN_FOLDER_SELECT = MediaColumns.DATA + " LIKE ?||'%'";
+    // case insensitive prefix match like before (smb servers and hosts ignore case), with _ and % of the
+    // paths escaped: sqlite runs it as a range on files_scanned_path_index (NOCASE) instead of a full scan
+    private static final String IN_FOLDER_SELECT = MediaColumns.DATA + " LIKE ? ESCAPE '\\'";
+
+    /** @return the argument of IN_FOLDER_SELECT for paths starting with prefix */
+    private static String[] getInFolderArgs(String prefix) {
+        StringBuilder pattern = new StringBuilder(prefix.length() + 8);
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            if (c == '\\' || c == '%' || c == '_')
+                pattern.append('\\');
+            pattern.append(c);
+        }
+        return new String[] { pattern.append('%').toString() };
+    }
     private static final String SELECT_ID = BaseColumns._ID + "=?";
     /** scans files into our db */
     private void doScan(Uri what) {
         log.debug("doScan " + what);
         mFoundFiles = 0;
-        long start = log.isDebugEnabled() ? System.currentTimeMillis() : 0;
+        long start = Metrics.now();
         MetaFile2 f = null;
         try {
             f = MetaFileFactoryWithUpnp.getMetaFileForUrl(what);
@@ -441,7 +469,7 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
             }
             log.debug("doScan: path identified is " + path);
             // query database for all files we have already in that directory
-            String[] selectionArgs = new String[] { path };
+            String[] selectionArgs = getInFolderArgs(path);
             Cursor prescan = cr.query(VideoStoreInternal.FILES_SCANNED, PrescanItem.PROJECTION, IN_FOLDER_SELECT, selectionArgs, null);
             // hashmap to contain all knows files + data, keyed by path
             HashMap<String, PrescanItem> prescanItemsMap = new HashMap<String, NetworkScannerServiceVideo.PrescanItem>();
@@ -482,8 +510,12 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
             int updateCount = bulkHandler.getUpdatesHandled();
             int deleteCount = bulkHandler.getDeletesHandled();
             log.debug("added:" + insertCount + " modified:" + updateCount + " deleted:" + deleteCount);
+            sInserted.add(insertCount);
+            sUpdated.add(updateCount);
+            sDeleted.add(deleteCount);
 
-            int newSubs = handleSubtitles(cr);
+            int newSubs = handleSubtitles(cr, fileVisitListener.getTouchedBuckets());
+            sSubtitles.add(newSubs);
             log.debug("added subtitles:" + newSubs);
             // send a "done" notification
             WrapperChannelManager.refreshChannels(this);
@@ -499,10 +531,8 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
         else if(mRecordOnFailPreference!=null){
             PreferenceManager.getDefaultSharedPreferences(this).edit().putInt(mRecordOnFailPreference, -1).commit();//unable to reach server
         }
-        if (log.isDebugEnabled()) {
-            long end = System.currentTimeMillis();
-            log.debug("doScan took:" + (end - start) + "ms");
-        }
+        long took = sScanLatency.stop(start);
+        log.debug("doScan took:" + took + "ms");
     }
 
     // ---------------------------------------------------------------------- //
@@ -515,6 +545,8 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
         private final boolean mNfoScanEnabled;
         private final long mServerId;
         private final ArrayList<String> mAlreadyAddedUpnpFiles; //for files analysed DURING scan process
+        // buckets where files were inserted or updated, only those need subtitle association
+        private final HashSet<Integer> mTouchedBuckets = new HashSet<Integer>();
         private int mStorageId;
 
         private final Blacklist mBlacklist;
@@ -594,19 +626,26 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
                 if (Math.abs(knownDate - newDate) > 3 || !file.getUri().toString().equals(existingItem._data)) {
                     log.debug("FileVisitListener.onFile: Updating " + file.getName());
                     // file has changed - add the update
-                    mBulkHandler.addUpdate(new FileScanInfo(file, mStorageId),
-                            existingItem._id);
+                    FileScanInfo update = new FileScanInfo(file, mStorageId);
+                    mTouchedBuckets.add(Integer.valueOf(update.bucket_id));
+                    mBulkHandler.addUpdate(update, existingItem._id);
                 }
             } else if(!mAlreadyAddedUpnpFiles.contains(uniqueId)){
                 // file is new, add as insert
                 log.debug("FileVisitListener.onFile: File is new, serverId=" + mServerId + ", " + file.getUri().toString());
                 mAlreadyAddedUpnpFiles.add(uniqueId); // needed because main difference with usual indexing : a same file can be found twice in one round
-                mBulkHandler.addInsert(new FileScanInfo(file, mStorageId), mServerId);
+                FileScanInfo insert = new FileScanInfo(file, mStorageId);
+                mTouchedBuckets.add(Integer.valueOf(insert.bucket_id));
+                mBulkHandler.addInsert(insert, mServerId);
             }
             else log.debug("FileVisitListener.onFile: File already scanned " + file.getName());
             // nfo are now handled in autoscrapeservice
         }
 
+        public HashSet<Integer> getTouchedBuckets() {
+            return mTouchedBuckets;
+        }
+
         @Override
         public void onOtherType(MetaFile2 file) {
             // ignored
@@ -744,7 +783,15 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
     // ---------------------------------------------------------------------- //
     // -- Subtitle scanner                                                 -- //
     // ---------------------------------------------------------------------- //
-    private static class SubtitleInfo {
+    static class SubtitleInfo {
+        // names starting with a given prefix are contiguous in this order
+        static final Comparator<SubtitleInfo> BY_NAME = new Comparator<SubtitleInfo>() {
+            @Override
+            public int compare(SubtitleInfo a, SubtitleInfo b) {
+                return a.nameNoExt.compareTo(b.nameNoExt);
+            }
+        };
+
         public SubtitleInfo(long id, String accessPath, long size) {
             this.id = id;
             this.accessPath = accessPath;
@@ -801,18 +848,50 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
     private static final String SEL_VIDS_N_SUBS = "bucket_id IN ( SELECT bucket_id FROM files WHERE media_type = 5 )" +
             " AND (media_type = 3 OR media_type = 5)";
     private static final String SEL_NEW_VIDS_N_SUBS = SEL_VIDS_N_SUBS + " AND _id NOT IN (SELECT file_id FROM subtitles)";
+    // bucket ids are ints, they are inlined in the selection by chunks of this size
+    private static final int BUCKETS_PER_QUERY = 500;
+    // each subtitle association is ~0.5kB in size
+    private static final int BULK_LIMIT_SUBS = 1024;
 
-    private static int handleSubtitles(ContentResolver cr) {
+    /**
+     * associates new subtitles to the videos of the same bucket, only buckets in touchedBuckets
+     * (files inserted or updated by this scan) are considered
+     */
+    private static int handleSubtitles(ContentResolver cr, Collection<Integer> touchedBuckets) {
+        if (touchedBuckets.isEmpty())
+            return 0;
+        long start = Metrics.now();
+        BulkInserter inserter = new BulkInserter(SUBS_URI, cr, BULK_LIMIT_SUBS);
+        StringBuilder buckets = new StringBuilder();
+        int count = 0;
+        for (Integer bucketId : touchedBuckets) {
+            if (count > 0) buckets.append(',');
+            buckets.append(bucketId.intValue());
+            if (++count >= BUCKETS_PER_QUERY) {
+                handleSubtitleBuckets(cr, buckets.toString(), inserter);
+                buckets.setLength(0);
+                count = 0;
+            }
+        }
+        if (count > 0)
+            handleSubtitleBuckets(cr, buckets.toString(), inserter);
+        int inserted = inserter.execute();
+        long took = sSubtitlesLatency.stop(start);
+        log.debug("handleSubtitles: " + inserted + " associations in " + touchedBuckets.size()
+                + " buckets took " + took + "ms");
+        return inserted;
+    }
+
+    private static void handleSubtitleBuckets(ContentResolver cr, String bucketList, BulkInserter inserter) {
         Uri uri = VideoStore.Files.getContentUri("external");
         String sortOrder = VideoStore.Video.VideoColumns.BUCKET_ID;
+        String selection = "bucket_id IN (" + bucketList + ") AND " + SEL_NEW_VIDS_N_SUBS;
         // videos need name and id
         List<Pair<String, Long>> videos = new ArrayList<Pair<String, Long>>();
         // subtitles need id, name, size, language, ...
         List<SubtitleInfo> subs = new ArrayList<SubtitleInfo>();
-        // inserts to do
-        List<ContentValues> inserts = new ArrayList<ContentValues>();
 
-        Cursor c = cr.query(uri, PROJ_ID_DATA_SIZE, SEL_NEW_VIDS_N_SUBS, null, sortOrder);
+        Cursor c = cr.query(uri, PROJ_ID_DATA_SIZE, selection, null, sortOrder);
         if (c != null) {
             String lastBucket = null;
             while (c.moveToNext()) {
@@ -823,7 +902,7 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
                 int mediaType = c.getInt(4);
                 // if bucket switches, handle old bucket
                 if (!bucketId.equals(lastBucket)) {
-                    handleSubtitleBucket(videos, subs, inserts);
+                    handleSubtitleBucket(videos, subs, inserter);
                     // update current bucket & empty lists
                     lastBucket = bucketId;
                     videos.clear();
@@ -847,32 +926,44 @@ public class NetworkScannerServiceVideo extends Service implements Handler.Callb
             c.close();
         }
         // handle any remaining videos and subtitles
-        handleSubtitleBucket(videos, subs, inserts);
-
-        // insert new subtitle associations
-        if (inserts.size() > 0) {
-            ContentValues[] values = new ContentValues[inserts.size()];
-            values = inserts.toArray(values);
-            return cr.bulkInsert(SUBS_URI, values);
-        }
-        return 0;
+        handleSubtitleBucket(videos, subs, inserter);
     }
 
-    private static void handleSubtitleBucket(List<Pair<String, Long>> videos,
-            List<SubtitleInfo> subs, List<ContentValues> inserts) {
+    /**
+     * subtitles are sorted by name once, all subtitles starting with a video name then form a
+     * contiguous range found by binary search: O((V + S) log S + matches) instead of O(V * S)
+     */
+    static void handleSubtitleBucket(List<Pair<String, Long>> videos,
+            List<SubtitleInfo> subs, BulkInserter inserter) {
         // no need to iterate over videos when there are no subs
-        if (subs.size() == 0)
+        if (subs.size() == 0 || videos.size() == 0)
             return;
-        // for each video check all subs
+        Collections.sort(subs, SubtitleInfo.BY_NAME);
         for (Pair<String,Long> video : videos) {
-            for (SubtitleInfo subtitle : subs) {
-                if (subtitle.matchesVideo(video.first)) {
-                    inserts.add(subtitle.getForVideo(video.second, video.first));
-                }
+            String videoName = video.first;
+            for (int i = lowerBound(subs, videoName); i < subs.size(); i++) {
+                SubtitleInfo subtitle = subs.get(i);
+                if (!subtitle.matchesVideo(videoName))
+                    break;
+                inserter.add(subtitle.getForVideo(video.second, videoName));
             }
         }
     }
 
+    /** index of the first subtitle whose name is >= name */
+    private static int lowerBound(List<SubtitleInfo> sortedSubs, String name) {
+        int low = 0;
+        int high = sortedSubs.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedSubs.get(mid).nameNoExt.compareTo(name) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
     // ---------------------------------------------------------------------- //
     // -- Utility logic                                                    -- //
     // ---------------------------------------------------------------------- //
@@ -0,0 +1,271 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediaprovider.video;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+
+import com.archos.mediaprovider.DbHolder;
+import com.archos.mediaprovider.Metrics;
+import com.archos.mediaprovider.VideoDb;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent cache of the metadata extracted by MediaRetrieverService, keyed by file identity
+ * (path, size, date_modified), so that files coming back to the scan state unchanged (rescans,
+ * remounts, volume_hidden toggles) are not probed again. Entries are tagged with the version of the
+ * app, and thus of medialib, and are ignored once it changes.
+ * Not thread safe: entries are loaded, used and written back page by page by the import.
+ */
+public class ProbeCache {
+    private static final Logger log = LoggerFactory.getLogger(ProbeCache.class);
+
+    private static final String TABLE = VideoOpenHelper.PROBE_CACHE_TABLE_NAME;
+
+    // bump when what is extracted from MediaMetadata changes
+    private static final int FORMAT_VERSION = 1;
+    // least recently used entries are dropped past that
+    private static final int MAX_ENTRIES = 100000;
+    // sqlite allows 999 arguments per statement
+    private static final int MAX_ARGS = 500;
+
+    private static final String[] PROJECTION = {
+            "_data",            // 0
+            "_size",            // 1
+            "date_modified",    // 2
+            "metadata",         // 3
+    };
+
+    private static final AtomicLong sHits = new AtomicLong();
+    private static final AtomicLong sMisses = new AtomicLong();
+
+    static {
+        Metrics.gauge("probecache.hits", sHits::get);
+        Metrics.gauge("probecache.misses", sMisses::get);
+    }
+
+    private final DbHolder mDbHolder;
+    private final String mVersion;
+
+    private final HashMap<String, Entry> mLoaded = new HashMap<String, Entry>();
+    private final ArrayList<String> mUsed = new ArrayList<String>();
+    private final ArrayList<ContentValues> mPending = new ArrayList<ContentValues>();
+
+    private static class Entry {
+        final long mSize;
+        final long mDateModified;
+        final String mMetadata;
+
+        Entry(long size, long dateModified, String metadata) {
+            mSize = size;
+            mDateModified = dateModified;
+            mMetadata = metadata;
+        }
+    }
+
+    public ProbeCache(Context context) {
+        mDbHolder = VideoDb.getHolder(context);
+        mVersion = FORMAT_VERSION + ":" + getVersionCode(context);
+    }
+
+    private static long getVersionCode(Context context) {
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P)
+                return info.getLongVersionCode();
+            return info.versionCode;
+        } catch (PackageManager.NameNotFoundException e) {
+            log.error("getVersionCode: ", e);
+            return 0;
+        }
+    }
+
+    /** files whose size or date_modified is unknown cannot be identified */
+    public static boolean isCacheable(long size, long dateModified) {
+        return size > 0 && dateModified > 0;
+    }
+
+    /** loads the entries of the files, replaces what was loaded before */
+    public void load(Collection<String> paths) {
+        mLoaded.clear();
+        if (paths.isEmpty())
+            return;
+        final SQLiteDatabase db = mDbHolder.get();
+        Iterator<String> it = paths.iterator();
+        ArrayList<String> args = new ArrayList<String>(MAX_ARGS + 1);
+        args.add(mVersion);
+        while (it.hasNext()) {
+            args.add(it.next());
+            if (args.size() > MAX_ARGS || !it.hasNext()) {
+                String selection = "version=? AND _data IN (" + placeholders(args.size() - 1) + ")";
+                Cursor c = null;
+                try {
+                    c = db.query(TABLE, PROJECTION, selection, args.toArray(new String[0]), null, null, null);
+                    while (c.moveToNext())
+                        mLoaded.put(c.getString(0), new Entry(c.getLong(1), c.getLong(2), c.getString(3)));
+                } catch (SQLException e) {
+                    log.error("load: ", e);
+                } finally {
+                    if (c != null) c.close();
+                }
+                args.subList(1, args.size()).clear();
+            }
+        }
+    }
+
+    /** @return the cached metadata values if the file is unchanged since it was probed, null otherwise */
+    public ContentValues get(String path, long size, long dateModified) {
+        Entry entry = mLoaded.get(path);
+        if (entry != null && entry.mSize == size && entry.mDateModified == dateModified) {
+            ContentValues values = fromJson(entry.mMetadata);
+            if (values != null) {
+                sHits.incrementAndGet();
+                mUsed.add(path);
+                return values;
+            }
+        }
+        sMisses.incrementAndGet();
+        return null;
+    }
+
+    /** caches the metadata values of a file that was just probed, written on {@link #flush()} */
+    public void put(String path, long size, long dateModified, ContentValues values) {
+        if (!isCacheable(size, dateModified))
+            return;
+        ContentValues row = new ContentValues(6);
+        row.put("_data", path);
+        row.put("_size", size);
+        row.put("date_modified", dateModified);
+        row.put("version", mVersion);
+        row.put("metadata", toJson(values));
+        mPending.add(row);
+    }
+
+    /** writes the probed entries and refreshes the use of those that were hit, in one transaction */
+    public void flush() {
+        if (mPending.isEmpty() && mUsed.isEmpty())
+            return;
+        final long now = System.currentTimeMillis();
+        final SQLiteDatabase db = mDbHolder.get();
+        int written = mPending.size();
+        int used = mUsed.size();
+        try {
+            db.beginTransaction();
+            try {
+                for (ContentValues row : mPending) {
+                    row.put("last_used", now);
+                    db.insert(TABLE, null, row);
+                }
+                for (int i = 0; i < mUsed.size(); i += MAX_ARGS) {
+                    List<String> chunk = mUsed.subList(i, Math.min(i + MAX_ARGS, mUsed.size()));
+                    db.execSQL("UPDATE " + TABLE + " SET last_used=" + now + " WHERE _data IN (" +
+                            placeholders(chunk.size()) + ")", chunk.toArray());
+                }
+                if (written > 0)
+                    trim(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLException e) {
+            // the cache is an optimization only
+            log.error("flush: ", e);
+        }
+        mPending.clear();
+        mUsed.clear();
+        log.debug("flush: " + written + " written, " + used + " hits, total hits " + sHits.get() +
+                " misses " + sMisses.get());
+    }
+
+    private static void trim(SQLiteDatabase db) {
+        long excess = DatabaseUtils.queryNumEntries(db, TABLE) - MAX_ENTRIES;
+        if (excess > 0) {
+            db.execSQL("DELETE FROM " + TABLE + " WHERE _data IN (SELECT _data FROM " + TABLE +
+                    " ORDER BY last_used LIMIT " + excess + ")");
+            log.debug("trim: dropped " + excess + " entries");
+        }
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            if (i > 0)
+                sb.append(',');
+            sb.append('?');
+        }
+        return sb.toString();
+    }
+
+    private static String toJson(ContentValues values) {
+        JSONObject json = new JSONObject();
+        try {
+            for (Map.Entry<String, Object> value : values.valueSet()) {
+                json.put(value.getKey(), value.getValue() == null ? JSONObject.NULL : value.getValue().toString());
+            }
+        } catch (JSONException e) {
+            // keys are never null
+            log.error("toJson: ", e);
+        }
+        return json.toString();
+    }
+
+    private static ContentValues fromJson(String metadata) {
+        try {
+            JSONObject json = new JSONObject(metadata);
+            ContentValues values = new ContentValues(json.length());
+            Iterator<String> keys = json.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                if (json.isNull(key))
+                    values.putNull(key);
+                else
+                    values.put(key, json.getString(key));
+            }
+            return values;
+        } catch (JSONException e) {
+            log.error("fromJson: corrupted entry", e);
+            return null;
+        }
+    }
+
+    /** number of files whose probe was skipped thanks to the cache */
+    public static long getHitCount() {
+        return sHits.get();
+    }
+
+    /** number of files that had to be probed */
+    public static long getMissCount() {
+        return sMisses.get();
+    }
+}
@@ -36,6 +36,7 @@ import android.util.Log;
 
 import com.archos.medialib.R;
 import com.archos.mediaprovider.DbHolder;
+import com.archos.mediaprovider.Metrics;
 import com.archos.mediascraper.BaseTags;
 import com.archos.mediascraper.ScraperImage;
 import com.archos.mediascraper.ScraperImage.Type;
@@ -53,6 +54,8 @@ public class ScraperProvider extends ContentProvider {
     private static final String TAG = "ScraperProvider";
     private static final boolean DBG = false;
 
+    private static final Metrics.Histogram sQueryLatency = Metrics.histogram("scraperprovider.query");
+
     // using offset to avoid collision with mediaprovider's matcher
     public static final int SCRAPER_PROVIDER_OFFSET = 10000;
 
@@ -1060,6 +1063,7 @@ public class ScraperProvider extends ContentProvider {
 
         if(DBG) Log.d(TAG, "Query handling ended.");
         SQLiteDatabase db = mDbHolder.get();
+        final long start = Metrics.now();
         // TODO: try/catch used but this needs fixing!
         try {
             c = qb.query(db, projection, selection, selectionArgs, null,
@@ -1072,6 +1076,12 @@ public class ScraperProvider extends ContentProvider {
             // Tell the cursor what uri to watch, so it knows when its source data changes
             c.setNotificationUri(mCr, uri);
             c.respond(extras);
+            // the joins only run when the first window is filled: what any caller does first
+            c.getCount();
+            long took = sQueryLatency.stop(start);
+            if (VideoProvider.isSlowQuery(took))
+                VideoProvider.logQueryPlan(db, qb.buildQuery(projection, selection, null, null, sortOrder, null),
+                        selectionArgs, took);
         }
         return c;
     }
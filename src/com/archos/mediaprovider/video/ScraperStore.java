@@ -427,6 +427,8 @@ public final class ScraperStore {
         public static final String POSTER_THUMB_FILE = "m_coll_po_thumb_file";
         public static final String BACKDROP_THUMB_URL = "m_coll_bd_thumb_url";
         public static final String BACKDROP_THUMB_FILE = "m_coll_bd_thumb_file";
+        /** time in ms of the last successful refresh from tmdb, 0 if never refreshed */
+        public static final String LAST_UPDATED = "m_coll_last_updated";
         public static class URI {
             public static final Uri BASE = Uri.parse(CONTENT_AUTHORITY + "/tags/moviecollections");
             public static final Uri BY_COLLECTION_ID = Uri.parse(CONTENT_AUTHORITY + "/tags/moviecollections/byremote");
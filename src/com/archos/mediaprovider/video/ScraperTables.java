@@ -1309,5 +1309,10 @@ public final class ScraperTables {
             db.execSQL("CREATE INDEX WRITERS_EPISODE_idx ON WRITERS_EPISODE(writer_writers)");
             db.execSQL("CREATE INDEX WRITERS_SHOW_idx ON WRITERS_SHOW(writer_writers)");
         }
+        if (toVersion == 45) {
+            log.debug("upgradeTo: " + toVersion);
+            // allows AllCollectionScrapeService to skip collections refreshed recently
+            db.execSQL("ALTER TABLE " + MOVIE_COLLECTION_TABLE_NAME + " ADD COLUMN " + ScraperStore.MovieCollections.LAST_UPDATED + " INTEGER DEFAULT (0)");
+        }
     }
 }
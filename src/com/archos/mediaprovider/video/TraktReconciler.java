@@ -0,0 +1,177 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.mediaprovider.video;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Bundle;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * Applies trakt watched / collection state to the db in one transaction: the ids received from
+ * trakt are loaded in temporary tables and the videos are updated with a single join per kind,
+ * instead of one update (and one change notification) per movie list or show season.
+ * Client side builds a {@link Request}, provider side is reached through ContentProvider.call.
+ */
+public class TraktReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(TraktReconciler.class);
+
+    public static final String METHOD = "trakt_reconcile";
+
+    private static final String EXTRA_VALUES = "values";
+    private static final String EXTRA_MOVIES = "movies";
+    private static final String EXTRA_SHOWS = "shows";
+    private static final String EXTRA_SEASONS = "seasons";
+    private static final String EXTRA_EPISODES = "episodes";
+    static final String RESULT_COUNT = "count";
+
+    private static final String TEMP_MOVIE = "trakt_sync_movie";
+    private static final String TEMP_EPISODE = "trakt_sync_episode";
+
+    private static final String CREATE_TEMP_MOVIE = "CREATE TEMP TABLE IF NOT EXISTS " + TEMP_MOVIE +
+            " (online_id INTEGER PRIMARY KEY)";
+    private static final String CREATE_TEMP_EPISODE = "CREATE TEMP TABLE IF NOT EXISTS " + TEMP_EPISODE +
+            " (show_online_id INTEGER, season INTEGER, episode INTEGER," +
+            " PRIMARY KEY (show_online_id, season, episode))";
+    private static final String INSERT_MOVIE = "INSERT OR IGNORE INTO " + TEMP_MOVIE +
+            " (online_id) VALUES (?)";
+    private static final String INSERT_EPISODE = "INSERT OR IGNORE INTO " + TEMP_EPISODE +
+            " (show_online_id, season, episode) VALUES (?, ?, ?)";
+
+    private static final String WHERE_MOVIES = "_id IN (SELECT m.video_id FROM " + ScraperTables.MOVIE_TABLE_NAME + " m" +
+            " JOIN " + TEMP_MOVIE + " t ON m." + ScraperStore.Movie.ONLINE_ID + " = t.online_id)";
+    private static final String WHERE_EPISODES = "_id IN (SELECT e.video_id FROM " + ScraperTables.EPISODE_TABLE_NAME + " e" +
+            " JOIN " + ScraperTables.SHOW_TABLE_NAME + " s ON e." + ScraperStore.Episode.SHOW + " = s._id" +
+            " JOIN " + TEMP_EPISODE + " t ON s." + ScraperStore.Show.ONLINE_ID + " = t.show_online_id" +
+            " AND e." + ScraperStore.Episode.SEASON + " = t.season" +
+            " AND e." + ScraperStore.Episode.NUMBER + " = t.episode)";
+
+    private TraktReconciler() {
+        /* all static */
+    }
+
+    /** set of videos known by trakt, all of them get the same values */
+    public static class Request {
+        private final ContentValues mValues;
+        private int[] mMovies = new int[16];
+        private int mMovieCount;
+        private int[] mShows = new int[16];
+        private int[] mSeasons = new int[16];
+        private int[] mEpisodes = new int[16];
+        private int mEpisodeCount;
+
+        public Request(ContentValues values) {
+            mValues = values;
+        }
+
+        public void addMovie(int movieOnlineId) {
+            if (mMovieCount == mMovies.length)
+                mMovies = Arrays.copyOf(mMovies, mMovieCount * 2);
+            mMovies[mMovieCount++] = movieOnlineId;
+        }
+
+        public void addEpisode(int showOnlineId, int season, int episode) {
+            if (mEpisodeCount == mShows.length) {
+                mShows = Arrays.copyOf(mShows, mEpisodeCount * 2);
+                mSeasons = Arrays.copyOf(mSeasons, mEpisodeCount * 2);
+                mEpisodes = Arrays.copyOf(mEpisodes, mEpisodeCount * 2);
+            }
+            mShows[mEpisodeCount] = showOnlineId;
+            mSeasons[mEpisodeCount] = season;
+            mEpisodes[mEpisodeCount] = episode;
+            mEpisodeCount++;
+        }
+
+        public boolean isEmpty() {
+            return mMovieCount == 0 && mEpisodeCount == 0;
+        }
+
+        Bundle toBundle() {
+            Bundle extras = new Bundle();
+            extras.putParcelable(EXTRA_VALUES, mValues);
+            extras.putIntArray(EXTRA_MOVIES, Arrays.copyOf(mMovies, mMovieCount));
+            extras.putIntArray(EXTRA_SHOWS, Arrays.copyOf(mShows, mEpisodeCount));
+            extras.putIntArray(EXTRA_SEASONS, Arrays.copyOf(mSeasons, mEpisodeCount));
+            extras.putIntArray(EXTRA_EPISODES, Arrays.copyOf(mEpisodes, mEpisodeCount));
+            return extras;
+        }
+    }
+
+    /** @return number of videos updated */
+    public static int reconcile(ContentResolver cr, Request request) {
+        if (request.isEmpty())
+            return 0;
+        Bundle result = cr.call(VideoStore.ALL_CONTENT_URI, METHOD, null, request.toBundle());
+        return result != null ? result.getInt(RESULT_COUNT) : 0;
+    }
+
+    /** provider side, notification is left to the caller */
+    static Bundle apply(SQLiteDatabase db, Bundle extras) {
+        long start = System.currentTimeMillis();
+        ContentValues values = extras.getParcelable(EXTRA_VALUES);
+        int[] movies = extras.getIntArray(EXTRA_MOVIES);
+        int[] shows = extras.getIntArray(EXTRA_SHOWS);
+        int[] seasons = extras.getIntArray(EXTRA_SEASONS);
+        int[] episodes = extras.getIntArray(EXTRA_EPISODES);
+        int count = 0;
+        if (values != null && values.size() > 0) {
+            db.beginTransactionNonExclusive();
+            try {
+                db.execSQL(CREATE_TEMP_MOVIE);
+                db.execSQL(CREATE_TEMP_EPISODE);
+                db.execSQL("DELETE FROM " + TEMP_MOVIE);
+                db.execSQL("DELETE FROM " + TEMP_EPISODE);
+                if (movies != null && movies.length > 0) {
+                    SQLiteStatement insert = db.compileStatement(INSERT_MOVIE);
+                    for (int movie : movies) {
+                        insert.bindLong(1, movie);
+                        insert.executeInsert();
+                    }
+                    insert.close();
+                    count += db.update(VideoOpenHelper.FILES_TABLE_NAME, values, WHERE_MOVIES, null);
+                }
+                if (shows != null && seasons != null && episodes != null && shows.length > 0) {
+                    SQLiteStatement insert = db.compileStatement(INSERT_EPISODE);
+                    for (int i = 0; i < shows.length; i++) {
+                        insert.bindLong(1, shows[i]);
+                        insert.bindLong(2, seasons[i]);
+                        insert.bindLong(3, episodes[i]);
+                        insert.executeInsert();
+                    }
+                    insert.close();
+                    count += db.update(VideoOpenHelper.FILES_TABLE_NAME, values, WHERE_EPISODES, null);
+                }
+                db.execSQL("DELETE FROM " + TEMP_MOVIE);
+                db.execSQL("DELETE FROM " + TEMP_EPISODE);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        log.debug("apply: " + (movies != null ? movies.length : 0) + " movies, " + (shows != null ? shows.length : 0)
+                + " episodes -> " + count + " videos updated in " + (System.currentTimeMillis() - start) + "ms");
+        Bundle result = new Bundle();
+        result.putInt(RESULT_COUNT, count);
+        return result;
+    }
+}
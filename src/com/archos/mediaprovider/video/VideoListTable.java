@@ -0,0 +1,353 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediaprovider.video;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+
+import com.archos.mediaprovider.SQLiteUtils;
+import com.archos.mediaprovider.video.VideoStore.Video.VideoColumns;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+
+/**
+ * Materialized copy of the columns of the video view that list screens use, so that browsing does
+ * not evaluate the joins of files with the scraper and image tables on every (re)query.
+ * Rows are refreshed from the view by triggers whenever a table the view reads from changes, i.e.
+ * the table holds exactly what the view returns for these columns.
+ * Any change of the video view must be followed by {@link #rebuild(SQLiteDatabase)}.
+ * VideoProvider only routes queries here while its PREFERENCE_DENORM_LIST_QUERIES is set, turning it
+ * off sends every query back to the view should the triggers miss a change.
+ */
+public class VideoListTable {
+    private static final Logger log = LoggerFactory.getLogger(VideoListTable.class);
+
+    public static final String TABLE_NAME = "video_denorm";
+    // name of the table in database version 48 and 49, too close to ListTables.VIDEO_LIST_TABLE
+    private static final String TABLE_NAME_V48 = "video_list";
+
+    // columns of files that make it into the view, a files update touching none of them is ignored
+    private static final String[] FILES_COLUMNS = {
+            "_data",
+            "_display_name",
+            "_size",
+            "mime_type",
+            "date_added",
+            "date_modified",
+            "title",
+            "archos_title",
+            "duration",
+            "bucket_id",
+            "bucket_display_name",
+            "bookmark",
+            "width",
+            "height",
+            "Archos_bookmark",
+            "Archos_lastTimePlayed",
+            "ArchosMediaScraper_id",
+            "ArchosMediaScraper_type",
+            "Archos_numberOfSubtitleTracks",
+            "subtitle_count_ext",
+            "Archos_numberOfAudioTracks",
+            "Archos_hideFile",
+            "Archos_hiddenByUser",
+            "Archos_traktSeen",
+            "Archos_traktLibrary",
+            "Archos_traktResume",
+            "Archos_videoStereo",
+            "Archos_videoDefinition",
+            VideoColumns.ARCHOS_CALCULATED_VIDEO_FORMAT,
+            VideoColumns.ARCHOS_CALCULATED_BEST_AUDIOTRACK_FORMAT,
+            VideoColumns.ARCHOS_GUESSED_VIDEO_FORMAT,
+            VideoColumns.ARCHOS_GUESSED_AUDIO_FORMAT,
+            "autoscrape_status",
+            // in the where clause of the view
+            "media_type",
+            "volume_hidden",
+            "Archos_smbserver",
+    };
+
+    // columns of the view copied, plot, cast and crew are left to the view
+    private static final String[] COLUMNS = {
+            "_id",
+            "_data",
+            "_display_name",
+            "_size",
+            "mime_type",
+            "date_added",
+            "date_modified",
+            "title",
+            "duration",
+            "bucket_id",
+            "bucket_display_name",
+            "bookmark",
+            "width",
+            "height",
+            "Archos_bookmark",
+            "Archos_lastTimePlayed",
+            "ArchosMediaScraper_id",
+            "ArchosMediaScraper_type",
+            "Archos_numberOfSubtitleTracks",
+            "subtitle_count_ext",
+            "Archos_numberOfAudioTracks",
+            "Archos_hideFile",
+            "Archos_hiddenByUser",
+            "Archos_traktSeen",
+            "Archos_traktLibrary",
+            "Archos_traktResume",
+            "Archos_videoStereo",
+            "Archos_videoDefinition",
+            VideoColumns.ARCHOS_CALCULATED_VIDEO_FORMAT,
+            VideoColumns.ARCHOS_CALCULATED_BEST_AUDIOTRACK_FORMAT,
+            VideoColumns.ARCHOS_GUESSED_VIDEO_FORMAT,
+            VideoColumns.ARCHOS_GUESSED_AUDIO_FORMAT,
+            "autoscrape_status",
+            "m_id",
+            "s_id",
+            "e_id",
+            "scraper_name",
+            "m_name",
+            "s_name",
+            "e_name",
+            "e_season",
+            "e_episode",
+            "e_aired",
+            "s_premiered",
+            "m_year",
+            "rating",
+            "online_id",
+            VideoColumns.SCRAPER_VIDEO_ONLINE_ID,
+            "imdb_id",
+            "content_rating",
+            "cover",
+            "m_cover",
+            "e_cover",
+            "s_cover",
+            "poster_id",
+            "po_thumb_url",
+            "po_thumb_file",
+            "po_large_url",
+            "po_large_file",
+            "e_po_large_file",
+            "s_po_large_file",
+            VideoColumns.SCRAPER_E_PICTURE,
+            VideoColumns.NOVA_PINNED,
+            "m_coll_id",
+            "m_coll_name",
+            "m_coll_po_large_file",
+    };
+
+    private static final String COLUMN_LIST = TextUtils.join(", ", COLUMNS);
+    private static final HashSet<String> COLUMN_SET = new HashSet<>();
+    static {
+        for (String column : COLUMNS)
+            COLUMN_SET.add(column.toLowerCase(Locale.ROOT));
+    }
+
+    // keywords and functions that can appear in the clauses of a query on the table, SELECT and FROM
+    // are left out on purpose: sub selects read other tables
+    private static final HashSet<String> SQL_WORDS = new HashSet<>(Arrays.asList(
+            "and", "or", "not", "null", "is", "isnull", "notnull", "in", "like", "glob", "escape", "between",
+            "exists", "true", "false", "case", "when", "then", "else", "end", "distinct", "cast", "collate",
+            "nocase", "binary", "rtrim", "localized", "unicode", "asc", "desc", "integer", "int", "text",
+            "real", "numeric", "count", "max", "min", "sum", "avg", "total", "group_concat", "ifnull",
+            "coalesce", "nullif", "iif", "lower", "upper", "length", "substr", "trim", "ltrim", "replace",
+            "instr", "abs", "round", "random", "strftime", "date", "datetime", "julianday"));
+
+    private static final String[] INDEXES = {
+            "CREATE INDEX IF NOT EXISTS video_denorm_title_idx ON " + TABLE_NAME + "(title)",
+            "CREATE INDEX IF NOT EXISTS video_denorm_movie_idx ON " + TABLE_NAME + "(m_id)",
+            "CREATE INDEX IF NOT EXISTS video_denorm_show_idx ON " + TABLE_NAME + "(s_id, e_season, e_episode)",
+            "CREATE INDEX IF NOT EXISTS video_denorm_last_played_idx ON " + TABLE_NAME + "(Archos_lastTimePlayed)",
+            // AutoScrapeService and TraktService, same as files_not_scraped and files_trakt_resume
+            "CREATE INDEX IF NOT EXISTS video_denorm_not_scraped_idx ON " + TABLE_NAME + "(_id) WHERE ArchosMediaScraper_id = 0",
+            "CREATE INDEX IF NOT EXISTS video_denorm_trakt_resume_idx ON " + TABLE_NAME + "(_id) WHERE Archos_traktResume < 0",
+            // for the triggers to find the files of a poster, backdrop or collection
+            "CREATE INDEX IF NOT EXISTS MOVIE_poster_idx ON MOVIE(m_poster_id)",
+            "CREATE INDEX IF NOT EXISTS MOVIE_backdrop_idx ON MOVIE(m_backdrop_id)",
+            "CREATE INDEX IF NOT EXISTS MOVIE_collection_idx ON MOVIE(m_coll_id)",
+            "CREATE INDEX IF NOT EXISTS EPISODE_poster_idx ON EPISODE(e_poster_id)",
+            "CREATE INDEX IF NOT EXISTS SHOW_poster_idx ON SHOW(s_poster_id)",
+            "CREATE INDEX IF NOT EXISTS SHOW_backdrop_idx ON SHOW(s_backdrop_id)",
+    };
+
+    // trigger name, event, files _ids to refresh
+    private static final String[][] TRIGGERS = {
+            { "files_insert", "AFTER INSERT ON files WHEN NEW.media_type = 3", "NEW._id" },
+            { "files_update", "AFTER UPDATE OF " + TextUtils.join(", ", FILES_COLUMNS) + " ON files", "OLD._id, NEW._id" },
+            { "files_delete", "AFTER DELETE ON files", "OLD._id" },
+            { "movie_insert", "AFTER INSERT ON MOVIE", "NEW.video_id" },
+            { "movie_update", "AFTER UPDATE ON MOVIE", "OLD.video_id, NEW.video_id" },
+            { "movie_delete", "AFTER DELETE ON MOVIE", "OLD.video_id" },
+            { "episode_insert", "AFTER INSERT ON EPISODE", "NEW.video_id" },
+            { "episode_update", "AFTER UPDATE ON EPISODE", "OLD.video_id, NEW.video_id" },
+            { "episode_delete", "AFTER DELETE ON EPISODE", "OLD.video_id" },
+            // a show is inserted before its episodes and deleted after the last one
+            { "show_update", "AFTER UPDATE ON SHOW", "SELECT video_id FROM EPISODE WHERE show_episode = NEW._id" },
+            { "movie_posters_update", "AFTER UPDATE ON movie_posters", "SELECT video_id FROM MOVIE WHERE m_poster_id = NEW._id" },
+            { "movie_posters_delete", "AFTER DELETE ON movie_posters", "SELECT video_id FROM MOVIE WHERE m_poster_id = OLD._id" },
+            { "movie_backdrops_update", "AFTER UPDATE ON movie_backdrops", "SELECT video_id FROM MOVIE WHERE m_backdrop_id = NEW._id" },
+            { "movie_backdrops_delete", "AFTER DELETE ON movie_backdrops", "SELECT video_id FROM MOVIE WHERE m_backdrop_id = OLD._id" },
+            { "show_posters_update", "AFTER UPDATE ON show_posters",
+                    "SELECT video_id FROM EPISODE WHERE e_poster_id = NEW._id OR show_episode IN (SELECT _id FROM SHOW WHERE s_poster_id = NEW._id)" },
+            { "show_posters_delete", "AFTER DELETE ON show_posters",
+                    "SELECT video_id FROM EPISODE WHERE e_poster_id = OLD._id OR show_episode IN (SELECT _id FROM SHOW WHERE s_poster_id = OLD._id)" },
+            { "show_backdrops_update", "AFTER UPDATE ON show_backdrops",
+                    "SELECT video_id FROM EPISODE WHERE show_episode IN (SELECT _id FROM SHOW WHERE s_backdrop_id = NEW._id)" },
+            { "show_backdrops_delete", "AFTER DELETE ON show_backdrops",
+                    "SELECT video_id FROM EPISODE WHERE show_episode IN (SELECT _id FROM SHOW WHERE s_backdrop_id = OLD._id)" },
+            { "collection_update", "AFTER UPDATE ON movie_collection", "SELECT video_id FROM MOVIE WHERE m_coll_id = NEW.m_coll_id" },
+            { "collection_delete", "AFTER DELETE ON movie_collection", "SELECT video_id FROM MOVIE WHERE m_coll_id = OLD.m_coll_id" },
+            { "smb_server_update", "AFTER UPDATE OF active ON " + VideoOpenHelper.SMB_SERVER_TABLE_NAME,
+                    "SELECT _id FROM files WHERE Archos_smbserver = NEW._id" },
+    };
+
+    private VideoListTable() {
+        /* all static */
+    }
+
+    /** creates the table, its triggers and fills it from the video view */
+    public static void create(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_NAME + " AS SELECT " + COLUMN_LIST + " FROM " +
+                VideoOpenHelper.VIDEO_VIEW_NAME + " WHERE 0");
+        db.execSQL("CREATE UNIQUE INDEX video_denorm_id_idx ON " + TABLE_NAME + "(_id)");
+        createIndexes(db);
+        for (String[] trigger : TRIGGERS)
+            db.execSQL(getCreateTrigger(trigger[0], trigger[1], trigger[2]));
+        db.execSQL("INSERT INTO " + TABLE_NAME + " (" + COLUMN_LIST + ") SELECT " + COLUMN_LIST + " FROM " +
+                VideoOpenHelper.VIDEO_VIEW_NAME);
+    }
+
+    /** creates the indexes missing, for the table and its triggers */
+    public static void createIndexes(SQLiteDatabase db) {
+        for (String index : INDEXES)
+            db.execSQL(index);
+    }
+
+    /** drops and recreates everything, for when the video view changes */
+    public static void rebuild(SQLiteDatabase db) {
+        log.debug("rebuild");
+        drop(db, TABLE_NAME);
+        create(db);
+    }
+
+    /** replaces the video_list table of version 48 by its renamed copy */
+    public static void upgradeTo50(SQLiteDatabase db) {
+        drop(db, TABLE_NAME_V48);
+        create(db);
+    }
+
+    /** triggers are on the source tables, dropping the table alone leaves them behind */
+    private static void drop(SQLiteDatabase db, String tableName) {
+        for (String[] trigger : TRIGGERS)
+            SQLiteUtils.dropTrigger(db, tableName + "_" + trigger[0]);
+        SQLiteUtils.dropTable(db, tableName);
+    }
+
+    private static String getCreateTrigger(String name, String event, String ids) {
+        return "CREATE TRIGGER " + TABLE_NAME + "_" + name + " " + event + " BEGIN " +
+                "DELETE FROM " + TABLE_NAME + " WHERE _id IN (" + ids + "); " +
+                "INSERT INTO " + TABLE_NAME + " (" + COLUMN_LIST + ") SELECT " + COLUMN_LIST + " FROM " +
+                VideoOpenHelper.VIDEO_VIEW_NAME + " WHERE _id IN (" + ids + "); " +
+                "END";
+    }
+
+    /**
+     * Checks up front that a query only refers to columns of the table, the view is used otherwise.
+     * Identifiers of the projection, selection, group by, having and sort clauses must be columns,
+     * aliases defined by the projection or sql keywords and functions: anything else (other tables,
+     * sub selects, columns left to the view like plot) sends the query to the view.
+     * @param clauses selection, group by, having, sort, any of them may be null
+     */
+    static boolean canServe(String[] projection, String... clauses) {
+        if (projection == null || projection.length == 0)
+            return false;
+        HashSet<String> aliases = new HashSet<>();
+        for (String column : projection) {
+            // all the columns of the view are wanted
+            if (column == null || column.trim().equals("*") || column.trim().endsWith(".*"))
+                return false;
+            if (!onlyKnownIdentifiers(column, aliases, true))
+                return false;
+        }
+        for (String clause : clauses) {
+            if (clause != null && !onlyKnownIdentifiers(clause, aliases, false))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean onlyKnownIdentifiers(String sql, HashSet<String> aliases, boolean defineAliases) {
+        final int length = sql.length();
+        boolean afterAs = false;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                // string literal, '' is an escaped quote
+                i = sql.indexOf('\'', i + 1);
+                while (i >= 0 && i + 1 < length && sql.charAt(i + 1) == '\'')
+                    i = sql.indexOf('\'', i + 2);
+                if (i < 0)
+                    return false;
+                i++;
+                continue;
+            }
+            String identifier = null;
+            if (c == '"' || c == '`') {
+                int end = sql.indexOf(c, i + 1);
+                if (end < 0)
+                    return false;
+                identifier = sql.substring(i + 1, end);
+                i = end + 1;
+            } else if (Character.isLetter(c) || c == '_') {
+                int end = i + 1;
+                while (end < length && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '_'))
+                    end++;
+                identifier = sql.substring(i, end);
+                i = end;
+            } else if (Character.isDigit(c)) {
+                // number, possibly 1e5 or 0x1f
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.'))
+                    i++;
+                continue;
+            } else if (c == '.') {
+                // qualified name, the table is not ours
+                return false;
+            } else {
+                i++;
+                continue;
+            }
+            String lower = identifier.toLowerCase(Locale.ROOT);
+            if (afterAs) {
+                afterAs = false;
+                if (!defineAliases)
+                    return false;
+                aliases.add(lower);
+            } else if (lower.equals("as")) {
+                afterAs = true;
+            } else if (!COLUMN_SET.contains(lower) && !SQL_WORDS.contains(lower) && !aliases.contains(lower)) {
+                log.trace("onlyKnownIdentifiers: " + identifier + " not in " + TABLE_NAME);
+                return false;
+            }
+        }
+        return true;
+    }
+}
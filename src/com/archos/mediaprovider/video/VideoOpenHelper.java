@@ -46,7 +46,7 @@ public class VideoOpenHelper extends DeleteOnDowngradeSQLiteOpenHelper {
     // that is what onCreate creates
     private static final int DATABASE_CREATE_VERSION = 36; // initial version for v1.0 of nova (archos was 10)
     // that is the current version
-    private static final int DATABASE_VERSION = 44;
+    private static final int DATABASE_VERSION = 50;
     private static final String DATABASE_NAME = "media.db";
 
     // (Integer.MAX_VALUE / 2) rounded to human readable form
@@ -364,6 +364,19 @@ public class VideoOpenHelper extends DeleteOnDowngradeSQLiteOpenHelper {
     // should speed up most queries on Video that contain the typical Archos_hideFile = 0
     private static final String CREATE_FILES_HIDDEN_IDX =
             "CREATE INDEX files_hidden ON " + FILES_TABLE_NAME + " (volume_hidden, media_type, Archos_hideFile)";
+    // network scanner prescan and unscan select a folder with a case insensitive LIKE prefix, which
+    // sqlite only turns into an index range on a NOCASE index
+    private static final String CREATE_FILES_SCANNED_IDX_PATH_V49 =
+            "CREATE INDEX files_scanned_path_index ON " + FILES_SCANNED_TABLE_NAME + " (_data COLLATE NOCASE)";
+    // covers the "bucket_id IN (SELECT bucket_id FROM files WHERE media_type = 5)" subtitle association
+    private static final String CREATE_FILES_SUBTITLES_IDX_V49 =
+            "CREATE INDEX files_subtitles_bucket ON " + FILES_TABLE_NAME + " (bucket_id) WHERE media_type = 5";
+    // AutoScrapeService pages the videos not scraped yet by _id
+    private static final String CREATE_FILES_NOT_SCRAPED_IDX_V49 =
+            "CREATE INDEX files_not_scraped ON " + FILES_TABLE_NAME + " (_id) WHERE ArchosMediaScraper_id = 0 AND media_type = 3";
+    // TraktService looks for the resume points not synced yet
+    private static final String CREATE_FILES_TRAKT_RESUME_IDX_V49 =
+            "CREATE INDEX files_trakt_resume ON " + FILES_TABLE_NAME + " (_id) WHERE Archos_traktResume < 0";
 
     // ------------- ---##[ SMB Server mechanism ]## ---------------------------
     // smb_server table holds server identifier and active state
@@ -383,6 +396,36 @@ public class VideoOpenHelper extends DeleteOnDowngradeSQLiteOpenHelper {
             "CREATE VIEW " + SMB_SERVER_ACTIVE_VIEW_NAME + " AS " +
             "SELECT _id AS Archos_smbserver FROM smb_server WHERE active != 0";
 
+    // ------------- ---##[ Trakt outbound queue ]## ---------------------------
+    // markAs actions waiting to be sent to trakt, one row per action and item (latest wins)
+    public static final String TRAKT_QUEUE_TABLE_NAME = "trakt_queue";
+    private static final String CREATE_TRAKT_QUEUE_TABLE_V46 =
+            "CREATE TABLE " + TRAKT_QUEUE_TABLE_NAME + " (" +
+                    "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "action TEXT NOT NULL," +
+                    "video_id INTEGER NOT NULL DEFAULT -1," +
+                    "m_online_id INTEGER NOT NULL DEFAULT 0," +
+                    "e_online_id INTEGER NOT NULL DEFAULT 0," +
+                    "watched_at INTEGER NOT NULL DEFAULT 0," +
+                    "created INTEGER NOT NULL," +
+                    "attempts INTEGER NOT NULL DEFAULT 0," +
+                    "next_attempt INTEGER NOT NULL DEFAULT 0," +
+                    "UNIQUE (action, m_online_id, e_online_id) ON CONFLICT REPLACE" +
+                    ")";
+
+    // ------------- ---##[ Probe cache ]## ------------------------------------
+    // metadata extracted by MediaRetrieverService, kept while the file is unchanged even if it leaves files
+    public static final String PROBE_CACHE_TABLE_NAME = "probe_cache";
+    private static final String CREATE_PROBE_CACHE_TABLE_V47 =
+            "CREATE TABLE " + PROBE_CACHE_TABLE_NAME + " (" +
+                    "_data TEXT PRIMARY KEY ON CONFLICT REPLACE," +
+                    "_size INTEGER NOT NULL," +
+                    "date_modified INTEGER NOT NULL," +
+                    "version TEXT NOT NULL," +
+                    "metadata TEXT NOT NULL," +
+                    "last_used INTEGER NOT NULL" +
+                    ")";
+
     /* ---------------------------------------------------------------------- */
     /* --                       VIDEO database part                           */
     /* ---------------------------------------------------------------------- */
@@ -1398,6 +1441,29 @@ public class VideoOpenHelper extends DeleteOnDowngradeSQLiteOpenHelper {
         if (oldVersion < 44) { // assign correct storage_id for /storage/AAAA-BBBB instead of 1
             processStorageIdInDB(db);
         }
+        if (oldVersion < 45) {
+            ScraperTables.upgradeTo(db, 45);
+        }
+        if (oldVersion < 46) {
+            db.execSQL(CREATE_TRAKT_QUEUE_TABLE_V46);
+        }
+        if (oldVersion < 47) {
+            db.execSQL(CREATE_PROBE_CACHE_TABLE_V47);
+        }
+        if (oldVersion < 48) {
+            VideoListTable.create(db);
+        }
+        if (oldVersion < 49) {
+            db.execSQL(CREATE_FILES_SCANNED_IDX_PATH_V49);
+            db.execSQL(CREATE_FILES_SUBTITLES_IDX_V49);
+            db.execSQL(CREATE_FILES_NOT_SCRAPED_IDX_V49);
+            db.execSQL(CREATE_FILES_TRAKT_RESUME_IDX_V49);
+            VideoListTable.createIndexes(db);
+        }
+        if (oldVersion >= 48 && oldVersion < 50) {
+            // coming from below 48, the step above has created the table by its new name
+            VideoListTable.upgradeTo50(db);
+        }
     }
 
     private static final String[] PROJECTION = {
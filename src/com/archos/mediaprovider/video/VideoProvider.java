@@ -28,6 +28,7 @@ import android.content.UriMatcher;
 import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.graphics.Bitmap;
 import android.net.Uri;
@@ -50,12 +51,14 @@ import com.archos.filecorelibrary.FileUtils;
 import com.archos.mediacenter.filecoreextension.upnp2.FileEditorFactoryWithUpnp;
 import com.archos.mediacenter.filecoreextension.upnp2.UpnpServiceManager;
 import com.archos.mediacenter.utils.AppState;
+import com.archos.medialib.AvosBitmapHelper;
 import com.archos.medialib.IMediaMetadataRetriever;
 import com.archos.medialib.MediaFactory;
 import com.archos.mediaprovider.ArchosMediaCommon;
 import com.archos.mediaprovider.DbHolder;
 import com.archos.mediaprovider.IMediaThumbnailService;
 import com.archos.mediaprovider.MediaThumbnailService;
+import com.archos.mediaprovider.Metrics;
 import com.archos.environment.NetworkState;
 import com.archos.mediaprovider.VideoDb;
 import com.archos.mediaprovider.video.VideoStore.MediaColumns;
@@ -85,6 +88,17 @@ import io.sentry.SentryLevel;
 public class VideoProvider extends ContentProvider {
     private static final Logger log = LoggerFactory.getLogger(VideoProvider.class);
 
+    // queries of the video view and of ScraperProvider slower than that get their plan logged in debug
+    private static final long SLOW_QUERY_MS = 200;
+
+    private static final Metrics.Histogram sVideoQueryLatency = Metrics.histogram("videoprovider.query_video");
+    private static final Metrics.Histogram sVideoListQueryLatency = Metrics.histogram("videoprovider.query_video_denorm");
+    private static final Metrics.Histogram sBulkInsertLatency = Metrics.histogram("videoprovider.bulk_insert");
+    private static final Metrics.Histogram sScraperBulkInsertLatency = Metrics.histogram("scraperprovider.bulk_insert");
+    private static final Metrics.Histogram sApplyBatchLatency = Metrics.histogram("videoprovider.apply_batch");
+    private static final Metrics.Counter sBulkInsertRows = Metrics.counter("videoprovider.bulk_insert_rows");
+    private static final Metrics.Counter sApplyBatchOperations = Metrics.counter("videoprovider.apply_batch_operations");
+
     private final static boolean SKIP_THUMBNAILS = false;
 
     private DbHolder mDbHolder;
@@ -113,6 +127,9 @@ public class VideoProvider extends ContentProvider {
 
     private static final String IMAGE_THUMB_FOLDER_NAME = "image_thumbs";
     public static final String PREFERENCE_CREATE_REMOTE_THUMBS = "pref_create_remote_thumbs";
+    // list queries answered by VideoListTable, off to query the video view as before
+    public static final String PREFERENCE_DENORM_LIST_QUERIES = "pref_denorm_list_queries";
+    private volatile boolean mDenormListQueries = true;
 
     public VideoProvider() { }
 
@@ -134,10 +151,16 @@ public class VideoProvider extends ContentProvider {
             public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
                 if ("vpn_mobile".equals(key)) {
                     RemoteStateService.start(context);
+                } else if (PREFERENCE_DENORM_LIST_QUERIES.equals(key)) {
+                    mDenormListQueries = sharedPreferences.getBoolean(PREFERENCE_DENORM_LIST_QUERIES, true);
+                    log.debug("onSharedPreferenceChanged: list queries from " +
+                            (mDenormListQueries ? VideoListTable.TABLE_NAME : VideoOpenHelper.VIDEO_VIEW_NAME));
                 }
             }
         };
-        PreferenceManager.getDefaultSharedPreferences(context).registerOnSharedPreferenceChangeListener(mPreferencechChangeListener);
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        mDenormListQueries = preferences.getBoolean(PREFERENCE_DENORM_LIST_QUERIES, true);
+        preferences.registerOnSharedPreferenceChangeListener(mPreferencechChangeListener);
 
         // handles NetworkState changes
         networkState = NetworkState.instance(context);
@@ -326,15 +349,53 @@ public class VideoProvider extends ContentProvider {
             projectionIn = new String[] {};
         }
 
-        Cursor c = qb.query(db, projectionIn, selection,
-                combine(prependArgs, selectionArgs), groupby, having, sort, limit, cancellationSignal);
+        final String[] args = combine(prependArgs, selectionArgs);
+        final long start = Metrics.now();
+        // list queries are answered by the materialized copy of the view when it has all the columns
+        final boolean fromList = mDenormListQueries && table == VIDEO_MEDIA &&
+                VideoListTable.canServe(projectionIn, selection, groupby, having, sort);
+        if (fromList)
+            qb.setTables(VideoListTable.TABLE_NAME);
+        Cursor c = qb.query(db, projectionIn, selection, args, groupby, having, sort, limit, cancellationSignal);
 
         if (c != null) {
             c.setNotificationUri(mCr, uri);
+            if (table == VIDEO_MEDIA || table == VIDEO_MEDIA_ID) {
+                // the view is only evaluated when the first window is filled: what any caller does first
+                c.getCount();
+                long took = (fromList ? sVideoListQueryLatency : sVideoQueryLatency).stop(start);
+                log.trace("query: " + (fromList ? VideoListTable.TABLE_NAME : VideoOpenHelper.VIDEO_VIEW_NAME) +
+                        " " + c.getCount() + " rows in " + took + "ms");
+                if (isSlowQuery(took))
+                    logQueryPlan(db, qb.buildQuery(projectionIn, selection, groupby, having, sort, limit), args, took);
+            }
         }
         return c;
     }
 
+    /** @return true if a query that took that long should get its plan logged */
+    static boolean isSlowQuery(long took) {
+        return took >= SLOW_QUERY_MS && log.isDebugEnabled();
+    }
+
+    /** logs how sqlite runs a slow query, to find the missing indexes */
+    static void logQueryPlan(SQLiteDatabase db, String sql, String[] args, long took) {
+        StringBuilder plan = new StringBuilder();
+        Cursor c = null;
+        try {
+            c = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+            // id, parent, notused, detail
+            final int detail = c.getColumnCount() - 1;
+            while (c.moveToNext())
+                plan.append("\n    ").append(c.getString(detail));
+        } catch (SQLiteException e) {
+            plan.append(" unavailable: ").append(e.getMessage());
+        } finally {
+            if (c != null) c.close();
+        }
+        log.debug("logQueryPlan: " + took + "ms for " + sql + " " + Arrays.toString(args) + plan);
+    }
+
     private static String[] combine(List<String> prepend, String[] userArgs) {
         int presize = prepend.size();
         if (presize == 0) {
@@ -1051,10 +1112,15 @@ public class VideoProvider extends ContentProvider {
         int match = URI_MATCHER.match(uri);
 
         // let ScraperProvider handle that
-        if (ScraperProvider.handles(match))
-            return mScraperProvider.bulkInsert(uri, values);
+        if (ScraperProvider.handles(match)) {
+            final long start = Metrics.now();
+            int result = mScraperProvider.bulkInsert(uri, values);
+            sScraperBulkInsertLatency.stop(start);
+            return result;
+        }
 
         if (match != -1) {
+            final long start = Metrics.now();
             int result = 0;
             mVobHandler.onBeginTransaction();
             SQLiteDatabase db = mDbHolder.get();
@@ -1075,6 +1141,9 @@ public class VideoProvider extends ContentProvider {
                 db.endTransaction();
                 mVobHandler.onEndTransaction();
             }
+            sBulkInsertRows.add(result);
+            long took = sBulkInsertLatency.stop(start);
+            log.debug("bulkInsert: " + result + " rows in " + took + "ms");
             if (result > 0)
                 mCr.notifyChange(VideoStore.ALL_CONTENT_URI, null);
             return result;
@@ -1086,6 +1155,7 @@ public class VideoProvider extends ContentProvider {
     public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
             throws OperationApplicationException {
         log.debug("applyBatch");
+        final long start = Metrics.now();
         ContentProviderResult[] result = null;
         SQLiteDatabase db = mDbHolder.get();
         mVobHandler.onBeginTransaction();
@@ -1107,6 +1177,9 @@ public class VideoProvider extends ContentProvider {
             db.endTransaction();
             mVobHandler.onEndTransaction();
         }
+        sApplyBatchOperations.add(operations.size());
+        long took = sApplyBatchLatency.stop(start);
+        log.debug("applyBatch: " + operations.size() + " operations in " + took + "ms");
         if (result != null) {
             mCr.notifyChange(VideoStore.ALL_CONTENT_URI, null);
             mCr.notifyChange(ScraperStore.ALL_CONTENT_URI, null);
@@ -1114,6 +1187,21 @@ public class VideoProvider extends ContentProvider {
         return result;
     }
 
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (TraktReconciler.METHOD.equals(method)) {
+            // not covered by the provider permissions: only from our own process
+            if (Binder.getCallingUid() != Process.myUid())
+                throw new SecurityException("call " + method + " not allowed");
+            Bundle result = TraktReconciler.apply(mDbHolder.get(), extras);
+            // one notification for the whole reconciliation
+            if (result.getInt(TraktReconciler.RESULT_COUNT) > 0)
+                mCr.notifyChange(VideoStore.ALL_CONTENT_URI, null);
+            return result;
+        }
+        return super.call(method, arg, extras);
+    }
+
     /**
      * Instances of this class are created and put in a queue to be executed sequentially to see if
      * it needs to (re)generate the thumbnails.
@@ -1302,6 +1390,8 @@ public class VideoProvider extends ContentProvider {
         }
         public static Bitmap createVideoThumbnail_(final Context ctx, final String filePath, int kind) {
             Bitmap bitmap = null;
+            // frames of the service are released to its pool once delivered, only ours go to our pool
+            boolean produced = false;
             final Result result = new Result();
             final IMediaThumbnailService service = MediaThumbnailService.bind_sync(ctx);
             if ( service!= null) {
@@ -1336,6 +1426,7 @@ public class VideoProvider extends ContentProvider {
                     log.debug("getFrameAtTime -1 ");
 
                     bitmap = retriever.getFrameAtTime(-1);
+                    produced = true;
 
                 } catch (IllegalArgumentException ex) {
                     // Assume this is a corrupt video file
@@ -1370,7 +1461,10 @@ public class VideoProvider extends ContentProvider {
                     float scale = 512f / max;
                     int w = Math.round(scale * width);
                     int h = Math.round(scale * height);
-                    bitmap = Bitmap.createScaledBitmap(bitmap, w, h, true);
+                    Bitmap scaled = Bitmap.createScaledBitmap(bitmap, w, h, true);
+                    if (produced && scaled != bitmap)
+                        AvosBitmapHelper.release(bitmap);
+                    bitmap = scaled;
                     log.debug("createScaledBitmap");
                 }
             }
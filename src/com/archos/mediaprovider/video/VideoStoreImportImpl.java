@@ -39,16 +39,18 @@ import com.archos.filecorelibrary.FileEditor;
 import com.archos.mediacenter.filecoreextension.upnp2.FileEditorFactoryWithUpnp;
 import com.archos.mediacenter.utils.trakt.TraktService;
 import com.archos.medialib.IMediaMetadataRetriever;
-import com.archos.medialib.MediaMetadata;
+import com.archos.medialib.MetadataRecord;
 import com.archos.medialib.R;
 import com.archos.mediaprovider.ArchosMediaFile;
 import com.archos.mediaprovider.ArchosMediaFile.MediaFileType;
 import com.archos.mediaprovider.BulkInserter;
 import com.archos.mediaprovider.CPOExecutor;
+import com.archos.mediaprovider.CursorPager;
 import com.archos.mediaprovider.CustomCursorFactory.CustomCursor;
 import com.archos.mediaprovider.ImportState;
 import com.archos.mediaprovider.ImportState.State;
 import com.archos.mediaprovider.MediaRetrieverServiceClient;
+import com.archos.mediaprovider.Metrics;
 import com.archos.mediaprovider.video.VideoStore.Video.VideoColumns;
 import com.archos.mediascraper.BaseTags;
 import com.archos.mediascraper.NfoParser;
@@ -59,6 +61,8 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -70,10 +74,17 @@ import static com.archos.filecorelibrary.FileUtils.isSlowRemote;
  */
 public class VideoStoreImportImpl {
     private static final Logger log = LoggerFactory.getLogger(VideoStoreImportImpl.class);
+
+    private static final Metrics.Histogram sPageLatency = Metrics.histogram("import.page");
+    private static final Metrics.Histogram sProbeLatency = Metrics.histogram("import.probe");
+    private static final Metrics.Counter sScanned = Metrics.counter("import.scanned");
+    private static final Metrics.Counter sProbed = Metrics.counter("import.probed");
+    private static final Metrics.Counter sNfoScraped = Metrics.counter("import.nfo_scraped");
     private final Context mContext;
     private final ContentResolver mCr;
     private final Blacklist mBlackList;
     private final MediaRetrieverServiceClient mMediaRetrieverServiceClient;
+    private final ProbeCache mProbeCache;
 
     private static final String MediaColumnsDATA = MediaColumns.DATA;
 
@@ -97,6 +108,7 @@ public class VideoStoreImportImpl {
         mCr = mContext.getContentResolver();
         mBlackList = Blacklist.getInstance(context);
         mMediaRetrieverServiceClient = new MediaRetrieverServiceClient(context);
+        mProbeCache = new ProbeCache(context);
         String [] blacklistCamDirs = mBlackList.getBlackListCamDirs();
         BLACKLIST = "";
         for (String blacklisted : mBlackList.getBlackListCamera())
@@ -147,6 +159,7 @@ public class VideoStoreImportImpl {
         }
         ImportState.VIDEO.setState(State.IDLE);
         log.debug("doFullImport: ImportState.VIDEO.setState(State.IDLE)");
+        Metrics.logDump("full import");
     }
 
     public void doIncrementalImport() {
@@ -178,25 +191,27 @@ public class VideoStoreImportImpl {
 
         ImportState.VIDEO.setState(State.IDLE);
         log.debug("doFullImport: ImportState.VIDEO.setState(State.IDLE)");
+        Metrics.logDump("incremental import");
     }
 
     private static final String[] ID_DATA_PROJ = new String[] {
             BaseColumns._ID,
             MediaColumnsDATA,
-            VideoColumns.ARCHOS_MEDIA_SCRAPER_ID
+            VideoColumns.ARCHOS_MEDIA_SCRAPER_ID,
+            MediaColumns.SIZE,
+            MediaColumns.DATE_MODIFIED
     };
     private static final String UPDATE_WHERE = "remote_id=?";
-    /** scans every file in cursor and update database, also closes cursor */
+    /** scans every file of a page of at most WINDOW_SIZE rows and update database, also closes cursor */
     private void handleScanCursor(Cursor c, ContentResolver cr, Context context, Blacklist blacklist) {
-        // for some reasons doScan passes a a cursor with size > WINDOW_SIZE
-        // thus only process WINDOW_SIZE entries
-        int remaining = c.getCount();
+        int remaining = c != null ? c.getCount() : 0;
         if (c == null || remaining == 0) {
             if (c != null) c.close();
             log.debug("handleScanCursor: no media to scan");
             return;
         }
 
+        final long start = Metrics.now();
         int scanned = 0;
         int scraped = 0;
 
@@ -207,42 +222,50 @@ public class VideoStoreImportImpl {
         NfoParser.ImportContext importContext = new NfoParser.ImportContext();
         // Still getting SQLiteBlobTooBigException due perhaps to large blobs in the database for some reasons
         try {
-            int count = 0;
-            while (c.moveToNext() && count < WINDOW_SIZE) {
-                count++;
-                ImportState.VIDEO.setRemainingCount(remaining--);
-                log.debug("handleScanCursor: ImportState.VIDEO.setRemainingCount " + remaining + " count " + count);
+            ArrayList<Job> jobs = new ArrayList<Job>(remaining);
+            while (c.moveToNext()) {
                 String id;
                 String path;
                 int scraperID;
+                long size;
+                long dateModified;
                 try {
                     id = c.getString(0);
                     path = c.getString(1);
                     if (path.startsWith("/"))
                         path = "file://" + path;
                     scraperID = c.getInt(2);
+                    size = c.getLong(3);
+                    dateModified = c.getLong(4);
                 } catch (IllegalStateException ignored) {
                     log.error("handleScanCursor: IllegalStateException caught, content deleted while scanning?");
                     //we silently ignore empty lines - it means content has been deleted while scanning
                     continue;
                 }
-                Job job = new Job(path, id, blacklist);
+                jobs.add(new Job(path, id, scraperID, size, dateModified, blacklist));
+            }
+            lookupProbeCache(jobs);
+            try {
+                probeMetadata(jobs);
+            } catch (InterruptedException e) {
+                log.error("handleScanCursor: InterruptedException caught");
+                // won't happen but stopping as soon as we can would be desired
+                if (CRASH_ON_ERROR) throw new RuntimeException(e);
+                dropUnprobed(jobs);
+            } catch (MediaRetrieverServiceClient.ServiceManagementException e) {
+                log.error("handleScanCursor: MediaRetrieverServiceClient.ServiceManagementException caught");
+                // something is fishy with our service, abort and try again later.
+                if (CRASH_ON_ERROR) throw new RuntimeException(e);
+                dropUnprobed(jobs);
+            }
+            for (Job job : jobs) {
+                ImportState.VIDEO.setRemainingCount(remaining--);
+                log.debug("handleScanCursor: ImportState.VIDEO.setRemainingCount " + remaining);
+                String path = job.mPath.toString();
+                int scraperID = job.mScraperId;
                 log.debug("handleScanCursor: scanning " + job.mPath);
                 // update property with current file
-                ContentValues cv = null;
-                try {
-                    cv = fromRetrieverService(job, timeString);
-                } catch (InterruptedException e) {
-                    log.error("handleScanCursor: InterruptedException caught");
-                    // won't happen but stopping as soon as we can would be desired
-                    if (CRASH_ON_ERROR) throw new RuntimeException(e);
-                    break;
-                } catch (MediaRetrieverServiceClient.ServiceManagementException e) {
-                    log.error("handleScanCursor: MediaRetrieverServiceClient.ServiceManagementException caught");
-                    // something is fishy with our service, abort and try again later.
-                    if (CRASH_ON_ERROR) throw new RuntimeException(e);
-                    break;
-                }
+                ContentValues cv = fromRetrieverService(job, timeString);
                 // set the scan_state correctly so that it is not picked up again
                 // using ContentProviderOperation so updates are done as single transaction but at the applyBatch
                 operations.add(
@@ -296,17 +319,24 @@ public class VideoStoreImportImpl {
                 log.error("handleScanCursor: RemoteException or OperationApplicationException applying batch", e1);
                 if (CRASH_ON_ERROR) throw new RuntimeException(e1);
             }
+            mProbeCache.flush();
         }
         if (c != null) c.close();
-        log.info("handleScanCursor: media scanned:" + scanned + " nfo-scraped:" + scraped);
+        sScanned.add(scanned);
+        sNfoScraped.add(scraped);
+        long took = sPageLatency.stop(start);
+        log.info("handleScanCursor: media scanned:" + scanned + " nfo-scraped:" + scraped + " in " + took + "ms");
         if (scraped > 0)
             TraktService.onNewVideo(context);
     }
 
     private static class Job {
-        public Job(String path, String id, Blacklist blacklist) {
+        public Job(String path, String id, int scraperId, long size, long dateModified, Blacklist blacklist) {
             mPath = Uri.parse(path);
             mId = id;
+            mScraperId = scraperId;
+            mSize = size;
+            mDateModified = dateModified;
             mMft = ArchosMediaFile.getFileType(path);
             // default mime type / media type
             int mediaType = FileColumns.MEDIA_TYPE_NONE;
@@ -339,6 +369,14 @@ public class VideoStoreImportImpl {
         public final int mMediaType;
         public final boolean mRetrieve;
         public final String mMimeType;
+        public final int mScraperId;
+        public final long mSize;
+        public final long mDateModified;
+        // set by lookupProbeCache when the file is unchanged since it was last probed
+        public ContentValues mCached;
+        // set by probeMetadata from binder threads
+        public volatile MetadataRecord mMetadata;
+        public volatile boolean mKilledService;
     }
 
     /** removes file(s) defined by Uri */
@@ -375,8 +413,14 @@ public class VideoStoreImportImpl {
             where = WHERE_FILE;
         log.debug("doScan: Scanning Metadata: " + path);
         //initNoMedia(mCr);
-        Cursor c = mCr.query(VideoStoreInternal.FILES, ID_DATA_PROJ, where, new String[]{ path }, null);
-        handleScanCursor(c, mCr, mContext, mBlackList);
+        CursorPager pager = new CursorPager(mCr, VideoStoreInternal.FILES, ID_DATA_PROJ, where, new String[]{ path }, WINDOW_SIZE);
+        try {
+            Cursor c;
+            while ((c = pager.next()) != null)
+                handleScanCursor(c, mCr, mContext, mBlackList);
+        } finally {
+            pager.close();
+        }
     }
 
     private static final String SELF_NEEDS_SCAN = "scan_state < date_modified";
@@ -389,55 +433,85 @@ public class VideoStoreImportImpl {
     /** executes metadata scan of every unscanned file */
     private void doScan(ContentResolver cr, Context context, Blacklist blacklist) {
         log.debug("doScan: Scanning Metadata all unscanned files");
-        Cursor c = null;
-        int cursorCount = 0;
-        while (true) {
-            try {
-                // for some reasons this does return a cursor with size > WINDOW_SIZE
-                // thus only process WINDOW_SIZE entries in handleScanCursor
-                if (Build.VERSION.SDK_INT > Build.VERSION_CODES.Q) { // API>30 requires bundle to LIMIT
-                    final Bundle bundle = new Bundle();
-                    bundle.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, WHERE_UNSCANNED);
-                    bundle.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, null);
-                    bundle.putStringArray(ContentResolver.QUERY_ARG_SORT_COLUMNS, new String[]{BaseColumns._ID});
-                    bundle.putInt(ContentResolver.QUERY_ARG_SORT_DIRECTION, ContentResolver.QUERY_SORT_DIRECTION_ASCENDING);
-                    bundle.putInt(ContentResolver.QUERY_ARG_LIMIT, WINDOW_SIZE);
-                    bundle.putInt(ContentResolver.QUERY_ARG_OFFSET, 0);
-                    log.debug("doScan: >Q new batch fetching cursor with bundle=" + bundle.toString());
-                    c = cr.query(VideoStoreInternal.FILES, ID_DATA_PROJ, bundle, null);
-                } else {
-                    c = cr.query(VideoStoreInternal.FILES, ID_DATA_PROJ,
-                            WHERE_UNSCANNED, null, BaseColumns._ID + " ASC LIMIT " + WINDOW_SIZE);
-                }
-                if (c != null) cursorCount = c.getCount();
-                else cursorCount = 0;
-                log.debug("doScan: new batch fetching window=" + WINDOW_SIZE + " 0<= entries <=" + WINDOW_SIZE + ", new batch cursor has size " + cursorCount);
+        // scanned files leave the selection, files ahead of the current page are untouched: safe to prefetch
+        CursorPager pager = new CursorPager(cr, VideoStoreInternal.FILES, ID_DATA_PROJ, WHERE_UNSCANNED, null, WINDOW_SIZE);
+        try {
+            Cursor c;
+            while ((c = pager.next()) != null) {
+                log.debug("doScan: new batch cursor has size " + c.getCount());
                 handleScanCursor(c, cr, context, blacklist);
-                if (cursorCount < WINDOW_SIZE) { // avoid infinite loop: trusts that handleScanCursor processes all entries
-                    log.debug("doScan: no more data after handleScanCursor, c.getCount()={}<WINDOW_SIZE={} exit loop", cursorCount, WINDOW_SIZE);
-                    break;
-                }
-            } catch (SQLException | IllegalStateException e) {
-                log.error("SQLException or IllegalStateException",e);
-                if (CRASH_ON_ERROR) throw new RuntimeException(e);
-                break;
-            } finally {
-                if (c != null) c.close();
             }
+        } catch (SQLException | IllegalStateException e) {
+            log.error("SQLException or IllegalStateException",e);
+            if (CRASH_ON_ERROR) throw new RuntimeException(e);
+        } finally {
+            pager.close();
         }
-        if (c != null) c.close();
     }
 
-    /** get MediaMetadata object or null for a path */
-    private MediaMetadata getMetadata(String path) throws RemoteException, InterruptedException, MediaRetrieverServiceClient.ServiceManagementException {
-        if(path.startsWith("file://")) {
-            path = path.substring("file://".length()); //we need to remove "file://"
+    /** picks the metadata of the unchanged files from the probe cache */
+    private void lookupProbeCache(List<Job> jobs) {
+        ArrayList<String> paths = new ArrayList<String>(jobs.size());
+        for (Job job : jobs) {
+            if (job.mRetrieve && ProbeCache.isCacheable(job.mSize, job.mDateModified))
+                paths.add(job.mPath.toString());
+        }
+        mProbeCache.load(paths);
+        for (Job job : jobs) {
+            if (job.mRetrieve && ProbeCache.isCacheable(job.mSize, job.mDateModified))
+                job.mCached = mProbeCache.get(job.mPath.toString(), job.mSize, job.mDateModified);
+        }
+    }
+
+    /** probes the metadata of all the media files of the jobs in one batch through MediaRetrieverService */
+    private void probeMetadata(final List<Job> jobs) throws InterruptedException, MediaRetrieverServiceClient.ServiceManagementException {
+        final ArrayList<Job> toProbe = new ArrayList<Job>(jobs.size());
+        ArrayList<String> paths = new ArrayList<String>(jobs.size());
+        for (Job job : jobs) {
+            if (!job.mRetrieve || job.mCached != null)
+                continue;
+            String path = job.mPath.toString();
+            if(path.startsWith("file://")) {
+                path = path.substring("file://".length()); //we need to remove "file://"
+            }
+            toProbe.add(job);
+            paths.add(path);
+        }
+        if (paths.isEmpty())
+            return;
+        final long start = Metrics.now();
+        mMediaRetrieverServiceClient.getMetadataBatch(paths, new MediaRetrieverServiceClient.BatchCallback() {
+            @Override
+            public void onMetadata(int index, String path, MetadataRecord metadata, boolean killedService) {
+                Job job = toProbe.get(index);
+                job.mMetadata = metadata;
+                job.mKilledService = killedService;
+            }
+        });
+        sProbed.add(paths.size());
+        long took = sProbeLatency.stop(start);
+        log.debug("probeMetadata: " + paths.size() + " files probed in " + took + "ms");
+    }
+
+    /**
+     * keeps the jobs that do not depend on the aborted probe: non media files, probe cache hits and
+     * files probed before the abort. The others are left unscanned and retried on the next pass.
+     */
+    private static void dropUnprobed(List<Job> jobs) {
+        int dropped = 0;
+        Iterator<Job> it = jobs.iterator();
+        while (it.hasNext()) {
+            Job job = it.next();
+            if (job.mRetrieve && job.mCached == null && job.mMetadata == null && !job.mKilledService) {
+                it.remove();
+                dropped++;
+            }
         }
-        return mMediaRetrieverServiceClient.getMetadata(path);
+        log.debug("dropUnprobed: " + dropped + " files left for the next scan, " + jobs.size() + " kept");
     }
 
-    /** creates ContentValues via MediaRetrieverService, can't be null */
-    private ContentValues fromRetrieverService(Job job, String timeString) throws InterruptedException, MediaRetrieverServiceClient.ServiceManagementException {
+    /** creates ContentValues from the metadata probed by MediaRetrieverService, can't be null */
+    private ContentValues fromRetrieverService(Job job, String timeString) {
         log.debug("fromRetrieverService: Scanning metadata of: " + job.mPath);
         ContentValues cv = new ContentValues();
         String path = job.mPath.toString();
@@ -453,57 +527,61 @@ public class VideoStoreImportImpl {
         cv.put(FileColumns.MEDIA_TYPE, String.valueOf(job.mMediaType));
         cv.put(VideoStoreInternal.FILES_EXTRA_COLUMN_SCAN_STATE, timeString);
 
-        // try to get metadata if file is a mediafile
-        MediaMetadata metadata = null;
-        if (job.mRetrieve) {
-            try {
-                metadata = getMetadata(path);
-            } catch (RemoteException e) {
+        // if we don't need to scan further end here.
+        if (!job.mRetrieve)
+            return cv;
+
+        // try to get metadata if file is a mediafile and is not already known
+        ContentValues probed = job.mCached;
+        if (probed != null) {
+            log.debug("fromRetrieverService: cached metadata of: " + path);
+        } else {
+            if (job.mKilledService) {
                 log.warn("Blacklisting file because it killed metadata service:" + path);
                 cv.put(VideoStoreInternal.FILES_EXTRA_COLUMN_SCAN_STATE, String.valueOf(VideoStoreInternal.SCAN_STATE_SCAN_FAILED));
                 return cv;
             }
+            MetadataRecord metadata = job.mMetadata;
             if (metadata == null) {
                 // file didn't kill the service but still failed to give metadata
                 log.info("Failed to get metadata for file:" + path);
                 return cv;
             }
-        }
 
-        // if we don't need to scan further also end here.
-        if (!job.mRetrieve)
-            return cv;
-
-        log.debug("fromRetrieverService: Scanning metadata of: " + path);
-        switch (job.mMediaType) {
-            case FileColumns.MEDIA_TYPE_VIDEO:
-                extract(cv, metadata, VideoColumns.ARCHOS_ENCODING_PROFILE, IMediaMetadataRetriever.METADATA_KEY_ENCODING_PROFILE, "0");
-                extract(cv, metadata, VideoColumns.ARCHOS_FRAMES_PER_THOUSAND_SECONDS, IMediaMetadataRetriever.METADATA_KEY_FRAMES_PER_THOUSAND_SECONDS, "0");
-                extract(cv, metadata, VideoColumns.ARCHOS_NUMBER_OF_AUDIO_TRACKS, IMediaMetadataRetriever.METADATA_KEY_NB_AUDIO_TRACK, "-1");
-                extract(cv, metadata, VideoColumns.ARCHOS_NUMBER_OF_SUBTITLE_TRACKS, IMediaMetadataRetriever.METADATA_KEY_NB_SUBTITLE_TRACK, "-1");
-                extract(cv, metadata, VideoColumns.ARCHOS_VIDEO_BITRATE, IMediaMetadataRetriever.METADATA_KEY_VIDEO_BITRATE, "0");
-                extract(cv, metadata, VideoColumns.ARCHOS_VIDEO_FOURCC_CODEC, IMediaMetadataRetriever.METADATA_KEY_VIDEO_FOURCC_CODEC, "0");
-                extract(cv, metadata, MediaColumns.HEIGHT, IMediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT, "0");
-                extract(cv, metadata, MediaColumns.WIDTH, IMediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH, "0");
-                extract(cv, metadata, VideoColumns.DURATION, IMediaMetadataRetriever.METADATA_KEY_DURATION, "0");
-                extract(cv, metadata, VideoColumns.ARCHOS_SAMPLERATE, IMediaMetadataRetriever.METADATA_KEY_SAMPLE_RATE, "0");
-                extract(cv, metadata, VideoColumns.ARCHOS_NUMBER_OF_CHANNELS, IMediaMetadataRetriever.METADATA_KEY_NUMBER_OF_CHANNELS, "0");
-                extract(cv, metadata, VideoColumns.ARCHOS_AUDIO_WAVE_CODEC, IMediaMetadataRetriever.METADATA_KEY_AUDIO_WAVE_CODEC, "0");
-                extract(cv, metadata, VideoColumns.ARCHOS_AUDIO_BITRATE, IMediaMetadataRetriever.METADATA_KEY_AUDIO_BITRATE, "0");
-                extract(cv, metadata, FileColumns.TITLE, IMediaMetadataRetriever.METADATA_KEY_TITLE, defaultTitle);
-                break;
+            log.debug("fromRetrieverService: Scanning metadata of: " + path);
+            probed = new ContentValues();
+            switch (job.mMediaType) {
+                case FileColumns.MEDIA_TYPE_VIDEO:
+                    extract(probed, metadata, VideoColumns.ARCHOS_ENCODING_PROFILE, IMediaMetadataRetriever.METADATA_KEY_ENCODING_PROFILE, "0");
+                    extract(probed, metadata, VideoColumns.ARCHOS_FRAMES_PER_THOUSAND_SECONDS, IMediaMetadataRetriever.METADATA_KEY_FRAMES_PER_THOUSAND_SECONDS, "0");
+                    extract(probed, metadata, VideoColumns.ARCHOS_NUMBER_OF_AUDIO_TRACKS, IMediaMetadataRetriever.METADATA_KEY_NB_AUDIO_TRACK, "-1");
+                    extract(probed, metadata, VideoColumns.ARCHOS_NUMBER_OF_SUBTITLE_TRACKS, IMediaMetadataRetriever.METADATA_KEY_NB_SUBTITLE_TRACK, "-1");
+                    extract(probed, metadata, VideoColumns.ARCHOS_VIDEO_BITRATE, IMediaMetadataRetriever.METADATA_KEY_VIDEO_BITRATE, "0");
+                    extract(probed, metadata, VideoColumns.ARCHOS_VIDEO_FOURCC_CODEC, IMediaMetadataRetriever.METADATA_KEY_VIDEO_FOURCC_CODEC, "0");
+                    extract(probed, metadata, MediaColumns.HEIGHT, IMediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT, "0");
+                    extract(probed, metadata, MediaColumns.WIDTH, IMediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH, "0");
+                    extract(probed, metadata, VideoColumns.DURATION, IMediaMetadataRetriever.METADATA_KEY_DURATION, "0");
+                    extract(probed, metadata, VideoColumns.ARCHOS_SAMPLERATE, IMediaMetadataRetriever.METADATA_KEY_SAMPLE_RATE, "0");
+                    extract(probed, metadata, VideoColumns.ARCHOS_NUMBER_OF_CHANNELS, IMediaMetadataRetriever.METADATA_KEY_NUMBER_OF_CHANNELS, "0");
+                    extract(probed, metadata, VideoColumns.ARCHOS_AUDIO_WAVE_CODEC, IMediaMetadataRetriever.METADATA_KEY_AUDIO_WAVE_CODEC, "0");
+                    extract(probed, metadata, VideoColumns.ARCHOS_AUDIO_BITRATE, IMediaMetadataRetriever.METADATA_KEY_AUDIO_BITRATE, "0");
+                    extract(probed, metadata, FileColumns.TITLE, IMediaMetadataRetriever.METADATA_KEY_TITLE, defaultTitle);
+                    break;
+            }
+            mProbeCache.put(path, job.mSize, job.mDateModified, probed);
         }
+        cv.putAll(probed);
         return cv;
     }
 
     /** helper to extract metadate key into ContentValues if that key is != null */
-    private static void extract(ContentValues target, MediaMetadata metadata,
+    private static void extract(ContentValues target, MetadataRecord metadata,
             String cvKey, int retrieverKey, String defaultValue) {
         extract(target, metadata, cvKey, retrieverKey, defaultValue, false);
     }
 
     /** helper to extract metadate key into ContentValues if that key is != null */
-    private static void extract(ContentValues target, MediaMetadata metadata,
+    private static void extract(ContentValues target, MetadataRecord metadata,
             String cvKey, int retrieverKey, String defaultValue, boolean treat0AsNull) {
         if (metadata.has(retrieverKey)) {
             String val = metadata.getString(retrieverKey);
@@ -581,7 +659,6 @@ public class VideoStoreImportImpl {
         int imported = 0;
         String where = null;
         String[] whereArgs = null;
-        Cursor allFiles = null;
         ContentValues cv = null;
         ExtStorageManager extStorageManager = ExtStorageManager.getExtStorageManager();
         String[] projection;
@@ -600,111 +677,64 @@ public class VideoStoreImportImpl {
                 whereArgs = new String[] { minId };
             }
         }
+        HashSet<Long> ids = new HashSet<>();
+        Cursor c = cr.query(VideoStoreInternal.FILES_IMPORT, new String[] { "_id" }, null, null, null);
+        if (c != null) {
+            while (c.moveToNext())
+                ids.add(c.getLong(0));
+            c.close();
+        }
+        // transaction size limited, acts like buffered output stream and auto-flushes queue
+        BulkInserter inserter = new BulkInserter(VideoStoreInternal.FILES_IMPORT, cr, 2000);
+        // break down the scan in pages of WINDOW_SIZE in order to avoid SQLiteBlobTooBigException: Row too big to fit into CursorWindow crash
+        // note that the db is NOT being modified during import, next page is fetched while the current one is inserted
+        CursorPager pager = new CursorPager(cr, MediaStore.Files.getContentUri("external"),
+                projection, where, whereArgs, WINDOW_SIZE);
         try { // for some reasons external_primary is not readable on some devices hinting READ_EXTERNAL_STORAGE permission missing
-            allFiles = CustomCursor.wrap(cr.query(MediaStore.Files.getContentUri("external"),
-                    projection, where, whereArgs, BaseColumns._ID));
+            int ccount = projection.length;
+            int cursor_count = 0;
+            Cursor page;
+            while ((page = pager.next()) != null) {
+                Cursor allFiles = CustomCursor.wrap(page);
+                log.debug("copyData: new batch cursor has size " + allFiles.getCount());
+                int dataColumn = Math.max(allFiles.getColumnIndex(MediaColumnsDATA), 0);
+                String data;
+                Integer storageId;
+                while (allFiles.moveToNext()) {
+                    cursor_count++;
+                    log.trace("copyData: processing cursor number=" + cursor_count + ", " + DatabaseUtils.dumpCurrentRowToString(allFiles));
+                    try {
+                        if (Build.VERSION.SDK_INT > Build.VERSION_CODES.O) { // API26(O)+
+                            cv = new ContentValues(ccount + 1);
+                            DatabaseUtils.cursorRowToContentValues(allFiles, cv);
+                            data = allFiles.getString(dataColumn);
+                            if (data != null) {
+                                if (data.startsWith(sdCardPath))
+                                    storageId = 1;
+                                else
+                                    storageId = extStorageManager.getStorageId3(data);
+                            } else {
+                                storageId = 1;
+                            }
+                            log.trace("copyData: _data=" + data + " -> storageId=" + storageId);
+                            cv.put("storage_id", storageId);
+                        } else {
+                            cv = new ContentValues(ccount);
+                            DatabaseUtils.cursorRowToContentValues(allFiles, cv);
+                        }
+                        if (!ids.contains(cv.getAsLong("_id")))
+                            inserter.add(cv);
+                    } catch (IllegalStateException ignored) { } //we silently ignore empty lines - it means content has been deleted while scanning
+                }
+                imported += inserter.execute();
+                log.debug("copyData: inserted in dB " + imported);
+            }
+            log.debug("copyData: processed " + pager.getRowCount() + " items");
         } catch (IllegalArgumentException e) {
             log.error("copyData: exception while querying external_primary, missing READ_EXTERNAL_STORAGE?", e);
             if (CRASH_ON_ERROR) throw new RuntimeException(e);
-        }
-        if (allFiles != null) {
-            int count = allFiles.getCount();
-            int ccount = allFiles.getColumnCount();
-            if (count > 0) {
-                ArrayList<Long> ids = new ArrayList<>();
-                Cursor c = cr.query(VideoStoreInternal.FILES_IMPORT, new String[] { "_id" }, null, null, null);
-                if (c != null) {
-                    while (c.moveToNext())
-                        ids.add(c.getLong(0));
-                    c.close();
-                }
-                // transaction size limited, acts like buffered output stream and auto-flushes queue
-                BulkInserter inserter = new BulkInserter(VideoStoreInternal.FILES_IMPORT, cr, 2000);
-                log.debug("copyData: found items to import:" + count);
-                final int numberOfRows = allFiles.getCount();
-                int window = WINDOW_SIZE;
-                int index = 0;
-                int cursor_count = 0;
-                // break down the scan in batch of WINDOW_SIZE in order to avoid SQLiteBlobTooBigException: Row too big to fit into CursorWindow crash
-                // note that the db is NOT being modified during import --> use an index
-                allFiles.close();
-                do {
-                    if (index + window > numberOfRows)
-                        window = numberOfRows - index;
-
-                    if (Build.VERSION.SDK_INT > Build.VERSION_CODES.O) {
-                        where = WHERE_ALL_AP + BLACKLIST;
-                        if (minId != null) {
-                            where = WHERE_MIN_ID_AP + BLACKLIST;
-                            whereArgs = new String[]{minId};
-                        }
-                        if (Build.VERSION.SDK_INT > Build.VERSION_CODES.Q) { // API>29 requires bundle to LIMIT but it exists since 26
-                            final Bundle BUNDLE_AP = new Bundle();
-                            BUNDLE_AP.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, where);
-                            BUNDLE_AP.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, whereArgs);
-                            BUNDLE_AP.putStringArray(ContentResolver.QUERY_ARG_SORT_COLUMNS, new String[]{BaseColumns._ID});
-                            BUNDLE_AP.putInt(ContentResolver.QUERY_ARG_SORT_DIRECTION, ContentResolver.QUERY_SORT_DIRECTION_ASCENDING);
-                            BUNDLE_AP.putInt(ContentResolver.QUERY_ARG_LIMIT, window);
-                            BUNDLE_AP.putInt(ContentResolver.QUERY_ARG_OFFSET, index);
-                            allFiles = CustomCursor.wrap(cr.query(MediaStore.Files.getContentUri("external"),
-                                    FILES_PROJECTION_AP, BUNDLE_AP, null));
-                        } else {
-                            allFiles = CustomCursor.wrap(cr.query(MediaStore.Files.getContentUri("external"),
-                                    FILES_PROJECTION_AP, where, whereArgs, BaseColumns._ID + " ASC LIMIT " + index + "," + window));
-                        }
-                    } else { // API below 26 LIMIT is allowed
-                        where = WHERE_ALL_BP + BLACKLIST;
-                        if (minId != null)  {
-                            where = WHERE_MIN_ID_BP + BLACKLIST;
-                            whereArgs = new String[] { minId };
-                        }
-                        allFiles = CustomCursor.wrap(cr.query(MediaStore.Files.getContentUri("external"),
-                                FILES_PROJECTION_BP, where, whereArgs, BaseColumns._ID + " ASC LIMIT " + index + "," + window));
-                    }
-                    log.debug("copyData: new batch fetching cursor from index=" + index + ", window=" + window + " -> index+window=" + (index + window) + "<=" + numberOfRows);
-
-                    String data;
-                    Integer storageId;
-
-                    int allFilesCount = allFiles.getCount();
-                    if (allFiles != null && allFilesCount >0) {
-                        log.debug("copyData: new batch cursor has size " + allFilesCount);
-                        while (allFiles.moveToNext()) {
-                            cursor_count++;
-                            log.trace("copyData: processing cursor number=" + cursor_count + "/" + numberOfRows + ", " + DatabaseUtils.dumpCurrentRowToString(allFiles));
-                            try {
-                                if (Build.VERSION.SDK_INT > Build.VERSION_CODES.O) { // API26(O)+
-                                    cv = new ContentValues(ccount + 1);
-                                    DatabaseUtils.cursorRowToContentValues(allFiles, cv);
-                                    data = allFiles.getString(Math.max(allFiles.getColumnIndex(MediaColumnsDATA), 0));
-                                    if (data != null) {
-                                        if (data.startsWith(sdCardPath))
-                                            storageId = 1;
-                                        else
-                                            storageId = extStorageManager.getStorageId3(data);
-                                    } else {
-                                        storageId = 1;
-                                    }
-                                    log.trace("copyData: _data=" + data + " -> storageId=" + storageId);
-                                    cv.put("storage_id", storageId);
-                                } else {
-                                    cv = new ContentValues(ccount);
-                                    DatabaseUtils.cursorRowToContentValues(allFiles, cv);
-                                }
-                                if (!ids.contains(cv.getAsLong("_id")))
-                                    inserter.add(cv);
-                            } catch (IllegalStateException ignored) { } //we silently ignore empty lines - it means content has been deleted while scanning
-                        }
-                        imported += inserter.execute();
-                        log.debug("copyData: inserted in dB " + imported);
-                    } else {
-                        log.debug("copyData: allFiles null now");
-                    }
-
-                    index += window;
-                    if (allFiles != null) allFiles.close();
-                } while (window < numberOfRows && window > 0);
-            } else allFiles.close();
+        } finally {
+            pager.close();
         }
         return imported;
     }
@@ -815,54 +845,22 @@ public class VideoStoreImportImpl {
     private static String getRemoteIdList(ContentResolver cr) {
         StringBuilder sb = new StringBuilder();
         String prefix = "";
-        int offset = 0;
-        Cursor c = null;
+        CursorPager pager = new CursorPager(cr, MediaStore.Files.getContentUri("external"),
+                REMOTE_LIST_PROJECTION, null, null, WINDOW_SIZE);
         try {
-            while (true) {
-                try {
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) { // API>=30 requires bundle to LIMIT
-                        Bundle queryArgs = new Bundle();
-                        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, null);
-                        queryArgs.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, null);
-                        queryArgs.putStringArray(ContentResolver.QUERY_ARG_SORT_COLUMNS, new String[]{BaseColumns._ID});
-                        queryArgs.putInt(ContentResolver.QUERY_ARG_SORT_DIRECTION, ContentResolver.QUERY_SORT_DIRECTION_ASCENDING);
-                        queryArgs.putInt(ContentResolver.QUERY_ARG_LIMIT, WINDOW_SIZE);
-                        queryArgs.putInt(ContentResolver.QUERY_ARG_OFFSET, offset);
-                        c = cr.query(MediaStore.Files.getContentUri("external"), REMOTE_LIST_PROJECTION, queryArgs, null);
-                    } else {
-                        c = cr.query(MediaStore.Files.getContentUri("external"),
-                                REMOTE_LIST_PROJECTION, null, null,
-                                BaseColumns._ID + " LIMIT " + WINDOW_SIZE + " OFFSET " + offset);
-                    }
-
-                    int count = 0;
-
-                    if (c != null) {
-                        while (c.moveToNext() && count < WINDOW_SIZE) {
-                            count++;
-                            sb.append(prefix).append(c.getString(0));
-                            prefix = ",";
-                        }
-                        log.debug("getRemoteIdList: count=" + count + " WINDOW_SIZE=" + WINDOW_SIZE + " offset=" + offset);
-                        if (count < WINDOW_SIZE) {
-                            c.close();
-                            break;
-                        }
-                        offset += WINDOW_SIZE;
-                        c.close();
-                    } else {
-                        break;
-                    }
-                } catch (Exception e) {
-                    log.error("getRemoteIdList: exception while moving to next cursor row!", e);
-                    if (CRASH_ON_ERROR) throw new RuntimeException(e);
-                    break;
-                } finally {
-                    if (c != null) c.close();
+            Cursor c;
+            while ((c = pager.next()) != null) {
+                while (c.moveToNext()) {
+                    sb.append(prefix).append(c.getString(0));
+                    prefix = ",";
                 }
             }
+            log.debug("getRemoteIdList: count=" + pager.getRowCount());
+        } catch (Exception e) {
+            log.error("getRemoteIdList: exception while moving to next cursor row!", e);
+            if (CRASH_ON_ERROR) throw new RuntimeException(e);
         } finally {
-            if (c != null) c.close();
+            pager.close();
         }
         String result = sb.toString();
         log.trace("getRemoteIdList: ids of files visible " + result);
@@ -49,6 +49,7 @@ import com.archos.medialib.R;
 import com.archos.mediaprovider.ArchosMediaIntent;
 import com.archos.mediaprovider.DeleteFileCallback;
 import com.archos.mediaprovider.ImportState;
+import com.archos.mediaprovider.Metrics;
 import com.archos.mediaprovider.VideoDb;
 import com.archos.mediaprovider.VolumeState;
 import com.archos.mediaprovider.ImportState.State;
@@ -168,6 +169,7 @@ public class VideoStoreImportService extends Service implements Handler.Callback
         startForeground(NOTIFICATION_ID, n);
         // importer logic
         mImporter = new VideoStoreImportImpl(this);
+        Metrics.startSnapshotsIfEnabled(this);
         // setup background worker thread
         mHandlerThread = new HandlerThread("ImportWorker", Process.THREAD_PRIORITY_BACKGROUND);
         mHandlerThread.start();
@@ -31,9 +31,6 @@ import androidx.core.content.ContextCompat;
 import com.archos.mediacenter.utils.AppState;
 import com.archos.medialib.R;
 import com.archos.mediaprovider.video.ScraperStore;
-import com.archos.mediascraper.themoviedb3.CollectionInfo;
-import com.archos.mediascraper.themoviedb3.CollectionResult;
-import com.archos.mediascraper.themoviedb3.MovieCollection;
 import com.archos.mediascraper.themoviedb3.MyTmdb;
 import com.archos.mediascraper.xml.MovieScraper3;
 import com.uwetrottmann.tmdb2.services.CollectionsService;
@@ -41,6 +38,8 @@ import com.uwetrottmann.tmdb2.services.CollectionsService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
 import okhttp3.Cache;
@@ -214,7 +213,7 @@ public class AllCollectionScrapeService extends IntentService {
         log.debug("rescrapeAllCollections");
         nb.setContentText(getString(R.string.rescraping_collections));
         nm.notify(NOTIFICATION_ID, nb.build());
-        handleCursor(getAllCursor());
+        handleCursor(getAllCursor(), false);
         removeAllTask();
         stopForeground(true);
     }
@@ -223,7 +222,7 @@ public class AllCollectionScrapeService extends IntentService {
         log.debug("rescrapeNoImageCollections");
         nb.setContentText(getString(R.string.rescraping_noimage_collections));
         nm.notify(NOTIFICATION_ID, nb.build());
-        handleCursor(getNoImageCursor());
+        handleCursor(getNoImageCursor(), true);
         removeNoImageTask();
         stopForeground(true);
     }
@@ -234,13 +233,17 @@ public class AllCollectionScrapeService extends IntentService {
             // update notification
             nb.setContentText(getString(R.string.rescraping_collection) + " " + collectionId.toString());
             nm.notify(NOTIFICATION_ID, nb.build());
-            handleCursor(getCollectionCursor(collectionId));
+            handleCursor(getCollectionCursor(collectionId), true);
         }
         removeTask(collectionId);
         stopForeground(true);
     }
 
-    private void handleCursor(Cursor cursor) {
+    /**
+     * refreshes all collections of the cursor
+     * @param force refresh even collections that have been refreshed recently
+     */
+    private void handleCursor(Cursor cursor, boolean force) {
 
         log.debug("bind: " + DatabaseUtils.dumpCursorToString(cursor));
 
@@ -250,34 +253,28 @@ public class AllCollectionScrapeService extends IntentService {
         String language = Scraper.getLanguage(getApplicationContext());
 
         if (cursor != null) {
-            // do the processing
+            List<Long> collectionIds = new ArrayList<>(cursor.getCount());
+            int skipped = 0;
             while (cursor.moveToNext()) {
                 long collectionId = cursor.getLong(0);
-                log.debug("handleCursor: scraping " + collectionId);
-                // scrape collectionId
-                CollectionResult collectionResult = MovieCollection.getInfo(collectionId, language, collectionService);
-
-                if (collectionResult.status == ScrapeStatus.OKAY && collectionResult.collectionInfo != null) {
-                    CollectionInfo collectionInfo = collectionResult.collectionInfo;
-                    CollectionTags collectionTag = new CollectionTags();
-                    collectionTag.setId(collectionInfo.id);
-                    collectionTag.setTitle(collectionInfo.name);
-                    collectionTag.setPlot(collectionInfo.description);
-                    collectionTag.setPosterPath(collectionInfo.poster);
-                    collectionTag.setBackdropPath(collectionInfo.backdrop);
-                    log.debug("handleCursor: scraping " + collectionTag.mTitle);
-                    // generates the various posters/backdrops based on URL
-                    collectionTag.downloadImage(getApplicationContext());
-                    collectionTag.save(getApplicationContext(), true);
+                long lastUpdated = cursor.getLong(1);
+                if (!force && CollectionRefreshEngine.isFresh(lastUpdated)) {
+                    skipped++;
+                    continue;
                 }
+                collectionIds.add(collectionId);
             }
             cursor.close();
+            log.debug("handleCursor: refreshing " + collectionIds.size() + " collections, " + skipped + " still fresh");
+            CollectionRefreshEngine engine = new CollectionRefreshEngine(getApplicationContext(), collectionService, language);
+            engine.refresh(collectionIds, null);
         }
     }
 
     private static final Uri URI = ScraperStore.MovieCollections.URI.BASE;
     private static final String[] PROJECTION = {
-            ScraperStore.MovieCollections.ID    // 0
+            ScraperStore.MovieCollections.ID,           // 0
+            ScraperStore.MovieCollections.LAST_UPDATED  // 1
     };
     private static final String SELECTION_ALL = ScraperStore.MovieCollections.ID + " > 0";
     private static final String SELECTION_COLLECTION = ScraperStore.MovieCollections.ID + " = ?";
@@ -41,7 +41,9 @@ import android.provider.BaseColumns;
 import com.archos.mediacenter.utils.AppState;
 import com.archos.mediacenter.utils.trakt.TraktService;
 import com.archos.medialib.R;
+import com.archos.mediaprovider.CursorPager;
 import com.archos.mediaprovider.DeleteFileCallback;
+import com.archos.mediaprovider.Metrics;
 import com.archos.environment.NetworkState;
 import com.archos.mediaprovider.video.VideoStore;
 import com.archos.mediaprovider.video.VideoStoreInternal;
@@ -55,6 +57,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by alexandre on 20/05/15.
@@ -72,6 +77,11 @@ public class AutoScrapeService extends Service {
     private static final int PARAM_MOVIES = 4;
     private static final Logger log = LoggerFactory.getLogger(AutoScrapeService.class);
 
+    private static final Metrics.Histogram sOnlineLatency = Metrics.histogram("autoscrape.online");
+    private static final Metrics.Counter sScraped = Metrics.counter("autoscrape.scraped");
+    private static final Metrics.Counter sNotFound = Metrics.counter("autoscrape.not_found");
+    private static final Metrics.Counter sErrors = Metrics.counter("autoscrape.errors");
+
     // window size used to split queries to db
     private final static int WINDOW_SIZE = 2000;
 
@@ -92,6 +102,12 @@ public class AutoScrapeService extends Service {
             VideoStore.Video.VideoColumns.SCRAPER_VIDEO_ONLINE_ID,
             VideoStore.Video.VideoColumns.SCRAPER_E_SEASON
     };
+    private final static String[] EXPORT_COLS = {
+            VideoStore.MediaColumns.DATA,
+            VideoStore.Video.VideoColumns.SCRAPER_MOVIE_ID,
+            VideoStore.Video.VideoColumns.SCRAPER_EPISODE_ID,
+            VideoStore.Video.VideoColumns.ARCHOS_MEDIA_SCRAPER_TYPE
+    };
     private Thread mThread;
     private boolean restartOnNextRound = false;
     private AutoScraperBinder mBinder;
@@ -166,6 +182,7 @@ public class AutoScrapeService extends Service {
 
         mBinder = new AutoScraperBinder();
         mHandler = new Handler();
+        Metrics.startSnapshotsIfEnabled(this);
     }
 
     @Override
@@ -201,34 +218,33 @@ public class AutoScrapeService extends Service {
             mExportingThread = new Thread() {
 
                 public void run() {
-                    Cursor cursor = getFileListCursor(PARAM_SCRAPED, null, null, null);
+                    Cursor cursor = getFileListCursor(PARAM_SCRAPED);
                     final int numberOfRows = cursor.getCount();
                     sTotalNumberOfFilesRemainingToProcess = numberOfRows;
                     cursor.close();
                     log.debug("starting thread " + numberOfRows);
 
-                    NfoWriter.ExportContext exportContext = new NfoWriter.ExportContext();
+                    // tags are built here, files are written in parallel per server
+                    NfoExportEngine exportEngine = new NfoExportEngine(AutoScrapeService.this, false);
 
-                    int index = 0;
-                    int window = WINDOW_SIZE;
-                    int count = 0;
-                    do {
-                        if (index + window > numberOfRows)
-                            window = numberOfRows - index;
-                        log.debug("startExporting: new batch fetching cursor from index" + index + " over window " + window + " entries, " + (index + window) + "<=" + numberOfRows);
-                        cursor = getFileListCursor(PARAM_SCRAPED, BaseColumns._ID, index, window);
+                    CursorPager pager = getFileListPager(PARAM_SCRAPED, EXPORT_COLS);
+                    while (!Thread.currentThread().isInterrupted() && (cursor = pager.next()) != null) {
                         log.debug("startExporting: new batch cursor has size " + cursor.getCount());
+                        final int dataIdx = cursor.getColumnIndex(VideoStore.MediaColumns.DATA);
+                        final int movieIdIdx = cursor.getColumnIndex(VideoStore.Video.VideoColumns.SCRAPER_MOVIE_ID);
+                        final int episodeIdIdx = cursor.getColumnIndex(VideoStore.Video.VideoColumns.SCRAPER_EPISODE_ID);
+                        final int scraperTypeIdx = cursor.getColumnIndex(VideoStore.Video.VideoColumns.ARCHOS_MEDIA_SCRAPER_TYPE);
 
-                        sNumberOfFilesRemainingToProcess = window;
+                        sNumberOfFilesRemainingToProcess = cursor.getCount();
 
                         while (cursor.moveToNext()
                                 && PreferenceManager.getDefaultSharedPreferences(AutoScrapeService.this).getBoolean(AutoScrapeService.KEY_ENABLE_AUTO_SCRAP, true)) {
                             if (sTotalNumberOfFilesRemainingToProcess > 0)
                                 nm.notify(NOTIFICATION_ID, nb.setContentText(getString(R.string.remaining_videos_to_process) + " " + sTotalNumberOfFilesRemainingToProcess).build());
-                            Uri fileUri = Uri.parse(cursor.getString(cursor.getColumnIndex(VideoStore.MediaColumns.DATA)));
-                            long movieID = cursor.getLong(cursor.getColumnIndex(VideoStore.Video.VideoColumns.SCRAPER_MOVIE_ID));
-                            long episodeID = cursor.getLong(cursor.getColumnIndex(VideoStore.Video.VideoColumns.SCRAPER_EPISODE_ID));
-                            final int scraperType = cursor.getInt(cursor.getColumnIndex(VideoStore.Video.VideoColumns.ARCHOS_MEDIA_SCRAPER_TYPE));
+                            Uri fileUri = Uri.parse(cursor.getString(dataIdx));
+                            long movieID = cursor.getLong(movieIdIdx);
+                            long episodeID = cursor.getLong(episodeIdIdx);
+                            final int scraperType = cursor.getInt(scraperTypeIdx);
                             BaseTags baseTags = null;
                             log.trace("startExporting: " + movieID + " fileUri " + fileUri);
                             if (scraperType == BaseTags.TV_SHOW) {
@@ -241,18 +257,19 @@ public class AutoScrapeService extends Service {
                             if (baseTags == null)
                                 continue;
                             log.trace("startExporting: Base tag created, exporting " + fileUri);
-                            if (exportContext != null && fileUri != null)
+                            if (fileUri != null)
                                 try {
-                                    NfoWriter.export(fileUri, baseTags, exportContext);
-                                } catch (IOException e) {
-                                    log.error("caugth IOException: ", e);
+                                    exportEngine.submit(fileUri, baseTags);
+                                } catch (InterruptedException e) {
+                                    log.warn("startExporting: interrupted");
+                                    Thread.currentThread().interrupt();
+                                    break;
                                 }
                         }
-                        index += window;
-                        cursor.close();
-                    } while (index < numberOfRows);
+                    }
+                    pager.close();
+                    exportEngine.finish();
                     sIsScraping = false;
-                    cursor.close();
                     log.debug("startExporting: call stopService");
                     stopService();
                 }
@@ -357,36 +374,45 @@ public class AutoScrapeService extends Service {
                         restartOnNextRound = false;
                         // find all videos not scraped yet looking at VideoStore.Video.VideoColumns.ARCHOS_MEDIA_SCRAPER_ID
                         // and get the final count (it could change while scrape is in progress)
-                        Cursor cursor = getFileListCursor(shouldRescrapAll&&onlyNotFound ?PARAM_SCRAPED_NOT_FOUND:shouldRescrapAll?PARAM_ALL:PARAM_NOT_SCRAPED, null, null, null);
+                        Cursor cursor = getFileListCursor(shouldRescrapAll&&onlyNotFound ?PARAM_SCRAPED_NOT_FOUND:shouldRescrapAll?PARAM_ALL:PARAM_NOT_SCRAPED);
                         int numberOfRows = cursor.getCount(); // total number of files to be processed
                         sTotalNumberOfFilesRemainingToProcess = numberOfRows;
                         cursor.close();
 
+                        // shared show caches for all the nfo of this round
+                        NfoParser.ImportContext nfoImportContext = new NfoParser.ImportContext();
                         NfoWriter.ExportContext exportContext = null;
                         if (NfoWriter.isNfoAutoExportEnabled(AutoScrapeService.this))
-                            exportContext = new NfoWriter.ExportContext();
-                        // now process the files to be scraped by batch of WINDOW_SIZE not to exceed the CursorWindow size limit and crash in case of large collection
-                        // note that since the db is modified during the scrape process removing non scraped entries fetching WINDOW_SIZE from index 0 is the good strategy
-                        int window = WINDOW_SIZE;
-                        int numberOfRowsRemaining = numberOfRows;
-                        do {
-                            if (window > numberOfRowsRemaining)
-                                window = numberOfRowsRemaining;
-                            log.debug("startScraping: new batch fetching cursor from index 0, window " + window + " entries <=" + numberOfRowsRemaining);
-                            cursor = getFileListCursor(shouldRescrapAll && onlyNotFound ? PARAM_SCRAPED_NOT_FOUND :
+                            exportContext = new NfoWriter.ExportContext(NfoExportFingerprints.getInstance(AutoScrapeService.this));
+                        // now process the files to be scraped by pages of WINDOW_SIZE not to exceed the CursorWindow size limit and crash in case of large collection
+                        // pages are keyed on _id thus each file is processed once whether its scrape modified it or not
+                        // scraping a page takes long, fetch the next one only when needed to see the latest state of the db
+                        CursorPager pager = getFileListPager(shouldRescrapAll && onlyNotFound ? PARAM_SCRAPED_NOT_FOUND :
                                             scrapeOnlyMovies ? PARAM_MOVIES :
                                                 shouldRescrapAll ? PARAM_ALL :
                                                         PARAM_NOT_SCRAPED,
-                                    BaseColumns._ID, null, window);
-                            log.debug("startScraping: new batch cursor has size " + cursor.getCount());
+                                    SCRAPER_ACTIVITY_COLS).setPrefetch(false);
+                        while ((cursor = pager.next()) != null) {
+                            final int window = cursor.getCount();
+                            log.debug("startScraping: new batch cursor has size " + window);
                             //log.trace("startScraping: dump cursor " + DatabaseUtils.dumpCursorToString(cursor));
 
                             sNumberOfFilesRemainingToProcess = window;
                             restartOnNextRound = true;
+                            // parse all the nfo of the batch at once: one listing per folder and parallel parsing
+                            Map<String, BaseTags> nfoTags = null;
+                            if (NfoParser.isNetworkNfoParseEnabled(AutoScrapeService.this)) {
+                                List<Uri> batchUris = new ArrayList<>(cursor.getCount());
+                                int dataColumn = cursor.getColumnIndex(VideoStore.MediaColumns.DATA);
+                                while (cursor.moveToNext())
+                                    batchUris.add(Uri.parse(cursor.getString(dataColumn)));
+                                cursor.moveToPosition(-1);
+                                nfoTags = NfoParser.getTagsForFiles(batchUris, AutoScrapeService.this, nfoImportContext);
+                            }
                             while (cursor.moveToNext() && isEnable(AutoScrapeService.this)) {
                                 // stop if disconnected while scraping
                                 if (!NetworkState.isLocalNetworkConnected(AutoScrapeService.this) && !NetworkState.isNetworkConnected(AutoScrapeService.this)) {
-                                    cursor.close();
+                                    pager.close();
                                     sNumberOfFilesRemainingToProcess = 0;
                                     log.debug("startScraping disconnected from network calling stopService");
                                     stopService();
@@ -406,9 +432,9 @@ public class AutoScrapeService extends Service {
                                 if (sTotalNumberOfFilesRemainingToProcess > 0)
                                     nm.notify(NOTIFICATION_ID, nb.setContentText(getString(R.string.remaining_videos_to_process) + " " + sTotalNumberOfFilesRemainingToProcess).build());
 
-                                if (NfoParser.isNetworkNfoParseEnabled(AutoScrapeService.this)) {
+                                if (nfoTags != null) {
 
-                                    BaseTags tags = NfoParser.getTagForFile(fileUri, AutoScrapeService.this);
+                                    BaseTags tags = nfoTags.get(fileUri.toString());
                                     if (tags != null) {
                                         log.trace("startScraping: found NFO");
                                         // if poster url are in nfo or in folder, download is automatic
@@ -485,7 +511,9 @@ public class AutoScrapeService extends Service {
                                         log.trace("startScraping: searching online " + title);
                                         SearchInfo searchInfo = SearchPreprocessor.instance().parseFileBased(fileUri, scrapUri);
                                         Scraper scraper = new Scraper(AutoScrapeService.this);
+                                        final long start = Metrics.now();
                                         result = scraper.getAutoDetails(searchInfo);
+                                        sOnlineLatency.stop(start);
                                         log.trace("startScraping: " + ((result.tag != null) ? result.tag.getTitle() : null) + " " + ((result.tag != null) ? result.tag.getOnlineId() : null));
                                     }
 
@@ -510,6 +538,7 @@ public class AutoScrapeService extends Service {
                                         // result exists thus scraped and no error for now
                                         notScraped = false;
                                         sNumberOfFilesScraped++;
+                                        sScraped.inc();
                                         noScrapeError = true;
                                         if (result.tag.getTitle() != null)
                                             log.trace("startScraping: info " + result.tag.getTitle());
@@ -536,8 +565,10 @@ public class AutoScrapeService extends Service {
                                         noScrapeError = result.status != ScrapeStatus.ERROR && result.status != ScrapeStatus.ERROR_NETWORK && result.status != ScrapeStatus.ERROR_NO_NETWORK;
                                         if (!noScrapeError) {
                                             log.trace("startScraping: file " + fileUri + " scrape error");
+                                            sErrors.inc();
                                         } else {
                                             sNumberOfFilesNotScraped++;
+                                            sNotFound.inc();
                                         }
                                         log.trace("startScraping: file " + fileUri + " not scraped among " + sNumberOfFilesNotScraped);
                                     }
@@ -561,9 +592,10 @@ public class AutoScrapeService extends Service {
                                         +sTotalNumberOfFilesRemainingToProcess + ")" + ", #scrapOrNetworkErrors=" + mNetworkOrScrapErrors +
                                         ", #notScraped=" + sNumberOfFilesNotScraped + ", current batch #filesToProcess=" + sNumberOfFilesRemainingToProcess + "/" + window);
                             }
-                            cursor.close();
-                            numberOfRowsRemaining -= window;
-                        } while (numberOfRowsRemaining > 0);
+                        }
+                        pager.close();
+                        if (exportContext != null)
+                            NfoExportFingerprints.getInstance(AutoScrapeService.this).flush();
                         if (numberOfRows == mNetworkOrScrapErrors) { //when as many errors, we assume we don't have the internet or that the scraper returns an error, do not loop
                             restartOnNextRound = false;
                             log.debug("startScraping: no internet or scraper errors, stop iterating");
@@ -575,7 +607,7 @@ public class AutoScrapeService extends Service {
                         }
                         shouldRescrapAll = false; //to avoid rescraping on next round
                         // final check if while scanning there was no more files to scrape added
-                        cursor = getFileListCursor(shouldRescrapAll&&onlyNotFound ?PARAM_SCRAPED_NOT_FOUND:shouldRescrapAll?PARAM_ALL:PARAM_NOT_SCRAPED, null, null, null);
+                        cursor = getFileListCursor(shouldRescrapAll&&onlyNotFound ?PARAM_SCRAPED_NOT_FOUND:shouldRescrapAll?PARAM_ALL:PARAM_NOT_SCRAPED);
                         if(cursor.getCount()>0) {
                             restartOnNextRound = true;
                             log.debug("startScraping: new entries to scrape found most likely added during scrape process, restartOnNextRound");
@@ -584,6 +616,7 @@ public class AutoScrapeService extends Service {
                     } while(restartOnNextRound
                             &&PreferenceManager.getDefaultSharedPreferences(AutoScrapeService.this).getBoolean(AutoScrapeService.KEY_ENABLE_AUTO_SCRAP, true)); //if we had something to do, we look for new videos
                     sIsScraping = false;
+                    Metrics.logDump("scrape");
                     mHandler.post(new Runnable() {
                         @Override
                         public void run() {
@@ -617,10 +650,7 @@ public class AutoScrapeService extends Service {
             VideoStore.Video.VideoColumns.ARCHOS_MEDIA_SCRAPER_ID + ">=0 AND " +
             VideoStore.Video.VideoColumns.SCRAPER_MOVIE_ID + " IS NOT NULL AND " + WHERE_BASE;
 
-    private Cursor getFileListCursor(int scrapStatusParam, String sortOrder, Integer offset, Integer limit) {
-        // Look for all the videos not yet processed and not located in the Camera folder
-        final String cameraPath =  Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DCIM).getPath() + "/Camera";
-        String[] selectionArgs = new String[]{ cameraPath + "/%" };
+    private static String getFileListSelection(int scrapStatusParam) {
         String where  = null;
         switch(scrapStatusParam){
             case PARAM_NOT_SCRAPED:
@@ -642,11 +672,22 @@ public class AutoScrapeService extends Service {
                 where = WHERE_BASE;
                 break;
         }
-        final String LIMIT = ((offset != null) ? offset + ",": "") + ((limit != null) ? limit : "");
-        if (limit != null || offset != null) {
-            return getContentResolver().query(VideoStore.Video.Media.EXTERNAL_CONTENT_URI.buildUpon().appendQueryParameter("limit", LIMIT).build(), SCRAPER_ACTIVITY_COLS, where, selectionArgs, sortOrder);
-        } else {
-            return getContentResolver().query(VideoStore.Video.Media.EXTERNAL_CONTENT_URI, SCRAPER_ACTIVITY_COLS, where, selectionArgs, sortOrder);
-        }
+        return where;
+    }
+
+    private static String[] getFileListSelectionArgs() {
+        // Look for all the videos not yet processed and not located in the Camera folder
+        final String cameraPath =  Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DCIM).getPath() + "/Camera";
+        return new String[]{ cameraPath + "/%" };
+    }
+
+    private CursorPager getFileListPager(int scrapStatusParam, String[] projection) {
+        return new CursorPager(getContentResolver(), VideoStore.Video.Media.EXTERNAL_CONTENT_URI, projection,
+                getFileListSelection(scrapStatusParam), getFileListSelectionArgs(), WINDOW_SIZE);
+    }
+
+    private Cursor getFileListCursor(int scrapStatusParam) {
+        return getContentResolver().query(VideoStore.Video.Media.EXTERNAL_CONTENT_URI, SCRAPER_ACTIVITY_COLS,
+                getFileListSelection(scrapStatusParam), getFileListSelectionArgs(), null);
     }
 }
\ No newline at end of file
@@ -82,6 +82,16 @@ public abstract class BaseTags implements Parcelable {
     protected long mVideoId;
     protected List<ScraperImage> mPosters;
     protected List<ScraperImage> mBackdrops;
+    // poster columns of a video cursor row, built into mPosters when the posters are asked for
+    private ScraperImage.Type mDeferredPosterType;
+    private String mDeferredPosterSeed;
+    private long mDeferredPosterId;
+    private long mDeferredPosterRemoteId;
+    private int mDeferredPosterSeason = -1;
+    private String mDeferredPosterLargeFile;
+    private String mDeferredPosterLargeUrl;
+    private String mDeferredPosterThumbFile;
+    private String mDeferredPosterThumbUrl;
     protected long mRuntimeMs;
     protected long mLastPlayedMs;
     protected long mBookmark;
@@ -122,8 +132,8 @@ public abstract class BaseTags implements Parcelable {
     public float getRating() { return mRating; }
     public String getTitle() { return mTitle; }
     public String getStorageName() { return mTitle; }
-    public List<ScraperImage> getPosters() { return mPosters; }
-    public ScraperImage getDefaultPoster() { return getFirst(mPosters); }
+    public List<ScraperImage> getPosters() { return posters(); }
+    public ScraperImage getDefaultPoster() { return getFirst(posters()); }
     public List<ScraperImage> getBackdrops() { return mBackdrops; }
     public ScraperImage getDefaultBackdrop() { return getFirst(mBackdrops); }
     public String getContentRating() { return mContentRating; }
@@ -229,6 +239,9 @@ public abstract class BaseTags implements Parcelable {
     }
 
     public File getCover() {
+        // what list UIs ask for, no need to build the poster for it
+        if (mDeferredPosterType != null)
+            return mDeferredPosterLargeFile != null ? new File(mDeferredPosterLargeFile) : null;
         ScraperImage image = getDefaultPoster();
         if (image != null)
             return image.getLargeFileF();
@@ -273,8 +286,9 @@ public abstract class BaseTags implements Parcelable {
 
     // normally not used since huge footprint -> downloaded when browsing
     public void downloadPosters(Context context) {
-        if (mPosters != null)
-            for (ScraperImage poster : mPosters) {
+        List<ScraperImage> posters = posters();
+        if (posters != null)
+            for (ScraperImage poster : posters) {
                 log.debug("downloadPosters: " + mTitle + ", url " + poster.getLargeUrl());
                 poster.download(context);
             } else
@@ -411,7 +425,51 @@ public abstract class BaseTags implements Parcelable {
     public void setPlot(String plot) { mPlot = plot; }
     public void setRating(float rating) { mRating = rating; }
     public void setTitle(String title) { mTitle = title; }
-    public void setPosters(List<ScraperImage> list) { mPosters = list; }
+    public void setPosters(List<ScraperImage> list) {
+        mDeferredPosterType = null;
+        mPosters = list;
+    }
+
+    /**
+     * Sets the poster from the columns of a video cursor row. The ScraperImage is only built when the
+     * posters are asked for, {@link #getCover()} reads the large file as is.
+     */
+    public void setDeferredPoster(ScraperImage.Type type, String nameSeed, long id, long remoteId, int season,
+            String largeFile, String largeUrl, String thumbFile, String thumbUrl) {
+        mPosters = null;
+        mDeferredPosterType = type;
+        mDeferredPosterSeed = nameSeed;
+        mDeferredPosterId = id;
+        mDeferredPosterRemoteId = remoteId;
+        mDeferredPosterSeason = season;
+        mDeferredPosterLargeFile = largeFile;
+        mDeferredPosterLargeUrl = largeUrl;
+        mDeferredPosterThumbFile = thumbFile;
+        mDeferredPosterThumbUrl = thumbUrl;
+    }
+
+    /** @return the posters, built from the deferred poster if there is one */
+    protected List<ScraperImage> posters() {
+        if (mDeferredPosterType != null) {
+            ScraperImage image = new ScraperImage(mDeferredPosterType, mDeferredPosterSeed);
+            image.setLargeFile(mDeferredPosterLargeFile);
+            image.setLargeUrl(mDeferredPosterLargeUrl);
+            image.setThumbFile(mDeferredPosterThumbFile);
+            image.setThumbUrl(mDeferredPosterThumbUrl);
+            image.setId(mDeferredPosterId);
+            image.setRemoteId(mDeferredPosterRemoteId);
+            if (mDeferredPosterSeason != -1)
+                image.setSeason(mDeferredPosterSeason);
+            mPosters = image.asList();
+            mDeferredPosterType = null;
+            mDeferredPosterSeed = null;
+            mDeferredPosterLargeFile = null;
+            mDeferredPosterLargeUrl = null;
+            mDeferredPosterThumbFile = null;
+            mDeferredPosterThumbUrl = null;
+        }
+        return mPosters;
+    }
     public void setBackdrops(List<ScraperImage> list) { mBackdrops = list; }
     public void setActorsFormatted(String actors) { mActorsFormatted = actors; }
     public void setDirectorsFormatted(String directors) { mDirectorsFormatted = directors; }
@@ -431,7 +489,7 @@ public abstract class BaseTags implements Parcelable {
 
     /** Adds this image as first element to the list of posters */
     public void addDefaultPoster(ScraperImage image) {
-        mPosters = addAsFirstItem(mPosters, image);
+        mPosters = addAsFirstItem(posters(), image);
     }
 
     @Override
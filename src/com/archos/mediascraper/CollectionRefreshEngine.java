@@ -0,0 +1,170 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.mediascraper;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.os.RemoteException;
+
+import com.archos.mediaprovider.video.ScraperStore;
+import com.archos.mediascraper.themoviedb3.CollectionInfo;
+import com.archos.mediascraper.themoviedb3.CollectionResult;
+import com.archos.mediascraper.themoviedb3.MovieCollection;
+import com.uwetrottmann.tmdb2.services.CollectionsService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refreshes movie collections from tmdb:
+ * collection details are fetched by a bounded pool, posters/backdrops of all collections go through
+ * one shared image download stage and the db updates are committed in batched transactions.
+ */
+public class CollectionRefreshEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(CollectionRefreshEngine.class);
+
+    private static final int FETCH_THREADS = 4;
+    private static final int IMAGE_THREADS = 2;
+    // number of collection updates per applyBatch transaction
+    private static final int BATCH_SIZE = 50;
+    /** collections refreshed more recently than this are skipped unless forced */
+    public static final long FRESH_DURATION_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    // posted when a collection could not be refreshed
+    private static final CollectionTags FAILED = new CollectionTags();
+
+    private final Context mContext;
+    private final CollectionsService mCollectionsService;
+    private final String mLanguage;
+
+    public interface Listener {
+        void onProgress(int done, int total);
+    }
+
+    public CollectionRefreshEngine(Context context, CollectionsService collectionsService, String language) {
+        mContext = context.getApplicationContext();
+        mCollectionsService = collectionsService;
+        mLanguage = language;
+    }
+
+    /** @return true if a collection refreshed at lastUpdated (ms) does not need to be refreshed now */
+    public static boolean isFresh(long lastUpdated) {
+        return lastUpdated > 0 && System.currentTimeMillis() - lastUpdated < FRESH_DURATION_MILLIS;
+    }
+
+    /**
+     * Blocking, refreshes the given collections.
+     * @return number of collections updated in db
+     */
+    public int refresh(List<Long> collectionIds, Listener listener) {
+        int total = collectionIds.size();
+        if (total == 0) return 0;
+        long start = System.currentTimeMillis();
+        final LinkedBlockingQueue<CollectionTags> results = new LinkedBlockingQueue<>();
+        ExecutorService fetchExecutor = Executors.newFixedThreadPool(Math.min(FETCH_THREADS, total));
+        final ExecutorService imageExecutor = Executors.newFixedThreadPool(IMAGE_THREADS);
+        for (final Long collectionId : collectionIds) {
+            fetchExecutor.execute(() -> {
+                CollectionTags tags = null;
+                List<ScraperImage> images = null;
+                try {
+                    tags = fetch(collectionId);
+                    if (tags != null) images = tags.generateImages(mContext);
+                } catch (RuntimeException e) {
+                    log.error("refresh: caught exception for collection " + collectionId, e);
+                    tags = null;
+                }
+                if (tags == null) {
+                    results.add(FAILED);
+                    return;
+                }
+                final CollectionTags fetched = tags;
+                final List<ScraperImage> toDownload = images;
+                imageExecutor.execute(() -> {
+                    try {
+                        for (ScraperImage image : toDownload) image.download(mContext);
+                    } finally {
+                        results.add(fetched);
+                    }
+                });
+            });
+        }
+
+        ContentResolver cr = mContext.getContentResolver();
+        ArrayList<ContentProviderOperation> batch = new ArrayList<>(BATCH_SIZE);
+        int updated = 0;
+        try {
+            for (int done = 1; done <= total; done++) {
+                CollectionTags tags = results.take();
+                if (tags != FAILED) {
+                    // collections come from the db thus they exist: update only
+                    batch.add(tags.toContentProviderOperation(cr, true));
+                    if (batch.size() >= BATCH_SIZE) updated += commit(cr, batch);
+                }
+                if (listener != null) listener.onProgress(done, total);
+            }
+        } catch (InterruptedException e) {
+            log.warn("refresh: interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            fetchExecutor.shutdownNow();
+            imageExecutor.shutdownNow();
+            updated += commit(cr, batch);
+        }
+        log.debug("refresh: updated " + updated + "/" + total + " collections in " + (System.currentTimeMillis() - start) + "ms");
+        return updated;
+    }
+
+    private CollectionTags fetch(long collectionId) {
+        log.debug("fetch: scraping " + collectionId);
+        CollectionResult collectionResult = MovieCollection.getInfo(collectionId, mLanguage, mCollectionsService);
+        if (collectionResult.status != ScrapeStatus.OKAY || collectionResult.collectionInfo == null) {
+            log.debug("fetch: failed for " + collectionId + " status " + collectionResult.status);
+            return null;
+        }
+        CollectionInfo collectionInfo = collectionResult.collectionInfo;
+        CollectionTags collectionTag = new CollectionTags();
+        collectionTag.setId(collectionInfo.id);
+        collectionTag.setTitle(collectionInfo.name);
+        collectionTag.setPlot(collectionInfo.description);
+        collectionTag.setPosterPath(collectionInfo.poster);
+        collectionTag.setBackdropPath(collectionInfo.backdrop);
+        return collectionTag;
+    }
+
+    private static int commit(ContentResolver cr, ArrayList<ContentProviderOperation> batch) {
+        if (batch.isEmpty()) return 0;
+        int count = batch.size();
+        try {
+            cr.applyBatch(ScraperStore.AUTHORITY, batch);
+        } catch (RemoteException | OperationApplicationException e) {
+            log.error("commit: caught exception", e);
+            count = 0;
+        }
+        batch.clear();
+        return count;
+    }
+}
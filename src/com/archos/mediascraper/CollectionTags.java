@@ -32,6 +32,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
 
 public class CollectionTags implements Parcelable {
     private static final Logger log = LoggerFactory.getLogger(CollectionTags.class);
@@ -157,6 +158,26 @@ public class CollectionTags implements Parcelable {
                 ", forceUpdate " + forceUpdate);
 
         ContentResolver cr = context.getContentResolver();
+        ArrayList<ContentProviderOperation> allOperations = new ArrayList<>();
+        allOperations.add(toContentProviderOperation(cr, forceUpdate));
+
+        long result = -1;
+        try {
+            ContentProviderResult[] results = cr.applyBatch(ScraperStore.AUTHORITY, allOperations);
+            result = (results != null && results.length > 0) ? mId : -1;
+        } catch (RemoteException e) {
+            log.error("Exception :" + e, e);
+        } catch (OperationApplicationException e) {
+            log.error("Exception :" + e, e);
+        }
+        return result;
+    }
+
+    /**
+     * Builds the insert or update operation for this collection, can be batched with others.
+     * Marks the collection as refreshed now.
+     */
+    public final ContentProviderOperation toContentProviderOperation(ContentResolver cr, boolean forceUpdate) {
         ContentProviderOperation.Builder cop = null;
         if (forceUpdate) { // we know that the entry exists, this is an update
             cop = ContentProviderOperation.newUpdate(ScraperStore.MovieCollections.URI.BASE).withSelection(WHERE_ID, new String[]{String.valueOf(mId)});
@@ -182,19 +203,8 @@ public class CollectionTags implements Parcelable {
         cop.withValue(ScraperStore.MovieCollections.BACKDROP_LARGE_FILE, mBackdropLargeFile);
         cop.withValue(ScraperStore.MovieCollections.BACKDROP_THUMB_URL, mBackdropThumbUrl);
         cop.withValue(ScraperStore.MovieCollections.BACKDROP_THUMB_FILE, mBackdropThumbFile);
-        ArrayList<ContentProviderOperation> allOperations = new ArrayList<>();
-        allOperations.add(cop.build());
-
-        long result = -1;
-        try {
-            ContentProviderResult[] results = cr.applyBatch(ScraperStore.AUTHORITY, allOperations);
-            result = (results != null && results.length > 0) ? mId : -1;
-        } catch (RemoteException e) {
-            log.error("Exception :" + e, e);
-        } catch (OperationApplicationException e) {
-            log.error("Exception :" + e, e);
-        }
-        return result;
+        cop.withValue(ScraperStore.MovieCollections.LAST_UPDATED, System.currentTimeMillis());
+        return cop.build();
     }
 
     @Override
@@ -232,9 +242,34 @@ public class CollectionTags implements Parcelable {
                                                ImageConfiguration.BackdropSize backdropFullSize,
                                                ImageConfiguration.BackdropSize backdropThumbSize,
                                                String nameSeed, Context context) {
+        for (ScraperImage image : generateCollectionImages(posterFullSize, posterThumbSize,
+                backdropFullSize, backdropThumbSize, nameSeed, context)) {
+            image.download(context);
+        }
+    }
+
+    // sets the posters/backdrops urls and files without downloading them, default sizes
+    public List<ScraperImage> generateImages(Context context) {
+        return generateCollectionImages(ImageConfiguration.PosterSize.W342, // large poster
+                ImageConfiguration.PosterSize.W92,                          // thumb poster
+                ImageConfiguration.BackdropSize.W1280,                      // large bd
+                ImageConfiguration.BackdropSize.W300,                       // thumb bd
+                mTitle, context);
+    }
+
+    /**
+     * sets the posters/backdrops urls and files
+     * @return the images that need to be downloaded
+     */
+    public List<ScraperImage> generateCollectionImages(ImageConfiguration.PosterSize posterFullSize,
+                                                       ImageConfiguration.PosterSize posterThumbSize,
+                                                       ImageConfiguration.BackdropSize backdropFullSize,
+                                                       ImageConfiguration.BackdropSize backdropThumbSize,
+                                                       String nameSeed, Context context) {
+        List<ScraperImage> images = new ArrayList<>(2);
         if (getId() != -1) {
             String path = getPosterPath();
-            log.debug("downloadCollectionImage: treating collection poster " + path);
+            log.debug("generateCollectionImages: treating collection poster " + path);
             String fullUrl, thumbUrl;
             ScraperImage image;
             if (path != null) {
@@ -244,7 +279,7 @@ public class CollectionTags implements Parcelable {
                 image.setLargeUrl(fullUrl);
                 image.setThumbUrl(thumbUrl);
                 image.generateFileNames(context);
-                image.download(context);
+                images.add(image);
                 setPosterLargeFile(image.getLargeFile());
                 setPosterLargeUrl(fullUrl);
                 setPosterThumbFile(image.getThumbFile());
@@ -252,7 +287,7 @@ public class CollectionTags implements Parcelable {
             }
 
             path = getBackdropPath();
-            log.debug("downloadCollectionImage: treating collection backdrop " + path);
+            log.debug("generateCollectionImages: treating collection backdrop " + path);
             if (path != null) {
                 fullUrl = ImageConfiguration.getUrl(path, backdropFullSize);
                 thumbUrl = ImageConfiguration.getUrl(path, backdropThumbSize);
@@ -260,13 +295,14 @@ public class CollectionTags implements Parcelable {
                 image.setLargeUrl(fullUrl);
                 image.setThumbUrl(thumbUrl);
                 image.generateFileNames(context);
-                image.download(context);
+                images.add(image);
                 setBackdropLargeFile(image.getLargeFile());
                 setBackdropLargeUrl(fullUrl);
                 setBackdropThumbFile(image.getThumbFile());
                 setBackdropThumbUrl(thumbUrl);
             }
         }
+        return images;
     }
 
 }
@@ -0,0 +1,188 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.mediascraper;
+
+import android.net.Uri;
+import android.util.LruCache;
+
+import com.archos.filecorelibrary.FileUtils;
+import com.archos.filecorelibrary.MetaFile2;
+import com.archos.filecorelibrary.RawLister;
+import com.archos.mediacenter.filecoreextension.upnp2.RawListerFactoryWithUpnp;
+import com.archos.mediaprovider.Metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Short lived cache of folder listings (folder uri -> names of the files in it).
+ * Used to check if nfo or image candidates next to a video exist with one listing per folder
+ * instead of one stat per candidate, which matters on smb/sftp shares.
+ * Listings can be pushed by whoever already listed the folder (e.g. FileVisitor during a network scan).
+ */
+public class FolderListingCache {
+
+    private static final Logger log = LoggerFactory.getLogger(FolderListingCache.class);
+
+    private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(2);
+    private static final int MAX_FOLDERS = 64;
+
+    private static final LruCache<String, Listing> sCache = new LruCache<>(MAX_FOLDERS);
+    // folders listed by this cache (each one a remote round trip)
+    private static final AtomicLong sListCount = new AtomicLong();
+    private static final AtomicLong sHitCount = new AtomicLong();
+
+    static {
+        Metrics.gauge("folderlisting.lists", sListCount::get);
+        Metrics.gauge("folderlisting.hits", sHitCount::get);
+    }
+
+    private static class Listing {
+        final HashSet<String> names;
+        // lower case name -> actual name, remote shares (smb) are usually case insensitive
+        final HashMap<String, String> lowerCaseNames;
+        final long time;
+
+        Listing(HashSet<String> names) {
+            this.names = names;
+            this.lowerCaseNames = new HashMap<>(names.size() * 2);
+            for (String name : names)
+                lowerCaseNames.put(name.toLowerCase(Locale.ROOT), name);
+            this.time = System.currentTimeMillis();
+        }
+
+        String find(String name, boolean ignoreCase) {
+            if (names.contains(name)) return name;
+            return ignoreCase ? lowerCaseNames.get(name.toLowerCase(Locale.ROOT)) : null;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - time > TTL_MILLIS;
+        }
+    }
+
+    private FolderListingCache() {
+        /* all static */
+    }
+
+    private static String key(Uri folder) {
+        String key = folder.toString();
+        if (key.endsWith("/")) key = key.substring(0, key.length() - 1);
+        return key;
+    }
+
+    /** stores a listing that has been obtained elsewhere */
+    public static void put(Uri folder, List<MetaFile2> files) {
+        if (folder == null || files == null) return;
+        sCache.put(key(folder), new Listing(toNames(files)));
+    }
+
+    private static boolean isCaseInsensitive(Uri folder) {
+        return !FileUtils.isLocal(folder);
+    }
+
+    private static HashSet<String> toNames(List<MetaFile2> files) {
+        HashSet<String> names = new HashSet<>(files.size() * 2);
+        for (MetaFile2 file : files) {
+            // only files are candidates for nfo and images
+            if (file.isFile()) names.add(file.getName());
+        }
+        return names;
+    }
+
+    /** drops the listing of a folder, e.g. after writing into it */
+    public static void invalidate(Uri folder) {
+        if (folder != null) sCache.remove(key(folder));
+    }
+
+    public static void clear() {
+        sCache.evictAll();
+    }
+
+    /**
+     * Checks if a file exists using the listing of its parent folder.
+     * @return null if the folder could not be listed: caller has to check the file itself
+     */
+    public static Boolean exists(Uri file) {
+        if (file == null) return Boolean.FALSE;
+        Uri folder = FileUtils.getParentUrl(file);
+        String name = file.getLastPathSegment();
+        if (folder == null || name == null) return null;
+        Listing listing = getListing(folder);
+        if (listing == null) return null;
+        return listing.find(name, isCaseInsensitive(folder)) != null;
+    }
+
+    /**
+     * Looks for a file in a folder, ignoring case on remote shares as the server would.
+     * @return the name of the file as listed, null if there is none
+     * @throws FileNotFoundException if the folder could not be listed: caller has to check the file itself
+     */
+    public static String find(Uri folder, String name) throws FileNotFoundException {
+        Listing listing = getListing(folder);
+        if (listing == null) throw new FileNotFoundException("cannot list " + folder);
+        return listing.find(name, isCaseInsensitive(folder));
+    }
+
+    /** @return names of the files in the folder, null if it cannot be listed */
+    public static HashSet<String> getNames(Uri folder) {
+        Listing listing = getListing(folder);
+        return listing != null ? listing.names : null;
+    }
+
+    private static Listing getListing(Uri folder) {
+        String key = key(folder);
+        Listing listing = sCache.get(key);
+        if (listing != null && !listing.isExpired()) {
+            sHitCount.incrementAndGet();
+            return listing;
+        }
+        List<MetaFile2> files;
+        try {
+            RawLister lister = RawListerFactoryWithUpnp.getRawListerForUrl(folder);
+            files = lister != null ? lister.getFileList() : null;
+        } catch (Exception e) {
+            log.debug("getNames: cannot list " + folder + ": " + e);
+            files = null;
+        }
+        sListCount.incrementAndGet();
+        if (files == null) {
+            sCache.remove(key);
+            return null;
+        }
+        listing = new Listing(toNames(files));
+        sCache.put(key, listing);
+        return listing;
+    }
+
+    /** number of folder listings done by this cache */
+    public static long getListCount() {
+        return sListCount.get();
+    }
+
+    /** number of existence checks answered from a cached listing */
+    public static long getHitCount() {
+        return sHitCount.get();
+    }
+}
@@ -15,6 +15,8 @@
 
 package com.archos.mediascraper;
 
+import com.archos.mediaprovider.Metrics;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +41,11 @@ public class HttpCache {
 
     private static final Logger log = LoggerFactory.getLogger(HttpCache.class);
 
+    private static final Metrics.Counter sHits = Metrics.counter("httpcache.hits");
+    private static final Metrics.Counter sDownloadFailures = Metrics.counter("httpcache.download_failures");
+    private static final Metrics.Counter sDownloadBytes = Metrics.counter("httpcache.download_bytes");
+    private static final Metrics.Histogram sDownloadLatency = Metrics.histogram("httpcache.download");
+
     // TRACE is for speed
 
     public static final long UNLIMITED = -1;
@@ -214,6 +221,7 @@ public class HttpCache {
             File preferred = getResultingPreferredCacheFile(url);
             if (fileIsValid(preferred)) {
                 log.debug("getFile: already have this file " + preferred.getPath());
+                sHits.inc();
                 return preferred;
             } else {
                 log.debug("getFile: we do not have this " + preferred.getPath());
@@ -242,8 +250,7 @@ public class HttpCache {
                 OutputStream output = null;
                 InputStream input = null;
                 try {
-                    long start = 0;
-                    if (log.isTraceEnabled()) start = System.currentTimeMillis();
+                    long start = Metrics.now();
                     output = new FileOutputStream(inProgressFile);
                     input = downloader.getInputStream(extraHeaders);
                     BufferPool pool = getBufferPool();
@@ -253,12 +260,11 @@ public class HttpCache {
 
                     output.close();
                     output = null;
-                    if (log.isTraceEnabled()) {
-                        long end = System.currentTimeMillis();
-                        long time = end - start;
-                        long size = inProgressFile.exists() ? inProgressFile.length() : 0;
+                    long time = sDownloadLatency.stop(start);
+                    long size = inProgressFile.exists() ? inProgressFile.length() : 0;
+                    sDownloadBytes.add(size);
+                    if (log.isTraceEnabled())
                         logSpeed(url, time, size);
-                    }
                     if (inProgressFile.renameTo(generatedFile)) {
                         log.debug("getFile: file renamed into " + generatedFile.getPath());
                         mFileMap.put(url2Filename(url), generatedFile);
@@ -281,6 +287,8 @@ public class HttpCache {
                     if (!downloadSuccess)
                         generatedFile.delete();
                 }
+                if (!downloadSuccess)
+                    sDownloadFailures.inc();
                 if (!downloadSuccess && mFallbackDirectory != null) {
                     log.debug("checking for fallback file");
                     File fallbackFile = getResultingFallbackCacheFile(url);
@@ -290,6 +298,8 @@ public class HttpCache {
                         log.debug("getFile: using " + ret.getAbsolutePath() + " as fallback");
                     }
                 }
+            } else {
+                sHits.inc();
             }
         } finally {
             // this is not the error
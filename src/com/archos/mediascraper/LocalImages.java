@@ -26,6 +26,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.util.Locale;
 
 /**
@@ -50,7 +51,9 @@ import java.util.Locale;
  * once an image was found.
  * <p>
  * Note: Operation is quite expensive since it tests for several images before
- * returning a result. Use in background.
+ * returning a result. Candidates are checked against a cached listing of their
+ * folder (see {@link FolderListingCache}) but that still needs one listing per folder.
+ * Use in background.
  */
 public class LocalImages {
 
@@ -311,8 +314,18 @@ public class LocalImages {
         return result;
     }
 
-    /** returns Uri only if /folder/folder/.../name is an existing file */
+    /**
+     * returns Uri only if /folder/folder/.../name is an existing file
+     * all candidates of a folder are resolved from a single listing shared with NfoParser,
+     * the file itself is only checked if the folder cannot be listed
+     */
     private static Uri getIfAvailable(Uri folder, String name) {
+        try {
+            String listed = FolderListingCache.find(folder, name);
+            return listed != null ? Uri.withAppendedPath(folder, listed) : null;
+        } catch (FileNotFoundException e) {
+            // folder cannot be listed
+        }
         Uri toReturn = Uri.withAppendedPath(folder, name);
         FileEditor editor = FileEditorFactoryWithUpnp.getFileEditorForUrl(toReturn, null);
         return editor.exists()?toReturn:null;
@@ -231,7 +231,7 @@ public class MovieTags extends VideoTags {
         // the operation in "allOperations"
         int posterId = -1;
         int backdropId = -1;
-        for (ScraperImage image : safeList(mPosters)) {
+        for (ScraperImage image : safeList(posters())) {
             if (posterId == -1)
                 posterId = allOperations.size();
             allOperations.add(image.getSaveOperationBackreferenced(0));
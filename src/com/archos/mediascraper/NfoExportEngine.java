@@ -0,0 +1,111 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.mediascraper;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.archos.mediaprovider.video.NetworkScannerServiceVideo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports nfo files and images of many videos: tags are built by the caller, files are written by
+ * one small pool per server so that different shares are written concurrently without hammering
+ * one of them. Unchanged files are skipped through {@link NfoExportFingerprints}.
+ */
+public class NfoExportEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(NfoExportEngine.class);
+
+    private static final int THREADS_PER_SERVER = 2;
+    // bounds the number of built tags waiting to be written
+    private static final int MAX_PENDING = 64;
+
+    private final NfoExportFingerprints mFingerprints;
+    private final NfoWriter.ExportContext mExportContext;
+    private final HashMap<String, ExecutorService> mExecutors = new HashMap<String, ExecutorService>();
+    private final Semaphore mPending = new Semaphore(MAX_PENDING);
+    private final long mStart = System.currentTimeMillis();
+
+    public NfoExportEngine(Context context) {
+        mFingerprints = NfoExportFingerprints.getInstance(context);
+        mExportContext = new NfoWriter.ExportContext(mFingerprints);
+    }
+
+    /** queues the export of tags, blocks if too many exports are pending */
+    public void submit(final Uri video, final BaseTags tags) throws InterruptedException {
+        if (video == null || tags == null)
+            return;
+        mPending.acquire();
+        try {
+            getExecutor(video).execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        NfoWriter.export(video, tags, mExportContext);
+                    } catch (IOException | RuntimeException e) {
+                        // can't export, folder not writable?
+                        log.warn("submit: cannot export " + video + ": " + e);
+                    } finally {
+                        mPending.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            mPending.release();
+            throw e;
+        }
+    }
+
+    private ExecutorService getExecutor(Uri video) {
+        // "" for local files
+        String server = NetworkScannerServiceVideo.extractSmbServer(video);
+        ExecutorService executor = mExecutors.get(server);
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(THREADS_PER_SERVER);
+            mExecutors.put(server, executor);
+        }
+        return executor;
+    }
+
+    /** waits for all submitted exports and persists fingerprints */
+    public void finish() {
+        for (ExecutorService executor : mExecutors.values())
+            executor.shutdown();
+        try {
+            for (ExecutorService executor : mExecutors.values())
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            log.warn("finish: interrupted");
+            for (ExecutorService executor : mExecutors.values())
+                executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        mExecutors.clear();
+        mFingerprints.flush();
+        log.debug("finish: written " + mExportContext.getWrittenCount() + ", skipped " + mExportContext.getSkippedCount()
+                + " in " + (System.currentTimeMillis() - mStart) + "ms");
+    }
+}
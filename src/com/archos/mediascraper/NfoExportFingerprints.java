@@ -0,0 +1,156 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.mediascraper;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persisted fingerprints of the files written by NfoWriter (export target uri -> fingerprint),
+ * hash of the nfo content for nfo files and source cache file for images.
+ * Lets an export skip the targets that would be rewritten with the same content.
+ * Updates are buffered and written by batches in one transaction.
+ */
+public class NfoExportFingerprints {
+
+    private static final Logger log = LoggerFactory.getLogger(NfoExportFingerprints.class);
+
+    private static final int DATABASE_VERSION = 1;
+    private static final String DATABASE_NAME = "nfo_export_db";
+    private static final String TABLE = "fingerprints";
+    private static final String KEY_TARGET = "target";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String CREATE_TABLE = "CREATE TABLE " + TABLE + " (" +
+            KEY_TARGET + " TEXT PRIMARY KEY NOT NULL, " +
+            KEY_FINGERPRINT + " TEXT NOT NULL)";
+    private static final String[] PROJECTION = { KEY_FINGERPRINT };
+    private static final String SELECTION = KEY_TARGET + "=?";
+    private static final String REPLACE = "INSERT OR REPLACE INTO " + TABLE +
+            " (" + KEY_TARGET + ", " + KEY_FINGERPRINT + ") VALUES (?, ?)";
+
+    private static final int FLUSH_LIMIT = 100;
+
+    private static NfoExportFingerprints sInstance;
+
+    private final DatabaseHelper mDbHelper;
+    // not yet written updates, guarded by this
+    private final HashMap<String, String> mPending = new HashMap<String, String>();
+
+    public static synchronized NfoExportFingerprints getInstance(Context context) {
+        if (sInstance == null)
+            sInstance = new NfoExportFingerprints(context.getApplicationContext());
+        return sInstance;
+    }
+
+    private NfoExportFingerprints(Context context) {
+        mDbHelper = new DatabaseHelper(context);
+    }
+
+    /** @return fingerprint recorded for target at its last export, null if unknown */
+    public String get(String target) {
+        synchronized (this) {
+            String pending = mPending.get(target);
+            if (pending != null)
+                return pending;
+        }
+        Cursor c = null;
+        try {
+            c = mDbHelper.getReadableDatabase().query(TABLE, PROJECTION, SELECTION,
+                    new String[] { target }, null, null, null);
+            return c.moveToFirst() ? c.getString(0) : null;
+        } catch (SQLiteException e) {
+            log.error("get: caught SQLiteException", e);
+            return null;
+        } finally {
+            if (c != null) c.close();
+        }
+    }
+
+    public void put(String target, String fingerprint) {
+        boolean flush;
+        synchronized (this) {
+            mPending.put(target, fingerprint);
+            flush = mPending.size() >= FLUSH_LIMIT;
+        }
+        if (flush)
+            flush();
+    }
+
+    /** writes pending fingerprints, call at the end of an export */
+    public void flush() {
+        HashMap<String, String> toWrite;
+        synchronized (this) {
+            if (mPending.isEmpty())
+                return;
+            toWrite = new HashMap<String, String>(mPending);
+        }
+        try {
+            SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                SQLiteStatement statement = db.compileStatement(REPLACE);
+                for (Map.Entry<String, String> entry : toWrite.entrySet()) {
+                    statement.bindString(1, entry.getKey());
+                    statement.bindString(2, entry.getValue());
+                    statement.executeInsert();
+                }
+                statement.close();
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLiteException e) {
+            log.error("flush: caught SQLiteException", e);
+            return;
+        }
+        synchronized (this) {
+            // keep what has been updated again in the meantime
+            for (Map.Entry<String, String> entry : toWrite.entrySet()) {
+                if (entry.getValue().equals(mPending.get(entry.getKey())))
+                    mPending.remove(entry.getKey());
+            }
+        }
+    }
+
+    private static class DatabaseHelper extends SQLiteOpenHelper {
+
+        DatabaseHelper(Context context) {
+            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL(CREATE_TABLE);
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            // fingerprints are only a cache
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+            onCreate(db);
+        }
+    }
+}
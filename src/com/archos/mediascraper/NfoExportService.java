@@ -18,7 +18,6 @@ package com.archos.mediascraper;
 import android.app.IntentService;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
@@ -33,12 +32,12 @@ import android.util.Log;
 import com.archos.filecorelibrary.MetaFile2;
 import com.archos.filecorelibrary.MetaFile2Factory;
 import com.archos.mediacenter.utils.AppState;
+import com.archos.mediaprovider.CursorPager;
 import com.archos.medialib.R;
 import com.archos.mediaprovider.video.VideoStore;
 import com.archos.mediaprovider.video.VideoStore.MediaColumns;
 import com.archos.mediaprovider.video.VideoStore.Video.VideoColumns;
 
-import java.io.IOException;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class NfoExportService extends IntentService {
@@ -174,7 +173,7 @@ public class NfoExportService extends IntentService {
         if (DBG) Log.d(TAG, "exportAll");
         nb.setContentText(getString(R.string.nfo_export_exporting_all));
         nm.notify(NOTIFICATION_ID, nb.build());
-        handleCursor(getAllCursor());
+        handlePager(getAllPager());
         removeAllTask();
         stopForeground(true);
     }
@@ -193,39 +192,46 @@ public class NfoExportService extends IntentService {
         if (file != null && file.isDirectory()) {
             nb.setContentText(data.toString());
             nm.notify(NOTIFICATION_ID, nb.build());
-            handleCursor(getInDirectoryCursor(data));
+            handlePager(getInDirectoryPager(data));
         }
         removeDirTask(data);
         stopForeground(true);
     }
 
-    private void handleCursor(Cursor cursor) {
-        if (cursor != null) {
-            NfoWriter.ExportContext exportContext = new NfoWriter.ExportContext();
-            while (cursor.moveToNext()) {
-                long id = cursor.getLong(0);
-                int type = cursor.getInt(1);
-                BaseTags tags = null;
-                switch (type) {
-                    case BaseTags.MOVIE:
-                        tags = TagsFactory.buildMovieTags(this, id);
-                        break;
-                    case BaseTags.TV_SHOW:
-                        tags = TagsFactory.buildEpisodeTags(this, id);
-                        break;
-                    default:
-                        Log.w(TAG, "can't export file of type: " + type);
-                        break;
-                }
-                if (tags != null) {
-                    try {
-                        NfoWriter.export(tags.getFile(), tags, exportContext);
-                    } catch (IOException e) {
-                        // can't export, folder not writable?
+    private void handlePager(CursorPager pager) {
+        // tags are built here, files are written in parallel per server
+        NfoExportEngine engine = new NfoExportEngine(this);
+        try {
+            Cursor cursor;
+            while (!Thread.currentThread().isInterrupted() && (cursor = pager.next()) != null) {
+                while (cursor.moveToNext()) {
+                    long id = cursor.getLong(0);
+                    int type = cursor.getInt(1);
+                    BaseTags tags = null;
+                    switch (type) {
+                        case BaseTags.MOVIE:
+                            tags = TagsFactory.buildMovieTags(this, id);
+                            break;
+                        case BaseTags.TV_SHOW:
+                            tags = TagsFactory.buildEpisodeTags(this, id);
+                            break;
+                        default:
+                            Log.w(TAG, "can't export file of type: " + type);
+                            break;
+                    }
+                    if (tags != null) {
+                        try {
+                            engine.submit(tags.getFile(), tags);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
                     }
                 }
             }
-            cursor.close();
+        } finally {
+            pager.close();
+            engine.finish();
         }
     }
 
@@ -241,22 +247,20 @@ public class NfoExportService extends IntentService {
             VideoColumns.ARCHOS_MEDIA_SCRAPER_ID + " > 0 AND " +
             VideoColumns.ARCHOS_MEDIA_SCRAPER_TYPE + " > 0 AND " +
             MediaColumns.DATA + " LIKE ?||'/%'";
-    private static final String ORDER = MediaColumns.DATA;
-
-    private Cursor getAllCursor() {
-        ContentResolver cr = getContentResolver();
-        return cr.query(URI, PROJECTION, SELECTION_ALL, null, ORDER);
+    private CursorPager getAllPager() {
+        return new CursorPager(getContentResolver(), URI, PROJECTION, SELECTION_ALL, null,
+                CursorPager.DEFAULT_PAGE_SIZE);
     }
 
-    private Cursor getInDirectoryCursor(Uri folder) {
+    private CursorPager getInDirectoryPager(Uri folder) {
         String path = folder.toString();
         if (path.endsWith("/"))
             path = path.substring(0, path.length() - 1);
-        ContentResolver cr = getContentResolver();
         String[] selectionArgs = {
             path
         };
-        return cr.query(URI, PROJECTION, SELECTION_FOLDER, selectionArgs, ORDER);
+        return new CursorPager(getContentResolver(), URI, PROJECTION, SELECTION_FOLDER, selectionArgs,
+                CursorPager.DEFAULT_PAGE_SIZE);
     }
 
 }
@@ -34,15 +34,23 @@ import com.archos.mediascraper.saxhandler.NfoShowHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
-import org.xml.sax.XMLReader;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 
 public class NfoParser {
 
@@ -92,65 +100,55 @@ public class NfoParser {
 
     public static final char[] STRING_SPLITTERS = { '|', ',', '/' };
 
+    /**
+     * Caches shared by the nfo parsed during one import, safe to use from several threads.
+     * Parsers and handlers are not part of it anymore: each thread reuses its own, see {@link SaxParserPool}.
+     */
     public static class ImportContext {
         public SAXParser getParser() {
-            if (mParser == null)
-                mParser = getNewParser();
-            return mParser;
+            return SaxParserPool.current().getParser();
         }
 
         public NfoRootHandler getRootHandler() {
-            if (mRootHandler == null) {
-                XMLReader reader;
-                try {
-                    reader = getParser().getXMLReader();
-                } catch (SAXException e) {
-                    // not supposed to happen, if it happens just die.
-                    throw new RuntimeException("SaxParser#getXMLReader()", e);
-                }
-                mRootHandler = new NfoRootHandler(reader, getMovieHandler(), getEpisodeHandler());
-            }
-            return mRootHandler;
+            return SaxParserPool.current().getRootHandler();
         }
 
         public NfoMovieHandler getMovieHandler() {
-            if (mMovieHandler == null)
-                mMovieHandler = new NfoMovieHandler();
-            return mMovieHandler;
+            return SaxParserPool.current().getMovieHandler();
         }
         public NfoShowHandler getShowHandler() {
-            if (mShowHandler == null)
-                mShowHandler = new NfoShowHandler();
-            return mShowHandler;
+            return SaxParserPool.current().getShowHandler();
         }
         public NfoEpisodeHandler getEpisodeHandler() {
-            if (mEpisodeHandler == null)
-                mEpisodeHandler = new NfoEpisodeHandler();
-            return mEpisodeHandler;
+            return SaxParserPool.current().getEpisodeHandler();
         }
 
-        private SAXParser mParser;
+        public final LruCache<String, ShowTags> showCache;
+        public final LruCache<String, Uri> seasonPosterCache;
 
-        private NfoRootHandler mRootHandler;
-        private NfoMovieHandler mMovieHandler;
-        private NfoShowHandler mShowHandler;
-        private NfoEpisodeHandler mEpisodeHandler;
-
-        public final LruCache<String, ShowTags> showCache = new LruCache<String, ShowTags>(16);
-        public final LruCache<String, Uri> seasonPosterCache = new LruCache<String, Uri>(16);
+        public ImportContext() {
+            showCache = new LruCache<String, ShowTags>(16);
+            seasonPosterCache = new LruCache<String, Uri>(16);
+        }
     }
 
-    static SAXParser getNewParser() {
-        SAXParserFactory parserFactory = SAXParserFactory.newInstance();
-        try {
-            return parserFactory.newSAXParser();
-        } catch (ParserConfigurationException e) {
-            log.error("Exception: " + e, e);
-            throw new RuntimeException(e);
-        } catch (SAXException e) {
-            log.error("Exception: " + e, e);
-            throw new RuntimeException(e);
-        }
+    private static final int PARALLEL_PARSE_THREADS = 4;
+    // threads outlive a page so that their parsers are reused across the pages of an import
+    private static final long PARSE_THREAD_KEEP_ALIVE_S = 30;
+
+    private static final ThreadPoolExecutor sParseExecutor = new ThreadPoolExecutor(PARALLEL_PARSE_THREADS,
+            PARALLEL_PARSE_THREADS, PARSE_THREAD_KEEP_ALIVE_S, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "NfoParser-" + mCount.incrementAndGet());
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }
+            });
+    static {
+        sParseExecutor.allowCoreThreadTimeOut(true);
     }
 
     public static class NfoFile {
@@ -223,9 +221,57 @@ public class NfoParser {
         return result;
     }
 
+    /**
+     * Bulk version of {@link #determineNfoFile(Uri)}: candidates of all videos are resolved with
+     * one listing per folder through {@link FolderListingCache}.
+     */
+    public static List<NfoFile> determineNfoFiles(List<Uri> videos) {
+        List<NfoFile> result = new ArrayList<>(videos.size());
+        for (Uri video : videos)
+            result.add(determineNfoFile(video));
+        return result;
+    }
+
+    /**
+     * Bulk import: parses the nfo of all the videos in parallel, each worker using the parser and
+     * handlers of its thread, all sharing the show caches of <i>importContext</i>.
+     * @return tags keyed by video uri string, videos without nfo or with unparsable nfo are absent
+     */
+    public static Map<String, BaseTags> getTagsForFiles(List<Uri> videos, final Context context, ImportContext importContext) {
+        final Map<String, BaseTags> result = new ConcurrentHashMap<>();
+        if (videos == null || videos.isEmpty()) return result;
+        final ImportContext sharedContext = importContext != null ? importContext : new ImportContext();
+        List<Future<?>> parses = new ArrayList<>();
+        for (final NfoFile nfo : determineNfoFiles(videos)) {
+            if (nfo == null || !nfo.hasNfo()) continue;
+            parses.add(sParseExecutor.submit(() -> {
+                BaseTags tag = getTagForFile(nfo, context, sharedContext);
+                if (tag != null) result.put(nfo.videoFile.toString(), tag);
+            }));
+        }
+        for (int i = 0; i < parses.size(); i++) {
+            try {
+                parses.get(i).get();
+            } catch (ExecutionException e) {
+                log.warn("getTagsForFiles: caught " + e.getCause(), e.getCause());
+            } catch (InterruptedException e) {
+                for (int j = i; j < parses.size(); j++)
+                    parses.get(j).cancel(true);
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        log.debug("getTagsForFiles: " + result.size() + " nfo parsed for " + videos.size() + " videos");
+        return result;
+    }
+
     private static boolean fileOk(Uri file) {
         if(file==null)
             return false;
+        // resolve from the listing of the folder if possible
+        Boolean listed = FolderListingCache.exists(file);
+        if (listed != null)
+            return listed;
         MetaFile2 metaFile2 = null;
         try {
             metaFile2 = MetaFileFactoryWithUpnp.getMetaFileForUrl(file);
@@ -253,8 +299,9 @@ public class NfoParser {
             try {
                 // relocate uri for local files to writeable location to comply with API30
                 nfoInputStream = FileEditorFactoryWithUpnp.getFileEditorForUrl(FileUtils.relocateNfoJpgAppPublicDir(nfo.videoNfo), null).getInputStream();
-                NfoRootHandler rootHandler = importContext.getRootHandler();
-                importContext.getParser().parse(nfoInputStream, rootHandler);
+                SaxParserPool.Parsers parsers = SaxParserPool.obtain();
+                NfoRootHandler rootHandler = parsers.getRootHandler();
+                parsers.getParser().parse(nfoInputStream, rootHandler);
                 BaseTags tag = rootHandler.getResult(context, nfo.videoFile);
                 rootHandler.clear();
                 if (tag != null) {
@@ -382,9 +429,9 @@ public class NfoParser {
         InputStream nfoInputStream = null;
         try {
             nfoInputStream = FileEditorFactoryWithUpnp.getFileEditorForUrl(nfoFile, null).getInputStream();
-            NfoShowHandler showHandler = importContext.getShowHandler();
-            SAXParser parser = importContext.getParser();
-            parser.parse(nfoInputStream, showHandler);
+            SaxParserPool.Parsers parsers = SaxParserPool.obtain();
+            NfoShowHandler showHandler = parsers.getShowHandler();
+            parsers.getParser().parse(nfoInputStream, showHandler);
             ShowTags result = showHandler.getResult(context, videoFile);
             showHandler.clear();
             return result;
@@ -22,7 +22,6 @@ import android.content.SharedPreferences;
 import android.net.Uri;
 import androidx.preference.PreferenceManager;
 
-import android.util.LruCache;
 import android.util.Xml;
 
 import com.archos.filecorelibrary.FileEditor;
@@ -38,25 +37,59 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class NfoWriter {
 
     private static final Logger log = LoggerFactory.getLogger(NfoWriter.class);
 
     public static class ExportContext {
-        private final LruCache<String, String> exportedFiles = new LruCache<String, String>(64);
+        // targets already handled in this context, e.g. the show nfo or season poster shared by all episodes
+        private final ConcurrentHashMap<String, Boolean> mClaimed = new ConcurrentHashMap<String, Boolean>();
+        private final NfoExportFingerprints mFingerprints;
+        private final AtomicInteger mWritten = new AtomicInteger();
+        private final AtomicInteger mSkipped = new AtomicInteger();
+
+        public ExportContext() {
+            this(null);
+        }
+
+        /** @param fingerprints if not null, targets whose content did not change since last export are not written again */
+        public ExportContext(NfoExportFingerprints fingerprints) {
+            mFingerprints = fingerprints;
+        }
+
         public void put(String key) {
-            exportedFiles.put(key, "");
+            mClaimed.put(key, Boolean.TRUE);
         }
         public boolean contains(String key) {
-            return exportedFiles.get(key) != null;
+            return mClaimed.containsKey(key);
+        }
+        /** @return true if the caller is the first one to handle key in this context */
+        boolean claim(String key) {
+            return mClaimed.putIfAbsent(key, Boolean.TRUE) == null;
+        }
+        /** gives key back after a failed write, for the next video sharing the target to try again */
+        void unclaim(String key) {
+            mClaimed.remove(key);
+        }
+
+        /** number of nfo and image files written */
+        public int getWrittenCount() {
+            return mWritten.get();
+        }
+        /** number of nfo and image files skipped because they were unchanged or already handled */
+        public int getSkippedCount() {
+            return mSkipped.get();
         }
     }
 
@@ -181,7 +214,12 @@ public class NfoWriter {
             Locale.ROOT);
 
     private static String formatShowDate(Date date) {
-        return date != null && date.getTime() > 0 ? SHOW_DATE_FORMAT.format(date) : null;
+        if (date == null || date.getTime() <= 0)
+            return null;
+        // SimpleDateFormat is not thread safe and exports run in parallel
+        synchronized (SHOW_DATE_FORMAT) {
+            return SHOW_DATE_FORMAT.format(date);
+        }
     }
 
     public static void writeXmlInner(XmlSerializer serializer, EpisodeTags tag) throws
@@ -282,86 +320,88 @@ public class NfoWriter {
 
     }
 
-    private static void exportInternal(Uri video, MovieTags tag) throws IOException {
-
+    private static void exportInternal(Uri video, MovieTags tag, ExportContext exportContext) throws IOException {
         String videoName = FileUtils.getFileNameWithoutExtension(video);
         Uri parent = FileUtils.getParentUrl(video);
         Uri exportTarget =  relocateNfoJpgAppPublicDir(Uri.withAppendedPath(parent, videoName + NfoParser.CUSTOM_NFO_EXTENSION));
-        try {
-            FileEditor editor = FileEditorFactoryWithUpnp.getFileEditorForUrl(exportTarget, null);
-            // Delete existing file to avoid overwrite issue (end of previous content still there is the new content is shorter)
-            if (editor.exists()) {
-                editor.delete();
-            }
-            BufferedWriter  writer = new BufferedWriter(new OutputStreamWriter(
-                    editor.getOutputStream(), StringUtils.CHARSET_UTF8));
-
-            try {
-
-                XmlSerializer serializer = initAndStartDocument(writer);
-                writeXmlInner(serializer, tag);
-                endDocument(serializer);
-                writer.close();
-                writer = null;
-                exportImage(tag.getDefaultPoster(), parent, videoName + NfoParser.POSTER_EXTENSION);
-                exportImage(tag.getDefaultBackdrop(), parent, videoName + NfoParser.BACKDROP_EXTENSION);
-            } finally {
-                if (writer != null) {
-                    // writer is only != null if writing nfo has thrown an exception
-                    // -> get rid of potentially semi-complete nfo files.
-                    editor.delete();
-                    IOUtils.closeSilently(writer);
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+        StringWriter nfo = new StringWriter();
+        XmlSerializer serializer = initAndStartDocument(nfo);
+        writeXmlInner(serializer, tag);
+        endDocument(serializer);
+        if (writeNfo(exportTarget, nfo.toString(), exportContext)) {
+            exportImage(tag.getDefaultPoster(), parent, videoName + NfoParser.POSTER_EXTENSION, exportContext);
+            exportImage(tag.getDefaultBackdrop(), parent, videoName + NfoParser.BACKDROP_EXTENSION, exportContext);
         }
     }
 
-    private static void exportInternal(Uri video, EpisodeTags tag) throws IOException {
+    private static void exportInternal(Uri video, EpisodeTags tag, ExportContext exportContext) throws IOException {
         String videoName = FileUtils.getFileNameWithoutExtension(video);
         Uri parent = FileUtils.getParentUrl(video);
         // relocate uri for local files to writeable location to comply with API30
         Uri exportTarget =  relocateNfoJpgAppPublicDir(Uri.withAppendedPath(parent, videoName + NfoParser.CUSTOM_NFO_EXTENSION));
-        try {
-            FileEditor editor = FileEditorFactoryWithUpnp.getFileEditorForUrl(exportTarget,null);
-            // Delete existing file to avoid overwrite issue (end of previous content still there is the new content is shorter)
-            if (editor.exists()) {
-                editor.delete();
-            }
-            log.trace("exportInternal: " + video);
-            BufferedWriter  writer = new BufferedWriter(new OutputStreamWriter(
-                    editor.getOutputStream(), StringUtils.CHARSET_UTF8));
-
-            try {
-
-                XmlSerializer serializer = initAndStartDocument(writer);
-                writeXmlInner(serializer, tag);
-                endDocument(serializer);
-                writer.close();
-                writer = null;
-                String image = NfoParser.getCustomSeasonPosterName(tag.getShowTitle(), tag.getSeason());
-                exportImage(tag.getDefaultPoster(), parent, image);
-            } finally {
-                if (writer != null) {
-                    // writer is only != null if writing nfo has thrown an exception
-                    // -> get rid of potentially semi-complete nfo files.
-                    editor.delete();
-                    IOUtils.closeSilently(writer);
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+        log.trace("exportInternal: " + video);
+        StringWriter nfo = new StringWriter();
+        XmlSerializer serializer = initAndStartDocument(nfo);
+        writeXmlInner(serializer, tag);
+        endDocument(serializer);
+        if (writeNfo(exportTarget, nfo.toString(), exportContext)) {
+            // same season poster for all episodes of a folder, copied once per context
+            String image = NfoParser.getCustomSeasonPosterName(tag.getShowTitle(), tag.getSeason());
+            exportImage(tag.getDefaultPoster(), parent, image, exportContext);
         }
-
     }
 
     private static void exportInternal(Uri video, ShowTags tag, ExportContext exportContext) throws IOException {
-        String videoName = FileUtils.getFileNameWithoutExtension(video);
         Uri parent = FileUtils.getParentUrl(video);
         String showTitle = StringUtils.fileSystemEncode(tag.getTitle());
         // relocate uri for local files to writeable location to comply with API30
         Uri exportTarget =  relocateNfoJpgAppPublicDir(Uri.withAppendedPath(parent, showTitle + NfoParser.CUSTOM_SHOW_NFO_EXTENSION));
+        // checks if this showTags was already exported within this context
+        if (!exportContext.claim(exportTarget.toString())) {
+            exportContext.mSkipped.incrementAndGet();
+            return;
+        }
+        StringWriter nfo = new StringWriter();
+        XmlSerializer serializer = initAndStartDocument(nfo);
+        writeXmlInner(serializer, tag);
+        endDocument(serializer);
+        if (writeNfo(exportTarget, nfo.toString(), exportContext)) {
+            exportImage(tag.getDefaultPoster(), parent,  showTitle + NfoParser.POSTER_EXTENSION, exportContext);
+            exportImage(tag.getDefaultBackdrop(), parent, showTitle + NfoParser.BACKDROP_EXTENSION, exportContext);
+        } else {
+            exportContext.unclaim(exportTarget.toString());
+        }
+    }
+
+    public static void export(Uri video, BaseTags tag, ExportContext exportContext) throws IOException {
+        if (exportContext == null)
+            exportContext = new ExportContext();
+        int written = exportContext.getWrittenCount();
+        if (tag instanceof MovieTags) {
+            exportInternal(video, (MovieTags)tag, exportContext);
+        } else if (tag instanceof EpisodeTags) {
+            EpisodeTags etag = (EpisodeTags) tag;
+            exportInternal(video, etag, exportContext);
+            exportInternal(video, etag.getShowTags(), exportContext);
+        }
+        // files were written next to the video, cached listing is outdated
+        if (exportContext.getWrittenCount() != written)
+            FolderListingCache.invalidate(FileUtils.getParentUrl(relocateNfoJpgAppPublicDir(video)));
+    }
+
+    /**
+     * Writes nfo content to exportTarget unless the fingerprint of that content is the one
+     * recorded at the last export of this target.
+     * @return true if the nfo is up to date (written or unchanged) and its images have to be checked
+     */
+    private static boolean writeNfo(Uri exportTarget, String nfo, ExportContext exportContext) {
+        String key = exportTarget.toString();
+        NfoExportFingerprints fingerprints = exportContext.mFingerprints;
+        String fingerprint = fingerprints != null ? HashGenerator.hash(nfo) : null;
+        if (fingerprint != null && fingerprint.equals(fingerprints.get(key)) && targetExists(exportTarget)) {
+            exportContext.mSkipped.incrementAndGet();
+            return true;
+        }
         try {
             FileEditor editor = FileEditorFactoryWithUpnp.getFileEditorForUrl(exportTarget, null);
             // Delete existing file to avoid overwrite issue (end of previous content still there is the new content is shorter)
@@ -370,16 +410,10 @@ public class NfoWriter {
             }
             BufferedWriter  writer = new BufferedWriter(new OutputStreamWriter(
                     editor.getOutputStream(), StringUtils.CHARSET_UTF8));
-
             try {
-
-                XmlSerializer serializer = initAndStartDocument(writer);
-                writeXmlInner(serializer, tag);
-                endDocument(serializer);
+                writer.write(nfo);
                 writer.close();
                 writer = null;
-                exportImage(tag.getDefaultPoster(), parent,  showTitle + NfoParser.POSTER_EXTENSION);
-                exportImage(tag.getDefaultBackdrop(), parent, showTitle + NfoParser.BACKDROP_EXTENSION);
             } finally {
                 if (writer != null) {
                     // writer is only != null if writing nfo has thrown an exception
@@ -389,42 +423,69 @@ public class NfoWriter {
                 }
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            log.warn("writeNfo: cannot write " + key + ": " + e);
+            return false;
         }
-
+        exportContext.mWritten.incrementAndGet();
+        if (fingerprint != null)
+            fingerprints.put(key, fingerprint);
+        return true;
     }
 
-    public static void export(Uri video, BaseTags tag, ExportContext exportContext) throws IOException {
-        if (tag instanceof MovieTags) {
-            exportInternal(video, (MovieTags)tag);
-        } else if (tag instanceof EpisodeTags) {
-            EpisodeTags etag = (EpisodeTags) tag;
-            exportInternal(video, etag);
-            // checks if this showTags was already exported within this context
-            exportInternal(video, etag.getShowTags(), exportContext);
+    /**
+     * A fingerprint only says what was written last time: the file may have been deleted or
+     * replaced by a folder copy since. Checked from the folder listing, one round trip per folder.
+     */
+    private static boolean targetExists(Uri target) {
+        Boolean listed = FolderListingCache.exists(target);
+        if (listed != null)
+            return listed;
+        try {
+            return FileEditorFactoryWithUpnp.getFileEditorForUrl(target, null).exists();
+        } catch (Exception e) {
+            return false;
         }
     }
 
     private static void exportImage(ScraperImage image, Uri folder,
-            String imageName) {
+            String imageName, ExportContext exportContext) {
 
+        if (image == null || image.getLargeFile() == null)
+            return;
         // relocate uri for local files to writeable location to comply with API30
         Uri target = Uri.withAppendedPath(relocateNfoJpgAppPublicDir(folder), imageName);
-        if (image != null) {
-            File file = image.getLargeFileF();
-            Uri from = Uri.parse(file.getAbsolutePath());
-            FileEditor editor = FileEditorFactoryWithUpnp.getFileEditorForUrl(from, null);
-            if (from!=null && editor.exists()) {
-                if (target != null) {
-                    try {
-                        editor.copyFileTo(target, null);
-                        target = null;
-                    } catch (Exception e) {
-                        // target will not be null > will be deleted
-                    }
-                }
+        String key = target.toString();
+        if (!exportContext.claim(key)) {
+            exportContext.mSkipped.incrementAndGet();
+            return;
+        }
+        // cached image files are named after their url: the path identifies the content
+        String fingerprint = image.getLargeFile();
+        NfoExportFingerprints fingerprints = exportContext.mFingerprints;
+        if (fingerprints != null && fingerprint.equals(fingerprints.get(key)) && targetExists(target)) {
+            exportContext.mSkipped.incrementAndGet();
+            return;
+        }
+        File file = image.getLargeFileF();
+        Uri from = Uri.parse(file.getAbsolutePath());
+        FileEditor editor = FileEditorFactoryWithUpnp.getFileEditorForUrl(from, null);
+        boolean copied = false;
+        if (editor.exists()) {
+            try {
+                editor.copyFileTo(target, null);
+                copied = true;
+            } catch (Exception e) {
+                log.warn("exportImage: cannot copy " + key + ": " + e);
             }
         }
+        // only a copied target counts as exported, in this context and in the fingerprints
+        if (!copied) {
+            exportContext.unclaim(key);
+            return;
+        }
+        exportContext.mWritten.incrementAndGet();
+        if (fingerprints != null)
+            fingerprints.put(key, fingerprint);
     }
 
     public static boolean isNfoAutoExportEnabled(Context context) {
@@ -0,0 +1,144 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.mediascraper;
+
+import com.archos.mediaprovider.Metrics;
+import com.archos.mediascraper.saxhandler.NfoEpisodeHandler;
+import com.archos.mediascraper.saxhandler.NfoMovieHandler;
+import com.archos.mediascraper.saxhandler.NfoRootHandler;
+import com.archos.mediascraper.saxhandler.NfoShowHandler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * SAX parser and nfo handlers reused by every xml parse done on a thread (nfo import, resume files).
+ * Handlers are bound to the parser of their thread since the root handler switches the content
+ * handler of its XMLReader for sub parses, so a set must never be handed over to another thread.
+ * Not reentrant: a parse must be finished before the next one is started on the same thread.
+ */
+public class SaxParserPool {
+    private static final Logger log = LoggerFactory.getLogger(SaxParserPool.class);
+
+    private static final SAXParserFactory sFactory = SAXParserFactory.newInstance();
+    private static final AtomicLong sCreated = new AtomicLong();
+
+    static {
+        Metrics.gauge("saxparser.created", sCreated::get);
+    }
+
+    private static final ThreadLocal<Parsers> sParsers = new ThreadLocal<Parsers>() {
+        @Override
+        protected Parsers initialValue() {
+            return new Parsers();
+        }
+    };
+
+    public static class Parsers {
+        private final SAXParser mParser;
+        private NfoRootHandler mRootHandler;
+        private NfoMovieHandler mMovieHandler;
+        private NfoShowHandler mShowHandler;
+        private NfoEpisodeHandler mEpisodeHandler;
+
+        Parsers() {
+            mParser = newParser();
+        }
+
+        public SAXParser getParser() {
+            return mParser;
+        }
+
+        public NfoRootHandler getRootHandler() {
+            if (mRootHandler == null) {
+                try {
+                    mRootHandler = new NfoRootHandler(mParser.getXMLReader(), getMovieHandler(), getEpisodeHandler());
+                } catch (SAXException e) {
+                    // not supposed to happen, if it happens just die.
+                    throw new RuntimeException("SaxParser#getXMLReader()", e);
+                }
+            }
+            return mRootHandler;
+        }
+
+        public NfoMovieHandler getMovieHandler() {
+            if (mMovieHandler == null)
+                mMovieHandler = new NfoMovieHandler();
+            return mMovieHandler;
+        }
+
+        public NfoShowHandler getShowHandler() {
+            if (mShowHandler == null)
+                mShowHandler = new NfoShowHandler();
+            return mShowHandler;
+        }
+
+        public NfoEpisodeHandler getEpisodeHandler() {
+            if (mEpisodeHandler == null)
+                mEpisodeHandler = new NfoEpisodeHandler();
+            return mEpisodeHandler;
+        }
+
+        /** drops what an aborted parse may have left in the handlers */
+        public Parsers reset() {
+            if (mMovieHandler != null) mMovieHandler.clear();
+            if (mShowHandler != null) mShowHandler.clear();
+            if (mEpisodeHandler != null) mEpisodeHandler.clear();
+            return this;
+        }
+    }
+
+    private SaxParserPool() {
+        /* all static */
+    }
+
+    /** @return the parser and handlers of the calling thread, reset */
+    public static Parsers obtain() {
+        return sParsers.get().reset();
+    }
+
+    /** @return the parser and handlers of the calling thread, as they are */
+    static Parsers current() {
+        return sParsers.get();
+    }
+
+    private static SAXParser newParser() {
+        try {
+            SAXParser parser;
+            // the factory is not guaranteed to be thread safe
+            synchronized (sFactory) {
+                parser = sFactory.newSAXParser();
+            }
+            log.trace("newParser: " + sCreated.incrementAndGet() + " parsers created");
+            return parser;
+        } catch (ParserConfigurationException | SAXException e) {
+            log.error("Exception: " + e, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** number of parsers created, i.e. of threads that parsed xml */
+    public static long getCreatedCount() {
+        return sCreated.get();
+    }
+}
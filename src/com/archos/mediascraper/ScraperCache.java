@@ -17,16 +17,29 @@ package com.archos.mediascraper;
 
 import android.content.Context;
 
+import com.archos.mediaprovider.Metrics;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import okhttp3.Cache;
 import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
+import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.GzipSource;
+import okio.Okio;
 
 /*
  * Shared cache for scraper
@@ -40,22 +53,89 @@ public class ScraperCache {
     static protected final long cacheSize = 100L * 1024L * 1024L; // 100 MB (it is a directory...)
     public static final int CONNECT_TIMEOUT_MILLIS = 15 * 1000; // 15s
     public static final int READ_TIMEOUT_MILLIS = 20 * 1000; // 20s
+    // stale responses are served immediately and refreshed in background up to this age
+    static final long STALE_WHILE_REVALIDATE_SECONDS = TimeUnit.DAYS.toSeconds(7);
+    // short lived negative caching for 404 and searches without results
+    static final int NOT_FOUND_CACHE_TIMEOUT_MINUTES = 30;
+    // an empty tmdb search answer is about 60 bytes, larger ones cannot be empty
+    static final long EMPTY_SEARCH_MAX_BYTES = 1024L;
+    static final String LANGUAGE_PARAM = "language";
+    // set on 404 and empty search entries so that they are never served stale
+    static final String NEGATIVE_HEADER = "X-Scraper-Negative";
     static Cache cache;
 
-    public static void dumpCacheInfo() {
-        if (cache == null) {
-            log.debug("dumpCacheInfo: cache not initialized");
-            return;
+    private static final HashSet<String> sRevalidating = new HashSet<>();
+    private static final AtomicLong sStaleServedCount = new AtomicLong();
+    private static final AtomicLong sRevalidationCount = new AtomicLong();
+    private static final AtomicLong sNotFoundStoredCount = new AtomicLong();
+    // counted on the cache probe of StaleWhileRevalidateInterceptor: okhttp counts the probe and
+    // the network request that follows a miss as two requests
+    private static final AtomicLong sHitCount = new AtomicLong();
+    private static final AtomicLong sMissCount = new AtomicLong();
+
+    static {
+        Metrics.gauge("scrapercache.requests", () -> sHitCount.get() + sMissCount.get());
+        Metrics.gauge("scrapercache.hits", sHitCount::get);
+        Metrics.gauge("scrapercache.network", () -> cache != null ? cache.networkCount() : 0);
+        Metrics.gauge("scrapercache.stale_served", sStaleServedCount::get);
+        Metrics.gauge("scrapercache.revalidations", sRevalidationCount::get);
+        Metrics.gauge("scrapercache.not_found_stored", sNotFoundStoredCount::get);
+    }
+
+    /** snapshot of the scraper cache counters */
+    public static class CacheStats {
+        public long size;
+        public long maxSize;
+        public long requestCount;
+        public long hitCount;
+        public int networkCount;
+        public long staleServedCount;
+        public long revalidationCount;
+        public long notFoundStoredCount;
+
+        public double getFillRatio() {
+            return maxSize > 0 ? size / (double) maxSize : 0;
+        }
+
+        public double getHitRatio() {
+            return requestCount > 0 ? hitCount / (double) requestCount : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "CacheStats{size=" + size + "/" + maxSize + " (" + Math.round(getFillRatio() * 100) + "%)"
+                    + ", hit=" + hitCount + "/" + requestCount + " (" + Math.round(getHitRatio() * 100) + "%)"
+                    + ", network=" + networkCount + ", stale=" + staleServedCount
+                    + ", revalidations=" + revalidationCount + ", notFound=" + notFoundStoredCount + "}";
         }
+    }
+
+    /** returns current cache counters or null if the cache is not initialized */
+    public static CacheStats getCacheStats() {
+        if (cache == null) return null;
+        CacheStats stats = new CacheStats();
         try {
-            double fillRatio = cache.size() / (double) cache.maxSize() * 100;
-            double hitRatio = cache.hitCount() / (double) cache.requestCount() * 100;
-            log.trace("Cache filled " + fillRatio + "% (size=" + cache.size() + "/maxsize=" + cache.maxSize() + ")" );
-            log.trace("Cache hit " + hitRatio + "% (hit="+ cache.hitCount() + "/requests=" + cache.requestCount() + ")");
-            log.trace("Cache request count " + cache.requestCount() + ", network count " + cache.networkCount());
+            stats.size = cache.size();
         } catch (IOException e) {
             log.error("caught IOException", e);
         }
+        stats.maxSize = cache.maxSize();
+        stats.hitCount = sHitCount.get();
+        stats.requestCount = stats.hitCount + sMissCount.get();
+        stats.networkCount = cache.networkCount();
+        stats.staleServedCount = sStaleServedCount.get();
+        stats.revalidationCount = sRevalidationCount.get();
+        stats.notFoundStoredCount = sNotFoundStoredCount.get();
+        return stats;
+    }
+
+    public static void dumpCacheInfo() {
+        CacheStats stats = getCacheStats();
+        if (stats == null) {
+            log.debug("dumpCacheInfo: cache not initialized");
+            return;
+        }
+        log.debug("dumpCacheInfo: " + stats);
     }
 
     public static Cache getCache(Context context) {
@@ -68,6 +148,102 @@ public class ScraperCache {
         return cache;
     }
 
+    /*
+     * Application interceptor: makes the language part of the url so that the cache key is always
+     * endpoint + id + language, this is what allows CacheInterceptor to drop the Vary header.
+     */
+    public static class LanguageKeyInterceptor implements Interceptor {
+        @Override
+        public okhttp3.Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            HttpUrl url = request.url();
+            String acceptLanguage = request.header("Accept-Language");
+            if (url.queryParameter(LANGUAGE_PARAM) == null && acceptLanguage != null && !acceptLanguage.isEmpty()) {
+                request = request.newBuilder()
+                        .url(url.newBuilder().addQueryParameter(LANGUAGE_PARAM, acceptLanguage).build())
+                        .build();
+            }
+            return chain.proceed(request);
+        }
+    }
+
+    /*
+     * Application interceptor: answers from cache even when stale (up to STALE_WHILE_REVALIDATE_SECONDS)
+     * and refreshes the entry in background, so that details are displayed without waiting for tmdb.
+     */
+    public static class StaleWhileRevalidateInterceptor implements Interceptor {
+        @Override
+        public okhttp3.Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            String key = request.url().toString();
+            boolean revalidating;
+            synchronized (sRevalidating) {
+                revalidating = sRevalidating.contains(key);
+            }
+            if (!"GET".equals(request.method()) || revalidating || request.cacheControl().noCache()) {
+                return chain.proceed(request);
+            }
+            Response cached = chain.proceed(request.newBuilder()
+                    .cacheControl(new CacheControl.Builder()
+                            .onlyIfCached()
+                            .maxStale(STALE_WHILE_REVALIDATE_SECONDS, TimeUnit.SECONDS)
+                            .build())
+                    .build());
+            if (cached.code() == 504) { // unsatisfiable request: not in cache
+                sMissCount.incrementAndGet();
+                cached.close();
+                return chain.proceed(request);
+            }
+            final boolean stale = isStale(cached);
+            if (stale && (!cached.isSuccessful() || cached.header(NEGATIVE_HEADER) != null)) {
+                // negative entries keep their short ttl
+                sMissCount.incrementAndGet();
+                cached.close();
+                return chain.proceed(request);
+            }
+            sHitCount.incrementAndGet();
+            if (stale) {
+                sStaleServedCount.incrementAndGet();
+                revalidate(chain.call(), key);
+            }
+            return cached;
+        }
+
+        private static boolean isStale(Response response) {
+            for (String warning : response.headers("Warning")) {
+                if (warning.startsWith("110")) return true; // "Response is stale"
+            }
+            return false;
+        }
+
+        private static void revalidate(Call call, final String key) {
+            synchronized (sRevalidating) {
+                if (!sRevalidating.add(key)) return;
+            }
+            sRevalidationCount.incrementAndGet();
+            log.trace("StaleWhileRevalidateInterceptor: revalidate " + key);
+            // the clone goes through this interceptor again and reaches the network since key is in sRevalidating
+            call.clone().enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    done();
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                    done();
+                }
+
+                private void done() {
+                    synchronized (sRevalidating) {
+                        sRevalidating.remove(key);
+                    }
+                }
+            });
+        }
+    }
+
     public static class CacheInterceptor implements Interceptor {
         @Override
         public okhttp3.Response intercept(Chain chain) throws IOException {
@@ -75,17 +251,45 @@ public class ScraperCache {
             CacheControl cacheControl = new CacheControl.Builder()
                     .maxAge(MediaScraper.SCRAPER_CACHE_TIMEOUT_COUNT, MediaScraper.SCRAPER_CACHE_TIMEOUT_UNIT)
                     .build();
-            if (response.code() == 404 || response.code() == 401) { // do not cache errors
-                log.warn("CacheInterceptor: 404!");
+            if (response.code() == 401 || response.code() == 429) { // do not cache errors
+                log.warn("CacheInterceptor: " + response.code() + "!");
                 return response.newBuilder()
                         .header("Cache-Control", "no-store")
                         .build();
             }
+            if (response.code() == 404 || isEmptySearch(response)) { // negative caching with a short ttl
+                log.debug("CacheInterceptor: not found " + response.request().url().encodedPath());
+                sNotFoundStoredCount.incrementAndGet();
+                return response.newBuilder()
+                        .removeHeader("Vary")
+                        .header(NEGATIVE_HEADER, "1")
+                        .header("Cache-Control", new CacheControl.Builder()
+                                .maxAge(NOT_FOUND_CACHE_TIMEOUT_MINUTES, TimeUnit.MINUTES)
+                                .build().toString())
+                        .build();
+            }
             return response.newBuilder()
-                    //.removeHeader("Vary") // makes cache hit work --> TODO MAKES FR + EN REQUESTS PROVIDE FR ANSWERS!!!
+                    // language is always in the url (LanguageKeyInterceptor) thus FR and EN requests do not collide
+                    .removeHeader("Vary")
                     .header("Cache-Control", cacheControl.toString())
                     .build();
         }
+
+        private static boolean isEmptySearch(Response response) {
+            if (!response.isSuccessful() || !response.request().url().encodedPath().contains("/search/")) return false;
+            try {
+                ResponseBody peek = response.peekBody(EMPTY_SEARCH_MAX_BYTES);
+                if (peek.contentLength() >= EMPTY_SEARCH_MAX_BYTES) return false;
+                // network interceptors see the body before transparent gzip decoding
+                BufferedSource source = peek.source();
+                if ("gzip".equalsIgnoreCase(response.header("Content-Encoding")))
+                    source = Okio.buffer(new GzipSource(source));
+                return source.readUtf8().contains("\"total_results\":0");
+            } catch (IOException e) {
+                log.warn("isEmptySearch: caught IOException", e);
+                return false;
+            }
+        }
     }
 
     public static class isCacheResponding implements Interceptor {
@@ -0,0 +1,349 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.mediascraper;
+
+import com.archos.mediaprovider.Metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/*
+ * Shared request throttling for scraper http clients: all MyTmdb instances (manual search,
+ * AutoScrapeService, AllCollectionScrapeService) go through the same single-flight map,
+ * token bucket and connection pool.
+ */
+
+public class ScraperThrottle {
+
+    private static final Logger log = LoggerFactory.getLogger(ScraperThrottle.class);
+
+    // tmdb allows around 50 requests/s per ip, stay well below
+    private static final double MAX_RATE = 20.0; // requests per second
+    private static final double MIN_RATE = 1.0;
+    private static final double BURST = 10.0;
+    // rate recovers by this amount per successful request after a 429
+    private static final double RATE_RECOVERY_STEP = 0.5;
+    private static final long DEFAULT_RETRY_AFTER_MILLIS = 2 * 1000; // 2s
+    private static final long MAX_RETRY_AFTER_MILLIS = 30 * 1000; // 30s
+    private static final int MAX_429_RETRIES = 3;
+    // do not buffer bodies larger than this for coalesced callers
+    private static final long MAX_SHARED_BODY_SIZE = 4L * 1024L * 1024L;
+
+    private static final int POOL_MAX_IDLE_CONNECTIONS = 4;
+    private static final long POOL_KEEP_ALIVE_MINUTES = 5;
+    private static final int MAX_REQUESTS_PER_HOST = 8;
+
+    private static final ConnectionPool sConnectionPool =
+            new ConnectionPool(POOL_MAX_IDLE_CONNECTIONS, POOL_KEEP_ALIVE_MINUTES, TimeUnit.MINUTES);
+    private static final Dispatcher sDispatcher = new Dispatcher();
+    static {
+        sDispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+    }
+
+    private static final TokenBucket sBucket = new TokenBucket(MAX_RATE, BURST);
+    private static final HashMap<String, InFlight> sInFlight = new HashMap<>();
+
+    private static final AtomicLong sRequestCount = new AtomicLong();
+    private static final AtomicLong sCoalescedCount = new AtomicLong();
+    private static final AtomicLong sThrottledCount = new AtomicLong();
+    private static final AtomicLong sThrottleWaitMillis = new AtomicLong();
+    private static final AtomicLong sTooManyRequestsCount = new AtomicLong();
+
+    static {
+        Metrics.gauge("scraperthrottle.requests", sRequestCount::get);
+        Metrics.gauge("scraperthrottle.coalesced", sCoalescedCount::get);
+        Metrics.gauge("scraperthrottle.throttled", sThrottledCount::get);
+        Metrics.gauge("scraperthrottle.wait_ms", sThrottleWaitMillis::get);
+        Metrics.gauge("scraperthrottle.too_many_requests", sTooManyRequestsCount::get);
+    }
+
+    /** shared pool so that all scraper clients reuse the same keep-alive connections */
+    public static ConnectionPool getConnectionPool() {
+        return sConnectionPool;
+    }
+
+    /**
+     * shared dispatcher limiting parallel async calls per host across all scraper clients,
+     * sync calls are limited by the token bucket
+     */
+    public static Dispatcher getDispatcher() {
+        return sDispatcher;
+    }
+
+    public static long getRequestCount() {
+        return sRequestCount.get();
+    }
+
+    /** number of calls answered by another identical in-flight call */
+    public static long getCoalescedCount() {
+        return sCoalescedCount.get();
+    }
+
+    /** number of calls that had to wait for a token */
+    public static long getThrottledCount() {
+        return sThrottledCount.get();
+    }
+
+    /** total time spent waiting for tokens or Retry-After */
+    public static long getThrottleWaitMillis() {
+        return sThrottleWaitMillis.get();
+    }
+
+    /** number of 429 responses received from the server */
+    public static long getTooManyRequestsCount() {
+        return sTooManyRequestsCount.get();
+    }
+
+    public static double getCurrentRate() {
+        return sBucket.getRate();
+    }
+
+    public static void dumpThrottleInfo() {
+        log.debug("dumpThrottleInfo: requests=" + sRequestCount.get() + ", coalesced=" + sCoalescedCount.get()
+                + ", throttled=" + sThrottledCount.get() + " (" + sThrottleWaitMillis.get() + "ms)"
+                + ", 429=" + sTooManyRequestsCount.get() + ", rate=" + sBucket.getRate() + "/s"
+                + ", pool idle/total=" + sConnectionPool.idleConnectionCount() + "/" + sConnectionPool.connectionCount());
+    }
+
+    /*
+     * Application interceptor: identical GET requests issued while a first one is still running
+     * wait for it and get a copy of its response instead of going to the network themselves.
+     */
+    public static class SingleFlightInterceptor implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            if (!"GET".equals(request.method())) return chain.proceed(request);
+            String key = request.url().toString();
+            InFlight inFlight;
+            boolean leader = false;
+            synchronized (sInFlight) {
+                inFlight = sInFlight.get(key);
+                if (inFlight == null) {
+                    inFlight = new InFlight();
+                    sInFlight.put(key, inFlight);
+                    leader = true;
+                }
+            }
+            if (!leader) {
+                Response shared = inFlight.await();
+                if (shared != null) {
+                    sCoalescedCount.incrementAndGet();
+                    log.trace("SingleFlightInterceptor: coalesced " + key);
+                    return shared.newBuilder()
+                            .request(request)
+                            .body(ResponseBody.create(inFlight.body, inFlight.contentType))
+                            .build();
+                }
+                // leader failed or body could not be shared: do it ourselves
+                return chain.proceed(request);
+            }
+            Response response = null;
+            try {
+                response = chain.proceed(request);
+                ResponseBody body = response.body();
+                if (body != null && isShareable(body)) {
+                    byte[] bytes = body.bytes();
+                    MediaType contentType = body.contentType();
+                    response = response.newBuilder()
+                            .body(ResponseBody.create(bytes, contentType))
+                            .build();
+                    inFlight.body = bytes;
+                    inFlight.contentType = contentType;
+                    inFlight.response = response;
+                }
+                return response;
+            } finally {
+                synchronized (sInFlight) {
+                    sInFlight.remove(key);
+                }
+                inFlight.done();
+            }
+        }
+    }
+
+    /*
+     * Network interceptor: token bucket shared by all scraper clients, cache hits do not consume tokens.
+     * A 429 answer pauses every caller for Retry-After and halves the rate, which then slowly recovers.
+     */
+    public static class RateLimitInterceptor implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            long waited;
+            try {
+                waited = sBucket.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while throttled");
+            }
+            if (waited > 0) {
+                sThrottledCount.incrementAndGet();
+                sThrottleWaitMillis.addAndGet(waited);
+            }
+            sRequestCount.incrementAndGet();
+            Response response = chain.proceed(request);
+            if (response.code() == 429) {
+                sTooManyRequestsCount.incrementAndGet();
+                long retryAfter = parseRetryAfter(response.header("Retry-After"));
+                sBucket.onTooManyRequests(retryAfter);
+                log.warn("RateLimitInterceptor: 429 on " + request.url().encodedPath() + ", retry after "
+                        + retryAfter + "ms, rate now " + sBucket.getRate() + "/s");
+            } else {
+                sBucket.onSuccess();
+            }
+            return response;
+        }
+    }
+
+    /*
+     * Application interceptor: re-issues calls answered with 429, the RateLimitInterceptor makes
+     * the retry wait until Retry-After has elapsed.
+     */
+    public static class RetryAfterInterceptor implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            int trial = 0;
+            Response response = chain.proceed(request);
+            while (response.code() == 429 && trial++ < MAX_429_RETRIES) {
+                response.close();
+                response = chain.proceed(request);
+            }
+            return response;
+        }
+    }
+
+    /*
+     * Only bodies known to be at most MAX_SHARED_BODY_SIZE are buffered. When the length is not
+     * announced (chunked or transparently gunzipped answers, i.e. most tmdb ones) at most
+     * MAX_SHARED_BODY_SIZE + 1 bytes are read ahead to find out, the body stays readable either way.
+     */
+    private static boolean isShareable(ResponseBody body) throws IOException {
+        long length = body.contentLength();
+        if (length >= 0) return length <= MAX_SHARED_BODY_SIZE;
+        return !body.source().request(MAX_SHARED_BODY_SIZE + 1);
+    }
+
+    static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null) return DEFAULT_RETRY_AFTER_MILLIS;
+        try {
+            long seconds = Long.parseLong(retryAfter.trim());
+            return Math.min(Math.max(seconds * 1000, 0), MAX_RETRY_AFTER_MILLIS);
+        } catch (NumberFormatException e) {
+            // http-date form is not used by tmdb
+            return DEFAULT_RETRY_AFTER_MILLIS;
+        }
+    }
+
+    private static class InFlight {
+        private boolean mDone;
+        Response response;
+        byte[] body;
+        MediaType contentType;
+
+        synchronized Response await() throws InterruptedIOException {
+            while (!mDone) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while waiting for coalesced call");
+                }
+            }
+            return response;
+        }
+
+        synchronized void done() {
+            mDone = true;
+            notifyAll();
+        }
+    }
+
+    /** token bucket with adaptive rate, times in ms */
+    static class TokenBucket {
+        private final double mMaxRate;
+        private final double mCapacity;
+        private double mRate;
+        private double mTokens;
+        private long mLastRefill;
+        private long mPausedUntil;
+
+        TokenBucket(double maxRate, double capacity) {
+            mMaxRate = maxRate;
+            mRate = maxRate;
+            mCapacity = capacity;
+            mTokens = capacity;
+            mLastRefill = System.currentTimeMillis();
+        }
+
+        synchronized double getRate() {
+            return mRate;
+        }
+
+        /** blocks until a token is available, returns the time waited */
+        synchronized long acquire() throws InterruptedException {
+            long start = System.currentTimeMillis();
+            while (true) {
+                long now = System.currentTimeMillis();
+                if (now < mPausedUntil) {
+                    wait(mPausedUntil - now);
+                    continue;
+                }
+                refill(now);
+                if (mTokens >= 1.0) {
+                    mTokens -= 1.0;
+                    return System.currentTimeMillis() - start;
+                }
+                long needed = (long) Math.ceil((1.0 - mTokens) * 1000.0 / mRate);
+                wait(Math.max(needed, 1));
+            }
+        }
+
+        synchronized void onSuccess() {
+            if (mRate < mMaxRate) mRate = Math.min(mMaxRate, mRate + RATE_RECOVERY_STEP);
+        }
+
+        synchronized void onTooManyRequests(long retryAfterMillis) {
+            mRate = Math.max(MIN_RATE, mRate / 2);
+            mTokens = 0;
+            mPausedUntil = Math.max(mPausedUntil, System.currentTimeMillis() + retryAfterMillis);
+            // refill starts again only once the pause is over
+            mLastRefill = mPausedUntil;
+            notifyAll();
+        }
+
+        private void refill(long now) {
+            if (now <= mLastRefill) return;
+            mTokens = Math.min(mCapacity, mTokens + (now - mLastRefill) * mRate / 1000.0);
+            mLastRefill = now;
+        }
+    }
+}
@@ -281,7 +281,7 @@ public class ShowTags extends VideoTags {
         // if new show or posters changed
         if (!showFound || postersChanged) {
             log.debug("Inserting posters.");
-            for (ScraperImage image : safeList(mPosters)) {
+            for (ScraperImage image : safeList(posters())) {
                 if (posterId == -1)
                     posterId = allOperations.size();
                 // insert ignores posters that are already present
@@ -628,7 +628,8 @@ public class ShowTags extends VideoTags {
 
                 // since show exists check other data for changes too
                 int storedPosterCount = storedPosterCount(showId, contentResolver);
-                int newPosterCount = mPosters == null ? 0 : mPosters.size();
+                List<ScraperImage> posters = posters();
+                int newPosterCount = posters == null ? 0 : posters.size();
                 postersChanged = storedPosterCount != newPosterCount;
 
                 int storedBackdropCount = storedBackdropCount(showId, contentResolver);
@@ -20,6 +20,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.net.Uri;
+import android.os.SystemClock;
 import android.provider.BaseColumns;
 import android.util.Log;
 import android.util.LongSparseArray;
@@ -32,6 +33,7 @@ import com.archos.mediascraper.ScraperImage.Type;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Hashtable;
 import java.util.LinkedList;
@@ -44,48 +46,24 @@ public class TagsFactory {
 
     private TagsFactory() {    }
 
-    private static String getStringCol(Cursor cur, String col) {
-        int id = cur.getColumnIndex(col);
-        if(id < 0) 
-            return null;
-        return cur.getString(id);
-    }
     private static String getStringCol(Cursor cur, int id) {
         if(id < 0)
             return null;
         return cur.getString(id);
     }
 
-    private static int getIntCol(Cursor cur, String col) {
-        int id = cur.getColumnIndex(col);
-        if(id < 0) 
-            return -1;
-        return cur.getInt(id);
-    }
     private static int getIntCol(Cursor cur, int id) {
         if(id < 0)
             return -1;
         return cur.getInt(id);
     }
 
-    private static long getLongCol(Cursor cur, String col) {
-        int id = cur.getColumnIndex(col);
-        if(id < 0) 
-            return -1L;
-        return cur.getLong(id);
-    }
     private static long getLongCol(Cursor cur, int id) {
         if(id < 0)
             return -1L;
         return cur.getLong(id);
     }
 
-    private static float getFloatCol(Cursor cur, String col) {
-        int id = cur.getColumnIndex(col);
-        if(id < 0) 
-            return -1f;
-        return cur.getFloat(id);
-    }
     private static float getFloatCol(Cursor cur, int id) {
         if(id < 0)
             return -1f;
@@ -93,6 +71,19 @@ public class TagsFactory {
     }
 
     private static class Columns {
+        // list cursors are requeried over and over with the same projection, resolve it once
+        private static String[] sLastColumnNames;
+        private static Columns sLastColumns;
+
+        public static synchronized Columns get(Cursor c) {
+            String[] names = c.getColumnNames();
+            if (sLastColumns == null || !Arrays.equals(names, sLastColumnNames)) {
+                sLastColumns = new Columns(c);
+                sLastColumnNames = names;
+            }
+            return sLastColumns;
+        }
+
         public Columns(Cursor c) {
             id = getCol(c, BaseColumns._ID);
             data = getCol(c, MediaColumns.DATA);
@@ -287,6 +278,36 @@ public class TagsFactory {
         VideoColumns.SCRAPER_C_BACKDROP_THUMB_URL
     };
 
+    /** what {@link #buildTagsFromVideoCursor(Cursor, boolean)} uses in summary mode */
+    public static final String[] SUMMARY_COLUMNS = {
+        BaseColumns._ID,
+        MediaColumns.DATA,
+        VideoColumns.ARCHOS_MEDIA_SCRAPER_ID,
+        VideoColumns.ARCHOS_MEDIA_SCRAPER_TYPE,
+        VideoColumns.SCRAPER_TITLE,
+        VideoColumns.SCRAPER_E_NAME,
+        VideoColumns.SCRAPER_RATING,
+        VideoColumns.SCRAPER_S_RATING,
+        VideoColumns.SCRAPER_M_YEAR,
+        VideoColumns.SCRAPER_E_AIRED,
+        VideoColumns.SCRAPER_S_PREMIERED,
+        VideoColumns.SCRAPER_COVER,
+        VideoColumns.SCRAPER_S_COVER,
+        VideoColumns.SCRAPER_E_SEASON,
+        VideoColumns.SCRAPER_E_EPISODE,
+        VideoColumns.SCRAPER_SHOW_ID,
+        VideoColumns.SCRAPER_POSTER_LARGE_FILE,
+        VideoColumns.SCRAPER_POSTER_LARGE_URL,
+        VideoColumns.SCRAPER_POSTER_THUMB_FILE,
+        VideoColumns.SCRAPER_POSTER_THUMB_URL,
+        VideoColumns.SCRAPER_POSTER_ID,
+        VideoColumns.SCRAPER_S_POSTER_LARGE_FILE,
+        VideoColumns.SCRAPER_S_POSTER_LARGE_URL,
+        VideoColumns.SCRAPER_S_POSTER_THUMB_FILE,
+        VideoColumns.SCRAPER_S_POSTER_THUMB_URL,
+        VideoColumns.SCRAPER_S_POSTER_ID
+    };
+
     /**
      * use: {@link #VIDEO_COLUMNS} or those below
      * Won't break if you leave out some of them, basically that info
@@ -345,55 +366,42 @@ public class TagsFactory {
     </pre>
     */
 
-	public static List<BaseTags> buildTagsFromVideoCursor(Cursor cur) {
+    public static List<BaseTags> buildTagsFromVideoCursor(Cursor cur) {
+        return buildTagsFromVideoCursor(cur, false);
+    }
+
+    /**
+     * Same as {@link #buildTagsFromVideoCursor(Cursor)}, in summary mode only what a list needs is set:
+     * ids, file, title, rating, year / aired date, season and episode, show title and poster.
+     * Plot, people, genres, studios, backdrops and collection are left out, use {@link #SUMMARY_COLUMNS}
+     * as projection for such a cursor.
+     */
+    public static List<BaseTags> buildTagsFromVideoCursor(Cursor cur, boolean summary) {
         int count = cur == null ? 0 : cur.getCount();
         List<BaseTags> resultList = new ArrayList<BaseTags>(count);
         LongSparseArray<ShowTags> tags = new LongSparseArray<ShowTags>();
 
         if (count == 0)
             return resultList;
+        long start = DBG ? SystemClock.elapsedRealtime() : 0;
         int initialPosition = cur.getPosition();
         cur.moveToPosition(-1);
-        Columns cols = new Columns(cur);
+        Columns cols = Columns.get(cur);
         while (cur.moveToNext()) {
+            int scraperType = getIntCol(cur, cols.scraperType);
+            if (scraperType != ScraperStore.SCRAPER_TYPE_MOVIE && scraperType != ScraperStore.SCRAPER_TYPE_SHOW) {
+                Log.d(TAG, "Not a Show / Movie");
+                resultList.add(null);
+                continue;
+            }
+            // only the columns used by the type of the row are read
             long videoId = getLongCol(cur, cols.id);
             String data = getStringCol(cur, cols.data);
             long scraperId = getLongCol(cur, cols.scraperId);
-            int scraperType = getIntCol(cur, cols.scraperType);
             String titleMS = getStringCol(cur, cols.titleMS);
             float ratingME = getFloatCol(cur, cols.ratingME);
-            long onlineIdMS = getLongCol(cur, cols.onlineIdMS);
-            String contentRatingMS = getStringCol(cur, cols.contentRatingMS);
-            String imdbIdMS = getStringCol(cur, cols.imdbIdMS);
-            String plotME = getStringCol(cur, cols.plotME);
             String coverME = getStringCol(cur, cols.coverME);
-            String backdropUrlMS = getStringCol(cur, cols.backdropUrlMS);
-            String actorsMS = getStringCol(cur, cols.actorsMS);
-            String directorsME = getStringCol(cur, cols.directorsME);
-            String writersME = getStringCol(cur, cols.writersME);
-            String genresMS = getStringCol(cur, cols.genresMS);
-            String studiosMS = getStringCol(cur, cols.studiosMS);
-            long backdropId = getLongCol(cur, cols.backdropId);
-            String backdropLFile = getStringCol(cur, cols.backdropLFile);
-            String backdropLUrl = getStringCol(cur, cols.backdropLUrl);
-            String backdropTFile = getStringCol(cur, cols.backdropTFile);
-            String backdropTUrl = getStringCol(cur, cols.backdropTUrl);
             long posterId = getLongCol(cur, cols.posterId);
-            String posterLFile = getStringCol(cur, cols.posterLFile);
-            String posterLUrl = getStringCol(cur, cols.posterLUrl);
-            String posterTFile = getStringCol(cur, cols.posterTFile);
-            String posterTUrl = getStringCol(cur, cols.posterTUrl);
-            int collectionId = getIntCol(cur, cols.collectionId);
-            String collectionName = getStringCol(cur, cols.collectionName);
-            String collectionDescription = getStringCol(cur, cols.collectionDescription);
-            String backdropCLFile = getStringCol(cur, cols.backdropCLFile);
-            String backdropCLUrl = getStringCol(cur, cols.backdropCLUrl);
-            String backdropCTFile = getStringCol(cur, cols.backdropCTFile);
-            String backdropCTUrl = getStringCol(cur, cols.backdropCTUrl);
-            String posterCLFile = getStringCol(cur, cols.posterCLFile);
-            String posterCLUrl = getStringCol(cur, cols.posterCLUrl);
-            String posterCTFile = getStringCol(cur, cols.posterCTFile);
-            String posterCTUrl = getStringCol(cur, cols.posterCTUrl);
             if (scraperType == ScraperStore.SCRAPER_TYPE_MOVIE) {
                 MovieTags tag = new MovieTags();
                 tag.setId(scraperId);
@@ -404,63 +412,64 @@ public class TagsFactory {
 
                 if(ratingME >= 0)
                     tag.setRating(ratingME);
-                tag.setOnlineId(onlineIdMS);
-                tag.setImdbId(imdbIdMS);
-                tag.setContentRating(contentRatingMS);
                 int year = getIntCol(cur, cols.yearM);
                 if(year >= 0)
                     tag.setYear(year);
-                tag.setPlot(plotME);
-                tag.setActorsFormatted(actorsMS);
-                tag.setDirectorsFormatted(directorsME);
-                tag.setWritersFormatted(writersME);
-                tag.setGenresFormatted(genresMS);
-                tag.setStudiosFormatted(studiosMS);
 
                 if(coverME != null && posterId <= 0)
                     tag.setCover(new File(coverME));
-                if (backdropUrlMS != null && backdropId <= 0) {
-                    Log.w(TAG, "No Backdrop due to missing paths in database");
-                }
-
-                if (backdropId > 0) {
-                    ScraperImage image = new ScraperImage(ScraperImage.Type.MOVIE_BACKDROP, data);
-                    image.setLargeFile(backdropLFile);
-                    image.setLargeUrl(backdropLUrl);
-                    image.setThumbFile(backdropTFile);
-                    image.setThumbUrl(backdropTUrl);
-                    image.setId(backdropId);
-                    image.setRemoteId(scraperId);
-                    tag.setBackdrops(image.asList());
-                }
 
                 if (posterId > 0) {
-                    ScraperImage image = new ScraperImage(ScraperImage.Type.MOVIE_POSTER, data);
-                    image.setLargeFile(posterLFile);
-                    image.setLargeUrl(posterLUrl);
-                    image.setThumbFile(posterTFile);
-                    image.setThumbUrl(posterTUrl);
-                    image.setId(posterId);
-                    image.setRemoteId(scraperId);
-                    tag.setPosters(image.asList());
+                    tag.setDeferredPoster(ScraperImage.Type.MOVIE_POSTER, data, posterId, scraperId, -1,
+                            getStringCol(cur, cols.posterLFile), getStringCol(cur, cols.posterLUrl),
+                            getStringCol(cur, cols.posterTFile), getStringCol(cur, cols.posterTUrl));
                 }
 
-                if (collectionId > 0) {
-                    tag.setCollectionId(collectionId);
-                    tag.setCollectionName(collectionName);
-                    tag.setCollectionDescription(collectionDescription);
-                    tag.setCollectionPosterLargeFile(posterCLFile);
-                    tag.setCollectionPosterLargeUrl(posterCLUrl);
-                    tag.setCollectionPosterThumbFile(posterCTFile);
-                    tag.setCollectionPosterThumbUrl(posterCTUrl);
-                    tag.setCollectionBackdropLargeFile(backdropCLFile);
-                    tag.setCollectionBackdropLargeUrl(backdropCLUrl);
-                    tag.setCollectionBackdropThumbFile(backdropCTFile);
-                    tag.setCollectionBackdropThumbUrl(backdropCTUrl);
+                if (!summary) {
+                    tag.setOnlineId(getLongCol(cur, cols.onlineIdMS));
+                    tag.setImdbId(getStringCol(cur, cols.imdbIdMS));
+                    tag.setContentRating(getStringCol(cur, cols.contentRatingMS));
+                    tag.setPlot(getStringCol(cur, cols.plotME));
+                    tag.setActorsFormatted(getStringCol(cur, cols.actorsMS));
+                    tag.setDirectorsFormatted(getStringCol(cur, cols.directorsME));
+                    tag.setWritersFormatted(getStringCol(cur, cols.writersME));
+                    tag.setGenresFormatted(getStringCol(cur, cols.genresMS));
+                    tag.setStudiosFormatted(getStringCol(cur, cols.studiosMS));
+
+                    long backdropId = getLongCol(cur, cols.backdropId);
+                    if (backdropId <= 0 && getStringCol(cur, cols.backdropUrlMS) != null) {
+                        Log.w(TAG, "No Backdrop due to missing paths in database");
+                    }
+
+                    if (backdropId > 0) {
+                        ScraperImage image = new ScraperImage(ScraperImage.Type.MOVIE_BACKDROP, data);
+                        image.setLargeFile(getStringCol(cur, cols.backdropLFile));
+                        image.setLargeUrl(getStringCol(cur, cols.backdropLUrl));
+                        image.setThumbFile(getStringCol(cur, cols.backdropTFile));
+                        image.setThumbUrl(getStringCol(cur, cols.backdropTUrl));
+                        image.setId(backdropId);
+                        image.setRemoteId(scraperId);
+                        tag.setBackdrops(image.asList());
+                    }
+
+                    int collectionId = getIntCol(cur, cols.collectionId);
+                    if (collectionId > 0) {
+                        tag.setCollectionId(collectionId);
+                        tag.setCollectionName(getStringCol(cur, cols.collectionName));
+                        tag.setCollectionDescription(getStringCol(cur, cols.collectionDescription));
+                        tag.setCollectionPosterLargeFile(getStringCol(cur, cols.posterCLFile));
+                        tag.setCollectionPosterLargeUrl(getStringCol(cur, cols.posterCLUrl));
+                        tag.setCollectionPosterThumbFile(getStringCol(cur, cols.posterCTFile));
+                        tag.setCollectionPosterThumbUrl(getStringCol(cur, cols.posterCTUrl));
+                        tag.setCollectionBackdropLargeFile(getStringCol(cur, cols.backdropCLFile));
+                        tag.setCollectionBackdropLargeUrl(getStringCol(cur, cols.backdropCLUrl));
+                        tag.setCollectionBackdropThumbFile(getStringCol(cur, cols.backdropCTFile));
+                        tag.setCollectionBackdropThumbUrl(getStringCol(cur, cols.backdropCTUrl));
+                    }
                 }
 
                 resultList.add(tag);
-            } else if (scraperType == ScraperStore.SCRAPER_TYPE_SHOW) {
+            } else {
                 EpisodeTags epTag = new EpisodeTags();
                 epTag.setId(scraperId);
                 epTag.setVideoId(videoId);
@@ -471,40 +480,35 @@ public class TagsFactory {
 
                 if(ratingME >= 0)
                     epTag.setRating(ratingME);
-                String imdbIdE = getStringCol(cur, cols.imdbIdE);
-                epTag.setImdbId(imdbIdE);
-                long onlineIdE = getLongCol(cur, cols.onlineIdE);
-                epTag.setOnlineId(onlineIdE);
                 long airedE = getLongCol(cur, cols.airedE);
                 if(airedE >= 0)
                     epTag.setAired(airedE);
-                epTag.setPlot(plotME);
                 int season = getIntCol(cur, cols.seasonE);
                 epTag.setSeason(season);
                 int episode = getIntCol(cur, cols.episodeE);
                 epTag.setEpisode(episode);
                 long showId = getLongCol(cur, cols.showId);
                 epTag.setShowId(showId);
-                String actorsE = getStringCol(cur, cols.actorsE);
-                epTag.setActorsFormatted(actorsE);
-                epTag.setDirectorsFormatted(directorsME);
-                epTag.setWritersFormatted(writersME);
 
                 if(coverME != null && posterId <= 0)
                     epTag.setCover(new File(coverME));
 
                 if (posterId >0) {
-                    ScraperImage image = new ScraperImage(ScraperImage.Type.EPISODE_POSTER, titleMS);
-                    image.setLargeFile(posterLFile);
-                    image.setLargeUrl(posterLUrl);
-                    image.setThumbFile(posterTFile);
-                    image.setThumbUrl(posterTUrl);
-                    image.setId(posterId);
-                    image.setRemoteId(showId);
-                    image.setSeason(season);
-                    epTag.setPosters(image.asList());
+                    epTag.setDeferredPoster(ScraperImage.Type.EPISODE_POSTER, titleMS, posterId, showId, season,
+                            getStringCol(cur, cols.posterLFile), getStringCol(cur, cols.posterLUrl),
+                            getStringCol(cur, cols.posterTFile), getStringCol(cur, cols.posterTUrl));
+                }
+
+                if (!summary) {
+                    epTag.setImdbId(getStringCol(cur, cols.imdbIdE));
+                    epTag.setOnlineId(getLongCol(cur, cols.onlineIdE));
+                    epTag.setPlot(getStringCol(cur, cols.plotME));
+                    epTag.setActorsFormatted(getStringCol(cur, cols.actorsE));
+                    epTag.setDirectorsFormatted(getStringCol(cur, cols.directorsME));
+                    epTag.setWritersFormatted(getStringCol(cur, cols.writersME));
                 }
 
+                // show columns are the same for all its episodes, read them once
                 ShowTags sTag = tags.get(showId);
                 if(sTag == null) {
                     sTag = new ShowTags();
@@ -516,66 +520,57 @@ public class TagsFactory {
                     float ratingS = getFloatCol(cur, cols.ratingS);
                     if(ratingS >= 0)
                         sTag.setRating(ratingS);
-                    sTag.setOnlineId(onlineIdMS);
-                    sTag.setImdbId(imdbIdMS);
-                    sTag.setContentRating(contentRatingMS);
                     long premieredS = getLongCol(cur, cols.premieredS);
                     if(premieredS >= 0)
                         sTag.setPremiered(premieredS);
-                    String plotS = getStringCol(cur, cols.plotS);
-                    sTag.setPlot(plotS);
-                    sTag.setActorsFormatted(actorsMS);
-                    String directorsS =getStringCol(cur, cols.directorsS);
-                    String writersS =getStringCol(cur, cols.writersS);
-                    sTag.setDirectorsFormatted(directorsS);
-                    sTag.setWritersFormatted(writersS);
-                    sTag.setGenresFormatted(genresMS);
-                    sTag.setStudiosFormatted(studiosMS);
 
                     String coverS =getStringCol(cur, cols.coverS);
                     long posterSId = getLongCol(cur, cols.posterSId);
-                    String posterSLFile = getStringCol(cur, cols.posterSLFile);
-                    String posterSLUrl = getStringCol(cur, cols.posterSLUrl);
-                    String posterSTFile = getStringCol(cur, cols.posterSTFile);
-                    String posterSTUrl = getStringCol(cur, cols.posterSTUrl);
-
                     if(coverS != null && posterSId <= 0)
                         sTag.setCover(new File(coverS));
-                    if (backdropUrlMS != null && backdropId <= 0) {
-                        Log.w(TAG, "No Backdrop due to missing paths in database");
-                    }
 
-                    if (backdropId > 0) {
-                        ScraperImage image = new ScraperImage(ScraperImage.Type.SHOW_BACKDROP, titleMS);
-                        image.setLargeFile(backdropLFile);
-                        image.setLargeUrl(backdropLUrl);
-                        image.setThumbFile(backdropTFile);
-                        image.setThumbUrl(backdropTUrl);
-                        image.setId(backdropId);
-                        image.setRemoteId(showId);
-                        sTag.setBackdrops(image.asList());
-                    }
                     if (posterSId >0) {
-                        ScraperImage image = new ScraperImage(ScraperImage.Type.SHOW_POSTER, titleMS);
-                        image.setLargeFile(posterSLFile);
-                        image.setLargeUrl(posterSLUrl);
-                        image.setThumbFile(posterSTFile);
-                        image.setThumbUrl(posterSTUrl);
-                        image.setId(posterSId);
-                        image.setRemoteId(showId);
-                        sTag.setPosters(image.asList());
+                        sTag.setDeferredPoster(ScraperImage.Type.SHOW_POSTER, titleMS, posterSId, showId, -1,
+                                getStringCol(cur, cols.posterSLFile), getStringCol(cur, cols.posterSLUrl),
+                                getStringCol(cur, cols.posterSTFile), getStringCol(cur, cols.posterSTUrl));
                     }
 
+                    if (!summary) {
+                        sTag.setOnlineId(getLongCol(cur, cols.onlineIdMS));
+                        sTag.setImdbId(getStringCol(cur, cols.imdbIdMS));
+                        sTag.setContentRating(getStringCol(cur, cols.contentRatingMS));
+                        sTag.setPlot(getStringCol(cur, cols.plotS));
+                        sTag.setActorsFormatted(getStringCol(cur, cols.actorsMS));
+                        sTag.setDirectorsFormatted(getStringCol(cur, cols.directorsS));
+                        sTag.setWritersFormatted(getStringCol(cur, cols.writersS));
+                        sTag.setGenresFormatted(getStringCol(cur, cols.genresMS));
+                        sTag.setStudiosFormatted(getStringCol(cur, cols.studiosMS));
+
+                        long backdropId = getLongCol(cur, cols.backdropId);
+                        if (backdropId <= 0 && getStringCol(cur, cols.backdropUrlMS) != null) {
+                            Log.w(TAG, "No Backdrop due to missing paths in database");
+                        }
+
+                        if (backdropId > 0) {
+                            ScraperImage image = new ScraperImage(ScraperImage.Type.SHOW_BACKDROP, titleMS);
+                            image.setLargeFile(getStringCol(cur, cols.backdropLFile));
+                            image.setLargeUrl(getStringCol(cur, cols.backdropLUrl));
+                            image.setThumbFile(getStringCol(cur, cols.backdropTFile));
+                            image.setThumbUrl(getStringCol(cur, cols.backdropTUrl));
+                            image.setId(backdropId);
+                            image.setRemoteId(showId);
+                            sTag.setBackdrops(image.asList());
+                        }
+                    }
                 }
                 epTag.setShowTags(sTag);
                 resultList.add(epTag);
-            } else {
-                Log.d(TAG, "Not a Show / Movie");
-                resultList.add(null);
             }
         }
         // leave cursor the way it was.
         cur.moveToPosition(initialPosition);
+        if (DBG) Log.d(TAG, "buildTagsFromVideoCursor: " + count + " rows" + (summary ? " (summary)" : "") +
+                " in " + (SystemClock.elapsedRealtime() - start) + "ms");
         return resultList;
     }
 
@@ -583,24 +578,40 @@ public class TagsFactory {
         Hashtable<Long, MovieTags> tags = new Hashtable<Long, MovieTags>();
         if(!cur.moveToFirst())
             return null;
+        // resolved once, not for every row
+        final int idCol = cur.getColumnIndex(ScraperStore.Movie.ID);
+        final int nameCol = cur.getColumnIndex(ScraperStore.Movie.NAME);
+        final int ratingCol = cur.getColumnIndex(ScraperStore.Movie.RATING);
+        final int yearCol = cur.getColumnIndex(ScraperStore.Movie.YEAR);
+        final int plotCol = cur.getColumnIndex(ScraperStore.Movie.PLOT);
+        final int coverCol = cur.getColumnIndex(ScraperStore.Movie.COVER);
+        final int actorNameCol = cur.getColumnIndex(ScraperStore.Movie.Actor.NAME);
+        final int roleCol = cur.getColumnIndex(ScraperStore.Movie.Actor.ROLE);
+        final int directorCol = cur.getColumnIndex(ScraperStore.Movie.Director.NAME);
+        final int writerCol = cur.getColumnIndex(ScraperStore.Movie.Writer.NAME);
+        final int genreCol = cur.getColumnIndex(ScraperStore.Movie.Genre.NAME);
+        final int studioCol = cur.getColumnIndex(ScraperStore.Movie.Studio.NAME);
+        final int backdropUrlCol = cur.getColumnIndex(ScraperStore.Movie.BACKDROP_URL);
+        final int backdropPathCol = cur.getColumnIndex(ScraperStore.Movie.BACKDROP);
+        final int collectionIdCol = cur.getColumnIndex(ScraperStore.Movie.COLLECTION_ID);
         do {
-            Long id = Long.valueOf(getLongCol(cur, ScraperStore.Movie.ID));
-            String name = getStringCol(cur, ScraperStore.Movie.NAME);
-            float rating = getFloatCol(cur, ScraperStore.Movie.RATING);
-            int year = getIntCol(cur, ScraperStore.Movie.YEAR);
-            String plot = getStringCol(cur, ScraperStore.Movie.PLOT);
-            String cover = getStringCol(cur, ScraperStore.Movie.COVER);
-            String actorName = getStringCol(cur, ScraperStore.Movie.Actor.NAME);
-            String role = getStringCol(cur, ScraperStore.Movie.Actor.ROLE);
-            String director = getStringCol(cur, ScraperStore.Movie.Director.NAME);
-            String writer = getStringCol(cur, ScraperStore.Movie.Writer.NAME);
-            String genre = getStringCol(cur, ScraperStore.Movie.Genre.NAME);
-            String studio = getStringCol(cur, ScraperStore.Movie.Studio.NAME);
-
-            String backdropUrl = getStringCol(cur, ScraperStore.Movie.BACKDROP_URL);
-            String backdropPath = getStringCol(cur, ScraperStore.Movie.BACKDROP);
-
-            Integer collectionId = getIntCol(cur, ScraperStore.Movie.COLLECTION_ID);
+            Long id = Long.valueOf(getLongCol(cur, idCol));
+            String name = getStringCol(cur, nameCol);
+            float rating = getFloatCol(cur, ratingCol);
+            int year = getIntCol(cur, yearCol);
+            String plot = getStringCol(cur, plotCol);
+            String cover = getStringCol(cur, coverCol);
+            String actorName = getStringCol(cur, actorNameCol);
+            String role = getStringCol(cur, roleCol);
+            String director = getStringCol(cur, directorCol);
+            String writer = getStringCol(cur, writerCol);
+            String genre = getStringCol(cur, genreCol);
+            String studio = getStringCol(cur, studioCol);
+
+            String backdropUrl = getStringCol(cur, backdropUrlCol);
+            String backdropPath = getStringCol(cur, backdropPathCol);
+
+            Integer collectionId = getIntCol(cur, collectionIdCol);
 
             MovieTags tag = tags.get(id);
             if(tag == null) {
@@ -643,22 +654,37 @@ public class TagsFactory {
         if(DBG) Log.d(TAG, "Building ShowTags from Cursor");
         if(!cur.moveToFirst())
             return null;
+        // resolved once, not for every row
+        final int idCol = cur.getColumnIndex(ScraperStore.Show.ID);
+        final int nameCol = cur.getColumnIndex(ScraperStore.Show.NAME);
+        final int ratingCol = cur.getColumnIndex(ScraperStore.Show.RATING);
+        final int premieredCol = cur.getColumnIndex(ScraperStore.Show.PREMIERED);
+        final int plotCol = cur.getColumnIndex(ScraperStore.Show.PLOT);
+        final int coverCol = cur.getColumnIndex(ScraperStore.Show.COVER);
+        final int actorNameCol = cur.getColumnIndex(ScraperStore.Show.Actor.NAME);
+        final int roleCol = cur.getColumnIndex(ScraperStore.Show.Actor.ROLE);
+        final int directorCol = cur.getColumnIndex(ScraperStore.Show.Director.NAME);
+        final int writerCol = cur.getColumnIndex(ScraperStore.Show.Writer.NAME);
+        final int genreCol = cur.getColumnIndex(ScraperStore.Show.Genre.NAME);
+        final int studioCol = cur.getColumnIndex(ScraperStore.Show.Studio.NAME);
+        final int backdropUrlCol = cur.getColumnIndex(ScraperStore.Show.BACKDROP_URL);
+        final int backdropPathCol = cur.getColumnIndex(ScraperStore.Show.BACKDROP);
         do {
-            Long id = Long.valueOf(getLongCol(cur, ScraperStore.Show.ID));
-            String name = getStringCol(cur, ScraperStore.Show.NAME);
-            float rating = getFloatCol(cur, ScraperStore.Show.RATING);
-            long premiered = getLongCol(cur, ScraperStore.Show.PREMIERED);
-            String plot = getStringCol(cur, ScraperStore.Show.PLOT);
-            String cover = getStringCol(cur, ScraperStore.Show.COVER);
-            String actorName = getStringCol(cur, ScraperStore.Show.Actor.NAME);
-            String role = getStringCol(cur, ScraperStore.Show.Actor.ROLE);
-            String director = getStringCol(cur, ScraperStore.Show.Director.NAME);
-            String writer = getStringCol(cur, ScraperStore.Show.Writer.NAME);
-            String genre = getStringCol(cur, ScraperStore.Show.Genre.NAME);
-            String studio = getStringCol(cur, ScraperStore.Show.Studio.NAME);
-
-            String backdropUrl = getStringCol(cur, ScraperStore.Show.BACKDROP_URL);
-            String backdropPath = getStringCol(cur, ScraperStore.Show.BACKDROP);
+            Long id = Long.valueOf(getLongCol(cur, idCol));
+            String name = getStringCol(cur, nameCol);
+            float rating = getFloatCol(cur, ratingCol);
+            long premiered = getLongCol(cur, premieredCol);
+            String plot = getStringCol(cur, plotCol);
+            String cover = getStringCol(cur, coverCol);
+            String actorName = getStringCol(cur, actorNameCol);
+            String role = getStringCol(cur, roleCol);
+            String director = getStringCol(cur, directorCol);
+            String writer = getStringCol(cur, writerCol);
+            String genre = getStringCol(cur, genreCol);
+            String studio = getStringCol(cur, studioCol);
+
+            String backdropUrl = getStringCol(cur, backdropUrlCol);
+            String backdropPath = getStringCol(cur, backdropPathCol);
 
             ShowTags tag = tags.get(id);
             if(tag == null) {
@@ -697,20 +723,34 @@ public class TagsFactory {
         if(DBG) Log.d(TAG, "Building MovieTags from Cursor");
         if(!cur.moveToFirst())
             return null;
+        // resolved once, not for every row
+        final int idCol = cur.getColumnIndex(ScraperStore.Episode.ID);
+        final int nameCol = cur.getColumnIndex(ScraperStore.Episode.NAME);
+        final int ratingCol = cur.getColumnIndex(ScraperStore.Episode.RATING);
+        final int airedCol = cur.getColumnIndex(ScraperStore.Episode.AIRED);
+        final int plotCol = cur.getColumnIndex(ScraperStore.Episode.PLOT);
+        final int seasonCol = cur.getColumnIndex(ScraperStore.Episode.SEASON);
+        final int numberCol = cur.getColumnIndex(ScraperStore.Episode.NUMBER);
+        final int showCol = cur.getColumnIndex(ScraperStore.Episode.SHOW);
+        final int actorNameCol = cur.getColumnIndex(ScraperStore.Episode.Actor.NAME);
+        final int roleCol = cur.getColumnIndex(ScraperStore.Episode.Actor.ROLE);
+        final int directorCol = cur.getColumnIndex(ScraperStore.Episode.Director.NAME);
+        final int writerCol = cur.getColumnIndex(ScraperStore.Episode.Writer.NAME);
+        final int coverCol = cur.getColumnIndex(ScraperStore.Episode.COVER);
         do {
-            Long id = Long.valueOf(getLongCol(cur, ScraperStore.Episode.ID));
-            String name = getStringCol(cur, ScraperStore.Episode.NAME);
-            float rating = getFloatCol(cur, ScraperStore.Episode.RATING);
-            long aired = getLongCol(cur, ScraperStore.Episode.AIRED);
-            String plot = getStringCol(cur, ScraperStore.Episode.PLOT);
-            int season = getIntCol(cur, ScraperStore.Episode.SEASON);
-            int number = getIntCol(cur, ScraperStore.Episode.NUMBER);
-            long show = getLongCol(cur, ScraperStore.Episode.SHOW);
-            String actorName = getStringCol(cur, ScraperStore.Episode.Actor.NAME);
-            String role = getStringCol(cur, ScraperStore.Episode.Actor.ROLE);
-            String director = getStringCol(cur, ScraperStore.Episode.Director.NAME);
-            String writer = getStringCol(cur, ScraperStore.Episode.Writer.NAME);
-            String cover = getStringCol(cur, ScraperStore.Episode.COVER);
+            Long id = Long.valueOf(getLongCol(cur, idCol));
+            String name = getStringCol(cur, nameCol);
+            float rating = getFloatCol(cur, ratingCol);
+            long aired = getLongCol(cur, airedCol);
+            String plot = getStringCol(cur, plotCol);
+            int season = getIntCol(cur, seasonCol);
+            int number = getIntCol(cur, numberCol);
+            long show = getLongCol(cur, showCol);
+            String actorName = getStringCol(cur, actorNameCol);
+            String role = getStringCol(cur, roleCol);
+            String director = getStringCol(cur, directorCol);
+            String writer = getStringCol(cur, writerCol);
+            String cover = getStringCol(cur, coverCol);
 
             EpisodeTags tag = tags.get(id);
             if(tag == null) {
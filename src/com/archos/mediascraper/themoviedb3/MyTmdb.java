@@ -15,21 +15,34 @@
 package com.archos.mediascraper.themoviedb3;
 
 import com.archos.mediascraper.ScraperCache;
+import com.archos.mediascraper.ScraperThrottle;
 import com.uwetrottmann.tmdb2.Tmdb;
+import com.uwetrottmann.tmdb2.TmdbHelper;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
 import java.util.concurrent.TimeUnit;
 
 import okhttp3.Cache;
 import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
 import okhttp3.logging.HttpLoggingInterceptor;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
 
 public class MyTmdb extends Tmdb {
 
     private static final Logger log = LoggerFactory.getLogger(MyTmdb.class);
     private final static boolean CACHE = true;
+    public static final String KEY_STREAMING_PARSE = "tmdb_streaming_parse_key";
+    // parse credits and images while streaming, keeping only what the parsers use
+    private static volatile boolean sStreamingParse = true;
     private static Cache mCache;
 
     public MyTmdb(String apiKey, Cache cache) {
@@ -37,10 +50,69 @@ public class MyTmdb extends Tmdb {
         mCache = cache;
     }
 
+    /**
+     * Switches between the {@link StreamingTypeAdapterFactory} parse and the tmdb-java one, set from
+     * the KEY_STREAMING_PARSE preference. Applies to the next response, clients already built included.
+     */
+    public static void setStreamingParse(boolean enabled) {
+        if (sStreamingParse != enabled) log.debug("setStreamingParse: " + enabled);
+        sStreamingParse = enabled;
+    }
+
+    public static boolean isStreamingParse() {
+        return sStreamingParse;
+    }
+
+    @Override
+    protected Retrofit.Builder retrofitBuilder() {
+        return new Retrofit.Builder()
+                .baseUrl(API_URL)
+                .addConverterFactory(new SwitchingConverterFactory(
+                        GsonConverterFactory.create(TmdbHelper.getGsonBuilder()
+                                .registerTypeAdapterFactory(new StreamingTypeAdapterFactory())
+                                .create()),
+                        GsonConverterFactory.create(TmdbHelper.getGsonBuilder().create())))
+                .client(okHttpClient());
+    }
+
+    /** picks the streaming or the full gson on each response, retrofit caching converters per service method */
+    private static class SwitchingConverterFactory extends Converter.Factory {
+        private final Converter.Factory mStreaming;
+        private final Converter.Factory mFull;
+
+        SwitchingConverterFactory(Converter.Factory streaming, Converter.Factory full) {
+            mStreaming = streaming;
+            mFull = full;
+        }
+
+        @Override
+        public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+            final Converter<ResponseBody, ?> streaming = mStreaming.responseBodyConverter(type, annotations, retrofit);
+            final Converter<ResponseBody, ?> full = mFull.responseBodyConverter(type, annotations, retrofit);
+            return new Converter<ResponseBody, Object>() {
+                @Override
+                public Object convert(ResponseBody value) throws IOException {
+                    return sStreamingParse ? streaming.convert(value) : full.convert(value);
+                }
+            };
+        }
+
+        @Override
+        public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+                Annotation[] methodAnnotations, Retrofit retrofit) {
+            return mFull.requestBodyConverter(type, parameterAnnotations, methodAnnotations, retrofit);
+        }
+    }
+
     @Override
     protected void setOkHttpClientDefaults(OkHttpClient.Builder builder) {
         super.setOkHttpClientDefaults(builder);
+        // coalesce identical in-flight requests first, then retry 429 answers
+        builder.addInterceptor(new ScraperThrottle.SingleFlightInterceptor());
+        builder.addInterceptor(new ScraperThrottle.RetryAfterInterceptor());
         if (CACHE) {
+            builder.addInterceptor(new ScraperCache.LanguageKeyInterceptor());
+            builder.addInterceptor(new ScraperCache.StaleWhileRevalidateInterceptor());
             builder.cache(mCache).addNetworkInterceptor(new ScraperCache.CacheInterceptor());
             if (log.isTraceEnabled()) {
                 builder.addInterceptor(new ScraperCache.isCacheResponding());
@@ -51,6 +123,10 @@ public class MyTmdb extends Tmdb {
             logging.setLevel(HttpLoggingInterceptor.Level.BODY);
             builder.addNetworkInterceptor(logging);
         }
+        // only actual network calls consume rate limiter tokens, not cache hits
+        builder.addNetworkInterceptor(new ScraperThrottle.RateLimitInterceptor());
+        builder.connectionPool(ScraperThrottle.getConnectionPool());
+        builder.dispatcher(ScraperThrottle.getDispatcher());
         builder.connectTimeout(ScraperCache.CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
         builder.readTimeout(ScraperCache.READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
     }
@@ -0,0 +1,280 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediascraper.themoviedb3;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.uwetrottmann.tmdb2.entities.CastMember;
+import com.uwetrottmann.tmdb2.entities.Credits;
+import com.uwetrottmann.tmdb2.entities.CrewMember;
+import com.uwetrottmann.tmdb2.entities.Image;
+import com.uwetrottmann.tmdb2.entities.Images;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gson factory that reads tmdb credits and images while streaming and only keeps what
+ * MovieIdParser2, ShowIdParser, ShowIdImagesParser and ShowIdEpisodes use:
+ * the first MAX_CAST cast members (name, character), directors and writers of the crew,
+ * and the file_path, iso_639_1 and vote_average of every image, in tmdb order since the parsers
+ * pick posters, backdrops and their language by sorting them.
+ * Everything else is skipped in the reader without being materialized.
+ */
+public class StreamingTypeAdapterFactory implements TypeAdapterFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamingTypeAdapterFactory.class);
+
+    // tmdb returns cast sorted by billing order
+    static final int MAX_CAST = 30;
+
+    private static final String DIRECTOR = "Director";
+    private static final String WRITER = "Writer";
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> rawType = type.getRawType();
+        if (rawType == Credits.class) {
+            return (TypeAdapter<T>) new CreditsAdapter(gson.getDelegateAdapter(this, TypeToken.get(Credits.class)));
+        }
+        if (rawType == Images.class) {
+            return (TypeAdapter<T>) new ImagesAdapter(gson.getDelegateAdapter(this, TypeToken.get(Images.class)));
+        }
+        return null;
+    }
+
+    private static class CreditsAdapter extends TypeAdapter<Credits> {
+        // only used for writing, reading is done by hand
+        private final TypeAdapter<Credits> mDelegate;
+
+        CreditsAdapter(TypeAdapter<Credits> delegate) {
+            mDelegate = delegate;
+        }
+
+        @Override
+        public void write(JsonWriter out, Credits value) throws IOException {
+            mDelegate.write(out, value);
+        }
+
+        @Override
+        public Credits read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Credits credits = new Credits();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        credits.id = readInteger(in);
+                        break;
+                    case "cast":
+                        credits.cast = readCast(in);
+                        break;
+                    case "guest_stars":
+                        credits.guest_stars = readCast(in);
+                        break;
+                    case "crew":
+                        credits.crew = readCrew(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return credits;
+        }
+
+        private static List<CastMember> readCast(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            List<CastMember> cast = new ArrayList<>();
+            int total = 0;
+            in.beginArray();
+            while (in.hasNext()) {
+                total++;
+                if (cast.size() >= MAX_CAST) {
+                    in.skipValue();
+                    continue;
+                }
+                CastMember member = new CastMember();
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "name":
+                            member.name = readString(in);
+                            break;
+                        case "character":
+                            member.character = readString(in);
+                            break;
+                        default:
+                            in.skipValue();
+                    }
+                }
+                in.endObject();
+                if (member.name != null) cast.add(member);
+            }
+            in.endArray();
+            if (total > cast.size()) log.trace("readCast: kept " + cast.size() + "/" + total);
+            return cast;
+        }
+
+        private static List<CrewMember> readCrew(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            List<CrewMember> crew = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                String name = null;
+                String job = null;
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "name":
+                            name = readString(in);
+                            break;
+                        case "job":
+                            job = readString(in);
+                            break;
+                        default:
+                            in.skipValue();
+                    }
+                }
+                in.endObject();
+                if (name != null && (DIRECTOR.equals(job) || WRITER.equals(job))) {
+                    CrewMember member = new CrewMember();
+                    member.name = name;
+                    member.job = job;
+                    crew.add(member);
+                }
+            }
+            in.endArray();
+            return crew;
+        }
+    }
+
+    private static class ImagesAdapter extends TypeAdapter<Images> {
+        private final TypeAdapter<Images> mDelegate;
+
+        ImagesAdapter(TypeAdapter<Images> delegate) {
+            mDelegate = delegate;
+        }
+
+        @Override
+        public void write(JsonWriter out, Images value) throws IOException {
+            mDelegate.write(out, value);
+        }
+
+        @Override
+        public Images read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Images images = new Images();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        images.id = readInteger(in);
+                        break;
+                    case "posters":
+                        images.posters = readImages(in);
+                        break;
+                    case "backdrops":
+                        images.backdrops = readImages(in);
+                        break;
+                    case "stills":
+                        images.stills = readImages(in);
+                        break;
+                    default: // profiles, logos: not used
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return images;
+        }
+
+        private static List<Image> readImages(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            List<Image> images = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                String filePath = null;
+                String language = null;
+                double vote = 0;
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "file_path":
+                            filePath = readString(in);
+                            break;
+                        case "iso_639_1":
+                            language = readString(in);
+                            break;
+                        case "vote_average":
+                            if (in.peek() == JsonToken.NULL) in.nextNull();
+                            else vote = in.nextDouble();
+                            break;
+                        default:
+                            in.skipValue();
+                    }
+                }
+                in.endObject();
+                Image image = new Image();
+                image.file_path = filePath;
+                image.iso_639_1 = language;
+                image.vote_average = vote;
+                images.add(image);
+            }
+            in.endArray();
+            return images;
+        }
+    }
+
+    private static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static Integer readInteger(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextInt();
+    }
+}
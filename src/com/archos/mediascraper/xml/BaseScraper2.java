@@ -29,6 +29,7 @@ import com.archos.mediascraper.SearchResult;
 import com.archos.mediascraper.preprocess.SearchInfo;
 import com.archos.mediascraper.preprocess.SearchPreprocessor;
 import com.archos.mediascraper.preprocess.TvShowSearchInfo;
+import com.archos.mediascraper.themoviedb3.MyTmdb;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,6 +71,7 @@ public abstract class BaseScraper2 {
         mName = internalGetPreferenceName();
         mContext = context;
         adultScrape = PreferenceManager.getDefaultSharedPreferences(mContext).getBoolean("enable_adult_scrap_key", false);
+        MyTmdb.setStreamingParse(PreferenceManager.getDefaultSharedPreferences(mContext).getBoolean(MyTmdb.KEY_STREAMING_PARSE, true));
     }
 
     public final String getName() {
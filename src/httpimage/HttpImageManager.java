@@ -44,6 +44,8 @@ import android.text.TextUtils;
 import android.util.Log;
 import android.widget.ImageView;
 
+import com.archos.mediaprovider.Metrics;
+
 
 /**
  * HttpImageManager uses 3-level caching to download and store network images.
@@ -93,6 +95,11 @@ import android.widget.ImageView;
  */
 public class HttpImageManager{
 
+    private static final Metrics.Counter sMemoryHits = Metrics.counter("httpimage.memory_hits");
+    private static final Metrics.Counter sPersistentHits = Metrics.counter("httpimage.persistent_hits");
+    private static final Metrics.Counter sErrors = Metrics.counter("httpimage.errors");
+    private static final Metrics.Histogram sNetworkLatency = Metrics.histogram("httpimage.network");
+
     private static final String TAG = "HttpImageManager";
     private static final boolean DEBUG = false;
 
@@ -258,6 +265,7 @@ public class HttpImageManager{
         String key = r.getHashedUri();
 
         if(mCache != null && mCache.exists(key)) {
+            sMemoryHits.inc();
             return mCache.loadData(key);
         }
         else { 
@@ -310,6 +318,7 @@ public class HttpImageManager{
                         data = mPersistence.loadData(key);
                         if(data != null) {
                             if(DEBUG)  Log.d(TAG, "found in persistent: " + request.getUri().toString());
+                            sPersistentHits.inc();
                             
                             // load it into memory
                             if (mCache != null)
@@ -367,6 +376,7 @@ public class HttpImageManager{
 
                             if(DEBUG) Log.d(TAG, "decoded image: " + data.getWidth() + "x" + data.getHeight() );
                             if(DEBUG) Log.d(TAG, "time consumed: " + (System.currentTimeMillis() - millis));
+                            sNetworkLatency.record(System.currentTimeMillis() - millis);
 
                             //apply filter(s)
                             if (mFilter != null) {
@@ -411,6 +421,7 @@ public class HttpImageManager{
                 }
                 catch (Throwable e) {
                     fireLoadFailure(request, e);
+                    sErrors.inc();
                     if(DEBUG) Log.e(TAG, "error handling request " + request.getUri(), e);
                 }
                 finally{
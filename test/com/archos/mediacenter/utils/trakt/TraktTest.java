@@ -0,0 +1,197 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediacenter.utils.trakt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.jakewharton.threetenabp.AndroidThreeTen;
+import com.uwetrottmann.trakt5.enums.HistoryType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.IOException;
+import java.util.List;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+/**
+ * Delta sync reads of {@link Trakt} against a mock trakt server: history paging, the full sync
+ * fallback signal and how failures are reported, since TraktService moves its watermarks on them.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TraktTest {
+
+    // must match Trakt.HISTORY_PAGE_SIZE, Trakt.MAX_HISTORY_PAGES and Trakt.MAX_TRIAL
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_PAGES = 20;
+    private static final int MAX_TRIAL = 7;
+
+    private MockWebServer mServer;
+    private Trakt mTrakt;
+
+    @Before
+    public void setUp() throws IOException {
+        AndroidThreeTen.init(RuntimeEnvironment.getApplication());
+        mServer = new MockWebServer();
+        mServer.start();
+        Trakt.sWaitBeforeNextTrial = 0;
+        Trakt.setTraktV2(new Trakt.MyTraktV2("test").apiUrl(mServer.url("/").toString()));
+        mTrakt = new Trakt(RuntimeEnvironment.getApplication());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+        Trakt.setTraktV2(null);
+    }
+
+    private static String historyPage(int first, int count) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0)
+                json.append(',');
+            json.append("{\"id\":").append(first + i)
+                    .append(",\"action\":\"watch\",\"type\":\"movie\",\"movie\":{\"title\":\"movie ")
+                    .append(first + i).append("\",\"ids\":{\"tmdb\":").append(first + i).append("}}}");
+        }
+        return json.append(']').toString();
+    }
+
+    private void always(MockResponse response) {
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return response;
+            }
+        });
+    }
+
+    @Test
+    public void historyIsReadUntilAShortPage() throws InterruptedException {
+        mServer.enqueue(new MockResponse().setBody(historyPage(0, PAGE_SIZE)));
+        mServer.enqueue(new MockResponse().setBody(historyPage(PAGE_SIZE, 3)));
+
+        Trakt.Result result = mTrakt.getHistory(HistoryType.MOVIES, 1700000000);
+
+        assertEquals(Trakt.Status.SUCCESS, result.status);
+        assertEquals(Trakt.Result.ObjectType.HISTORY, result.objType);
+        assertEquals(PAGE_SIZE + 3, ((List<?>) result.obj).size());
+        assertEquals(2, mServer.getRequestCount());
+        RecordedRequest first = mServer.takeRequest();
+        assertTrue(first.getPath(), first.getPath().startsWith("/users/me/history/movies"));
+        assertTrue(first.getPath(), first.getPath().contains("page=1"));
+        assertTrue(first.getPath(), first.getPath().contains("start_at="));
+        assertTrue(mServer.takeRequest().getPath().contains("page=2"));
+    }
+
+    @Test
+    public void emptyHistoryIsASuccess() {
+        mServer.enqueue(new MockResponse().setBody("[]"));
+
+        Trakt.Result result = mTrakt.getHistory(HistoryType.EPISODES, 1700000000);
+
+        assertEquals(Trakt.Status.SUCCESS, result.status);
+        assertEquals(0, ((List<?>) result.obj).size());
+    }
+
+    @Test
+    public void tooLongHistoryAsksForAFullSync() {
+        always(new MockResponse().setBody(historyPage(0, PAGE_SIZE)));
+
+        Trakt.Result result = mTrakt.getHistory(HistoryType.MOVIES, 1700000000);
+
+        assertEquals(Trakt.Status.TOO_MANY_ENTRIES, result.status);
+        assertEquals(MAX_PAGES, mServer.getRequestCount());
+    }
+
+    @Test
+    public void fullSyncReadsTheWholeLibrary() {
+        mServer.enqueue(new MockResponse().setBody(
+                "[{\"plays\":1,\"movie\":{\"title\":\"a\",\"ids\":{\"tmdb\":1}}}," +
+                "{\"plays\":2,\"movie\":{\"title\":\"b\",\"ids\":{\"tmdb\":2}}}]"));
+
+        Trakt.Result result = mTrakt.getAllMovies(Trakt.LIBRARY_WATCHED, 0);
+
+        assertEquals(Trakt.Status.SUCCESS, result.status);
+        assertEquals(Trakt.Result.ObjectType.MOVIES, result.objType);
+        assertEquals(2, ((List<?>) result.obj).size());
+    }
+
+    @Test
+    public void serverErrorIsANetworkError() {
+        always(new MockResponse().setResponseCode(503));
+
+        Trakt.Result result = mTrakt.getHistory(HistoryType.MOVIES, 1700000000);
+
+        assertEquals(Trakt.Status.ERROR_NETWORK, result.status);
+        assertEquals(MAX_TRIAL + 1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void rateLimitIsANetworkError() {
+        always(new MockResponse().setResponseCode(429));
+
+        assertEquals(Trakt.Status.ERROR_NETWORK, mTrakt.getAllMovies(Trakt.LIBRARY_WATCHED, 0).status);
+    }
+
+    @Test
+    public void unreachableServerIsANetworkError() {
+        always(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+
+        assertEquals(Trakt.Status.ERROR_NETWORK, mTrakt.getHistory(HistoryType.EPISODES, 1700000000).status);
+    }
+
+    @Test
+    public void failureOnALaterPageFailsTheWholeRead() {
+        mServer.enqueue(new MockResponse().setBody(historyPage(0, PAGE_SIZE)));
+        for (int i = 0; i <= MAX_TRIAL; i++)
+            mServer.enqueue(new MockResponse().setResponseCode(502));
+
+        Trakt.Result result = mTrakt.getHistory(HistoryType.MOVIES, 1700000000);
+
+        // no partial history: the watermark must not move past unread entries
+        assertEquals(Trakt.Status.ERROR_NETWORK, result.status);
+    }
+
+    @Test
+    public void rejectedRequestIsNotANetworkError() {
+        always(new MockResponse().setResponseCode(404).setBody("{}"));
+
+        assertEquals(Trakt.Status.ERROR, mTrakt.getHistory(HistoryType.MOVIES, 1700000000).status);
+    }
+
+    @Test
+    public void transientErrorIsRetried() {
+        mServer.enqueue(new MockResponse().setResponseCode(503));
+        mServer.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        mServer.enqueue(new MockResponse().setBody(historyPage(0, 5)));
+
+        Trakt.Result result = mTrakt.getHistory(HistoryType.MOVIES, 1700000000);
+
+        assertEquals(Trakt.Status.SUCCESS, result.status);
+        assertEquals(5, ((List<?>) result.obj).size());
+        assertEquals(3, mServer.getRequestCount());
+    }
+}
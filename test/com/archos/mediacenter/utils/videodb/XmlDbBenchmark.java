@@ -0,0 +1,98 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediacenter.utils.videodb;
+
+import android.net.Uri;
+import android.os.SystemClock;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * Resume file traffic of a viewing session on a slow share, merged writes vs one write per update.
+ * A folder listing or a write is a round trip on smb/sftp: the counts are what matters there, the
+ * local times are given for reference and SHARE_RTT_MS turns the counts into a share estimate.
+ * Run with ./gradlew test -Pbenchmark --tests '*XmlDbBenchmark'
+ */
+@RunWith(RobolectricTestRunner.class)
+public class XmlDbBenchmark {
+
+    private static final int VIDEOS = 20;
+    // player updates on pause, seek, stop and exit come in bursts
+    private static final int UPDATES_PER_VIDEO = 5;
+    // typical smb round trip over wifi
+    private static final long SHARE_RTT_MS = 40;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static class Run {
+        long writes = XmlDb.getWriteCount();
+        long lists = XmlDb.getListCount();
+        long start = SystemClock.uptimeMillis();
+        long startNanos = System.nanoTime();
+
+        void report(String name) {
+            long writeCount = XmlDb.getWriteCount() - writes;
+            long listCount = XmlDb.getListCount() - lists;
+            // each write also deletes and stats the previous file
+            long roundTrips = listCount + 3 * writeCount;
+            System.out.println(String.format(Locale.ROOT,
+                    "XmlDbBenchmark %-10s updates=%d writes=%d listings=%d local=%.1fms share~%dms",
+                    name, VIDEOS * UPDATES_PER_VIDEO, writeCount, listCount,
+                    (System.nanoTime() - startNanos) / 1e6, roundTrips * SHARE_RTT_MS));
+        }
+    }
+
+    private Uri[] videos(String folderName) throws Exception {
+        File share = mFolder.newFolder(folderName);
+        Uri[] videos = new Uri[VIDEOS];
+        for (int i = 0; i < VIDEOS; i++)
+            videos[i] = Uri.fromFile(new File(share, "episode " + i + ".mkv"));
+        return videos;
+    }
+
+    @Test
+    public void resumeWrites() throws Exception {
+        XmlDb xmlDb = XmlDb.getInstance();
+
+        // as before merging: every update reaches the share
+        Uri[] videos = videos("unmerged");
+        Run run = new Run();
+        for (Uri video : videos) {
+            for (int u = 1; u <= UPDATES_PER_VIDEO; u++) {
+                xmlDb.writeXmlRemote(XmlDbTest.info(video, u * 10000));
+                xmlDb.writePendingXml(true);
+            }
+        }
+        run.report("unmerged");
+
+        // updates within WRITE_DELAY are merged
+        videos = videos("merged");
+        run = new Run();
+        for (Uri video : videos) {
+            for (int u = 1; u <= UPDATES_PER_VIDEO; u++)
+                xmlDb.writeXmlRemote(XmlDbTest.info(video, u * 10000));
+            xmlDb.writePendingXml(true);
+        }
+        run.report("merged");
+    }
+}
@@ -0,0 +1,154 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediacenter.utils.videodb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.net.Uri;
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merged and retried resume file writes of {@link XmlDb}, on a local folder standing for the share.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class XmlDbTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final List<Uri> mChanged = new ArrayList<>();
+    private final XmlDb.ResumeChangeListener mListener = new XmlDb.ResumeChangeListener() {
+        @Override
+        public void onResumeChange(Uri videoFile, int resumePercent) {
+            mChanged.add(videoFile);
+        }
+    };
+
+    @After
+    public void tearDown() {
+        XmlDb.getInstance().removeResumeChangeListener(mListener);
+        // drop what a failing test may have left
+        XmlDb.getInstance().writePendingXml(true);
+    }
+
+    static VideoDbInfo info(Uri video, int resume) {
+        VideoDbInfo info = new VideoDbInfo(video);
+        info.duration = 100000;
+        info.resume = resume;
+        info.lastTimePlayed = System.currentTimeMillis() / 1000;
+        return info;
+    }
+
+    private static int countResumeFiles(File folder) {
+        int count = 0;
+        for (String name : folder.list())
+            if (name.endsWith(XmlDb.FILE_NAME))
+                count++;
+        return count;
+    }
+
+    @Test
+    public void updatesOfAVideoAreMergedIntoOneWrite() throws Exception {
+        File share = mFolder.newFolder("share");
+        Uri video = Uri.fromFile(new File(share, "movie.mkv"));
+        XmlDb xmlDb = XmlDb.getInstance();
+        xmlDb.addResumeChangeListener(mListener);
+        long written = XmlDb.getWriteCount();
+        long merged = XmlDb.getMergedWriteCount();
+
+        xmlDb.writeXmlRemote(info(video, 10000));
+        xmlDb.writeXmlRemote(info(video, 20000));
+        xmlDb.writeXmlRemote(info(video, 50000));
+        xmlDb.writePendingXml(true);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(1, XmlDb.getWriteCount() - written);
+        assertEquals(2, XmlDb.getMergedWriteCount() - merged);
+        assertEquals(1, countResumeFiles(share));
+        assertTrue(new File(share, ".movie.mkv.50" + XmlDb.FILE_NAME).exists());
+        assertEquals(1, mChanged.size());
+        assertFalse(XmlDb.hasPendingWrites());
+    }
+
+    @Test
+    public void failedWriteIsRetriedAndNotNotified() throws Exception {
+        File share = new File(mFolder.getRoot(), "unmounted");
+        Uri video = Uri.fromFile(new File(share, "movie.mkv"));
+        XmlDb xmlDb = XmlDb.getInstance();
+        xmlDb.addResumeChangeListener(mListener);
+        long failed = XmlDb.getFailedWriteCount();
+
+        xmlDb.writeXmlRemote(info(video, 30000));
+        xmlDb.writePendingXml(true);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(1, XmlDb.getFailedWriteCount() - failed);
+        assertTrue(mChanged.isEmpty());
+        assertTrue(XmlDb.hasPendingWrites());
+
+        // share is back
+        assertTrue(share.mkdirs());
+        xmlDb.writePendingXml(true);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(1, countResumeFiles(share));
+        assertEquals(1, mChanged.size());
+        assertFalse(XmlDb.hasPendingWrites());
+    }
+
+    @Test
+    public void failedWriteIsDroppedAfterMaxAttempts() {
+        Uri video = Uri.fromFile(new File(mFolder.getRoot(), "gone/movie.mkv"));
+        XmlDb xmlDb = XmlDb.getInstance();
+        long failed = XmlDb.getFailedWriteCount();
+
+        xmlDb.writeXmlRemote(info(video, 30000));
+        for (int i = 0; i < 3; i++)
+            xmlDb.writePendingXml(true);
+
+        assertEquals(3, XmlDb.getFailedWriteCount() - failed);
+        assertFalse(XmlDb.hasPendingWrites());
+    }
+
+    @Test
+    public void newerUpdateSupersedesAFailedOne() throws Exception {
+        File share = new File(mFolder.getRoot(), "flaky");
+        Uri video = Uri.fromFile(new File(share, "movie.mkv"));
+        XmlDb xmlDb = XmlDb.getInstance();
+
+        xmlDb.writeXmlRemote(info(video, 30000));
+        xmlDb.writePendingXml(true);
+        xmlDb.writeXmlRemote(info(video, 70000));
+        assertTrue(share.mkdirs());
+        xmlDb.writePendingXml(true);
+
+        assertTrue(new File(share, ".movie.mkv.70" + XmlDb.FILE_NAME).exists());
+        assertEquals(1, countResumeFiles(share));
+    }
+}
@@ -0,0 +1,261 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.medialib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Matrix;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Output of the fused rotate and scale of {@link AvosBitmapHelper#createRGBBitmap} against a pure-Java
+ * reference and the former three bitmaps implementation, and what it allocates.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class AvosBitmapHelperTest {
+
+    private static final int[] ROTATIONS = { 0, 90, 180, 270 };
+
+    /**
+     * Pure-Java reference: every output pixel is the bilinear sample of the frame at the point that
+     * the rotation and the fit to the target bring on its center.
+     */
+    static int[] reference(int[] in, int inWidth, int inHeight, int inLinestep, int rotation,
+            int outWidth, int outHeight) {
+        boolean swap = rotation == 90 || rotation == 270;
+        // size of the rotated frame
+        float rotatedWidth = swap ? inHeight : inWidth;
+        float rotatedHeight = swap ? inWidth : inHeight;
+        int[] out = new int[outWidth * outHeight];
+        for (int oy = 0; oy < outHeight; oy++) {
+            for (int ox = 0; ox < outWidth; ox++) {
+                float rx = (ox + 0.5f) * rotatedWidth / outWidth;
+                float ry = (oy + 0.5f) * rotatedHeight / outHeight;
+                float sx, sy;
+                switch (rotation) {
+                    case 90: sx = ry; sy = inHeight - rx; break;
+                    case 180: sx = inWidth - rx; sy = inHeight - ry; break;
+                    case 270: sx = inWidth - ry; sy = rx; break;
+                    default: sx = rx; sy = ry; break;
+                }
+                out[oy * outWidth + ox] = sample(in, inWidth, inHeight, inLinestep, sx - 0.5f, sy - 0.5f);
+            }
+        }
+        return out;
+    }
+
+    private static int sample(int[] in, int width, int height, int linestep, float x, float y) {
+        int x0 = clamp((int) Math.floor(x), width);
+        int y0 = clamp((int) Math.floor(y), height);
+        int x1 = clamp(x0 + 1, width);
+        int y1 = clamp(y0 + 1, height);
+        float fx = Math.min(1f, Math.max(0f, x - (float) Math.floor(x)));
+        float fy = Math.min(1f, Math.max(0f, y - (float) Math.floor(y)));
+        int result = 0xff000000;
+        for (int shift = 0; shift < 24; shift += 8) {
+            float top = channel(in[y0 * linestep + x0], shift) * (1 - fx) + channel(in[y0 * linestep + x1], shift) * fx;
+            float bottom = channel(in[y1 * linestep + x0], shift) * (1 - fx) + channel(in[y1 * linestep + x1], shift) * fx;
+            result |= Math.round(top * (1 - fy) + bottom * fy) << shift;
+        }
+        return result;
+    }
+
+    private static int clamp(int value, int size) {
+        return Math.max(0, Math.min(size - 1, value));
+    }
+
+    private static int channel(int color, int shift) {
+        return (color >> shift) & 0xff;
+    }
+
+    /** the implementation before the fused draw: full size bitmap, rotated copy, scaled copy */
+    static Bitmap legacy(int[] in, int inWidth, int inHeight, int inLinestep, int rotation,
+            int outWidth, int outHeight, long[] allocatedBytes) {
+        Bitmap bitmap = Bitmap.createBitmap(in, 0, inLinestep, inWidth, inHeight, Bitmap.Config.ARGB_8888);
+        allocatedBytes[0] += bitmap.getAllocationByteCount();
+        if (rotation != 0) {
+            if (rotation == 90 || rotation == 270) {
+                int tmp = outWidth;
+                outWidth = outHeight;
+                outHeight = tmp;
+            }
+            Matrix matrix = new Matrix();
+            matrix.postRotate(rotation);
+            bitmap = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+            allocatedBytes[0] += bitmap.getAllocationByteCount();
+        }
+        if (outWidth != bitmap.getWidth() || outHeight != bitmap.getHeight()) {
+            bitmap = Bitmap.createScaledBitmap(bitmap, outWidth, outHeight, true);
+            allocatedBytes[0] += bitmap.getAllocationByteCount();
+        }
+        return bitmap;
+    }
+
+    /** four solid quadrants, red green on top, blue white below */
+    private static int[] quadrants(int width, int height, int linestep) {
+        int[] frame = new int[linestep * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < linestep; x++) {
+                int color;
+                if (x >= width)
+                    color = Color.MAGENTA; // padding, must never be drawn
+                else if (y < height / 2)
+                    color = x < width / 2 ? Color.RED : Color.GREEN;
+                else
+                    color = x < width / 2 ? Color.BLUE : Color.WHITE;
+                frame[y * linestep + x] = color;
+            }
+        }
+        return frame;
+    }
+
+    /** smooth content so that filtering differences stay small */
+    private static int[] gradient(int width, int height) {
+        int[] frame = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++)
+                frame[y * width + x] = Color.rgb(x * 255 / width, y * 255 / height, (x + y) * 255 / (width + height));
+        }
+        return frame;
+    }
+
+    private static int[] pixels(Bitmap bitmap) {
+        int[] pixels = new int[bitmap.getWidth() * bitmap.getHeight()];
+        bitmap.getPixels(pixels, 0, bitmap.getWidth(), 0, 0, bitmap.getWidth(), bitmap.getHeight());
+        return pixels;
+    }
+
+    /** @return { mean, max } of the per channel differences */
+    private static double[] difference(int[] a, int[] b) {
+        assertEquals(a.length, b.length);
+        long sum = 0;
+        int max = 0;
+        for (int i = 0; i < a.length; i++) {
+            for (int shift = 0; shift < 24; shift += 8) {
+                int diff = Math.abs(channel(a[i], shift) - channel(b[i], shift));
+                sum += diff;
+                max = Math.max(max, diff);
+            }
+        }
+        return new double[] { sum / (3.0 * a.length), max };
+    }
+
+    private static void assertClose(String what, int[] expected, int[] actual) {
+        double[] diff = difference(expected, actual);
+        assertTrue(what + " mean difference " + diff[0], diff[0] <= 2);
+        assertTrue(what + " max difference " + diff[1], diff[1] <= 24);
+    }
+
+    @Test
+    public void rotationMatchesReference() {
+        int width = 64, height = 32, linestep = 72;
+        int[] frame = quadrants(width, height, linestep);
+        for (int rotation : ROTATIONS) {
+            Bitmap bitmap = AvosBitmapHelper.createRGBBitmap(frame, width, height, linestep, rotation, width, height);
+            int outWidth = bitmap.getWidth();
+            int outHeight = bitmap.getHeight();
+            boolean swap = rotation == 90 || rotation == 270;
+            assertEquals(swap ? height : width, outWidth);
+            assertEquals(swap ? width : height, outHeight);
+
+            int[] expected = reference(frame, width, height, linestep, rotation, outWidth, outHeight);
+            int[] actual = pixels(bitmap);
+            // centers of the quadrants are far from any edge: exact
+            for (int qy = 0; qy < 2; qy++) {
+                for (int qx = 0; qx < 2; qx++) {
+                    int i = (outHeight / 4 + qy * outHeight / 2) * outWidth + outWidth / 4 + qx * outWidth / 2;
+                    assertEquals("rotation " + rotation, Integer.toHexString(expected[i]), Integer.toHexString(actual[i]));
+                }
+            }
+            for (int pixel : actual)
+                assertTrue("padding drawn at rotation " + rotation, pixel != Color.MAGENTA);
+            AvosBitmapHelper.release(bitmap);
+        }
+    }
+
+    @Test
+    public void downscaleMatchesReferenceAndFormerImplementation() {
+        int width = 1280, height = 720;
+        int[] frame = gradient(width, height);
+        for (int rotation : ROTATIONS) {
+            Bitmap bitmap = AvosBitmapHelper.createRGBBitmap(frame, width, height, width, rotation, 320, 180);
+            int[] actual = pixels(bitmap);
+            assertClose("reference at " + rotation,
+                    reference(frame, width, height, width, rotation, bitmap.getWidth(), bitmap.getHeight()), actual);
+            assertClose("former at " + rotation,
+                    pixels(legacy(frame, width, height, width, rotation, 320, 180, new long[1])), actual);
+        }
+    }
+
+    @Test
+    public void releasedBitmapIsReused() {
+        int[] frame = gradient(320, 180);
+        Bitmap first = AvosBitmapHelper.createRGBBitmap(frame, 320, 180, 320, 0, 160, 90);
+        AvosBitmapHelper.release(first);
+
+        assertSame(first, AvosBitmapHelper.createRGBBitmap(frame, 320, 180, 320, 0, 160, 90));
+        // not released: a new one
+        assertNotSame(first, AvosBitmapHelper.createRGBBitmap(frame, 320, 180, 320, 0, 160, 90));
+        // other size
+        AvosBitmapHelper.release(first);
+        assertNotSame(first, AvosBitmapHelper.createRGBBitmap(frame, 320, 180, 320, 0, 80, 45));
+    }
+
+    @Test
+    public void immutableBitmapIsNotPooled() {
+        int[] frame = gradient(32, 32);
+        Bitmap immutable = Bitmap.createBitmap(frame, 32, 32, Bitmap.Config.ARGB_8888);
+        AvosBitmapHelper.release(immutable);
+
+        assertNotSame(immutable, AvosBitmapHelper.createRGBBitmap(frame, 32, 32, 32, 0, 32, 32));
+    }
+
+    @Test
+    public void noFrameSizedAllocation() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        int width = 1920, height = 1080;
+        long frameBytes = 4L * width * height;
+        int[] frame = gradient(width, height);
+        // warm up the draw path and the pool
+        AvosBitmapHelper.release(AvosBitmapHelper.createRGBBitmap(frame, width, height, width, 90, 320, 180));
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        Bitmap fused = AvosBitmapHelper.createRGBBitmap(frame, width, height, width, 90, 320, 180);
+        long fusedHeap = threads.getThreadAllocatedBytes(thread) - before;
+        long[] legacyBitmaps = new long[1];
+        Bitmap former = legacy(frame, width, height, width, 90, 320, 180, legacyBitmaps);
+        AvosBitmapHelper.release(fused);
+
+        // the frame is never copied on the java heap
+        assertTrue("1080p frame to 320x180 rotated, fused allocated " + fusedHeap + " bytes of java heap",
+                fusedHeap < frameBytes / 8);
+        // the former one went through a full size and a rotated full size bitmap
+        assertTrue("former allocated " + legacyBitmaps[0] + " bytes of bitmaps",
+                legacyBitmaps[0] >= 2 * frameBytes + former.getAllocationByteCount());
+    }
+}
@@ -0,0 +1,272 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.medialib;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caching, read-ahead and load deduplication of {@link BlockCache} through {@link CachedInputStream},
+ * with local files standing in for remote ones.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BlockCacheTest {
+
+    private static final int BLOCK_SIZE = BlockCache.BLOCK_SIZE;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private ExecutorService mExecutor;
+
+    /** local file that counts the streams opened on it, optionally holding them until released */
+    private static class CountingFile extends BlockSource.LocalFile {
+        final AtomicInteger mOpens = new AtomicInteger();
+        volatile CountDownLatch mGate;
+
+        CountingFile(File file) {
+            super(file);
+        }
+
+        @Override
+        public InputStream open(long from) throws IOException {
+            mOpens.incrementAndGet();
+            CountDownLatch gate = mGate;
+            if (gate != null) {
+                try {
+                    gate.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            return super.open(from);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    private byte[] createContent(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    private CountingFile createFile(byte[] content) throws IOException {
+        File file = mFolder.newFile();
+        FileOutputStream os = new FileOutputStream(file);
+        try {
+            os.write(content);
+        } finally {
+            os.close();
+        }
+        return new CountingFile(file);
+    }
+
+    private static byte[] readAll(InputStream is, int size) throws IOException {
+        byte[] data = new byte[size];
+        int read = 0;
+        while (read < size) {
+            // odd sized reads to cross block boundaries
+            int n = is.read(data, read, Math.min(100 * 1000, size - read));
+            if (n < 0)
+                break;
+            read += n;
+        }
+        assertEquals(-1, is.read());
+        return Arrays.copyOf(data, read);
+    }
+
+    @Test
+    public void sequentialReadReturnsTheContent() throws IOException {
+        byte[] content = createContent(5 * BLOCK_SIZE + 1234);
+        CountingFile file = createFile(content);
+        long prefetched = BlockCache.getPrefetchCount();
+
+        CachedInputStream is = new CachedInputStream(file, 0);
+        try {
+            assertArrayEquals(content, readAll(is, content.length));
+        } finally {
+            is.close();
+        }
+        assertTrue(BlockCache.getPrefetchCount() > prefetched);
+    }
+
+    @Test
+    public void secondReadIsServedFromMemory() throws IOException {
+        byte[] content = createContent(3 * BLOCK_SIZE);
+        CountingFile file = createFile(content);
+        CachedInputStream is = new CachedInputStream(file, 0);
+        readAll(is, content.length);
+        is.close();
+        long misses = BlockCache.getMissCount();
+        long hits = BlockCache.getMemoryHitCount();
+        int opens = file.mOpens.get();
+
+        is = new CachedInputStream(file, 0);
+        try {
+            assertArrayEquals(content, readAll(is, content.length));
+        } finally {
+            is.close();
+        }
+        assertEquals(misses, BlockCache.getMissCount());
+        assertEquals(opens, file.mOpens.get());
+        assertTrue(BlockCache.getMemoryHitCount() >= hits + 3);
+    }
+
+    @Test
+    public void seeksReturnTheContent() throws IOException {
+        byte[] content = createContent(4 * BLOCK_SIZE + 17);
+        CountingFile file = createFile(content);
+        long[] positions = { 3 * BLOCK_SIZE + 5, 10, BLOCK_SIZE - 3, 4 * BLOCK_SIZE + 16, 2 * BLOCK_SIZE };
+
+        for (long position : positions) {
+            CachedInputStream is = new CachedInputStream(file, position);
+            try {
+                byte[] data = new byte[16];
+                int n = is.read(data, 0, data.length);
+                assertTrue(n > 0);
+                assertArrayEquals(Arrays.copyOfRange(content, (int) position, (int) position + n), Arrays.copyOf(data, n));
+            } finally {
+                is.close();
+            }
+        }
+        CachedInputStream is = new CachedInputStream(file, 0);
+        try {
+            assertEquals(2 * BLOCK_SIZE, is.skip(2 * BLOCK_SIZE));
+            assertEquals(content[2 * BLOCK_SIZE] & 0xff, is.read());
+            assertEquals(content.length - 2 * BLOCK_SIZE - 1, is.skip(Long.MAX_VALUE));
+            assertEquals(-1, is.read());
+        } finally {
+            is.close();
+        }
+    }
+
+    @Test
+    public void concurrentMissesLoadTheBlockOnce() throws Exception {
+        final byte[] content = createContent(BLOCK_SIZE);
+        final CountingFile file = createFile(content);
+        file.mGate = new CountDownLatch(1);
+        long misses = BlockCache.getMissCount();
+
+        Future<byte[]> first = mExecutor.submit(() -> {
+            CachedInputStream is = new CachedInputStream(file, 0);
+            try {
+                return readAll(is, content.length);
+            } finally {
+                is.close();
+            }
+        });
+        // let the first reader block in open, then start the second one
+        while (file.mOpens.get() == 0)
+            Thread.sleep(10);
+        Future<byte[]> second = mExecutor.submit(() -> {
+            CachedInputStream is = new CachedInputStream(file, 0);
+            try {
+                return readAll(is, content.length);
+            } finally {
+                is.close();
+            }
+        });
+        Thread.sleep(200);
+        file.mGate.countDown();
+
+        assertArrayEquals(content, first.get(10, TimeUnit.SECONDS));
+        assertArrayEquals(content, second.get(10, TimeUnit.SECONDS));
+        assertEquals(1, file.mOpens.get());
+        assertEquals(misses + 1, BlockCache.getMissCount());
+    }
+
+    @Test
+    public void prefetchThreadsReuseTheirStream() throws IOException {
+        final int blocks = 24;
+        byte[] content = createContent(blocks * BLOCK_SIZE);
+        CountingFile file = createFile(content);
+        long prefetched = BlockCache.getPrefetchCount();
+
+        CachedInputStream is = new CachedInputStream(file, 0);
+        try {
+            assertArrayEquals(content, readAll(is, content.length));
+        } finally {
+            is.close();
+        }
+        assertTrue(BlockCache.getPrefetchCount() - prefetched >= blocks / 2);
+        // one stream for the reader and one per prefetch thread, give or take a few reopens
+        assertTrue("opened " + file.mOpens.get() + " streams for " + blocks + " blocks", file.mOpens.get() <= blocks / 2);
+    }
+
+    @Test
+    public void failedLoadIsReportedAndRetried() throws IOException {
+        byte[] content = createContent(BLOCK_SIZE);
+        File path = mFolder.newFile();
+        final AtomicInteger failures = new AtomicInteger(1);
+        BlockSource flaky = new BlockSource.LocalFile(path) {
+            @Override
+            public InputStream open(long from) throws IOException {
+                if (failures.getAndDecrement() > 0)
+                    throw new IOException("share unavailable");
+                return super.open(from);
+            }
+        };
+        FileOutputStream os = new FileOutputStream(path);
+        os.write(content);
+        os.close();
+
+        CachedInputStream is = new CachedInputStream(flaky, 0);
+        try {
+            is.read(new byte[16], 0, 16);
+            throw new AssertionError("the first open fails");
+        } catch (IOException e) {
+            assertEquals("share unavailable", e.getMessage());
+        } finally {
+            is.close();
+        }
+        is = new CachedInputStream(flaky, 0);
+        try {
+            assertArrayEquals(content, readAll(is, content.length));
+        } finally {
+            is.close();
+        }
+    }
+}
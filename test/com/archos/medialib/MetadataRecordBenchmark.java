@@ -0,0 +1,147 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.medialib;
+
+import static org.junit.Assert.assertEquals;
+
+import android.os.Parcel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Heap allocated and time spent to get the import columns out of 10k retriever buffers, with the
+ * record going through a Parcel as it does over binder: {@link MetadataRecord} against the former
+ * {@link AvosMediaMetadata}.
+ * Run with ./gradlew test -Pbenchmark --tests '*MetadataRecordBenchmark'
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MetadataRecordBenchmark {
+
+    private static final int RECORDS = 10000;
+    private static final int ROUNDS = 3;
+
+    // what VideoStoreImportImpl reads out of a video
+    private static final int[] IMPORT_KEYS = {
+            IMediaMetadataRetriever.METADATA_KEY_ENCODING_PROFILE,
+            IMediaMetadataRetriever.METADATA_KEY_FRAMES_PER_THOUSAND_SECONDS,
+            IMediaMetadataRetriever.METADATA_KEY_NB_AUDIO_TRACK,
+            IMediaMetadataRetriever.METADATA_KEY_NB_SUBTITLE_TRACK,
+            IMediaMetadataRetriever.METADATA_KEY_VIDEO_BITRATE,
+            IMediaMetadataRetriever.METADATA_KEY_VIDEO_FOURCC_CODEC,
+            IMediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT,
+            IMediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH,
+            IMediaMetadataRetriever.METADATA_KEY_DURATION,
+            IMediaMetadataRetriever.METADATA_KEY_SAMPLE_RATE,
+            IMediaMetadataRetriever.METADATA_KEY_NUMBER_OF_CHANNELS,
+            IMediaMetadataRetriever.METADATA_KEY_AUDIO_WAVE_CODEC,
+            IMediaMetadataRetriever.METADATA_KEY_AUDIO_BITRATE,
+            IMediaMetadataRetriever.METADATA_KEY_TITLE,
+    };
+
+    private interface Decoder {
+        /** @return the number of columns read */
+        int decode(byte[] data);
+    }
+
+    /** a probed mkv: the import columns as strings plus per track entries */
+    private static byte[] buffer(int i) {
+        MetadataRecordTest.Buffer buffer = new MetadataRecordTest.Buffer();
+        for (int key : IMPORT_KEYS)
+            buffer.putString(key, key == IMediaMetadataRetriever.METADATA_KEY_TITLE ? "Some Movie Title (" + (1950 + i % 70) + ")" : String.valueOf(i * 31 + key));
+        buffer.putLong(IMediaMetadataRetriever.METADATA_KEY_FILE_SIZE, 1500000000L + i);
+        buffer.putInt(IMediaMetadataRetriever.METADATA_KEY_NB_VIDEO_TRACK, 1);
+        for (int track = 0; track < 6; track++) {
+            buffer.putString(IMediaMetadataRetriever.METADATA_KEY_AUDIO_TRACK + track * 100, "AC3 5.1");
+            buffer.putString(IMediaMetadataRetriever.METADATA_KEY_SUBTITLE_TRACK + track * 100, "eng");
+            buffer.putBoolean(IMediaMetadataRetriever.METADATA_KEY_SUBTITLE_TRACK + track * 100 + 1, track == 0);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static final Decoder RECORD = new Decoder() {
+        @Override
+        public int decode(byte[] data) {
+            Parcel parcel = Parcel.obtain();
+            try {
+                MetadataRecord.wrap(data).writeToParcel(parcel, 0);
+                parcel.setDataPosition(0);
+                MetadataRecord record = MetadataRecord.CREATOR.createFromParcel(parcel);
+                int read = 0;
+                for (int key : IMPORT_KEYS) {
+                    if (record.has(key) && record.getString(key) != null)
+                        read++;
+                }
+                return read;
+            } finally {
+                parcel.recycle();
+            }
+        }
+    };
+
+    private static final Decoder MEDIA_METADATA = new Decoder() {
+        @Override
+        public int decode(byte[] data) {
+            AvosMediaMetadata metadata = new AvosMediaMetadata();
+            metadata.parse(data);
+            Parcel parcel = Parcel.obtain();
+            try {
+                metadata.writeToParcel(parcel, 0);
+                parcel.setDataPosition(0);
+                MediaMetadata copy = MediaMetadata.CREATOR.createFromParcel(parcel);
+                int read = 0;
+                for (int key : IMPORT_KEYS) {
+                    if (copy.has(key) && copy.getString(key) != null)
+                        read++;
+                }
+                return read;
+            } finally {
+                parcel.recycle();
+            }
+        }
+    };
+
+    private static void run(String name, Decoder decoder, byte[][] buffers) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int round = 0; round < ROUNDS; round++) {
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            int read = 0;
+            for (byte[] data : buffers)
+                read += decoder.decode(data);
+            long time = System.nanoTime() - start;
+            allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+            assertEquals(RECORDS * IMPORT_KEYS.length, read);
+            System.out.println(String.format(Locale.ROOT,
+                    "MetadataRecordBenchmark %-14s round %d: %d records in %.1fms, %d bytes/record",
+                    name, round, RECORDS, time / 1e6, allocated / RECORDS));
+        }
+    }
+
+    @Test
+    public void decode() {
+        byte[][] buffers = new byte[RECORDS][];
+        for (int i = 0; i < RECORDS; i++)
+            buffers[i] = buffer(i);
+
+        run("MediaMetadata", MEDIA_METADATA, buffers);
+        run("MetadataRecord", RECORD, buffers);
+    }
+}
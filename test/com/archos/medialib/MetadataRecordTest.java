@@ -0,0 +1,225 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.medialib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Parcel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Decoding of the native retriever buffers by {@link MetadataRecord#wrap}, malformed ones included.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MetadataRecordTest {
+
+    static final int TYPE_INT = 0;
+    static final int TYPE_INT64 = 1;
+    static final int TYPE_BOOL = 2;
+    static final int TYPE_STR = 3;
+    static final int TYPE_BYTE = 4;
+
+    /** avos_msg entries in native byte order, as getMetadata() returns them */
+    static class Buffer {
+        private final ByteArrayOutputStream mOut = new ByteArrayOutputStream();
+
+        Buffer entry(int key, int type, byte[] data) {
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.nativeOrder());
+            header.putInt(key).putInt(type).putInt(data.length);
+            mOut.write(header.array(), 0, 12);
+            mOut.write(data, 0, data.length);
+            return this;
+        }
+
+        Buffer putInt(int key, int value) {
+            return entry(key, TYPE_INT, ByteBuffer.allocate(4).order(ByteOrder.nativeOrder()).putInt(value).array());
+        }
+
+        Buffer putLong(int key, long value) {
+            return entry(key, TYPE_INT64, ByteBuffer.allocate(8).order(ByteOrder.nativeOrder()).putLong(value).array());
+        }
+
+        Buffer putBoolean(int key, boolean value) {
+            return entry(key, TYPE_BOOL, ByteBuffer.allocate(4).order(ByteOrder.nativeOrder()).putInt(value ? 1 : 0).array());
+        }
+
+        Buffer putString(int key, String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            // NUL terminated
+            return entry(key, TYPE_STR, Arrays.copyOf(utf8, utf8.length + 1));
+        }
+
+        byte[] toByteArray() {
+            return mOut.toByteArray();
+        }
+    }
+
+    @Test
+    public void decodesEveryType() {
+        MetadataRecord record = MetadataRecord.wrap(new Buffer()
+                .putInt(IMediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH, 1920)
+                .putLong(IMediaMetadataRetriever.METADATA_KEY_FILE_SIZE, 5L << 32)
+                .putBoolean(IMediaMetadataRetriever.METADATA_KEY_HAS_VIDEO, true)
+                .putString(IMediaMetadataRetriever.METADATA_KEY_TITLE, "Amélie")
+                .putString(IMediaMetadataRetriever.METADATA_KEY_DURATION, "")
+                .toByteArray());
+
+        assertNotNull(record);
+        assertEquals(5, record.size());
+        assertEquals(1920, record.getInt(IMediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+        assertEquals(5L << 32, record.getLong(IMediaMetadataRetriever.METADATA_KEY_FILE_SIZE));
+        assertTrue(record.getBoolean(IMediaMetadataRetriever.METADATA_KEY_HAS_VIDEO));
+        assertEquals("Amélie", record.getString(IMediaMetadataRetriever.METADATA_KEY_TITLE));
+        assertEquals("", record.getString(IMediaMetadataRetriever.METADATA_KEY_DURATION));
+        assertFalse(record.has(IMediaMetadataRetriever.METADATA_KEY_ALBUM));
+    }
+
+    @Test
+    public void sizeOfFixedTypesComesFromTheType() {
+        // the header size of an int is not trusted, the next entry follows the 4 bytes
+        byte[] data = new Buffer()
+                .putInt(IMediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT, 1080)
+                .putString(IMediaMetadataRetriever.METADATA_KEY_TITLE, "x")
+                .toByteArray();
+        ByteBuffer.wrap(data).order(ByteOrder.nativeOrder()).putInt(8, 0);
+
+        MetadataRecord record = MetadataRecord.wrap(data);
+
+        assertNotNull(record);
+        assertEquals(1080, record.getInt(IMediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+        assertEquals("x", record.getString(IMediaMetadataRetriever.METADATA_KEY_TITLE));
+    }
+
+    @Test
+    public void emptyBufferHasNoEntry() {
+        MetadataRecord record = MetadataRecord.wrap(new byte[0]);
+
+        assertNotNull(record);
+        assertEquals(0, record.size());
+        assertNull(MetadataRecord.wrap(null));
+    }
+
+    @Test
+    public void manyEntriesGrowTheIndex() {
+        Buffer buffer = new Buffer();
+        for (int i = 0; i < 100; i++)
+            buffer.putInt(IMediaMetadataRetriever.METADATA_KEY_AUDIO_TRACK + i, i);
+
+        MetadataRecord record = MetadataRecord.wrap(buffer.toByteArray());
+
+        assertNotNull(record);
+        assertEquals(100, record.size());
+        assertEquals(99, record.getInt(IMediaMetadataRetriever.METADATA_KEY_AUDIO_TRACK + 99));
+    }
+
+    @Test
+    public void truncatedHeaderIsRejected() {
+        byte[] data = new Buffer().putInt(IMediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH, 1920).toByteArray();
+        byte[] truncated = Arrays.copyOf(data, data.length + 8);
+
+        assertNull(MetadataRecord.wrap(truncated));
+    }
+
+    @Test
+    public void truncatedPayloadIsRejected() {
+        byte[] ints = new Buffer().putLong(IMediaMetadataRetriever.METADATA_KEY_FILE_SIZE, 1).toByteArray();
+        byte[] strings = new Buffer().putString(IMediaMetadataRetriever.METADATA_KEY_TITLE, "title").toByteArray();
+
+        assertNull(MetadataRecord.wrap(Arrays.copyOf(ints, ints.length - 1)));
+        assertNull(MetadataRecord.wrap(Arrays.copyOf(strings, strings.length - 1)));
+    }
+
+    @Test
+    public void stringWithoutTerminatorIsRejected() {
+        byte[] data = new Buffer().entry(IMediaMetadataRetriever.METADATA_KEY_TITLE, TYPE_STR, new byte[0]).toByteArray();
+
+        assertNull(MetadataRecord.wrap(data));
+    }
+
+    @Test
+    public void stringSizeBeyondTheBufferIsRejected() {
+        byte[] data = new Buffer().putString(IMediaMetadataRetriever.METADATA_KEY_TITLE, "title").toByteArray();
+        ByteBuffer.wrap(data).order(ByteOrder.nativeOrder()).putInt(8, Integer.MAX_VALUE);
+
+        assertNull(MetadataRecord.wrap(data));
+    }
+
+    @Test
+    public void duplicateKeyIsRejected() {
+        byte[] data = new Buffer()
+                .putString(IMediaMetadataRetriever.METADATA_KEY_TITLE, "a")
+                .putInt(IMediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH, 1)
+                .putString(IMediaMetadataRetriever.METADATA_KEY_TITLE, "b")
+                .toByteArray();
+
+        assertNull(MetadataRecord.wrap(data));
+    }
+
+    @Test
+    public void unknownTypeIsRejected() {
+        byte[] data = new Buffer()
+                .putInt(IMediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH, 1)
+                .entry(IMediaMetadataRetriever.METADATA_KEY_ALBUM, TYPE_BYTE, new byte[] { 1, 2, 3, 4 })
+                .toByteArray();
+
+        assertNull(MetadataRecord.wrap(data));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void wrongTypeThrows() {
+        MetadataRecord record = MetadataRecord.wrap(new Buffer()
+                .putInt(IMediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH, 1920).toByteArray());
+
+        record.getString(IMediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void missingKeyThrows() {
+        MetadataRecord.wrap(new byte[0]).getInt(IMediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH);
+    }
+
+    @Test
+    public void survivesTheParcel() {
+        MetadataRecord record = MetadataRecord.wrap(new Buffer()
+                .putString(IMediaMetadataRetriever.METADATA_KEY_TITLE, "title")
+                .putInt(IMediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH, 1280)
+                .toByteArray());
+        Parcel parcel = Parcel.obtain();
+        try {
+            record.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            MetadataRecord copy = MetadataRecord.CREATOR.createFromParcel(parcel);
+
+            assertEquals(2, copy.size());
+            assertEquals("title", copy.getString(IMediaMetadataRetriever.METADATA_KEY_TITLE));
+            assertEquals(1280, copy.getInt(IMediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
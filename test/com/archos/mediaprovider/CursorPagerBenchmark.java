@@ -0,0 +1,256 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediaprovider;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.ContentProvider;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.Locale;
+
+/**
+ * End to end time of the paging loops over a 100k row table behind a content provider: the former
+ * offset paging of the MediaStore copy and re-query from the start of doScan, against
+ * {@link CursorPager} with and without prefetch. Each row is read as the import does, the scan
+ * marks the rows of a page as scanned before asking for the next one.
+ * Run with ./gradlew test -Pbenchmark --tests '*CursorPagerBenchmark'
+ */
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class CursorPagerBenchmark {
+
+    private static final String AUTHORITY = "com.archos.mediaprovider.benchmark";
+    private static final Uri FILES = Uri.parse("content://" + AUTHORITY + "/files");
+    private static final int ROWS = 100000;
+    private static final int PAGE_SIZE = 2000;
+    private static final String[] PROJECTION = { BaseColumns._ID, "_data", "_size", "date_modified" };
+    private static final String WHERE_UNSCANNED = "scan_state < date_modified";
+    private static final String WHERE_PAGE = BaseColumns._ID + " BETWEEN ? AND ?";
+
+    private static final int ROUNDS = 3;
+
+    private FilesProvider mProvider;
+    private ContentResolver mCr;
+
+    /** a files table with the "limit" query parameter of our providers */
+    public static class FilesProvider extends ContentProvider {
+        private SQLiteDatabase mDb;
+
+        @Override
+        public boolean onCreate() {
+            mDb = SQLiteDatabase.create(null);
+            mDb.execSQL("CREATE TABLE files (_id INTEGER PRIMARY KEY, _data TEXT, _size INTEGER, date_modified INTEGER, scan_state INTEGER)");
+            return true;
+        }
+
+        void fill(int rows) {
+            mDb.beginTransaction();
+            try {
+                SQLiteStatement insert = mDb.compileStatement("INSERT INTO files (_data, _size, date_modified, scan_state) VALUES (?, ?, ?, 0)");
+                for (int i = 0; i < rows; i++) {
+                    insert.bindString(1, "/storage/emulated/0/Movies/Some Movie Title " + i + " (" + (1950 + i % 75) + ") 1080p.mkv");
+                    insert.bindLong(2, 1500000000L + i);
+                    insert.bindLong(3, 1600000000L + i);
+                    insert.executeInsert();
+                }
+                mDb.setTransactionSuccessful();
+            } finally {
+                mDb.endTransaction();
+            }
+        }
+
+        void resetScanState() {
+            mDb.execSQL("UPDATE files SET scan_state = 0");
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+            return mDb.query("files", projection, selection, selectionArgs, null, null, sortOrder, uri.getQueryParameter("limit"));
+        }
+
+        @Override
+        public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+            return mDb.update("files", values, selection, selectionArgs);
+        }
+
+        @Override
+        public String getType(Uri uri) {
+            return null;
+        }
+
+        @Override
+        public Uri insert(Uri uri, ContentValues values) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int delete(Uri uri, String selection, String[] selectionArgs) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mProvider = Robolectric.setupContentProvider(FilesProvider.class, AUTHORITY);
+        mProvider.fill(ROWS);
+        mCr = RuntimeEnvironment.getApplication().getContentResolver();
+    }
+
+    /** what the import does with a row, @return the last _id */
+    private static long readPage(Cursor c) {
+        long last = -1;
+        long size = 0;
+        while (c.moveToNext()) {
+            last = c.getLong(0);
+            size += c.getString(1).length() + c.getLong(2) + c.getLong(3);
+        }
+        if (size == 0)
+            throw new AssertionError();
+        return last;
+    }
+
+    /** marks the rows of a page up to lastId as scanned, as handleScanCursor does row by row */
+    private void markScanned(long firstId, long lastId) {
+        ContentValues cv = new ContentValues(1);
+        cv.put("scan_state", Long.valueOf(Long.MAX_VALUE));
+        mCr.update(FILES, cv, WHERE_PAGE, new String[] { String.valueOf(firstId), String.valueOf(lastId) });
+    }
+
+    private interface Loop {
+        /** @return the number of rows processed */
+        int run();
+    }
+
+    /** MediaStore copy before the pager: LIMIT / OFFSET pages, each one skipping over the previous ones */
+    private final Loop mOffsetRead = new Loop() {
+        @Override
+        public int run() {
+            int rows = 0;
+            for (int offset = 0; ; offset += PAGE_SIZE) {
+                Cursor c = mCr.query(FILES, PROJECTION, null, null, BaseColumns._ID + " ASC LIMIT " + PAGE_SIZE + " OFFSET " + offset);
+                int count = c.getCount();
+                if (count > 0)
+                    readPage(c);
+                c.close();
+                rows += count;
+                if (count < PAGE_SIZE)
+                    return rows;
+            }
+        }
+    };
+
+    private Loop pagerRead(final boolean prefetch) {
+        return new Loop() {
+            @Override
+            public int run() {
+                CursorPager pager = new CursorPager(mCr, FILES, PROJECTION, null, null, PAGE_SIZE).setPrefetch(prefetch);
+                try {
+                    Cursor c;
+                    while ((c = pager.next()) != null)
+                        readPage(c);
+                    return (int) pager.getRowCount();
+                } finally {
+                    pager.close();
+                }
+            }
+        };
+    }
+
+    /** doScan before the pager: the first page of unscanned files again and again, until it runs short */
+    private final Loop mRequeryScan = new Loop() {
+        @Override
+        public int run() {
+            int rows = 0;
+            while (true) {
+                Cursor c = mCr.query(FILES, PROJECTION, WHERE_UNSCANNED, null, BaseColumns._ID + " ASC LIMIT " + PAGE_SIZE);
+                int count = c.getCount();
+                if (count > 0) {
+                    c.moveToFirst();
+                    long first = c.getLong(0);
+                    c.moveToPosition(-1);
+                    markScanned(first, readPage(c));
+                }
+                c.close();
+                rows += count;
+                if (count < PAGE_SIZE)
+                    return rows;
+            }
+        }
+    };
+
+    private Loop pagerScan(final boolean prefetch) {
+        return new Loop() {
+            @Override
+            public int run() {
+                CursorPager pager = new CursorPager(mCr, FILES, PROJECTION, WHERE_UNSCANNED, null, PAGE_SIZE).setPrefetch(prefetch);
+                try {
+                    Cursor c;
+                    while ((c = pager.next()) != null) {
+                        c.moveToFirst();
+                        long first = c.getLong(0);
+                        c.moveToPosition(-1);
+                        markScanned(first, readPage(c));
+                    }
+                    return (int) pager.getRowCount();
+                } finally {
+                    pager.close();
+                }
+            }
+        };
+    }
+
+    private void run(String name, Loop loop, boolean scan) {
+        for (int round = 0; round < ROUNDS; round++) {
+            if (scan)
+                mProvider.resetScanState();
+            long start = System.nanoTime();
+            int rows = loop.run();
+            long time = System.nanoTime() - start;
+            assertEquals(ROWS, rows);
+            System.out.println(String.format(Locale.ROOT,
+                    "CursorPagerBenchmark %-20s round %d: %d rows by pages of %d in %.1fms",
+                    name, round, ROWS, PAGE_SIZE, time / 1e6));
+        }
+    }
+
+    @Test
+    public void read() {
+        run("offset", mOffsetRead, false);
+        run("pager", pagerRead(false), false);
+        run("pager+prefetch", pagerRead(true), false);
+    }
+
+    @Test
+    public void scan() {
+        run("requery", mRequeryScan, true);
+        run("pager", pagerScan(false), true);
+        run("pager+prefetch", pagerScan(true), true);
+    }
+}
@@ -0,0 +1,122 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediaprovider.video;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.ContentValues;
+import android.content.Context;
+
+import com.archos.mediaprovider.VideoDb;
+import com.archos.mediaprovider.video.VideoStore.MediaColumns;
+import com.archos.mediaprovider.video.VideoStore.Video.VideoColumns;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Remount of a 20k video USB drive through {@link ProbeCache}, by pages of 2000 as handleScanCursor
+ * does: the first scan probes every file and fills the cache, a remount with the files unchanged
+ * then gets all of them from the cache, a rescan after 10% of the files were modified probes those
+ * only. Each miss is a retriever call, each hit one avoided.
+ * Run with ./gradlew test -Pbenchmark --tests '*ProbeCacheBenchmark'
+ */
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class ProbeCacheBenchmark {
+
+    private static final int VIDEOS = 20000;
+    private static final int PAGE_SIZE = 2000;
+    // one file out of MODIFIED_RATIO is modified before the rescan
+    private static final int MODIFIED_RATIO = 10;
+
+    private final Context mContext = RuntimeEnvironment.getApplication();
+
+    private static String path(int i) {
+        return "file:///storage/1234-5678/Movies/Some Movie Title " + i + " (" + (1950 + i % 75) + ") 1080p.mkv";
+    }
+
+    /** what fromRetrieverService extracts out of a video */
+    private static ContentValues probed(int i) {
+        ContentValues values = new ContentValues();
+        values.put(VideoColumns.ARCHOS_ENCODING_PROFILE, "0");
+        values.put(VideoColumns.ARCHOS_FRAMES_PER_THOUSAND_SECONDS, "23976");
+        values.put(VideoColumns.ARCHOS_NUMBER_OF_AUDIO_TRACKS, "2");
+        values.put(VideoColumns.ARCHOS_NUMBER_OF_SUBTITLE_TRACKS, "4");
+        values.put(VideoColumns.ARCHOS_VIDEO_BITRATE, String.valueOf(8000000 + i));
+        values.put(VideoColumns.ARCHOS_VIDEO_FOURCC_CODEC, "875967080");
+        values.put(MediaColumns.HEIGHT, "1080");
+        values.put(MediaColumns.WIDTH, "1920");
+        values.put(VideoColumns.DURATION, String.valueOf(5400000 + i));
+        values.put(VideoColumns.ARCHOS_SAMPLERATE, "48000");
+        values.put(VideoColumns.ARCHOS_NUMBER_OF_CHANNELS, "6");
+        values.put(VideoColumns.ARCHOS_AUDIO_WAVE_CODEC, "8192");
+        values.put(VideoColumns.ARCHOS_AUDIO_BITRATE, "640000");
+        values.put(MediaColumns.TITLE, "Some Movie Title " + i);
+        return values;
+    }
+
+    /** one pass of the import over the drive, @return the number of retriever calls */
+    private static int scan(String name, ProbeCache cache, long[] dateModified) {
+        long hits = ProbeCache.getHitCount();
+        long misses = ProbeCache.getMissCount();
+        int probes = 0;
+        long start = System.nanoTime();
+        for (int page = 0; page < VIDEOS; page += PAGE_SIZE) {
+            List<String> paths = new ArrayList<String>(PAGE_SIZE);
+            for (int i = page; i < page + PAGE_SIZE; i++)
+                paths.add(path(i));
+            cache.load(paths);
+            for (int i = page; i < page + PAGE_SIZE; i++) {
+                long size = 1500000000L + i;
+                if (cache.get(path(i), size, dateModified[i]) == null) {
+                    probes++;
+                    cache.put(path(i), size, dateModified[i], probed(i));
+                }
+            }
+            cache.flush();
+        }
+        long time = System.nanoTime() - start;
+        assertEquals(probes, ProbeCache.getMissCount() - misses);
+        System.out.println(String.format(Locale.ROOT,
+                "ProbeCacheBenchmark %-8s %d videos: %d retriever calls, %d avoided, cache %.1fms (%.1fus/video)",
+                name, VIDEOS, probes, ProbeCache.getHitCount() - hits, time / 1e6, time / 1e3 / VIDEOS));
+        return probes;
+    }
+
+    @Test
+    public void remount() {
+        VideoDb.get(mContext).delete(VideoOpenHelper.PROBE_CACHE_TABLE_NAME, null, null);
+        long[] dateModified = new long[VIDEOS];
+        for (int i = 0; i < VIDEOS; i++)
+            dateModified[i] = 1600000000L + i;
+
+        assertEquals(VIDEOS, scan("scan", new ProbeCache(mContext), dateModified));
+        // the import creates its cache anew each time, nothing is kept in memory
+        assertEquals(0, scan("remount", new ProbeCache(mContext), dateModified));
+
+        for (int i = 0; i < VIDEOS; i += MODIFIED_RATIO)
+            dateModified[i] += 3600;
+        assertEquals(VIDEOS / MODIFIED_RATIO, scan("rescan", new ProbeCache(mContext), dateModified));
+        assertEquals(0, scan("remount", new ProbeCache(mContext), dateModified));
+    }
+}
@@ -0,0 +1,121 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediaprovider.video;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.ContentValues;
+import android.util.Pair;
+
+import com.archos.mediaprovider.BulkInserter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Subtitle association of a flat "all subs" bucket of 5k videos and 20k subtitles: the former
+ * video x subtitle startsWith loop against the sorted prefix search of
+ * {@link NetworkScannerServiceVideo#handleSubtitleBucket}. Both must find the same associations.
+ * Run with ./gradlew test -Pbenchmark --tests '*SubtitleMatchBenchmark'
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SubtitleMatchBenchmark {
+
+    private static final int VIDEOS = 5000;
+    private static final String[] LANGUAGES = { "en", "fr", "de", "es" };
+    private static final int ROUNDS = 3;
+
+    /** counts the associations instead of inserting them */
+    private static class CountingInserter extends BulkInserter {
+        int mCount;
+
+        CountingInserter() {
+            super(null, null, 0);
+        }
+
+        @Override
+        public void add(ContentValues operation) {
+            mCount++;
+        }
+    }
+
+    private interface Matcher {
+        int match(List<Pair<String, Long>> videos, List<NetworkScannerServiceVideo.SubtitleInfo> subs);
+    }
+
+    /** handleSubtitleBucket before the sorted search */
+    private static final Matcher NESTED_LOOP = new Matcher() {
+        @Override
+        public int match(List<Pair<String, Long>> videos, List<NetworkScannerServiceVideo.SubtitleInfo> subs) {
+            List<ContentValues> inserts = new ArrayList<ContentValues>();
+            for (Pair<String, Long> video : videos) {
+                for (NetworkScannerServiceVideo.SubtitleInfo subtitle : subs) {
+                    if (subtitle.matchesVideo(video.first))
+                        inserts.add(subtitle.getForVideo(video.second, video.first));
+                }
+            }
+            return inserts.size();
+        }
+    };
+
+    private static final Matcher SORTED_SEARCH = new Matcher() {
+        @Override
+        public int match(List<Pair<String, Long>> videos, List<NetworkScannerServiceVideo.SubtitleInfo> subs) {
+            CountingInserter inserter = new CountingInserter();
+            NetworkScannerServiceVideo.handleSubtitleBucket(videos, subs, inserter);
+            return inserter.mCount;
+        }
+    };
+
+    private static int run(String name, Matcher matcher, List<Pair<String, Long>> videos,
+            List<NetworkScannerServiceVideo.SubtitleInfo> subs) {
+        int associations = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            // in scan order, as the query returns them
+            List<NetworkScannerServiceVideo.SubtitleInfo> bucket = new ArrayList<NetworkScannerServiceVideo.SubtitleInfo>(subs);
+            long start = System.nanoTime();
+            associations = matcher.match(videos, bucket);
+            long time = System.nanoTime() - start;
+            System.out.println(String.format(Locale.ROOT,
+                    "SubtitleMatchBenchmark %-13s round %d: %d videos x %d subtitles, %d associations in %.1fms",
+                    name, round, videos.size(), subs.size(), associations, time / 1e6));
+        }
+        return associations;
+    }
+
+    @Test
+    public void matchFlatBucket() {
+        List<Pair<String, Long>> videos = new ArrayList<Pair<String, Long>>(VIDEOS);
+        List<NetworkScannerServiceVideo.SubtitleInfo> subs = new ArrayList<NetworkScannerServiceVideo.SubtitleInfo>(VIDEOS * LANGUAGES.length);
+        long id = 1;
+        for (int i = 0; i < VIDEOS; i++) {
+            // "Video 1" is a prefix of "Video 10.en" too, as in real folders
+            String name = "Video " + i;
+            videos.add(new Pair<String, Long>(name, Long.valueOf(id++)));
+            for (String language : LANGUAGES)
+                subs.add(new NetworkScannerServiceVideo.SubtitleInfo(id++, "smb://server/share/all subs/" + name + "." + language + ".srt", 40000 + i));
+        }
+
+        int nested = run("nested loop", NESTED_LOOP, videos, subs);
+        int sorted = run("sorted search", SORTED_SEARCH, videos, subs);
+
+        assertEquals(nested, sorted);
+    }
+}
@@ -0,0 +1,438 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediaprovider.video;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Database layer timings of the video store on a synthetic library with scraper data: the scanner
+ * inserts, the import updates, the scraper batches, player updates and deletes with all the triggers
+ * they fire, then the list queries on the video view as before video_denorm, and on video_denorm.
+ * The same work is timed on a database without the video_denorm triggers to give their overhead.
+ * Works on VideoOpenHelper directly, VideoProvider would start the scan and network services.
+ * Run with ./gradlew test -Pbenchmark -Pbenchmark.videos=10000,50000,200000 --tests '*VideoDbBenchmark'
+ */
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class VideoDbBenchmark {
+
+    private static final String DATABASE_NAME = "media.db";
+    // library sizes, -Pbenchmark.videos is forwarded by the build
+    private static final String VIDEOS = System.getProperty("benchmark.videos", "10000,50000");
+    // share of the library that are episodes, the rest are movies
+    private static final float EPISODE_RATIO = 0.4f;
+    private static final int SEASONS_PER_SHOW = 5;
+    private static final int EPISODES_PER_SEASON = 10;
+    // rows per transaction of the scanner and import bulk operations
+    private static final int BATCH_SIZE = 500;
+    private static final int PLAYER_UPDATES = 1000;
+    private static final int QUERY_RUNS = 10;
+
+    static final String[] MOVIE_LIST_PROJECTION = {
+            "_id", "_data", "title", "m_id", "m_name", "m_year", "rating", "po_large_file", "bookmark",
+            "Archos_lastTimePlayed", "duration", "COALESCE(m_name, title) AS name",
+    };
+    static final String MOVIE_LIST_SELECTION = "m_id IS NOT NULL AND Archos_hideFile = 0";
+    static final String MOVIE_LIST_SORT = "name COLLATE NOCASE ASC";
+
+    static final String[] SEASONS_PROJECTION = {
+            "e_season", "COUNT(*) AS episodes", "MAX(Archos_lastTimePlayed) AS last_played",
+            "MAX(s_po_large_file) AS poster",
+    };
+    static final String SEASONS_SELECTION = "s_id = ? AND Archos_hideFile = 0";
+    static final String SEASONS_GROUP_BY = "e_season";
+
+    static final String RECENT_SELECTION = "Archos_lastTimePlayed > 1";
+    static final String RECENT_SORT = "Archos_lastTimePlayed DESC";
+
+    private final Context mContext = RuntimeEnvironment.getApplication();
+    private VideoOpenHelper mHelper;
+
+    @After
+    public void tearDown() {
+        if (mHelper != null)
+            mHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    /** per phase timings of one library */
+    static class Timings {
+        final String name;
+        final List<String> lines = new ArrayList<>();
+
+        Timings(String name) {
+            this.name = name;
+        }
+
+        void add(String phase, long nanos, int rows) {
+            lines.add(String.format(Locale.ROOT, "VideoDbBenchmark %-14s %-16s rows=%-7d total=%8.1fms per row=%7.1fus",
+                    name, phase, rows, nanos / 1e6, rows > 0 ? nanos / 1e3 / rows : 0));
+        }
+
+        void print() {
+            for (String line : lines)
+                System.out.println(line);
+        }
+    }
+
+    /** the synthetic library, same seed for every database so that the work is identical */
+    static class Library {
+        final int videos;
+        final int movies;
+        final int episodes;
+
+        Library(int videos) {
+            this.videos = videos;
+            int shows = Math.max(1, Math.round(videos * EPISODE_RATIO) / (SEASONS_PER_SHOW * EPISODES_PER_SEASON));
+            this.episodes = shows * SEASONS_PER_SHOW * EPISODES_PER_SEASON;
+            this.movies = videos - episodes;
+        }
+
+        boolean isMovie(int video) {
+            return video < movies;
+        }
+    }
+
+    private static final String[] WORDS = {
+            "night", "star", "river", "last", "city", "dark", "summer", "king", "lost", "road", "blue",
+            "house", "war", "secret", "winter", "dream", "fire", "island", "shadow", "heart",
+    };
+
+    private static String words(Random random, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0)
+                sb.append(' ');
+            String word = WORDS[random.nextInt(WORDS.length)];
+            sb.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+        }
+        return sb.toString();
+    }
+
+    SQLiteDatabase open(boolean withVideoList) {
+        mContext.deleteDatabase(DATABASE_NAME);
+        mHelper = new VideoOpenHelper(mContext);
+        SQLiteDatabase db = mHelper.getWritableDatabase();
+        if (!withVideoList) {
+            List<String> triggers = new ArrayList<>();
+            try (Cursor c = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'trigger' AND name LIKE ? ESCAPE '\\'",
+                    new String[] { VideoListTable.TABLE_NAME.replace("_", "\\_") + "\\_%" })) {
+                while (c.moveToNext())
+                    triggers.add(c.getString(0));
+            }
+            for (String trigger : triggers)
+                db.execSQL("DROP TRIGGER " + trigger);
+        }
+        return db;
+    }
+
+    void close() {
+        mHelper.close();
+        mHelper = null;
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    private static long fileId(long scannedId) {
+        return scannedId + VideoOpenHelper.SCANNED_ID_OFFSET;
+    }
+
+    /** network scanner: bulk inserts into files_scanned, the trigger copies them to files */
+    static void scan(SQLiteDatabase db, Library library, Timings timings) {
+        Random random = new Random(1);
+        ContentValues values = new ContentValues();
+        long start = System.nanoTime();
+        for (int first = 0; first < library.videos; first += BATCH_SIZE) {
+            db.beginTransaction();
+            try {
+                for (int video = first; video < Math.min(first + BATCH_SIZE, library.videos); video++) {
+                    String folder;
+                    String name;
+                    if (library.isMovie(video)) {
+                        String title = words(random, 1 + random.nextInt(3));
+                        folder = "smb://nas/Movies/" + title + " (" + (1950 + random.nextInt(75)) + ")";
+                        name = title.replace(' ', '.') + ".1080p.mkv";
+                    } else {
+                        int episode = video - library.movies;
+                        int show = episode / (SEASONS_PER_SHOW * EPISODES_PER_SEASON);
+                        int season = episode / EPISODES_PER_SEASON % SEASONS_PER_SHOW + 1;
+                        folder = "smb://nas/TV/Show " + show + "/Season " + season;
+                        name = String.format(Locale.ROOT, "Show %d S%02dE%02d.mkv", show, season,
+                                episode % EPISODES_PER_SEASON + 1);
+                    }
+                    values.clear();
+                    values.put("_id", video + 1);
+                    values.put("_data", folder + "/" + name);
+                    values.put("_display_name", name);
+                    values.put("_size", 700000000L + random.nextInt(1000000000));
+                    values.put("date_modified", 1600000000L + random.nextInt(100000000));
+                    values.put("mime_type", "video/x-matroska");
+                    values.put("title", name.substring(0, name.length() - 4));
+                    values.put("media_type", 3);
+                    values.put("bucket_id", folder.toLowerCase(Locale.ROOT).hashCode());
+                    values.put("bucket_display_name", folder.substring(folder.lastIndexOf('/') + 1));
+                    values.put("storage_id", 0);
+                    db.insert(VideoOpenHelper.FILES_SCANNED_TABLE_NAME, null, values);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        timings.add("scan insert", System.nanoTime() - start, library.videos);
+    }
+
+    /** import: probe results written back to files in batches */
+    static void importMetadata(SQLiteDatabase db, Library library, Timings timings) {
+        Random random = new Random(2);
+        ContentValues values = new ContentValues();
+        String[] args = new String[1];
+        long start = System.nanoTime();
+        for (int first = 0; first < library.videos; first += BATCH_SIZE) {
+            db.beginTransaction();
+            try {
+                for (int video = first; video < Math.min(first + BATCH_SIZE, library.videos); video++) {
+                    values.clear();
+                    values.put("duration", 1200000 + random.nextInt(6000000));
+                    values.put("width", 1920);
+                    values.put("height", 1080);
+                    values.put("Archos_numberOfAudioTracks", 1 + random.nextInt(3));
+                    values.put("Archos_numberOfSubtitleTracks", random.nextInt(5));
+                    values.put("Archos_videoDefinition", 3);
+                    args[0] = String.valueOf(fileId(video + 1));
+                    db.update(VideoOpenHelper.FILES_TABLE_NAME, values, "_id = ?", args);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        timings.add("import update", System.nanoTime() - start, library.videos);
+    }
+
+    /**
+     * scraper: one batch per video as MovieTags and EpisodeTags save them, the scraper row, its
+     * poster, the back reference to the poster, then the scraper id in files
+     */
+    static void scrape(SQLiteDatabase db, Library library, Timings timings) {
+        Random random = new Random(3);
+        ContentValues values = new ContentValues();
+        long start = System.nanoTime();
+        for (int video = 0; video < library.videos; video++) {
+            long fileId = fileId(video + 1);
+            db.beginTransaction();
+            try {
+                long scraperId;
+                int scraperType;
+                if (library.isMovie(video)) {
+                    values.clear();
+                    values.put("video_id", fileId);
+                    values.put("name_movie", words(random, 1 + random.nextInt(3)));
+                    values.put("year_movie", 1950 + random.nextInt(75));
+                    values.put("rating_movie", random.nextInt(100) / 10f);
+                    values.put("plot_movie", words(random, 40));
+                    values.put("m_online_id", 1000 + video);
+                    values.put("m_imdb_id", "tt" + (1000000 + video));
+                    scraperId = db.insert("MOVIE", null, values);
+                    values.clear();
+                    values.put("movie_id", scraperId);
+                    values.put("m_po_thumb_url", "https://image.tmdb.org/t/p/w342/" + video + ".jpg");
+                    values.put("m_po_thumb_file", "/data/media/movie/thumb/" + video + ".jpg");
+                    values.put("m_po_large_url", "https://image.tmdb.org/t/p/w780/" + video + ".jpg");
+                    values.put("m_po_large_file", "/data/media/movie/large/" + video + ".jpg");
+                    long posterId = db.insert("movie_posters", null, values);
+                    values.clear();
+                    values.put("m_poster_id", posterId);
+                    db.update("MOVIE", values, "_id = " + scraperId, null);
+                    scraperType = ScraperStore.SCRAPER_TYPE_MOVIE;
+                } else {
+                    int episode = video - library.movies;
+                    int show = episode / (SEASONS_PER_SHOW * EPISODES_PER_SEASON);
+                    long showId = show + 1;
+                    if (episode % (SEASONS_PER_SHOW * EPISODES_PER_SEASON) == 0) {
+                        // first episode of the show, ShowTags saves the show before it
+                        values.clear();
+                        values.put("_id", showId);
+                        values.put("name_show", "Show " + show);
+                        values.put("premiered_show", 946684800000L + show * 86400000L);
+                        values.put("rating_show", random.nextInt(100) / 10f);
+                        values.put("plot_show", words(random, 40));
+                        values.put("s_online_id", 5000 + show);
+                        db.insert("SHOW", null, values);
+                        values.clear();
+                        values.put("show_id", showId);
+                        values.put("s_po_thumb_url", "https://image.tmdb.org/t/p/w342/s" + show + ".jpg");
+                        values.put("s_po_thumb_file", "/data/media/show/thumb/" + show + ".jpg");
+                        values.put("s_po_large_url", "https://image.tmdb.org/t/p/w780/s" + show + ".jpg");
+                        values.put("s_po_large_file", "/data/media/show/large/" + show + ".jpg");
+                        long posterId = db.insert("show_posters", null, values);
+                        values.clear();
+                        values.put("s_poster_id", posterId);
+                        db.update("SHOW", values, "_id = " + showId, null);
+                    }
+                    values.clear();
+                    values.put("video_id", fileId);
+                    values.put("show_episode", showId);
+                    values.put("name_episode", words(random, 2));
+                    values.put("season_episode", episode / EPISODES_PER_SEASON % SEASONS_PER_SHOW + 1);
+                    values.put("number_episode", episode % EPISODES_PER_SEASON + 1);
+                    values.put("rating_episode", random.nextInt(100) / 10f);
+                    values.put("plot_episode", words(random, 30));
+                    values.put("e_online_id", 100000 + episode);
+                    scraperId = db.insert("EPISODE", null, values);
+                    scraperType = ScraperStore.SCRAPER_TYPE_SHOW;
+                }
+                values.clear();
+                values.put("ArchosMediaScraper_id", scraperId);
+                values.put("ArchosMediaScraper_type", scraperType);
+                db.update(VideoOpenHelper.FILES_TABLE_NAME, values, "_id = " + fileId, null);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        timings.add("scrape batch", System.nanoTime() - start, library.videos);
+    }
+
+    /** player: resume point and last played of single videos, one update each */
+    static void play(SQLiteDatabase db, Library library, Timings timings) {
+        Random random = new Random(4);
+        ContentValues values = new ContentValues();
+        int updates = Math.min(PLAYER_UPDATES, library.videos);
+        long start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            values.clear();
+            values.put("bookmark", random.nextInt(5000000));
+            values.put("Archos_lastTimePlayed", 1700000000L + i);
+            db.update(VideoOpenHelper.FILES_TABLE_NAME, values,
+                    "_id = " + fileId(random.nextInt(library.videos) + 1), null);
+        }
+        timings.add("player update", System.nanoTime() - start, updates);
+    }
+
+    /** scanner: a tenth of the library gone, with the scraper data and vob cleanups */
+    static void delete(SQLiteDatabase db, Library library, Timings timings) {
+        int deletes = library.videos / 10;
+        long start = System.nanoTime();
+        for (int first = 0; first < deletes; first += BATCH_SIZE) {
+            db.beginTransaction();
+            try {
+                // every tenth video, movies and episodes alike
+                for (int i = first; i < Math.min(first + BATCH_SIZE, deletes); i++)
+                    db.delete(VideoOpenHelper.FILES_SCANNED_TABLE_NAME, "_id = " + (i * 10 + 1), null);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        timings.add("scan delete", System.nanoTime() - start, deletes);
+    }
+
+    /** median of QUERY_RUNS full reads of the cursor, after a warm up run */
+    static long timeQuery(SQLiteDatabase db, String table, String[] projection, String selection,
+            String[] args, String groupBy, String sort, String limit) {
+        long[] runs = new long[QUERY_RUNS];
+        for (int run = -1; run < QUERY_RUNS; run++) {
+            long start = System.nanoTime();
+            try (Cursor c = db.query(table, projection, selection, args, groupBy, null, sort, limit)) {
+                // as a list fills its windows
+                while (c.moveToNext())
+                    c.getString(0);
+            }
+            if (run >= 0)
+                runs[run] = System.nanoTime() - start;
+        }
+        Arrays.sort(runs);
+        return runs[QUERY_RUNS / 2];
+    }
+
+    static int count(SQLiteDatabase db, String table, String selection) {
+        try (Cursor c = db.rawQuery("SELECT COUNT(*) FROM " + table + " WHERE " + selection, null)) {
+            c.moveToFirst();
+            return c.getInt(0);
+        }
+    }
+
+    /** the writes of a library lifetime, in the order they happen */
+    static void fill(SQLiteDatabase db, Library library, Timings timings) {
+        scan(db, library, timings);
+        importMetadata(db, library, timings);
+        scrape(db, library, timings);
+        play(db, library, timings);
+    }
+
+    /** the same list queries on the view and on video_denorm, as VideoProvider routes them */
+    private static void queries(SQLiteDatabase db, String table, String prefix, Timings timings) {
+        int movies = count(db, table, MOVIE_LIST_SELECTION);
+        timings.add(prefix + " movies", timeQuery(db, table, MOVIE_LIST_PROJECTION,
+                MOVIE_LIST_SELECTION, null, null, MOVIE_LIST_SORT, null), movies);
+        String[] show = { "1" };
+        timings.add(prefix + " seasons", timeQuery(db, table, SEASONS_PROJECTION,
+                SEASONS_SELECTION, show, SEASONS_GROUP_BY, SEASONS_GROUP_BY, null), SEASONS_PER_SHOW);
+        timings.add(prefix + " recent", timeQuery(db, table, MOVIE_LIST_PROJECTION,
+                RECENT_SELECTION, null, null, RECENT_SORT, "20"), 20);
+    }
+
+    @Test
+    public void library() {
+        // the provider answers these from video_denorm
+        assertTrue(VideoListTable.canServe(MOVIE_LIST_PROJECTION, MOVIE_LIST_SELECTION, null, null, MOVIE_LIST_SORT));
+        assertTrue(VideoListTable.canServe(SEASONS_PROJECTION, SEASONS_SELECTION, SEASONS_GROUP_BY, null, SEASONS_GROUP_BY));
+        assertTrue(VideoListTable.canServe(MOVIE_LIST_PROJECTION, RECENT_SELECTION, null, null, RECENT_SORT));
+        for (String size : VIDEOS.split(",")) {
+            Library library = new Library(Integer.parseInt(size.trim()));
+            String name = library.videos + " videos";
+
+            Timings without = new Timings(name + " -list");
+            SQLiteDatabase db = open(false);
+            fill(db, library, without);
+            delete(db, library, without);
+            close();
+
+            Timings with = new Timings(name);
+            db = open(true);
+            fill(db, library, with);
+            queries(db, VideoOpenHelper.VIDEO_VIEW_NAME, "view", with);
+            queries(db, VideoListTable.TABLE_NAME, "list", with);
+            delete(db, library, with);
+            // the triggers kept video_denorm in line with the view
+            assertEquals(count(db, VideoOpenHelper.VIDEO_VIEW_NAME, "po_large_file IS NOT NULL"),
+                    count(db, VideoListTable.TABLE_NAME, "po_large_file IS NOT NULL"));
+            assertEquals(count(db, VideoOpenHelper.VIDEO_VIEW_NAME, "1"), count(db, VideoListTable.TABLE_NAME, "1"));
+            close();
+
+            without.print();
+            with.print();
+        }
+    }
+}
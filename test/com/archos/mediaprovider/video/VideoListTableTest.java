@@ -0,0 +1,87 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediaprovider.video;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Which queries {@link VideoListTable} answers instead of the video view.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class VideoListTableTest {
+
+    private static final String[] LIST_PROJECTION = {
+            "_id", "_data", "title", "m_name", "m_year", "po_large_file", "bookmark", "duration",
+            "COALESCE(m_name, title) AS name",
+    };
+
+    @Test
+    public void listQueryIsServed() {
+        assertTrue(VideoListTable.canServe(LIST_PROJECTION,
+                "m_id IS NOT NULL AND Archos_hideFile=0 AND title LIKE '%the%'", null, null,
+                "name COLLATE LOCALIZED ASC, m_year DESC"));
+    }
+
+    @Test
+    public void seasonQueryIsServed() {
+        assertTrue(VideoListTable.canServe(new String[] { "e_season", "COUNT(*) AS episodes", "MAX(Archos_lastTimePlayed)" },
+                "s_id = ? AND Archos_hideFile = 0", "e_season", "episodes > 0", "e_season"));
+    }
+
+    @Test
+    public void literalsAreNotIdentifiers() {
+        assertTrue(VideoListTable.canServe(new String[] { "_id" },
+                "_data = 'smb://server/plot.mkv' AND title != 'it''s plot'", null, null, null));
+    }
+
+    @Test
+    public void wildcardProjectionGoesToTheView() {
+        assertFalse(VideoListTable.canServe(new String[] { "*" }));
+        assertFalse(VideoListTable.canServe(new String[] { "video.*" }));
+        assertFalse(VideoListTable.canServe(null));
+        assertFalse(VideoListTable.canServe(new String[] {}));
+    }
+
+    @Test
+    public void columnsLeftToTheViewGoToTheView() {
+        // plot is not copied
+        assertFalse(VideoListTable.canServe(new String[] { "_id", "plot" }));
+        assertFalse(VideoListTable.canServe(new String[] { "_id" }, "plot LIKE ?", null, null, null));
+        assertFalse(VideoListTable.canServe(new String[] { "_id" }, null, null, null, "m_actors"));
+    }
+
+    @Test
+    public void otherTablesGoToTheView() {
+        assertFalse(VideoListTable.canServe(new String[] { "_id" },
+                "_id IN (SELECT video_id FROM MOVIE WHERE m_online_id = 5)", null, null, null));
+        assertFalse(VideoListTable.canServe(new String[] { "video._id" }));
+    }
+
+    @Test
+    public void aliasesAreOnlyDefinedByTheProjection() {
+        assertFalse(VideoListTable.canServe(new String[] { "_id" }, null, null, null, "title AS sorted"));
+        assertFalse(VideoListTable.canServe(new String[] { "_id" }, null, null, null, "name"));
+    }
+
+    @Test
+    public void unterminatedLiteralGoesToTheView() {
+        assertFalse(VideoListTable.canServe(new String[] { "_id" }, "title = 'x", null, null, null));
+    }
+}
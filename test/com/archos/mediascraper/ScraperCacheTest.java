@@ -0,0 +1,164 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediascraper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * Stale-while-revalidate and negative caching of {@link ScraperCache} against a mock tmdb,
+ * with the interceptors set up as in MyTmdb.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ScraperCacheTest {
+
+    private static final String EMPTY_SEARCH = "{\"page\":1,\"results\":[],\"total_pages\":1,\"total_results\":0}";
+    private static final String SEARCH = "{\"page\":1,\"results\":[{\"id\":550}],\"total_pages\":1,\"total_results\":1}";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private MockWebServer mServer;
+    private OkHttpClient mClient;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new MockWebServer();
+        mServer.start();
+        ScraperCache.cache = new Cache(mFolder.newFolder(ScraperCache.SCRAPER_CACHE), ScraperCache.cacheSize);
+        mClient = new OkHttpClient.Builder()
+                .addInterceptor(new ScraperCache.LanguageKeyInterceptor())
+                .addInterceptor(new ScraperCache.StaleWhileRevalidateInterceptor())
+                .cache(ScraperCache.cache)
+                .addNetworkInterceptor(new ScraperCache.CacheInterceptor())
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+        ScraperCache.cache.close();
+        ScraperCache.cache = null;
+    }
+
+    /** http date of that many minutes ago, makes the entry stale once past its max-age */
+    private static String minutesAgo(long minutes) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(minutes)));
+    }
+
+    private String get(String path) throws IOException {
+        Request request = new Request.Builder().url(mServer.url(path)).header("Accept-Language", "en").build();
+        try (Response response = mClient.newCall(request).execute()) {
+            return response.code() + " " + response.body().string();
+        }
+    }
+
+    @Test
+    public void hitsAndMissesAreCountedOnce() throws IOException {
+        mServer.enqueue(new MockResponse().setBody("{\"id\":550}"));
+        ScraperCache.CacheStats before = ScraperCache.getCacheStats();
+
+        get("/3/movie/550");
+        get("/3/movie/550");
+        get("/3/movie/550");
+
+        ScraperCache.CacheStats after = ScraperCache.getCacheStats();
+        assertNotNull(after);
+        assertEquals(3, after.requestCount - before.requestCount);
+        assertEquals(2, after.hitCount - before.hitCount);
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void staleEntryIsServedAndRevalidated() throws Exception {
+        mServer.enqueue(new MockResponse().setBody("{\"id\":1,\"v\":1}").setHeader("Date", minutesAgo(180)));
+        mServer.enqueue(new MockResponse().setBody("{\"id\":1,\"v\":2}"));
+        long stale = ScraperCache.getCacheStats().staleServedCount;
+
+        assertEquals("200 {\"id\":1,\"v\":1}", get("/3/movie/1"));
+        // served from cache without waiting for the network
+        assertEquals("200 {\"id\":1,\"v\":1}", get("/3/movie/1"));
+        assertEquals(stale + 1, ScraperCache.getCacheStats().staleServedCount);
+
+        // background refresh
+        mServer.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull(mServer.takeRequest(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void freshEmptySearchIsServedFromCache() throws IOException {
+        mServer.enqueue(new MockResponse().setBody(EMPTY_SEARCH));
+
+        assertEquals("200 " + EMPTY_SEARCH, get("/3/search/movie?query=nothing"));
+        assertEquals("200 " + EMPTY_SEARCH, get("/3/search/movie?query=nothing"));
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void staleEmptySearchIsNotServed() throws IOException {
+        // past the 30 minutes of negative caching but well within the stale window
+        mServer.enqueue(new MockResponse().setBody(EMPTY_SEARCH).setHeader("Date", minutesAgo(60)));
+        mServer.enqueue(new MockResponse().setBody(SEARCH));
+        long stale = ScraperCache.getCacheStats().staleServedCount;
+
+        assertEquals("200 " + EMPTY_SEARCH, get("/3/search/movie?query=new"));
+        assertEquals("200 " + SEARCH, get("/3/search/movie?query=new"));
+        assertEquals(2, mServer.getRequestCount());
+        assertEquals(stale, ScraperCache.getCacheStats().staleServedCount);
+    }
+
+    @Test
+    public void staleNotFoundIsNotServed() throws IOException {
+        mServer.enqueue(new MockResponse().setResponseCode(404).setBody("{}").setHeader("Date", minutesAgo(60)));
+        mServer.enqueue(new MockResponse().setBody("{\"id\":2}"));
+
+        assertEquals("404 {}", get("/3/movie/2"));
+        assertEquals("200 {\"id\":2}", get("/3/movie/2"));
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void languageIsPartOfTheKey() throws Exception {
+        mServer.enqueue(new MockResponse().setBody("{}"));
+
+        get("/3/movie/3");
+
+        assertEquals("/3/movie/3?language=en", mServer.takeRequest().getPath());
+    }
+}
@@ -0,0 +1,189 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediascraper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * Request coalescing and 429 handling of {@link ScraperThrottle} against a mock server,
+ * with the interceptors set up as in MyTmdb.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ScraperThrottleTest {
+
+    // must match ScraperThrottle.MAX_SHARED_BODY_SIZE
+    private static final int MAX_SHARED_BODY_SIZE = 4 * 1024 * 1024;
+
+    private MockWebServer mServer;
+    private OkHttpClient mClient;
+    private ExecutorService mExecutor;
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new MockWebServer();
+        mServer.start();
+        mClient = new OkHttpClient.Builder()
+                .addInterceptor(new ScraperThrottle.SingleFlightInterceptor())
+                .addInterceptor(new ScraperThrottle.RetryAfterInterceptor())
+                .addNetworkInterceptor(new ScraperThrottle.RateLimitInterceptor())
+                .connectionPool(ScraperThrottle.getConnectionPool())
+                .dispatcher(ScraperThrottle.getDispatcher())
+                .build();
+        mExecutor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mRelease.countDown();
+        mExecutor.shutdownNow();
+        mServer.shutdown();
+    }
+
+    /** every answer waits for mRelease, so that a second call can join the first one */
+    private void answerOnRelease(MockResponse response) {
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                mRelease.await(10, TimeUnit.SECONDS);
+                return response;
+            }
+        });
+    }
+
+    private Future<byte[]> get(String path) {
+        return mExecutor.submit(() -> {
+            try (Response response = mClient.newCall(new Request.Builder().url(mServer.url(path)).build()).execute()) {
+                return response.body().bytes();
+            }
+        });
+    }
+
+    /** issues the same GET twice, the second one while the first one is on the server */
+    private byte[][] getTwiceConcurrently(String path) throws Exception {
+        Future<byte[]> leader = get(path);
+        mServer.takeRequest(10, TimeUnit.SECONDS);
+        Future<byte[]> follower = get(path);
+        // let the follower reach the in-flight map
+        Thread.sleep(200);
+        mRelease.countDown();
+        return new byte[][] { leader.get(10, TimeUnit.SECONDS), follower.get(10, TimeUnit.SECONDS) };
+    }
+
+    private static Buffer bytes(int size) {
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) 'x');
+        return new Buffer().write(data);
+    }
+
+    @Test
+    public void identicalGetsAreCoalesced() throws Exception {
+        answerOnRelease(new MockResponse().setBody("{\"id\":550}"));
+        long coalesced = ScraperThrottle.getCoalescedCount();
+
+        byte[][] bodies = getTwiceConcurrently("/3/movie/550");
+
+        assertEquals("{\"id\":550}", new String(bodies[0], "UTF-8"));
+        assertEquals("{\"id\":550}", new String(bodies[1], "UTF-8"));
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(coalesced + 1, ScraperThrottle.getCoalescedCount());
+    }
+
+    @Test
+    public void chunkedSmallBodyIsShared() throws Exception {
+        answerOnRelease(new MockResponse().setChunkedBody("{\"results\":[]}", 4));
+
+        byte[][] bodies = getTwiceConcurrently("/3/search/movie?query=a");
+
+        assertEquals("{\"results\":[]}", new String(bodies[1], "UTF-8"));
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void largeBodyIsNotShared() throws Exception {
+        answerOnRelease(new MockResponse().setBody(bytes(MAX_SHARED_BODY_SIZE + 1)));
+
+        byte[][] bodies = getTwiceConcurrently("/3/movie/1/images");
+
+        assertEquals(MAX_SHARED_BODY_SIZE + 1, bodies[0].length);
+        assertEquals(MAX_SHARED_BODY_SIZE + 1, bodies[1].length);
+        // the follower went to the network itself
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void largeChunkedBodyIsNotShared() throws Exception {
+        answerOnRelease(new MockResponse().setChunkedBody(bytes(MAX_SHARED_BODY_SIZE + 1), 64 * 1024));
+
+        byte[][] bodies = getTwiceConcurrently("/3/movie/2/images");
+
+        assertEquals(MAX_SHARED_BODY_SIZE + 1, bodies[0].length);
+        assertEquals(MAX_SHARED_BODY_SIZE + 1, bodies[1].length);
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void tooManyRequestsIsRetried() throws Exception {
+        mServer.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "0"));
+        mServer.enqueue(new MockResponse().setBody("ok"));
+        long tooMany = ScraperThrottle.getTooManyRequestsCount();
+
+        try (Response response = mClient.newCall(new Request.Builder().url(mServer.url("/3/tv/1")).build()).execute()) {
+            assertEquals(200, response.code());
+            assertEquals("ok", response.body().string());
+        }
+        assertEquals(2, mServer.getRequestCount());
+        assertEquals(tooMany + 1, ScraperThrottle.getTooManyRequestsCount());
+    }
+
+    @Test
+    public void retryAfterIsBounded() {
+        assertEquals(2000, ScraperThrottle.parseRetryAfter(null));
+        assertEquals(5000, ScraperThrottle.parseRetryAfter(" 5 "));
+        assertEquals(30000, ScraperThrottle.parseRetryAfter("3600"));
+        assertEquals(0, ScraperThrottle.parseRetryAfter("-3"));
+        assertEquals(2000, ScraperThrottle.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+    }
+
+    @Test
+    public void dispatcherIsShared() {
+        assertSame(ScraperThrottle.getDispatcher(), ScraperThrottle.getDispatcher());
+        assertEquals(8, ScraperThrottle.getDispatcher().getMaxRequestsPerHost());
+    }
+}
@@ -0,0 +1,116 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediascraper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import android.database.Cursor;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Heap allocated and time spent by {@link TagsFactory#buildTagsFromVideoCursor(Cursor, boolean)} on a
+ * 5k row library, 60% movies and 40% episodes, in full and summary mode. A list only reads the cover,
+ * which leaves the posters deferred; asking for them afterwards is what building them eagerly cost.
+ * Run with ./gradlew test -Pbenchmark --tests '*TagsFactoryBenchmark'
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TagsFactoryBenchmark {
+
+    private static final int ROWS = 5000;
+    private static final int ROUNDS = 3;
+
+    private interface Access {
+        /** @return the number of tags looked at */
+        int access(List<BaseTags> tags);
+    }
+
+    private static final Access NONE = new Access() {
+        @Override
+        public int access(List<BaseTags> tags) {
+            return tags.size();
+        }
+    };
+
+    private static final Access COVER = new Access() {
+        @Override
+        public int access(List<BaseTags> tags) {
+            int seen = 0;
+            for (BaseTags tag : tags) {
+                // episode covers are only returned when the file exists, which none does here
+                if (tag instanceof MovieTags)
+                    assertNotNull(tag.getCover());
+                else
+                    tag.getCover();
+                seen++;
+            }
+            return seen;
+        }
+    };
+
+    private static final Access POSTERS = new Access() {
+        @Override
+        public int access(List<BaseTags> tags) {
+            int seen = 0;
+            for (BaseTags tag : tags) {
+                assertNotNull(tag.getDefaultPoster());
+                if (tag instanceof EpisodeTags)
+                    assertNotNull(((EpisodeTags) tag).getShowTags().getDefaultPoster());
+                seen++;
+            }
+            return seen;
+        }
+    };
+
+    private static void run(String name, Cursor cursor, boolean summary, Access access) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int round = 0; round < ROUNDS; round++) {
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            List<BaseTags> tags = TagsFactory.buildTagsFromVideoCursor(cursor, summary);
+            int seen = access.access(tags);
+            long time = System.nanoTime() - start;
+            allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+            assertEquals(ROWS, seen);
+            System.out.println(String.format(Locale.ROOT,
+                    "TagsFactoryBenchmark %-16s round %d: %d rows in %.1fms, %d bytes/row",
+                    name, round, ROWS, time / 1e6, allocated / ROWS));
+        }
+    }
+
+    @Test
+    public void buildTags() {
+        Cursor full = TagsFactoryTest.library(TagsFactory.VIDEO_COLUMNS, ROWS);
+        Cursor summary = TagsFactoryTest.library(TagsFactory.SUMMARY_COLUMNS, ROWS);
+        try {
+            run("full", full, false, NONE);
+            run("full+posters", full, false, POSTERS);
+            run("summary", summary, true, NONE);
+            run("summary+covers", summary, true, COVER);
+            run("summary+posters", summary, true, POSTERS);
+        } finally {
+            full.close();
+            summary.close();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediascraper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.database.MatrixCursor;
+import android.provider.BaseColumns;
+
+import com.archos.mediaprovider.video.ScraperStore;
+import com.archos.mediaprovider.video.VideoStore.MediaColumns;
+import com.archos.mediaprovider.video.VideoStore.Video.VideoColumns;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tags built by {@link TagsFactory#buildTagsFromVideoCursor(android.database.Cursor, boolean)} out of a
+ * video cursor, posters only turned into ScraperImage when asked for.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TagsFactoryTest {
+
+    static final int SHOWS = 50;
+
+    /** 3 movies out of 5 rows, the others episodes spread over {@link #SHOWS} shows */
+    static boolean isMovie(int i) {
+        return i % 5 < 3;
+    }
+
+    /** a library of scraped videos as the video provider returns it for the given projection */
+    static MatrixCursor library(String[] projection, int rows) {
+        MatrixCursor cursor = new MatrixCursor(projection, rows);
+        Object[] values = new Object[projection.length];
+        for (int i = 0; i < rows; i++) {
+            Map<String, Object> row = row(i);
+            for (int column = 0; column < projection.length; column++)
+                values[column] = row.get(projection[column]);
+            cursor.addRow(values);
+        }
+        return cursor;
+    }
+
+    private static Map<String, Object> row(int i) {
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put(BaseColumns._ID, Long.valueOf(i + 1));
+        row.put(VideoColumns.SCRAPER_RATING, Float.valueOf(5f + i % 50 / 10f));
+        row.put(VideoColumns.SCRAPER_PLOT, "A plot long enough to be representative of what tmdb returns, row " + i);
+        row.put(VideoColumns.SCRAPER_ACTORS, "Actor One (Role), Actor Two (Role), Actor Three (Role)");
+        row.put(VideoColumns.SCRAPER_GENRES, "Drama, Comedy");
+        row.put(VideoColumns.SCRAPER_POSTER_ID, Long.valueOf(10000 + i));
+        row.put(VideoColumns.SCRAPER_POSTER_LARGE_FILE, "/data/user/0/org.courville.nova/app_scraper_posters/" + i + "_l.jpg");
+        row.put(VideoColumns.SCRAPER_POSTER_LARGE_URL, "https://image.tmdb.org/t/p/w342/poster" + i + ".jpg");
+        row.put(VideoColumns.SCRAPER_POSTER_THUMB_FILE, "/data/user/0/org.courville.nova/app_scraper_poster_thumbs/" + i + "_t.jpg");
+        row.put(VideoColumns.SCRAPER_POSTER_THUMB_URL, "https://image.tmdb.org/t/p/w92/poster" + i + ".jpg");
+        if (isMovie(i)) {
+            row.put(MediaColumns.DATA, "/storage/emulated/0/Movies/Movie " + i + " (" + (1950 + i % 75) + ").mkv");
+            row.put(VideoColumns.ARCHOS_MEDIA_SCRAPER_ID, Long.valueOf(1000 + i));
+            row.put(VideoColumns.ARCHOS_MEDIA_SCRAPER_TYPE, Integer.valueOf(ScraperStore.SCRAPER_TYPE_MOVIE));
+            row.put(VideoColumns.SCRAPER_TITLE, "Movie " + i);
+            row.put(VideoColumns.SCRAPER_M_YEAR, Integer.valueOf(1950 + i % 75));
+            row.put(VideoColumns.SCRAPER_DIRECTORS, "Some Director");
+        } else {
+            long show = 1 + i % SHOWS;
+            int season = 1 + i / SHOWS % 9;
+            row.put(MediaColumns.DATA, "/storage/emulated/0/TV/Show " + show + "/Show " + show + " S" + season + "E" + i + ".mkv");
+            row.put(VideoColumns.ARCHOS_MEDIA_SCRAPER_ID, Long.valueOf(100000 + i));
+            row.put(VideoColumns.ARCHOS_MEDIA_SCRAPER_TYPE, Integer.valueOf(ScraperStore.SCRAPER_TYPE_SHOW));
+            row.put(VideoColumns.SCRAPER_TITLE, "Show " + show);
+            row.put(VideoColumns.SCRAPER_E_NAME, "Episode " + i);
+            row.put(VideoColumns.SCRAPER_E_AIRED, Long.valueOf(1262304000000L + i * 86400000L));
+            row.put(VideoColumns.SCRAPER_E_SEASON, Integer.valueOf(season));
+            row.put(VideoColumns.SCRAPER_E_EPISODE, Integer.valueOf(i));
+            row.put(VideoColumns.SCRAPER_SHOW_ID, Long.valueOf(show));
+            row.put(VideoColumns.SCRAPER_S_RATING, Float.valueOf(8f));
+            row.put(VideoColumns.SCRAPER_S_PLOT, "The plot of show " + show);
+            row.put(VideoColumns.SCRAPER_S_POSTER_ID, Long.valueOf(900000 + show));
+            row.put(VideoColumns.SCRAPER_S_POSTER_LARGE_FILE, "/data/user/0/org.courville.nova/app_scraper_posters/s" + show + "_l.jpg");
+            row.put(VideoColumns.SCRAPER_S_POSTER_LARGE_URL, "https://image.tmdb.org/t/p/w342/show" + show + ".jpg");
+            row.put(VideoColumns.SCRAPER_S_POSTER_THUMB_FILE, "/data/user/0/org.courville.nova/app_scraper_poster_thumbs/s" + show + "_t.jpg");
+            row.put(VideoColumns.SCRAPER_S_POSTER_THUMB_URL, "https://image.tmdb.org/t/p/w92/show" + show + ".jpg");
+        }
+        return row;
+    }
+
+    @Test
+    public void moviePosterIsBuiltFromTheRow() {
+        List<BaseTags> tags = TagsFactory.buildTagsFromVideoCursor(library(TagsFactory.VIDEO_COLUMNS, 1));
+
+        MovieTags movie = (MovieTags) tags.get(0);
+        ScraperImage poster = movie.getDefaultPoster();
+        assertNotNull(poster);
+        assertTrue(poster.isMovie());
+        assertEquals(10000, poster.getId());
+        assertEquals(1000, poster.getRemoteId());
+        assertEquals("/data/user/0/org.courville.nova/app_scraper_posters/0_l.jpg", poster.getLargeFile());
+        assertEquals("https://image.tmdb.org/t/p/w342/poster0.jpg", poster.getLargeUrl());
+        assertEquals("/data/user/0/org.courville.nova/app_scraper_poster_thumbs/0_t.jpg", poster.getThumbFile());
+        assertEquals("https://image.tmdb.org/t/p/w92/poster0.jpg", poster.getThumbUrl());
+        assertSame(poster, movie.getPosters().get(0));
+    }
+
+    @Test
+    public void episodeAndShowPostersAreBuiltFromTheRow() {
+        List<BaseTags> tags = TagsFactory.buildTagsFromVideoCursor(library(TagsFactory.VIDEO_COLUMNS, 4));
+
+        EpisodeTags episode = (EpisodeTags) tags.get(3);
+        ScraperImage poster = episode.getDefaultPoster();
+        assertTrue(poster.isEpisode());
+        assertEquals(10003, poster.getId());
+        assertEquals(4, poster.getRemoteId());
+        assertEquals(1, poster.getSeason());
+        ScraperImage showPoster = episode.getShowTags().getDefaultPoster();
+        assertTrue(showPoster.isShow());
+        assertEquals(900004, showPoster.getId());
+        assertEquals(4, showPoster.getRemoteId());
+        assertEquals("https://image.tmdb.org/t/p/w342/show4.jpg", showPoster.getLargeUrl());
+    }
+
+    @Test
+    public void coverIsReadWithoutBuildingThePoster() {
+        List<BaseTags> tags = TagsFactory.buildTagsFromVideoCursor(library(TagsFactory.SUMMARY_COLUMNS, 1), true);
+
+        BaseTags movie = tags.get(0);
+        assertEquals(new File("/data/user/0/org.courville.nova/app_scraper_posters/0_l.jpg"), movie.getCover());
+        assertNull(movie.mPosters);
+        assertEquals(movie.getCover(), movie.getDefaultPoster().getLargeFileF());
+        assertTrue(movie.mPosters != null && movie.mPosters.size() == 1);
+    }
+
+    @Test
+    public void setPostersDropsTheDeferredPoster() {
+        MovieTags movie = (MovieTags) TagsFactory.buildTagsFromVideoCursor(library(TagsFactory.VIDEO_COLUMNS, 1)).get(0);
+        ScraperImage other = new ScraperImage(ScraperImage.Type.MOVIE_POSTER, "other");
+        other.setLargeFile("/other_l.jpg");
+
+        movie.setPosters(other.asList());
+
+        assertSame(other, movie.getDefaultPoster());
+        assertEquals(new File("/other_l.jpg"), movie.getCover());
+    }
+}
@@ -0,0 +1,173 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.mediascraper.themoviedb3;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.uwetrottmann.tmdb2.TmdbHelper;
+import com.uwetrottmann.tmdb2.entities.Movie;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Heap allocated and time spent parsing movie details with credits and images appended, as
+ * MovieIdParser2 gets them, with the tmdb-java Gson against the one of MyTmdb that registers
+ * {@link StreamingTypeAdapterFactory}. The payloads have the shape of tmdb ones for a long running
+ * title: hundreds of cast and crew members, hundreds of images of every kind.
+ * Run with ./gradlew test -Pbenchmark --tests '*StreamingParseBenchmark'
+ */
+@RunWith(RobolectricTestRunner.class)
+public class StreamingParseBenchmark {
+
+    private static final int PAYLOADS = 200;
+    private static final int ROUNDS = 3;
+    private static final int CAST = 150;
+    private static final int CREW = 400;
+    private static final int POSTERS = 300;
+    private static final int BACKDROPS = 250;
+    private static final int LOGOS = 100;
+
+    private static final String[] JOBS = { "Director", "Writer", "Producer", "Editor", "Casting", "Original Music Composer", "Sound Designer", "Gaffer" };
+    private static final String[] LANGUAGES = { "en", "fr", "de", null };
+
+    private static void image(JsonWriter writer, int movie, String kind, int i) throws IOException {
+        writer.beginObject()
+                .name("aspect_ratio").value(kind.equals("posters") ? 0.667 : 1.778)
+                .name("height").value(kind.equals("posters") ? 3000 : 2160)
+                .name("iso_639_1").value(LANGUAGES[i % LANGUAGES.length])
+                .name("file_path").value("/" + Integer.toString(movie * 7919 + i * 31, 36) + kind.charAt(0) + "Yq3xGk2.jpg")
+                .name("vote_average").value((i * 37 % 100) / 10.0)
+                .name("vote_count").value(i * 13 % 50)
+                .name("width").value(kind.equals("posters") ? 2000 : 3840)
+                .endObject();
+    }
+
+    /** movie details with append_to_response=credits,images */
+    private static String payload(int movie) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginObject()
+                .name("id").value(1000 + movie)
+                .name("title").value("Movie " + movie)
+                .name("original_title").value("Movie " + movie)
+                .name("overview").value("An overview of a few sentences, as tmdb returns for most titles, movie " + movie)
+                .name("release_date").value("2001-0" + (1 + movie % 9) + "-1" + movie % 10)
+                .name("runtime").value(90 + movie % 60)
+                .name("vote_average").value(7.2)
+                .name("vote_count").value(12000);
+        writer.name("credits").beginObject().name("id").value(1000 + movie);
+        writer.name("cast").beginArray();
+        for (int i = 0; i < CAST; i++) {
+            writer.beginObject()
+                    .name("adult").value(false)
+                    .name("gender").value(i % 3)
+                    .name("id").value(5000 + i)
+                    .name("known_for_department").value("Acting")
+                    .name("name").value("Actor Name " + i)
+                    .name("original_name").value("Actor Name " + i)
+                    .name("popularity").value(12.5 + i)
+                    .name("profile_path").value("/profile" + i + ".jpg")
+                    .name("cast_id").value(i)
+                    .name("character").value("Character " + i)
+                    .name("credit_id").value("52fe4250c3a36847f80149f" + i)
+                    .name("order").value(i)
+                    .endObject();
+        }
+        writer.endArray();
+        writer.name("crew").beginArray();
+        for (int i = 0; i < CREW; i++) {
+            writer.beginObject()
+                    .name("adult").value(false)
+                    .name("gender").value(i % 3)
+                    .name("id").value(9000 + i)
+                    .name("known_for_department").value("Crew")
+                    .name("name").value("Crew Name " + i)
+                    .name("original_name").value("Crew Name " + i)
+                    .name("popularity").value(1.5 + i)
+                    .name("profile_path").nullValue()
+                    .name("credit_id").value("52fe4250c3a36847f8014a0" + i)
+                    .name("department").value("Crew")
+                    .name("job").value(JOBS[i % JOBS.length])
+                    .endObject();
+        }
+        writer.endArray().endObject();
+        writer.name("images").beginObject();
+        writer.name("backdrops").beginArray();
+        for (int i = 0; i < BACKDROPS; i++)
+            image(writer, movie, "backdrops", i);
+        writer.endArray();
+        writer.name("logos").beginArray();
+        for (int i = 0; i < LOGOS; i++)
+            image(writer, movie, "logos", i);
+        writer.endArray();
+        writer.name("posters").beginArray();
+        for (int i = 0; i < POSTERS; i++)
+            image(writer, movie, "posters", i);
+        writer.endArray().endObject();
+        writer.endObject();
+        writer.close();
+        return out.toString();
+    }
+
+    private static void run(String name, Gson gson, String[] payloads, int cast, int posters) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long bytes = 0;
+        for (String payload : payloads)
+            bytes += payload.length();
+        for (int round = 0; round < ROUNDS; round++) {
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for (String payload : payloads) {
+                Movie movie = gson.fromJson(payload, Movie.class);
+                assertEquals(cast, movie.credits.cast.size());
+                assertEquals(posters, movie.images.posters.size());
+            }
+            long time = System.nanoTime() - start;
+            allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+            System.out.println(String.format(Locale.ROOT,
+                    "StreamingParseBenchmark %-9s round %d: %d payloads (%d kB each) in %.1fms, %d kB allocated/payload",
+                    name, round, PAYLOADS, bytes / PAYLOADS / 1024, time / 1e6, allocated / PAYLOADS / 1024));
+        }
+    }
+
+    @Test
+    public void parseMovieDetails() throws IOException {
+        String[] payloads = new String[PAYLOADS];
+        for (int i = 0; i < PAYLOADS; i++)
+            payloads[i] = payload(i);
+
+        Gson full = TmdbHelper.getGsonBuilder().create();
+        Gson streaming = TmdbHelper.getGsonBuilder().registerTypeAdapterFactory(new StreamingTypeAdapterFactory()).create();
+
+        // directors and writers only, every image in tmdb order
+        Movie movie = streaming.fromJson(payloads[0], Movie.class);
+        Movie reference = full.fromJson(payloads[0], Movie.class);
+        assertEquals(CREW / JOBS.length * 2, movie.credits.crew.size());
+        assertEquals(reference.images.backdrops.get(1).file_path, movie.images.backdrops.get(1).file_path);
+
+        run("full", full, payloads, CAST, POSTERS);
+        run("streaming", streaming, payloads, StreamingTypeAdapterFactory.MAX_CAST, POSTERS);
+    }
+}
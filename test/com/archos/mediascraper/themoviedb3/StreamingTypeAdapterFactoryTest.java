@@ -0,0 +1,79 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.archos.mediascraper.themoviedb3;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.gson.Gson;
+import com.uwetrottmann.tmdb2.TmdbHelper;
+import com.uwetrottmann.tmdb2.entities.Image;
+import com.uwetrottmann.tmdb2.entities.Images;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+
+/**
+ * Images read by {@link StreamingTypeAdapterFactory} must be the ones of the tmdb-java parse, same
+ * count and same order, since MovieIdParser2 and ShowIdImagesParser pick the default poster, the
+ * backdrop and their language out of them.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class StreamingTypeAdapterFactoryTest {
+
+    private static final int IMAGES = 120;
+    private static final String[] LANGUAGES = { "en", "fr", null };
+
+    private static String images() {
+        StringBuilder sb = new StringBuilder("{\"id\":550,\"logos\":[{\"file_path\":\"/logo.png\"}]");
+        for (String kind : new String[] { "posters", "backdrops" }) {
+            sb.append(",\"").append(kind).append("\":[");
+            for (int i = 0; i < IMAGES; i++) {
+                if (i > 0) sb.append(',');
+                // votes out of order and with ties, as tmdb returns them
+                sb.append("{\"aspect_ratio\":0.667,\"height\":3000,\"width\":2000,\"vote_count\":").append(i)
+                        .append(",\"file_path\":\"/").append(kind).append(i).append(".jpg\"")
+                        .append(",\"iso_639_1\":").append(LANGUAGES[i % LANGUAGES.length] == null ? "null" : "\"" + LANGUAGES[i % LANGUAGES.length] + "\"")
+                        .append(",\"vote_average\":").append(i * 37 % 10).append('}');
+            }
+            sb.append(']');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void assertSameImages(List<Image> expected, List<Image> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).file_path, actual.get(i).file_path);
+            assertEquals(expected.get(i).iso_639_1, actual.get(i).iso_639_1);
+            assertEquals(expected.get(i).vote_average, actual.get(i).vote_average);
+        }
+    }
+
+    @Test
+    public void keepsTmdbOrderAndCount() {
+        Gson full = TmdbHelper.getGsonBuilder().create();
+        Gson streaming = TmdbHelper.getGsonBuilder().registerTypeAdapterFactory(new StreamingTypeAdapterFactory()).create();
+        String json = images();
+
+        Images expected = full.fromJson(json, Images.class);
+        Images actual = streaming.fromJson(json, Images.class);
+
+        assertEquals(IMAGES, actual.posters.size());
+        assertSameImages(expected.posters, actual.posters);
+        assertSameImages(expected.backdrops, actual.backdrops);
+    }
+}